@@ -0,0 +1,58 @@
+package edu.univ.erp.benchmarks;
+
+import edu.univ.erp.auth.AuthResult;
+import edu.univ.erp.auth.UserDAO;
+import edu.univ.erp.data.AdminDAO;
+import edu.univ.erp.data.NotificationDAO;
+import edu.univ.erp.data.SettingsDAO;
+import edu.univ.erp.domain.UserFilter;
+import edu.univ.erp.domain.UserPage;
+import edu.univ.erp.domain.UserView;
+import edu.univ.erp.service.AdminService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+//Login (credential lookup + BCrypt) and the admin user listing
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AuthAndAdminBenchmark {
+    private final UserDAO userDAO = new UserDAO();
+    private final AdminService adminService = new AdminService(userDAO, new AdminDAO(), new SettingsDAO(), new NotificationDAO());
+
+    @Benchmark
+    public AuthResult checkLogin(SeededDatabase db) {
+        return userDAO.CheckLogin(db.studentEmail(db.randomStudentId()), SeededDatabase.PASSWORD);
+    }
+
+    //The database parameter is unused but makes JMH seed it for this benchmark's fork
+    @Benchmark
+    public List<UserView> getAllUsers(SeededDatabase db) {
+        return adminService.GetAllUsers();
+    }
+
+    //The first page UserManagementPanel asks for, the paged replacement for getAllUsers
+    @Benchmark
+    public UserPage getUsersFirstPage(SeededDatabase db) {
+        return adminService.GetUsersPage(UserFilter.ALL, 0, 100);
+    }
+
+    //A name search, driven by the profile tables and joined back to AuthDB by ID
+    @Benchmark
+    public UserPage searchUsersByName(SeededDatabase db) {
+        return adminService.GetUsersPage(new UserFilter(null, "Student 12", null), 0, 100);
+    }
+}
@@ -0,0 +1,30 @@
+package edu.univ.erp.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+//Entry point of benchmarks.jar
+//Accepts the normal JMH command line, but unless told otherwise writes the results as JSON
+//to jmh-results.json so runs before and after a data-layer change can be compared
+//  java -jar benchmarks/target/benchmarks.jar -p students=50000 -p sections=5000 -rff before.json
+public class BenchmarkRunner {
+    private static final String DEFAULT_RESULT_FILE = "jmh-results.json";
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+        if (!commandLine.getResultFormat().hasValue()) {
+            options.resultFormat(ResultFormatType.JSON);
+        }
+        if (!commandLine.getResult().hasValue()) {
+            options.result(DEFAULT_RESULT_FILE);
+        }
+        if (commandLine.getIncludes().isEmpty()) {
+            options.include("edu\\.univ\\.erp\\.benchmarks\\..*");
+        }
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,71 @@
+package edu.univ.erp.benchmarks;
+
+import edu.univ.erp.data.InstructorDAO;
+import edu.univ.erp.data.SettingsDAO;
+import edu.univ.erp.domain.GradebookEntry;
+import edu.univ.erp.service.InstructorService;
+import edu.univ.erp.service.UserSession;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+//Loading and saving a whole section's gradebook
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InstructorBenchmark {
+    //Number of distinct sections the save benchmark cycles through
+    private static final int SAVED_SECTIONS = 32;
+
+    private final InstructorDAO instructorDAO = new InstructorDAO();
+    private InstructorService instructorService;
+    private int[] savedSectionIds;
+    private UserSession[] savedSessions; //The session of each saved section's instructor
+    private List<List<GradebookEntry>> savedGradebooks;
+
+    @Setup(Level.Trial)
+    public void loadGradebooks(SeededDatabase db) {
+        instructorService = new InstructorService(instructorDAO, new SettingsDAO());
+        int count = Math.min(SAVED_SECTIONS, db.sections);
+        savedSectionIds = new int[count];
+        savedSessions = new UserSession[count];
+        savedGradebooks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int sectionId = 1 + i * (db.sections / count);
+            List<GradebookEntry> edited = new ArrayList<>();
+            for (GradebookEntry entry : instructorDAO.getGradebook(sectionId)) {
+                edited.add(new GradebookEntry(entry.studentId(), entry.studentName(), 75, 68, 81, null));
+            }
+            savedSectionIds[i] = sectionId;
+            savedSessions[i] = new UserSession(null, 0, "bench", "Instructor", db.instructorOfSection(sectionId));
+            savedGradebooks.add(edited);
+        }
+    }
+
+    @Benchmark
+    public List<GradebookEntry> getGradebook(SeededDatabase db) {
+        return instructorDAO.getGradebook(db.randomSectionId());
+    }
+
+    @Benchmark
+    public boolean saveAndCalculateGrades() {
+        int i = ThreadLocalRandom.current().nextInt(savedSectionIds.length);
+        return instructorService.saveAndCalculateGrades(savedSessions[i], savedSectionIds[i], savedGradebooks.get(i));
+    }
+}
@@ -0,0 +1,213 @@
+package edu.univ.erp.benchmarks;
+
+import edu.univ.erp.data.GpaDAO;
+import edu.univ.erp.util.DatabaseUtil;
+import org.mindrot.jbcrypt.BCrypt;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.concurrent.ThreadLocalRandom;
+
+//Embedded H2 database (MySQL compatibility mode) seeded at a configurable scale
+//Every benchmark fork is a fresh JVM, so DatabaseUtil is switched to the H2 profile before it is first touched,
+//and it creates the tables itself with SchemaBootstrap when it sets up the pools
+//Scale is controlled with the JMH params, e.g. -p students=50000 -p sections=5000
+@State(Scope.Benchmark)
+public class SeededDatabase {
+    public static final String PASSWORD = "bench123";
+
+    @Param("50000")
+    public int students;
+
+    @Param("5000")
+    public int sections;
+
+    //Every student is enrolled in this many sections
+    @Param("5")
+    public int enrollmentsPerStudent;
+
+    //Cost factor of the seeded password hash, CheckLogin pays this on every call
+    @Param("10")
+    public int bcryptCost;
+
+    public int instructors;
+    public int courses;
+
+    private static final String[] DAYS = {"Mon/Wed", "Tue/Thu", "Mon/Thu", "Tue/Fri", "Wed/Fri"};
+    private static final int BATCH_SIZE = 1000;
+
+
+    @Setup(Level.Trial)
+    public void seed() throws Exception {
+        System.setProperty("erp.db.profile", "h2");
+        System.clearProperty("erp.db.h2.dir"); //Always a fresh in-memory database, seeding expects empty tables
+
+        instructors = Math.max(1, sections / 5);
+        courses = Math.max(1, sections / 4);
+
+        long start = System.currentTimeMillis();
+        try (Connection auth = DatabaseUtil.GetAuthConnection(); Connection student = DatabaseUtil.GetStudentConnection()) {
+            auth.setAutoCommit(false);
+            student.setAutoCommit(false);
+            seedUsers(auth, student);
+            seedCatalog(student);
+            seedEnrollmentsAndGrades(student);
+            try (Statement stmt = student.createStatement()) {
+                stmt.executeUpdate("INSERT INTO SystemSettings (SettingKey, SettingValue) VALUES ('MaintenanceMode', 'false')");
+                stmt.executeUpdate("INSERT INTO SystemSettings (SettingKey, SettingValue) VALUES ('Deadline', '2099-01-01')");
+            }
+            auth.commit();
+            student.commit();
+        }
+        new GpaDAO().rebuildAll();
+        System.out.printf("%nSeeded %d students, %d instructors, %d courses, %d sections in %dms%n",
+                students, instructors, courses, sections, System.currentTimeMillis() - start);
+    }
+
+
+    @TearDown(Level.Trial)
+    public void shutdown() {
+        DatabaseUtil.ShutdownPools();
+    }
+
+
+    //Student and section IDs are dense, so picking a random one is just a random int
+    public int randomStudentId() {
+        return 1 + ThreadLocalRandom.current().nextInt(students);
+    }
+
+    public int randomSectionId() {
+        return 1 + ThreadLocalRandom.current().nextInt(sections);
+    }
+
+    //Sections are handed to the instructors round robin by seedCatalog
+    public int instructorOfSection(int sectionId) {
+        return 1 + (sectionId - 1) % instructors;
+    }
+
+    public String studentEmail(int studentId) {
+        return "student" + studentId + "@university.edu";
+    }
+
+
+    //Users 1..students are students, then the instructors, then one admin
+    //All of them share one hash, hashing 50k passwords would take longer than the benchmark itself
+    private void seedUsers(Connection auth, Connection student) throws Exception {
+        String hash = BCrypt.hashpw(PASSWORD, BCrypt.gensalt(bcryptCost));
+        try (PreparedStatement users = auth.prepareStatement("INSERT INTO Users (Email, PasswordHash, Role) VALUES (?, ?, ?)");
+             PreparedStatement profiles = student.prepareStatement("INSERT INTO Students (UserID, FullName, Email) VALUES (?, ?, ?)")) {
+            for (int i = 1; i <= students; i++) {
+                String email = studentEmail(i);
+                users.setString(1, email);
+                users.setString(2, hash);
+                users.setString(3, "Student");
+                users.addBatch();
+                profiles.setInt(1, i);
+                profiles.setString(2, "Student " + i);
+                profiles.setString(3, email);
+                profiles.addBatch();
+                if (i % BATCH_SIZE == 0) {
+                    users.executeBatch();
+                    profiles.executeBatch();
+                }
+            }
+            users.executeBatch();
+            profiles.executeBatch();
+        }
+        try (PreparedStatement users = auth.prepareStatement("INSERT INTO Users (Email, PasswordHash, Role) VALUES (?, ?, ?)");
+             PreparedStatement profiles = student.prepareStatement("INSERT INTO Instructors (UserID, FullName, Email) VALUES (?, ?, ?)")) {
+            for (int i = 1; i <= instructors; i++) {
+                String email = "instructor" + i + "@university.edu";
+                users.setString(1, email);
+                users.setString(2, hash);
+                users.setString(3, "Instructor");
+                users.addBatch();
+                profiles.setInt(1, students + i);
+                profiles.setString(2, "Instructor " + i);
+                profiles.setString(3, email);
+                profiles.addBatch();
+            }
+            users.setString(1, "admin@university.edu");
+            users.setString(2, hash);
+            users.setString(3, "Admin");
+            users.addBatch();
+            users.executeBatch();
+            profiles.executeBatch();
+        }
+    }
+
+
+    private void seedCatalog(Connection student) throws Exception {
+        try (PreparedStatement stmt = student.prepareStatement("INSERT INTO Course (CourseCode, CourseTitle, Credits) VALUES (?, ?, ?)")) {
+            for (int i = 1; i <= courses; i++) {
+                stmt.setString(1, "CSE" + (100 + i));
+                stmt.setString(2, "Course " + i);
+                stmt.setInt(3, 2 + (i % 3));
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+        try (PreparedStatement stmt = student.prepareStatement(
+                "INSERT INTO Sections (CourseID, InstructorID, SectionNumber, TimeSlot, Capacity, EnrolledCount) VALUES (?, ?, ?, ?, ?, 0)")) {
+            int perSection = (int) Math.ceil(students * (double) enrollmentsPerStudent / sections);
+            for (int i = 1; i <= sections; i++) {
+                int hour = 8 + (i % 10);
+                stmt.setInt(1, 1 + (i - 1) % courses);
+                stmt.setInt(2, 1 + (i - 1) % instructors);
+                stmt.setString(3, String.valueOf(1 + (i - 1) / courses));
+                stmt.setString(4, DAYS[i % DAYS.length] + " " + hour + ":00-" + hour + ":50");
+                stmt.setInt(5, perSection + 20);
+                stmt.addBatch();
+                if (i % BATCH_SIZE == 0) {
+                    stmt.executeBatch();
+                }
+            }
+            stmt.executeBatch();
+        }
+    }
+
+
+    //Student s takes sections spread evenly over the catalog, so every section ends up with the same class size
+    //Half of the enrollments already have grades
+    private void seedEnrollmentsAndGrades(Connection student) throws Exception {
+        int perStudent = Math.min(enrollmentsPerStudent, sections);
+        int stride = Math.max(1, sections / perStudent);
+        try (PreparedStatement enroll = student.prepareStatement("INSERT INTO Enrollments (StudentID, SectionID, EnrollmentDate) VALUES (?, ?, CURDATE())");
+             PreparedStatement grade = student.prepareStatement("INSERT INTO Grades (StudentID, SectionID, QuizScore, MidtermScore, FinalScore, FinalGrade) VALUES (?, ?, ?, ?, ?, ?)")) {
+            int pending = 0;
+            for (int s = 1; s <= students; s++) {
+                for (int j = 0; j < perStudent; j++) {
+                    int sectionId = 1 + (s + j * stride) % sections;
+                    enroll.setInt(1, s);
+                    enroll.setInt(2, sectionId);
+                    enroll.addBatch();
+                    if ((s + j) % 2 == 0) {
+                        grade.setInt(1, s);
+                        grade.setInt(2, sectionId);
+                        grade.setDouble(3, 40 + (s * 7 + j) % 60);
+                        grade.setDouble(4, 35 + (s * 11 + j) % 65);
+                        grade.setDouble(5, 30 + (s * 13 + j) % 70);
+                        grade.setString(6, "B");
+                        grade.addBatch();
+                    }
+                    if (++pending % BATCH_SIZE == 0) {
+                        enroll.executeBatch();
+                        grade.executeBatch();
+                    }
+                }
+            }
+            enroll.executeBatch();
+            grade.executeBatch();
+        }
+        try (Statement stmt = student.createStatement()) {
+            stmt.executeUpdate("UPDATE Sections s SET EnrolledCount = (SELECT COUNT(*) FROM Enrollments e WHERE e.SectionID = s.SectionID)");
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package edu.univ.erp.benchmarks;
+
+import edu.univ.erp.data.StudentDAO;
+import edu.univ.erp.domain.EnrolledSection;
+import edu.univ.erp.domain.SectionView;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+//The two queries every student runs when opening the catalog and the timetable
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StudentDAOBenchmark {
+    private final StudentDAO studentDAO = new StudentDAO();
+
+    @Benchmark
+    public List<SectionView> getAvailableSections(SeededDatabase db) {
+        return studentDAO.getAvailableSections(db.randomStudentId());
+    }
+
+    @Benchmark
+    public List<EnrolledSection> getTimetable(SeededDatabase db) {
+        return studentDAO.getTimetable(db.randomStudentId());
+    }
+}
@@ -0,0 +1,173 @@
+package edu.univ.erp.api;
+
+import edu.univ.erp.data.NotificationSource;
+import edu.univ.erp.domain.Notification;
+import edu.univ.erp.service.LoginResult;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Type;
+import java.net.ConnectException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+//A desktop client's connection to the ApiServer, shared by the Remote* services of the client
+//One HttpClient keeps its connections to the server open for every call, and the session token from login goes with each call
+//It is also the client's NotificationSource, so NotificationCenter polls the server's memory instead of the table
+public class ApiClient implements NotificationSource {
+    private static final Logger logger = Logger.getLogger(ApiClient.class.getName());
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(5);
+    private static final Duration CALL_TIMEOUT = Duration.ofSeconds(60); //Until the answer starts, a streamed export can take longer
+    private static final Type NOTIFICATIONS = Json.listOf(Notification.class);
+
+    private final URI base;
+    private final HttpClient http;
+    private volatile String token;
+    private volatile int profileId = -1;
+
+    //serverUrl is the server's address, e.g. http://erp-server:8085
+    public ApiClient(String serverUrl) {
+        this.base = URI.create(serverUrl.endsWith("/") ? serverUrl : serverUrl + "/").resolve(ApiServer.PREFIX.substring(1));
+        this.http = HttpClient.newBuilder().connectTimeout(CONNECT_TIMEOUT).build();
+    }
+
+
+    //Logs in and keeps the session token for the calls that follow
+    LoginResult login(String email, String password) {
+        LoginReply reply = call("auth/login", LoginReply.class, email, password);
+        this.token = reply.token();
+        this.profileId = reply.profileId();
+        return new LoginResult(reply.userId(), reply.role(), reply.message());
+    }
+
+
+    //Ends the session on the server, called by Main on logout
+    public void logout() {
+        if (token == null) {
+            return;
+        }
+        try {
+            call("auth/logout", Object.class);
+        }
+        catch (ApiException e) {
+            logger.warning("Logout failed: " + e.getMessage());
+        }
+        token = null;
+        profileId = -1;
+    }
+
+
+    //The StudentID or InstructorID the server found for the logged in user, -1 if none
+    int profileId() {
+        return profileId;
+    }
+
+
+    @Override
+    public List<Notification> GetLatestNotifications(int Limit) {
+        return call("notifications/latest", NOTIFICATIONS, Limit);
+    }
+
+    @Override
+    public List<Notification> GetNotificationsAfter(int AfterID, int Limit) {
+        return call("notifications/after", NOTIFICATIONS, AfterID, Limit);
+    }
+
+
+    //Runs the call and reads its JSON answer as resultType, throws ApiException when it fails
+    @SuppressWarnings("unchecked")
+    <T> T call(String route, Type resultType, Object... args) {
+        HttpResponse<String> response = send(route, args, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        if (response.statusCode() != 200) {
+            throw failure(response.statusCode(), response.body());
+        }
+        try {
+            return (T) Json.read(response.body(), resultType);
+        }
+        catch (IllegalArgumentException e) {
+            throw new ApiException(response.statusCode(), "Unreadable answer to " + route + ": " + e.getMessage());
+        }
+    }
+
+
+    //For calls whose local version reports a failure through its return value, logs the failure and returns failed
+    <T> T callOr(T failed, String route, Type resultType, Object... args) {
+        try {
+            return call(route, resultType, args);
+        }
+        catch (ApiException e) {
+            logger.warning(route + " failed: " + e.getMessage());
+            return failed;
+        }
+    }
+
+
+    //The body of a streamed call, read it to the end and close it
+    InputStream download(String route, Object... args) {
+        HttpResponse<InputStream> response = send(route, args, HttpResponse.BodyHandlers.ofInputStream());
+        if (response.statusCode() == 200) {
+            return response.body();
+        }
+        try (InputStream body = response.body()) {
+            throw failure(response.statusCode(), new String(body.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        catch (IOException e) {
+            throw new ApiException(response.statusCode(), "Server error " + response.statusCode());
+        }
+    }
+
+
+    private <B> HttpResponse<B> send(String route, Object[] args, HttpResponse.BodyHandler<B> bodyHandler) {
+        HttpRequest.Builder request = HttpRequest.newBuilder(base.resolve(route))
+                .timeout(CALL_TIMEOUT)
+                .header("Content-Type", "application/json; charset=utf-8")
+                .POST(HttpRequest.BodyPublishers.ofString(Json.write(args), StandardCharsets.UTF_8));
+        String current = token;
+        if (current != null) {
+            request.header("Authorization", "Bearer " + current);
+        }
+        HttpRequest built = request.build();
+        try {
+            try {
+                return http.send(built, bodyHandler);
+            }
+            catch (IOException e) {
+                //A kept open connection the server closed just as this call went out, nothing was answered, so it is sent once more
+                if (e instanceof HttpTimeoutException || e instanceof ConnectException) {
+                    throw e;
+                }
+                logger.fine("Retrying " + route + " after " + e.getMessage());
+                return http.send(built, bodyHandler);
+            }
+        }
+        catch (IOException e) {
+            throw new ApiException(0, "Cannot reach the server: " + e.getMessage());
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ApiException(0, "Interrupted while calling the server");
+        }
+    }
+
+
+    private static ApiException failure(int status, String body) {
+        String message = "Server error " + status;
+        try {
+            if (Json.parse(body) instanceof Map<?, ?> error && error.get("error") instanceof String text) {
+                message = text;
+            }
+        }
+        catch (IllegalArgumentException e) {
+            //Not one of the server's error answers, keep the status
+        }
+        return new ApiException(status, message);
+    }
+}
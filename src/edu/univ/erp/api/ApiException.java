@@ -0,0 +1,17 @@
+package edu.univ.erp.api;
+
+//A call to the API server that did not succeed
+//status is the HTTP status the server answered with, 0 when the server could not be reached
+//The server also throws it from a handler to answer with a specific status
+public class ApiException extends RuntimeException {
+    private final int status;
+
+    public ApiException(int status, String message) {
+        super(message);
+        this.status = status;
+    }
+
+    public int status() {
+        return status;
+    }
+}
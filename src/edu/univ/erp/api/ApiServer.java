@@ -0,0 +1,491 @@
+package edu.univ.erp.api;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import edu.univ.erp.auth.UserDAO;
+import edu.univ.erp.data.AdminDAO;
+import edu.univ.erp.data.InstructorDAO;
+import edu.univ.erp.data.NotificationCenter;
+import edu.univ.erp.data.NotificationDAO;
+import edu.univ.erp.data.NotificationWriter;
+import edu.univ.erp.data.SettingsDAO;
+import edu.univ.erp.data.StudentDAO;
+import edu.univ.erp.domain.Course;
+import edu.univ.erp.domain.GradebookEntry;
+import edu.univ.erp.domain.GradingPolicy;
+import edu.univ.erp.domain.Instructor;
+import edu.univ.erp.domain.Notification;
+import edu.univ.erp.domain.UserFilter;
+import edu.univ.erp.domain.UserImportRow;
+import edu.univ.erp.service.AdminService;
+import edu.univ.erp.service.AuthService;
+import edu.univ.erp.service.InstructorService;
+import edu.univ.erp.service.LoginResult;
+import edu.univ.erp.service.SeatAllocationMode;
+import edu.univ.erp.service.SessionManager;
+import edu.univ.erp.service.StudentService;
+import edu.univ.erp.service.TranscriptService;
+import edu.univ.erp.service.UserSession;
+import edu.univ.erp.util.DatabaseUtil;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+//The API server: one process that hosts the services behind HTTP/JSON, so desktop clients no longer open JDBC connections
+//Every client shares this process's connection pools and caches (catalog, settings, grading policies, notifications),
+//and the number of database connections follows the worker pool here instead of the number of desktops
+//
+//A call is POST /api/<route> with the arguments as a JSON array, the answer is the JSON of the result
+//auth/login hands out a session token, later calls send it as "Authorization: Bearer <token>"
+//Failures come back with an HTTP status and {"error": "..."}
+//Exports are streamed from the database cursor straight into the response, as they are written to a file locally
+//
+//Run with java edu.univ.erp.api.ApiServer, and start the desktops with -Derp.api.url=http://host:8085
+public class ApiServer {
+    private static final Logger logger = Logger.getLogger(ApiServer.class.getName());
+
+    static final String PREFIX = "/api/";
+    private static final int DEFAULT_PORT = 8085;
+    private static final int MAX_REQUEST_BYTES = 16 * 1024 * 1024; //A CSV import of a few hundred thousand users
+    private static final int POOL_HEADROOM = 4; //Connections beyond one per worker, see main
+    private static final int MAX_ANONYMOUS_REQUEST_BYTES = 64 * 1024; //Routes that need no session (login), anyone can call them
+    private static final int BACKLOG = 256;
+    private static final int MAX_IDLE_CONNECTIONS = 10_000;
+
+    //Roles as stored in AuthDB, ANY is every logged in user and a null role needs no session
+    private static final String STUDENT = "student";
+    private static final String INSTRUCTOR = "instructor";
+    private static final String ADMIN = "admin";
+    private static final String ANY = "*";
+
+    private static final Type GRADEBOOK = Json.listOf(GradebookEntry.class);
+    private static final Type IMPORT_ROWS = Json.listOf(UserImportRow.class);
+
+    //What a call runs, session is null for calls that need none
+    @FunctionalInterface
+    private interface Handler {
+        Object handle(UserSession session, Arguments args) throws Exception;
+    }
+
+    //A call whose answer is written straight to the response instead of being turned into JSON
+    @FunctionalInterface
+    private interface StreamHandler {
+        void write(UserSession session, Arguments args, OutputStream out) throws Exception;
+    }
+
+    //A streamed call that writes CSV text
+    @FunctionalInterface
+    private interface CsvHandler {
+        void write(UserSession session, Arguments args, Writer writer) throws Exception;
+    }
+
+    private record Route(String role, Handler handler, StreamHandler streamHandler, String contentType) {}
+
+    private final Map<String, Route> routes = new HashMap<>();
+    private final SessionManager sessions;
+
+    //One instance of each service serves every session, the user of a call is the session passed to it
+    private final AuthService authService;
+    private final AdminService adminService;
+    private final StudentService studentService;
+    private final InstructorService instructorService;
+    private final TranscriptService transcriptService;
+
+    private HttpServer server;
+    private ThreadPoolExecutor workers;
+
+    //A session ends after sessionIdleTimeout without a call
+    public ApiServer(SeatAllocationMode seatAllocationMode, Duration sessionIdleTimeout) {
+        UserDAO userDAO = new UserDAO();
+        StudentDAO studentDAO = new StudentDAO();
+        SettingsDAO settingsDAO = new SettingsDAO();
+        this.authService = new AuthService(userDAO, settingsDAO);
+        this.adminService = new AdminService(userDAO, new AdminDAO(), settingsDAO, new NotificationDAO());
+        this.studentService = new StudentService(studentDAO, settingsDAO);
+        this.studentService.setSeatAllocationMode(seatAllocationMode);
+        this.instructorService = new InstructorService(new InstructorDAO(), settingsDAO);
+        this.transcriptService = new TranscriptService(studentDAO);
+        this.sessions = new SessionManager(sessionIdleTimeout, studentService::endSession);
+        addRoutes();
+    }
+
+
+    //Workers run the calls, when all of them are busy calls wait in a queue of queueSize
+    //When the queue is full too, the accepting thread runs the call itself and stops taking new connections meanwhile,
+    //so an overload slows clients down instead of growing an unbounded backlog
+    public void start(InetSocketAddress address, int threads, int queueSize) throws IOException {
+        AtomicInteger threadNumber = new AtomicInteger();
+        workers = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueSize), task -> {
+            Thread thread = new Thread(task, "api-worker-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+        //Every desktop keeps its connection open between calls, past the JDK's default of 200 idle connections
+        //the server closes them as they go idle and the client's next call finds its connection gone
+        //Read when the first server of the process is created
+        if (System.getProperty("sun.net.httpserver.maxIdleConnections") == null) {
+            System.setProperty("sun.net.httpserver.maxIdleConnections", String.valueOf(MAX_IDLE_CONNECTIONS));
+        }
+        server = HttpServer.create(address, BACKLOG);
+        server.createContext(PREFIX, this::handle);
+        server.setExecutor(workers);
+        server.start();
+        logger.info("API server listening on " + server.getAddress() + " with " + threads + " workers");
+    }
+
+
+    //Stops accepting calls and gives the running ones up to delaySeconds to finish
+    public void stop(int delaySeconds) {
+        if (server != null) {
+            server.stop(delaySeconds);
+            workers.shutdown();
+            server = null;
+        }
+    }
+
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+
+    private void addRoutes() {
+        route("auth/login", null, (session, args) -> login(args.string(0), args.string(1)));
+        route("auth/logout", ANY, (session, args) -> sessions.close(session.token()));
+        //The email is the session's, a user can only change their own password
+        route("auth/changePassword", ANY, (session, args) -> authService.ChangePassword(session.email(), args.string(0), args.string(1)));
+
+        //Everyone reads the same notifications, from this process's NotificationCenter instead of the table
+        route("notifications/latest", null, (session, args) -> {
+            List<Notification> oldest = new ArrayList<>(NotificationCenter.Recent(args.integer(0)));
+            Collections.reverse(oldest);
+            return oldest;
+        });
+        route("notifications/after", null, (session, args) -> NotificationCenter.After(args.integer(0), args.integer(1)));
+
+        route("student/catalog", STUDENT, (session, args) -> studentService.getCourseCatalog(session));
+        route("student/seatCursor", STUDENT, (session, args) -> studentService.getSeatCursor());
+        route("student/seatChanges", STUDENT, (session, args) -> studentService.getSeatChanges(args.longValue(0)));
+        route("student/timetable", STUDENT, (session, args) -> studentService.getTimetable(session));
+        route("student/grades", STUDENT, (session, args) -> studentService.getGrades(session));
+        route("student/register", STUDENT, (session, args) -> studentService.RegisterForSection(session, args.integer(0)));
+        route("student/registerCart", STUDENT, (session, args) -> studentService.registerCart(session, args.value(0, int[].class)));
+        route("student/drop", STUDENT, (session, args) -> studentService.dropSection(session, args.integer(0)));
+        route("student/joinWaitlist", STUDENT, (session, args) -> studentService.joinWaitlist(session, args.integer(0)));
+        route("student/leaveWaitlist", STUDENT, (session, args) -> studentService.leaveWaitlist(session, args.integer(0)));
+        route("student/waitlistPosition", STUDENT, (session, args) -> studentService.getWaitlistPosition(session, args.integer(0)));
+        route("student/waitlistPromotions", STUDENT, (session, args) -> studentService.takeWaitlistPromotions(session));
+        route("student/deadline", STUDENT, (session, args) -> studentService.GetDeadlineString());
+
+        route("instructor/sections", INSTRUCTOR, (session, args) -> instructorService.getAssignedSections(session));
+        route("instructor/gradebook", INSTRUCTOR, (session, args) -> instructorService.getGradebook(session, args.integer(0)));
+        route("instructor/saveGrades", INSTRUCTOR, (session, args) -> instructorService.saveAndCalculateGrades(session, args.integer(0), args.value(1, GRADEBOOK)));
+        route("instructor/statistics", INSTRUCTOR, (session, args) -> instructorService.getGradeStatistics(session, args.integer(0), args.value(1, GRADEBOOK)));
+        route("instructor/maintenance", INSTRUCTOR, (session, args) -> instructorService.SystemInMaintenance());
+        csvRoute("instructor/gradebookCsv", INSTRUCTOR, (session, args, writer) -> instructorService.exportGradebookToCsv(session, args.integer(0), writer));
+
+        route("transcript/gpa", ANY, (session, args) -> transcriptService.getGpaSummary(ownStudent(session, args.integer(0))));
+        csvRoute("transcript/csv", ANY, (session, args, writer) -> transcriptService.generateCsvTranscript(ownStudent(session, args.integer(0)), writer));
+        route("transcript/deansList", ADMIN, (session, args) -> transcriptService.getDeansList(args.integer(0)));
+        route("transcript/probation", ADMIN, (session, args) -> transcriptService.getProbationList());
+        route("transcript/latestTerm", ADMIN, (session, args) -> transcriptService.getLatestTerm());
+        route("transcript/rebuildGpa", ADMIN, (session, args) -> transcriptService.rebuildGpaSummary());
+
+        route("admin/maintenance", ADMIN, (session, args) -> adminService.getMaintenanceModeState());
+        route("admin/setMaintenance", ADMIN, (session, args) -> adminService.toggleMaintenanceMode(args.bool(0)));
+        route("admin/createUser", ADMIN, (session, args) -> adminService.createNewUser(args.string(0), args.string(1), args.string(2), args.string(3)));
+        route("admin/importUsersCsv", ADMIN, (session, args) -> adminService.ImportUsersFromCsv(new StringReader(args.string(0)), args.string(1)));
+        route("admin/importUsers", ADMIN, (session, args) -> adminService.ImportUsers(args.value(0, IMPORT_ROWS), args.string(1)));
+        route("admin/createCourse", ADMIN, (session, args) -> adminService.createNewCourse(args.string(0), args.string(1), args.string(2)));
+        route("admin/courses", ADMIN, (session, args) -> adminService.getAllCourses());
+        route("admin/instructors", ADMIN, (session, args) -> adminService.getAllInstructors());
+        route("admin/createSection", ADMIN, (session, args) -> adminService.createNewSection(args.value(0, Course.class), args.value(1, Instructor.class), args.string(2), args.string(3), args.string(4)));
+        route("admin/users", ADMIN, (session, args) -> adminService.GetAllUsers());
+        route("admin/usersPage", ADMIN, (session, args) -> adminService.GetUsersPage(args.value(0, UserFilter.class), args.integer(1), args.integer(2)));
+        route("admin/sections", ADMIN, (session, args) -> adminService.GetAllSectionsForView());
+        route("admin/setDeadline", ADMIN, (session, args) -> adminService.SetSystemDeadline(args.string(0)));
+        route("admin/deadline", ADMIN, (session, args) -> adminService.GetSystemDeadline());
+        route("admin/removeSection", ADMIN, (session, args) -> adminService.RemoveSection(args.integer(0), args.integer(1)));
+        route("admin/gradeDistribution", ADMIN, (session, args) -> adminService.GetGradeDistribution(args.string(0)));
+        route("admin/gradingPolicies", ADMIN, (session, args) -> adminService.GetGradingPolicies());
+        route("admin/setGradingPolicy", ADMIN, (session, args) -> adminService.SetGradingPolicy(args.value(0, GradingPolicy.class)));
+        route("admin/deleteGradingPolicy", ADMIN, (session, args) -> adminService.DeleteGradingPolicy(args.integer(0)));
+        route("admin/recomputeGrades", ADMIN, (session, args) -> adminService.RecomputeAllGrades());
+        streamRoute("admin/gradebooksZip", ADMIN, "application/zip", (session, args, out) -> adminService.ExportAllGradebooksToZip(out));
+    }
+
+
+    private void route(String name, String role, Handler handler) {
+        routes.put(name, new Route(role, handler, null, null));
+    }
+
+    private void streamRoute(String name, String role, String contentType, StreamHandler handler) {
+        routes.put(name, new Route(role, null, handler, contentType));
+    }
+
+    private void csvRoute(String name, String role, CsvHandler handler) {
+        streamRoute(name, role, "text/csv; charset=utf-8", (session, args, out) -> {
+            //The services close the writer they are given, the response itself is finished by call()
+            Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8) {
+                @Override
+                public void close() throws IOException {
+                    flush();
+                }
+            };
+            handler.write(session, args, writer);
+            writer.flush();
+        });
+    }
+
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            call(exchange);
+        }
+        catch (Exception | StackOverflowError e) { //The overflow is answered too, or the exchange would never be closed
+            int status = e instanceof ApiException failure ? failure.status()
+                    : e instanceof SecurityException ? 403
+                    : e instanceof IllegalArgumentException ? 400 : 500;
+            if (status == 500) {
+                logger.log(Level.SEVERE, "Call " + exchange.getRequestURI().getPath() + " failed", e);
+            }
+            if (exchange.getResponseCode() != -1) {
+                //A streamed answer has started and its status cannot change any more
+                //Leaving the response unfinished makes the server drop the connection, which the client sees as a broken download
+                throw new IOException("Call " + exchange.getRequestURI().getPath() + " failed after its answer started", e);
+            }
+            String message = e.getMessage() != null ? e.getMessage() : e.toString();
+            send(exchange, status, "{\"error\":" + Json.write(message) + "}");
+        }
+        exchange.close();
+    }
+
+
+    private void call(HttpExchange exchange) throws Exception {
+        String name = exchange.getRequestURI().getPath().substring(PREFIX.length());
+        Route route = routes.get(name);
+        if (route == null) {
+            throw new ApiException(404, "Unknown call " + name);
+        }
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            throw new ApiException(405, "Calls must be POSTed");
+        }
+        UserSession session = null;
+        if (route.role() != null) {
+            session = sessionOf(exchange);
+            if (session == null) {
+                throw new ApiException(401, "Not logged in, or the session has ended");
+            }
+            if (!route.role().equals(ANY) && !route.role().equalsIgnoreCase(session.role())) {
+                throw new ApiException(403, "Not allowed for role " + session.role());
+            }
+        }
+        Arguments args = new Arguments(readArguments(exchange, session == null ? MAX_ANONYMOUS_REQUEST_BYTES : MAX_REQUEST_BYTES));
+        if (route.streamHandler() == null) {
+            send(exchange, 200, Json.write(route.handler().handle(session, args)));
+            return;
+        }
+        OutputStream out = new DeferredBody(exchange, route.contentType());
+        route.streamHandler().write(session, args, out);
+        out.close();
+    }
+
+
+    //The body of a streamed answer, the 200 headers are only sent with the first byte
+    //A call that fails before writing anything (a section the instructor does not teach) still gets its own status
+    private static final class DeferredBody extends OutputStream {
+        private final HttpExchange exchange;
+        private final String contentType;
+        private OutputStream body;
+
+        DeferredBody(HttpExchange exchange, String contentType) {
+            this.exchange = exchange;
+            this.contentType = contentType;
+        }
+
+        private OutputStream body() throws IOException {
+            if (body == null) {
+                exchange.getResponseHeaders().set("Content-Type", contentType);
+                exchange.sendResponseHeaders(200, 0);
+                body = exchange.getResponseBody();
+            }
+            return body;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            body().write(b);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            body().write(bytes, offset, length);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (body != null) {
+                body.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            body().close();
+        }
+    }
+
+
+    private LoginReply login(String email, String password) {
+        LoginResult result = authService.login(email, password);
+        if (!result.isSuccess) {
+            return new LoginReply(result.userId, null, result.Message, null, -1);
+        }
+        int profileId = -1;
+        if (STUDENT.equalsIgnoreCase(result.Role)) {
+            profileId = studentService.findStudentIdForUser(result.userId);
+        }
+        else if (INSTRUCTOR.equalsIgnoreCase(result.Role)) {
+            profileId = instructorService.findInstructorIdForUser(result.userId);
+        }
+        if (profileId == -1 && !ADMIN.equalsIgnoreCase(result.Role)) {
+            //No session, the client reports the missing profile like it always has
+            return new LoginReply(result.userId, result.Role, result.Message, null, -1);
+        }
+        UserSession session = sessions.open(result.userId, email, result.Role, profileId);
+        return new LoginReply(result.userId, result.Role, result.Message, session.token(), profileId);
+    }
+
+
+    private UserSession sessionOf(HttpExchange exchange) {
+        String header = exchange.getRequestHeaders().getFirst("Authorization");
+        if (header == null || !header.startsWith("Bearer ")) {
+            return null;
+        }
+        return sessions.find(header.substring("Bearer ".length()).trim());
+    }
+
+
+    //Students only see their own transcript, admins see anyone's
+    private static int ownStudent(UserSession session, int studentId) {
+        if (ADMIN.equalsIgnoreCase(session.role())) {
+            return studentId;
+        }
+        if (STUDENT.equalsIgnoreCase(session.role()) && session.profileId() == studentId) {
+            return studentId;
+        }
+        throw new ApiException(403, "Not allowed to read another student's transcript");
+    }
+
+
+    private static List<?> readArguments(HttpExchange exchange, int maxBytes) throws IOException {
+        byte[] body;
+        try (InputStream in = exchange.getRequestBody()) {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            byte[] chunk = new byte[8192];
+            int read;
+            while ((read = in.read(chunk)) != -1) {
+                if (buffer.size() + read > maxBytes) {
+                    throw new ApiException(413, "Request larger than " + maxBytes + " bytes");
+                }
+                buffer.write(chunk, 0, read);
+            }
+            body = buffer.toByteArray();
+        }
+        if (body.length == 0) {
+            return List.of();
+        }
+        if (!(Json.parse(new String(body, StandardCharsets.UTF_8)) instanceof List<?> args)) {
+            throw new IllegalArgumentException("The arguments must be a JSON array");
+        }
+        return args;
+    }
+
+
+    private static void send(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+
+    //The JSON array of a call's arguments, read by position
+    private static final class Arguments {
+        private final List<?> values;
+
+        Arguments(List<?> values) {
+            this.values = values;
+        }
+
+        int integer(int index) {
+            return (Integer) value(index, int.class);
+        }
+
+        long longValue(int index) {
+            return (Long) value(index, long.class);
+        }
+
+        boolean bool(int index) {
+            return (Boolean) value(index, boolean.class);
+        }
+
+        String string(int index) {
+            return (String) value(index, String.class);
+        }
+
+        @SuppressWarnings("unchecked")
+        <T> T value(int index, Type type) {
+            if (index >= values.size()) {
+                throw new IllegalArgumentException("Argument " + (index + 1) + " is missing");
+            }
+            return (T) Json.convert(values.get(index), type);
+        }
+    }
+
+
+    public static void main(String[] args) throws IOException {
+        int threads = Integer.getInteger("erp.api.threads", Math.max(4, Runtime.getRuntime().availableProcessors() * 2));
+        int queueSize = Integer.getInteger("erp.api.queueSize", 512);
+        //Unless sized on the command line, the pools get one connection per worker, one for the call the accepting thread
+        //runs itself when the queue is full (see start), and a few spare for the notification writer and any call that
+        //borrows a second connection, so no caller waits on the pool while a worker holds a connection it is not using
+        if (System.getProperty("erp.pool.maxSize") == null) {
+            System.setProperty("erp.pool.maxSize", String.valueOf(threads + 1 + POOL_HEADROOM));
+        }
+        Duration sessionIdleTimeout = Duration.ofMinutes(Integer.getInteger("erp.api.sessionIdleMinutes", 30));
+        ApiServer apiServer = new ApiServer(SeatAllocationMode.fromName(System.getProperty("erp.seatAllocation")), sessionIdleTimeout);
+        //Let the running calls finish, write out queued notifications, then give the pooled connections back
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            apiServer.stop(5);
+            NotificationWriter.Shutdown(5, TimeUnit.SECONDS);
+            DatabaseUtil.ShutdownPools();
+        }));
+        NotificationCenter.Start();
+        //Only this machine can connect unless erp.api.host says otherwise, the server speaks plain HTTP so passwords and
+        //session tokens cross the network in the clear; bind another address only behind a proxy that terminates TLS
+        apiServer.start(new InetSocketAddress(System.getProperty("erp.api.host", "127.0.0.1"), Integer.getInteger("erp.api.port", DEFAULT_PORT)), threads, queueSize);
+    }
+}
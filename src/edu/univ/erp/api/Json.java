@@ -0,0 +1,526 @@
+package edu.univ.erp.api;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.RecordComponent;
+import java.lang.reflect.Type;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+//The JSON codec of the API, written for the types the services exchange: records, lists, enums, strings, numbers and booleans
+//Records are written as objects keyed by component name and read back through their canonical constructor,
+//so a new domain record can go over the wire without any code here
+//Reading parses into a tree of Map/List/String/Long/Double/Boolean/null first, convert() then builds the expected type
+//Doubles that are not finite are written as null and read back as NaN
+final class Json {
+    private static final Map<Class<?>, RecordCodec> Records = new ConcurrentHashMap<>();
+
+    private Json() {}
+
+
+    static String write(Object value) {
+        StringBuilder out = new StringBuilder(256);
+        write(value, out);
+        return out.toString();
+    }
+
+
+    //Throws IllegalArgumentException when the text is not JSON or does not fit the type
+    static Object read(String text, Type type) {
+        return convert(parse(text), type);
+    }
+
+
+    static Object parse(String text) {
+        Parser parser = new Parser(text);
+        Object value = parser.value();
+        parser.skipWhitespace();
+        if (parser.pos != text.length()) {
+            throw parser.error("Unexpected text after the value");
+        }
+        return value;
+    }
+
+
+    //Turns a parsed tree into the given type, List<T> needs a ParameterizedType (see listOf)
+    static Object convert(Object tree, Type type) {
+        try {
+            return convertValue(tree, type);
+        }
+        catch (ClassCastException | DateTimeException e) {
+            throw new IllegalArgumentException("JSON value does not match " + type.getTypeName(), e);
+        }
+    }
+
+
+    //The Type of a List<element>, for reading lists
+    static Type listOf(Type element) {
+        return new ParameterizedType() {
+            @Override
+            public Type[] getActualTypeArguments() {
+                return new Type[]{element};
+            }
+
+            @Override
+            public Type getRawType() {
+                return List.class;
+            }
+
+            @Override
+            public Type getOwnerType() {
+                return null;
+            }
+
+            @Override
+            public String getTypeName() {
+                return "java.util.List<" + element.getTypeName() + ">";
+            }
+        };
+    }
+
+
+    private static void write(Object value, StringBuilder out) {
+        if (value == null) {
+            out.append("null");
+        }
+        else if (value instanceof String text) {
+            writeString(text, out);
+        }
+        else if (value instanceof Double || value instanceof Float) {
+            double number = ((Number) value).doubleValue();
+            out.append(Double.isFinite(number) ? Double.toString(number) : "null");
+        }
+        else if (value instanceof Number || value instanceof Boolean) {
+            out.append(value);
+        }
+        else if (value instanceof Enum<?> constant) {
+            writeString(constant.name(), out);
+        }
+        else if (value instanceof LocalDateTime || value instanceof LocalDate) {
+            writeString(value.toString(), out);
+        }
+        else if (value instanceof Record record) {
+            codecFor(record.getClass()).write(record, out);
+        }
+        else if (value instanceof Collection<?> items) {
+            out.append('[');
+            boolean first = true;
+            for (Object item : items) {
+                if (!first) {
+                    out.append(',');
+                }
+                first = false;
+                write(item, out);
+            }
+            out.append(']');
+        }
+        else if (value instanceof int[] numbers) {
+            out.append('[');
+            for (int i = 0; i < numbers.length; i++) {
+                out.append(i == 0 ? "" : ",").append(numbers[i]);
+            }
+            out.append(']');
+        }
+        else if (value instanceof double[] numbers) {
+            out.append('[');
+            for (int i = 0; i < numbers.length; i++) {
+                if (i > 0) {
+                    out.append(',');
+                }
+                write(numbers[i], out);
+            }
+            out.append(']');
+        }
+        else if (value instanceof Object[] items) {
+            write(Arrays.asList(items), out);
+        }
+        else {
+            throw new IllegalArgumentException("Cannot write " + value.getClass().getName() + " as JSON");
+        }
+    }
+
+
+    private static void writeString(String text, StringBuilder out) {
+        out.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                case '\t' -> out.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    }
+                    else {
+                        out.append(c);
+                    }
+                }
+            }
+        }
+        out.append('"');
+    }
+
+
+    private static Object convertValue(Object tree, Type type) {
+        Class<?> raw = type instanceof ParameterizedType parameterized ? (Class<?>) parameterized.getRawType() : (Class<?>) type;
+        if (tree == null) {
+            return raw.isPrimitive() ? primitiveDefault(raw) : null;
+        }
+        if (raw == String.class || raw == Object.class) {
+            return raw == String.class ? (String) tree : tree;
+        }
+        if (raw == int.class || raw == Integer.class) {
+            return ((Number) tree).intValue();
+        }
+        if (raw == long.class || raw == Long.class) {
+            return ((Number) tree).longValue();
+        }
+        if (raw == double.class || raw == Double.class) {
+            return ((Number) tree).doubleValue();
+        }
+        if (raw == boolean.class || raw == Boolean.class) {
+            return (Boolean) tree;
+        }
+        if (raw.isEnum()) {
+            return enumConstant(raw, (String) tree);
+        }
+        if (raw == LocalDateTime.class) {
+            return LocalDateTime.parse((String) tree);
+        }
+        if (raw == LocalDate.class) {
+            return LocalDate.parse((String) tree);
+        }
+        if (raw == int[].class) {
+            List<?> items = (List<?>) tree;
+            int[] numbers = new int[items.size()];
+            for (int i = 0; i < numbers.length; i++) {
+                numbers[i] = ((Number) items.get(i)).intValue();
+            }
+            return numbers;
+        }
+        if (raw == double[].class) {
+            List<?> items = (List<?>) tree;
+            double[] numbers = new double[items.size()];
+            for (int i = 0; i < numbers.length; i++) {
+                numbers[i] = items.get(i) == null ? Double.NaN : ((Number) items.get(i)).doubleValue();
+            }
+            return numbers;
+        }
+        if (raw == List.class) {
+            if (!(type instanceof ParameterizedType parameterized)) {
+                throw new IllegalArgumentException("The element type of the list is not known");
+            }
+            Type element = parameterized.getActualTypeArguments()[0];
+            List<?> items = (List<?>) tree;
+            List<Object> converted = new ArrayList<>(items.size());
+            for (Object item : items) {
+                converted.add(convertValue(item, element));
+            }
+            return converted;
+        }
+        if (raw.isRecord()) {
+            return codecFor(raw).read((Map<?, ?>) tree);
+        }
+        throw new IllegalArgumentException("Cannot read " + type.getTypeName() + " from JSON");
+    }
+
+
+    private static Object primitiveDefault(Class<?> raw) {
+        if (raw == boolean.class) {
+            return false;
+        }
+        if (raw == double.class) {
+            return Double.NaN;
+        }
+        return raw == long.class ? 0L : 0;
+    }
+
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object enumConstant(Class<?> raw, String name) {
+        return Enum.valueOf((Class<? extends Enum>) raw, name);
+    }
+
+
+    private static RecordCodec codecFor(Class<?> recordClass) {
+        return Records.computeIfAbsent(recordClass, RecordCodec::new);
+    }
+
+
+    //The components, accessors and canonical constructor of one record class, looked up once
+    private static final class RecordCodec {
+        private final String[] names;
+        private final Type[] types;
+        private final Method[] accessors;
+        private final Constructor<?> constructor;
+
+        RecordCodec(Class<?> recordClass) {
+            RecordComponent[] components = recordClass.getRecordComponents();
+            names = new String[components.length];
+            types = new Type[components.length];
+            accessors = new Method[components.length];
+            Class<?>[] parameterTypes = new Class<?>[components.length];
+            for (int i = 0; i < components.length; i++) {
+                names[i] = components[i].getName();
+                types[i] = components[i].getGenericType();
+                accessors[i] = components[i].getAccessor();
+                parameterTypes[i] = components[i].getType();
+            }
+            try {
+                constructor = recordClass.getDeclaredConstructor(parameterTypes);
+            }
+            catch (NoSuchMethodException e) {
+                throw new IllegalArgumentException("No canonical constructor on " + recordClass.getName(), e);
+            }
+        }
+
+        void write(Record record, StringBuilder out) {
+            out.append('{');
+            for (int i = 0; i < names.length; i++) {
+                if (i > 0) {
+                    out.append(',');
+                }
+                writeString(names[i], out);
+                out.append(':');
+                try {
+                    Json.write(accessors[i].invoke(record), out);
+                }
+                catch (IllegalAccessException | InvocationTargetException e) {
+                    throw new IllegalArgumentException("Cannot read " + names[i] + " of " + record.getClass().getName(), e);
+                }
+            }
+            out.append('}');
+        }
+
+        //Components missing from the object get null (or the primitive default)
+        Object read(Map<?, ?> object) {
+            Object[] arguments = new Object[names.length];
+            for (int i = 0; i < names.length; i++) {
+                arguments[i] = convertValue(object.get(names[i]), types[i]);
+            }
+            try {
+                return constructor.newInstance(arguments);
+            }
+            catch (InvocationTargetException e) {
+                throw new IllegalArgumentException("Invalid " + constructor.getDeclaringClass().getSimpleName() + ": " + e.getCause().getMessage(), e.getCause());
+            }
+            catch (ReflectiveOperationException e) {
+                throw new IllegalArgumentException("Cannot create " + constructor.getDeclaringClass().getName(), e);
+            }
+        }
+    }
+
+
+    //Recursive descent over the text, numbers without a fraction or exponent become Long, the rest Double
+    //Nesting is capped, a body of nothing but brackets would otherwise overflow the stack of the thread parsing it
+    private static final class Parser {
+        private static final int MAX_DEPTH = 64; //The calls' own arguments nest a handful of levels at most
+        private final String text;
+        private int pos;
+        private int depth;
+
+        Parser(String text) {
+            this.text = text;
+        }
+
+        Object value() {
+            skipWhitespace();
+            if (pos >= text.length()) {
+                throw error("Unexpected end of JSON");
+            }
+            char c = text.charAt(pos);
+            switch (c) {
+                case '{':
+                    return object();
+                case '[':
+                    return array();
+                case '"':
+                    return string();
+                case 't':
+                    return literal("true", Boolean.TRUE);
+                case 'f':
+                    return literal("false", Boolean.FALSE);
+                case 'n':
+                    return literal("null", null);
+                default:
+                    if (c == '-' || (c >= '0' && c <= '9')) {
+                        return number();
+                    }
+                    throw error("Unexpected character '" + c + "'");
+            }
+        }
+
+        private Map<String, Object> object() {
+            Map<String, Object> object = new LinkedHashMap<>();
+            enter();
+            pos++;
+            skipWhitespace();
+            if (peek() == '}') {
+                pos++;
+                depth--;
+                return object;
+            }
+            while (true) {
+                skipWhitespace();
+                if (peek() != '"') {
+                    throw error("Expected a field name");
+                }
+                String name = string();
+                skipWhitespace();
+                expect(':');
+                object.put(name, value());
+                skipWhitespace();
+                if (peek() == ',') {
+                    pos++;
+                    continue;
+                }
+                expect('}');
+                depth--;
+                return object;
+            }
+        }
+
+        private List<Object> array() {
+            List<Object> array = new ArrayList<>();
+            enter();
+            pos++;
+            skipWhitespace();
+            if (peek() == ']') {
+                pos++;
+                depth--;
+                return array;
+            }
+            while (true) {
+                array.add(value());
+                skipWhitespace();
+                if (peek() == ',') {
+                    pos++;
+                    continue;
+                }
+                expect(']');
+                depth--;
+                return array;
+            }
+        }
+
+        private String string() {
+            pos++;
+            StringBuilder out = null; //Only needed once an escape shows up
+            int start = pos;
+            while (pos < text.length()) {
+                char c = text.charAt(pos);
+                if (c == '"') {
+                    String value = out == null ? text.substring(start, pos) : out.append(text, start, pos).toString();
+                    pos++;
+                    return value;
+                }
+                if (c != '\\') {
+                    pos++;
+                    continue;
+                }
+                if (out == null) {
+                    out = new StringBuilder();
+                }
+                out.append(text, start, pos);
+                if (pos + 1 >= text.length()) {
+                    break;
+                }
+                char escaped = text.charAt(pos + 1);
+                pos += 2;
+                switch (escaped) {
+                    case '"', '\\', '/' -> out.append(escaped);
+                    case 'n' -> out.append('\n');
+                    case 'r' -> out.append('\r');
+                    case 't' -> out.append('\t');
+                    case 'b' -> out.append('\b');
+                    case 'f' -> out.append('\f');
+                    case 'u' -> {
+                        if (pos + 4 > text.length()) {
+                            throw error("Bad unicode escape");
+                        }
+                        try {
+                            out.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                        }
+                        catch (NumberFormatException e) {
+                            throw error("Bad unicode escape");
+                        }
+                        pos += 4;
+                    }
+                    default -> throw error("Bad escape \\" + escaped);
+                }
+                start = pos;
+            }
+            throw error("Unterminated string");
+        }
+
+        private Object number() {
+            int start = pos;
+            boolean integral = true;
+            while (pos < text.length()) {
+                char c = text.charAt(pos);
+                if (c == '.' || c == 'e' || c == 'E') {
+                    integral = false;
+                }
+                else if (!(c == '-' || c == '+' || (c >= '0' && c <= '9'))) {
+                    break;
+                }
+                pos++;
+            }
+            String number = text.substring(start, pos);
+            try {
+                return integral ? (Object) Long.parseLong(number) : (Object) Double.parseDouble(number);
+            }
+            catch (NumberFormatException e) {
+                throw error("Bad number " + number);
+            }
+        }
+
+        private Object literal(String word, Object value) {
+            if (!text.startsWith(word, pos)) {
+                throw error("Unexpected token");
+            }
+            pos += word.length();
+            return value;
+        }
+
+        private void expect(char c) {
+            if (peek() != c) {
+                throw error("Expected '" + c + "'");
+            }
+            pos++;
+        }
+
+        private char peek() {
+            return pos < text.length() ? text.charAt(pos) : '\0';
+        }
+
+        void skipWhitespace() {
+            while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        private void enter() {
+            if (++depth > MAX_DEPTH) {
+                throw error("JSON nested deeper than " + MAX_DEPTH + " levels");
+            }
+        }
+
+        IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at position " + pos);
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package edu.univ.erp.api;
+
+//The answer to auth/login
+//token is null when the login failed, profileId is the StudentID or InstructorID of the user (-1 for admins or a missing profile)
+record LoginReply(
+        int userId,
+        String role,
+        String message,
+        String token,
+        int profileId
+) {}
@@ -0,0 +1,220 @@
+package edu.univ.erp.api;
+
+import edu.univ.erp.domain.AdminSectionView;
+import edu.univ.erp.domain.Course;
+import edu.univ.erp.domain.GradeDistributionReport;
+import edu.univ.erp.domain.GradingPolicy;
+import edu.univ.erp.domain.Instructor;
+import edu.univ.erp.domain.UserFilter;
+import edu.univ.erp.domain.UserImportResult;
+import edu.univ.erp.domain.UserImportRow;
+import edu.univ.erp.domain.UserPage;
+import edu.univ.erp.domain.UserView;
+import edu.univ.erp.service.AdminService;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+//AdminService for a desktop running against the API server, every call goes to the server's AdminService
+//Queries and the calls that throw locally throw ApiException when the server cannot answer,
+//the calls that report failure through their return value (false, a message) do the same here
+public class RemoteAdminService extends AdminService {
+    private final ApiClient client;
+
+    public RemoteAdminService(ApiClient client) {
+        super(null, null, null, null);
+        this.client = client;
+    }
+
+
+    @Override
+    public boolean getMaintenanceModeState() {
+        return client.callOr(false, "admin/maintenance", boolean.class);
+    }
+
+    @Override
+    public boolean toggleMaintenanceMode(boolean NewState) {
+        return client.callOr(false, "admin/setMaintenance", boolean.class, NewState);
+    }
+
+    @Override
+    public boolean createNewUser(String FullName, String Email, String Role, String defaultPassword) {
+        return client.callOr(false, "admin/createUser", boolean.class, FullName, Email, Role, defaultPassword);
+    }
+
+    //The file is read here and parsed by the server
+    @Override
+    public UserImportResult ImportUsersFromCsv(Reader Reader, String DefaultPassword) throws Exception {
+        StringWriter Text = new StringWriter();
+        Reader.transferTo(Text);
+        return client.call("admin/importUsersCsv", UserImportResult.class, Text.toString(), DefaultPassword);
+    }
+
+    @Override
+    public UserImportResult ImportUsers(List<UserImportRow> Rows, String DefaultPassword) {
+        return client.call("admin/importUsers", UserImportResult.class, Rows, DefaultPassword);
+    }
+
+    @Override
+    public boolean createNewCourse(String Code, String Title, String CreditsString) {
+        return client.callOr(false, "admin/createCourse", boolean.class, Code, Title, CreditsString);
+    }
+
+    @Override
+    public List<Course> getAllCourses() {
+        return client.call("admin/courses", Json.listOf(Course.class));
+    }
+
+    @Override
+    public List<Instructor> getAllInstructors() {
+        return client.call("admin/instructors", Json.listOf(Instructor.class));
+    }
+
+    @Override
+    public boolean createNewSection(Course course, Instructor instructor, String sectionNum, String time, String capacityStr) {
+        return client.callOr(false, "admin/createSection", boolean.class, course, instructor, sectionNum, time, capacityStr);
+    }
+
+    @Override
+    public List<UserView> GetAllUsers() {
+        return client.call("admin/users", Json.listOf(UserView.class));
+    }
+
+    @Override
+    public UserPage GetUsersPage(UserFilter Filter, int AfterUserID, int PageSize) {
+        return client.call("admin/usersPage", UserPage.class, Filter, AfterUserID, PageSize);
+    }
+
+    @Override
+    public List<AdminSectionView> GetAllSectionsForView() {
+        return client.call("admin/sections", Json.listOf(AdminSectionView.class));
+    }
+
+    @Override
+    public boolean SetSystemDeadline(String DateString) {
+        return client.callOr(false, "admin/setDeadline", boolean.class, DateString);
+    }
+
+    @Override
+    public String GetSystemDeadline() {
+        return client.call("admin/deadline", String.class);
+    }
+
+    @Override
+    public String RemoveSection(int SectionID, int CurrentEnrollment) {
+        try {
+            return client.call("admin/removeSection", String.class, SectionID, CurrentEnrollment);
+        }
+        catch (ApiException e) {
+            return "Error: " + e.getMessage();
+        }
+    }
+
+    @Override
+    public GradeDistributionReport GetGradeDistribution(String Department) {
+        return client.call("admin/gradeDistribution", GradeDistributionReport.class, Department);
+    }
+
+    @Override
+    public List<GradingPolicy> GetGradingPolicies() {
+        return client.call("admin/gradingPolicies", Json.listOf(GradingPolicy.class));
+    }
+
+    @Override
+    public String SetGradingPolicy(GradingPolicy Policy) {
+        try {
+            return client.call("admin/setGradingPolicy", String.class, Policy);
+        }
+        catch (ApiException e) {
+            return "Could not save the grading policy: " + e.getMessage();
+        }
+    }
+
+    @Override
+    public boolean DeleteGradingPolicy(int PolicyID) {
+        return client.callOr(false, "admin/deleteGradingPolicy", boolean.class, PolicyID);
+    }
+
+    @Override
+    public int RecomputeAllGrades() {
+        return client.call("admin/recomputeGrades", int.class);
+    }
+
+
+    //The server sends every gradebook as one ZIP stream, unpacked here into the chosen directory one file at a time
+    @Override
+    public int ExportAllGradebooksToCsv(File Directory) throws Exception {
+        if (!Directory.isDirectory() && !Directory.mkdirs()) {
+            throw new IOException("Cannot create export directory " + Directory);
+        }
+        int FilesWritten = 0;
+        try (ZipInputStream Zip = new ZipInputStream(client.download("admin/gradebooksZip"))) {
+            ZipEntry Entry;
+            while ((Entry = Zip.getNextEntry()) != null) {
+                //Only the file name is used, an entry can never write outside the directory
+                File Target = new File(Directory, new File(Entry.getName()).getName());
+                try (OutputStream Out = new BufferedOutputStream(new FileOutputStream(Target), 64 * 1024)) {
+                    Zip.transferTo(Out);
+                }
+                FilesWritten++;
+            }
+        }
+        return FilesWritten;
+    }
+
+
+    //Passes the server's ZIP through unchanged, counting its entries on the way
+    @Override
+    public int ExportAllGradebooksToZip(OutputStream Out) throws Exception {
+        int FilesWritten = 0;
+        try (InputStream Download = client.download("admin/gradebooksZip")) {
+            CopyingInputStream Copy = new CopyingInputStream(Download, Out);
+            ZipInputStream Zip = new ZipInputStream(Copy);
+            while (Zip.getNextEntry() != null) {
+                FilesWritten++;
+            }
+            Copy.transferTo(OutputStream.nullOutputStream()); //The rest of the stream, the ZIP's central directory
+        }
+        Out.flush();
+        return FilesWritten;
+    }
+
+
+    //Writes every byte read to Out as well
+    private static class CopyingInputStream extends FilterInputStream {
+        private final OutputStream Out;
+
+        CopyingInputStream(InputStream In, OutputStream Out) {
+            super(In);
+            this.Out = Out;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int Value = super.read();
+            if (Value != -1) {
+                Out.write(Value);
+            }
+            return Value;
+        }
+
+        @Override
+        public int read(byte[] Buffer, int Offset, int Length) throws IOException {
+            int Read = super.read(Buffer, Offset, Length);
+            if (Read > 0) {
+                Out.write(Buffer, Offset, Read);
+            }
+            return Read;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package edu.univ.erp.api;
+
+import edu.univ.erp.service.AuthService;
+import edu.univ.erp.service.LoginResult;
+
+//AuthService for a desktop running against the API server
+//A successful login opens the session every later call of the client's Remote* services runs in
+public class RemoteAuthService extends AuthService {
+    private final ApiClient client;
+
+    public RemoteAuthService(ApiClient client) {
+        super(null, null);
+        this.client = client;
+    }
+
+
+    @Override
+    public LoginResult login(String email, String password) {
+        try {
+            return client.login(email, password);
+        }
+        catch (ApiException e) {
+            return new LoginResult(-1, null, e.getMessage());
+        }
+    }
+
+
+    //The server changes the password of the session's user, so the email is not sent
+    @Override
+    public boolean ChangePassword(String email, String oldPassword, String newPassword) {
+        return client.callOr(false, "auth/changePassword", boolean.class, oldPassword, newPassword);
+    }
+}
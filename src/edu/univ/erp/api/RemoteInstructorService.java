@@ -0,0 +1,66 @@
+package edu.univ.erp.api;
+
+import edu.univ.erp.domain.GradeStatistics;
+import edu.univ.erp.domain.GradebookEntry;
+import edu.univ.erp.domain.SectionView;
+import edu.univ.erp.service.InstructorService;
+import edu.univ.erp.service.UserSession;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+//InstructorService for a desktop running against the API server, every call goes to the server's InstructorService
+//The desktop's session is not sent, the server knows the instructor from the client's token
+//Queries throw ApiException when the server cannot answer, saving grades answers false like the local service does
+public class RemoteInstructorService extends InstructorService {
+    private final ApiClient client;
+
+    public RemoteInstructorService(ApiClient client) {
+        super(null, null);
+        this.client = client;
+    }
+
+
+    @Override
+    public int findInstructorIdForUser(int userId) {
+        return client.profileId();
+    }
+
+
+    @Override
+    public List<SectionView> getAssignedSections(UserSession session) {
+        return client.call("instructor/sections", Json.listOf(SectionView.class));
+    }
+
+    @Override
+    public List<GradebookEntry> getGradebook(UserSession session, int sectionId) {
+        return client.call("instructor/gradebook", Json.listOf(GradebookEntry.class), sectionId);
+    }
+
+    @Override
+    public boolean saveAndCalculateGrades(UserSession session, int sectionId, List<GradebookEntry> gradebook) {
+        return client.callOr(false, "instructor/saveGrades", boolean.class, sectionId, gradebook);
+    }
+
+    @Override
+    public GradeStatistics getGradeStatistics(UserSession session, int sectionId, List<GradebookEntry> gradebook) {
+        return client.call("instructor/statistics", GradeStatistics.class, sectionId, gradebook);
+    }
+
+    //The server streams the CSV as it reads the gradebook, it is copied into the writer as it arrives
+    @Override
+    public void exportGradebookToCsv(UserSession session, int sectionId, Writer writer) throws Exception {
+        try (InputStream csv = client.download("instructor/gradebookCsv", sectionId); Reader reader = new InputStreamReader(csv, StandardCharsets.UTF_8); writer) {
+            reader.transferTo(writer);
+        }
+    }
+
+    @Override
+    public boolean SystemInMaintenance() {
+        return client.call("instructor/maintenance", boolean.class);
+    }
+}
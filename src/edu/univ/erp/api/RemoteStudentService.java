@@ -0,0 +1,129 @@
+package edu.univ.erp.api;
+
+import edu.univ.erp.domain.EnrolledSection;
+import edu.univ.erp.domain.Grade;
+import edu.univ.erp.domain.SeatDelta;
+import edu.univ.erp.domain.CartResult;
+import edu.univ.erp.domain.SectionView;
+import edu.univ.erp.domain.WaitlistPromotion;
+import edu.univ.erp.service.SeatAllocationMode;
+import edu.univ.erp.service.StudentService;
+import edu.univ.erp.service.UserSession;
+
+import java.util.List;
+
+//StudentService for a desktop running against the API server, every call goes to the server's StudentService
+//The desktop's session is not sent, the server knows the student from the client's token
+//Queries throw ApiException when the server cannot answer (the panels' loaders show it),
+//registration and drop answer with a failure message like the local service does
+public class RemoteStudentService extends StudentService {
+    private final ApiClient client;
+
+    public RemoteStudentService(ApiClient client) {
+        super(null, null);
+        this.client = client;
+    }
+
+
+    @Override
+    public int findStudentIdForUser(int userId) {
+        return client.profileId();
+    }
+
+    //Chosen by the server with -Derp.seatAllocation
+    @Override
+    public void setSeatAllocationMode(SeatAllocationMode seatAllocationMode) {
+    }
+
+
+    @Override
+    public List<SectionView> getCourseCatalog(UserSession session) {
+        return client.call("student/catalog", Json.listOf(SectionView.class));
+    }
+
+    @Override
+    public long getSeatCursor() {
+        return client.call("student/seatCursor", long.class);
+    }
+
+    @Override
+    public SeatDelta getSeatChanges(long cursor) {
+        return client.call("student/seatChanges", SeatDelta.class, cursor);
+    }
+
+    @Override
+    public List<EnrolledSection> getTimetable(UserSession session) {
+        return client.call("student/timetable", Json.listOf(EnrolledSection.class));
+    }
+
+    @Override
+    public List<Grade> getGrades(UserSession session) {
+        return client.call("student/grades", Json.listOf(Grade.class));
+    }
+
+    @Override
+    public String RegisterForSection(UserSession session, int sectionId) {
+        try {
+            return client.call("student/register", String.class, sectionId);
+        }
+        catch (ApiException e) {
+            return "Registration failed: " + e.getMessage();
+        }
+    }
+
+    @Override
+    public CartResult registerCart(UserSession session, int[] sectionIds) {
+        try {
+            return client.call("student/registerCart", CartResult.class, sectionIds);
+        }
+        catch (ApiException e) {
+            return CartResult.failed("Registration failed: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public String dropSection(UserSession session, int sectionId) {
+        try {
+            return client.call("student/drop", String.class, sectionId);
+        }
+        catch (ApiException e) {
+            return "Drop failed: " + e.getMessage();
+        }
+    }
+
+    @Override
+    public String joinWaitlist(UserSession session, int sectionId) {
+        try {
+            return client.call("student/joinWaitlist", String.class, sectionId);
+        }
+        catch (ApiException e) {
+            return "Waitlist failed: " + e.getMessage();
+        }
+    }
+
+    @Override
+    public String leaveWaitlist(UserSession session, int sectionId) {
+        try {
+            return client.call("student/leaveWaitlist", String.class, sectionId);
+        }
+        catch (ApiException e) {
+            return "Could not leave the waitlist: " + e.getMessage();
+        }
+    }
+
+    @Override
+    public int getWaitlistPosition(UserSession session, int sectionId) {
+        return client.call("student/waitlistPosition", int.class, sectionId);
+    }
+
+    //Held by the server as the drops happen, so this is a read of the server's memory
+    @Override
+    public List<WaitlistPromotion> takeWaitlistPromotions(UserSession session) {
+        return client.call("student/waitlistPromotions", Json.listOf(WaitlistPromotion.class));
+    }
+
+    @Override
+    public String GetDeadlineString() {
+        return client.call("student/deadline", String.class);
+    }
+}
@@ -0,0 +1,62 @@
+package edu.univ.erp.api;
+
+import edu.univ.erp.domain.StudentGpa;
+import edu.univ.erp.domain.TermGpa;
+import edu.univ.erp.service.TranscriptService;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.logging.Logger;
+
+//TranscriptService for a desktop running against the API server
+//Students can only read their own transcript and GPA, the reports are for admins
+public class RemoteTranscriptService extends TranscriptService {
+    private static final Logger logger = Logger.getLogger(RemoteTranscriptService.class.getName());
+    private final ApiClient client;
+
+    public RemoteTranscriptService(ApiClient client) {
+        super(null);
+        this.client = client;
+    }
+
+
+    //Copied into the writer as the server streams it, failures are logged like the local version does
+    @Override
+    public void generateCsvTranscript(int studentId, Writer writer) {
+        try (InputStream csv = client.download("transcript/csv", studentId); Reader reader = new InputStreamReader(csv, StandardCharsets.UTF_8); writer) {
+            reader.transferTo(writer);
+        }
+        catch (Exception e) {
+            logger.severe("Failed to download the CSV transcript: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public List<TermGpa> getGpaSummary(int studentId) {
+        return client.call("transcript/gpa", Json.listOf(TermGpa.class), studentId);
+    }
+
+    @Override
+    public List<StudentGpa> getDeansList(int term) {
+        return client.call("transcript/deansList", Json.listOf(StudentGpa.class), term);
+    }
+
+    @Override
+    public List<StudentGpa> getProbationList() {
+        return client.call("transcript/probation", Json.listOf(StudentGpa.class));
+    }
+
+    @Override
+    public int getLatestTerm() {
+        return client.call("transcript/latestTerm", int.class);
+    }
+
+    @Override
+    public boolean rebuildGpaSummary() {
+        return client.callOr(false, "transcript/rebuildGpa", boolean.class);
+    }
+}
@@ -0,0 +1,238 @@
+package edu.univ.erp.auth;
+
+import org.mindrot.jbcrypt.BCrypt;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+//All BCrypt work (checking a login, hashing a new or changed password) runs through here
+//Hashing is pure CPU, so it gets its own executor with one thread per core and a bounded queue in front of it
+//When the queue is full the caller hashes on its own thread, which slows the callers down instead of growing the backlog
+//The cost factor for new hashes comes from -Derp.bcrypt.cost (default 10, the jBCrypt default)
+//With -Derp.bcrypt.rehash=true a successful login whose stored hash has a different cost is rehashed to the target cost
+public final class PasswordVerifier {
+    private static final Logger logger = Logger.getLogger(PasswordVerifier.class.getName());
+
+    private static final int THREADS = Math.max(1, Runtime.getRuntime().availableProcessors());
+    private static final int QUEUE_CAPACITY = 256;
+    private static final int TARGET_COST = IntSetting("erp.bcrypt.cost", 10);
+    private static final boolean REHASH_ON_LOGIN = Boolean.getBoolean("erp.bcrypt.rehash");
+
+    private static final ThreadPoolExecutor Executor;
+
+    private static final AtomicInteger MaxQueueDepth = new AtomicInteger();
+    private static final AtomicLong Completed = new AtomicLong();
+    private static final AtomicLong CallerRuns = new AtomicLong();
+    private static final AtomicLong TotalQueueWaitNanos = new AtomicLong();
+    private static final AtomicLong TotalHashNanos = new AtomicLong();
+    private static final AtomicLong Rehashes = new AtomicLong();
+
+    static {
+        AtomicInteger threadNumber = new AtomicInteger();
+        Executor = new ThreadPoolExecutor(THREADS, THREADS, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(QUEUE_CAPACITY),
+                task -> {
+                    Thread thread = new Thread(task, "bcrypt-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                (task, executor) -> {
+                    CallerRuns.incrementAndGet();
+                    task.run();
+                });
+        Executor.prestartAllCoreThreads();
+    }
+
+    private PasswordVerifier() {}
+
+
+    //Checks a password against a stored hash on the verifier executor, the caller waits for the answer
+    //A malformed stored hash counts as a wrong password
+    public static boolean Verify(String password, String storedHash) {
+        if (password == null || storedHash == null) {
+            return false;
+        }
+        return Run(() -> {
+            try {
+                return BCrypt.checkpw(password, storedHash);
+            }
+            catch (IllegalArgumentException e) {
+                logger.warning("Stored password hash is not a valid BCrypt hash");
+                return false;
+            }
+        });
+    }
+
+
+    //Hashes a password with the target cost factor on the verifier executor
+    public static String Hash(String password) {
+        return Run(() -> BCrypt.hashpw(password, BCrypt.gensalt(TARGET_COST)));
+    }
+
+
+    //Hashes many passwords across all the verifier threads, the result is in the same order, each hash with its own salt
+    //Used by the bulk user import, once the queue is full the importing thread hashes too instead of waiting
+    public static List<String> HashAll(List<String> passwords) {
+        List<Future<String>> futures = new ArrayList<>(passwords.size());
+        for (String password : passwords) {
+            futures.add(Submit(() -> BCrypt.hashpw(password, BCrypt.gensalt(TARGET_COST))));
+        }
+        List<String> hashes = new ArrayList<>(passwords.size());
+        for (Future<String> future : futures) {
+            hashes.add(Await(future));
+        }
+        return hashes;
+    }
+
+
+    //True when rehash-on-login is switched on and the stored hash was made with a different cost factor
+    public static boolean NeedsRehash(String storedHash) {
+        return REHASH_ON_LOGIN && CostOf(storedHash) != TARGET_COST;
+    }
+
+
+    //Hashes the password again with the target cost in the background and passes the new hash to the store callback
+    //Login does not wait for this, a failure only means the old hash stays in place
+    //It is skipped when the queue is full, so a login burst never waits on rehashing
+    public static void RehashInBackground(String password, RehashStore store) {
+        if (Executor.getQueue().remainingCapacity() == 0) {
+            logger.fine("Password rehash skipped, verifier queue is full");
+            return;
+        }
+        try {
+            Executor.execute(() -> {
+                try {
+                    String newHash = BCrypt.hashpw(password, BCrypt.gensalt(TARGET_COST));
+                    if (store.Save(newHash)) {
+                        Rehashes.incrementAndGet();
+                    }
+                }
+                catch (Exception e) {
+                    logger.log(Level.WARNING, "Password rehash failed", e);
+                }
+            });
+        }
+        catch (RejectedExecutionException e) {
+            logger.warning("Password rehash skipped: " + e.getMessage());
+        }
+    }
+
+
+    //Writes a rehashed password, returns true if the stored hash was replaced
+    @FunctionalInterface
+    public interface RehashStore {
+        boolean Save(String newHash) throws Exception;
+    }
+
+
+    public static VerifierStats Stats() {
+        long completed = Completed.get();
+        return new VerifierStats(
+                Executor.getPoolSize(),
+                Executor.getActiveCount(),
+                Executor.getQueue().size(),
+                MaxQueueDepth.get(),
+                QUEUE_CAPACITY,
+                completed,
+                CallerRuns.get(),
+                completed == 0 ? 0 : TotalQueueWaitNanos.get() / 1_000_000.0 / completed,
+                completed == 0 ? 0 : TotalHashNanos.get() / 1_000_000.0 / completed,
+                Rehashes.get(),
+                TARGET_COST);
+    }
+
+
+    public static int TargetCost() {
+        return TARGET_COST;
+    }
+
+
+    //Reads the cost factor from a "$2a$10$..." hash, -1 if it cannot be read
+    static int CostOf(String storedHash) {
+        if (storedHash == null || storedHash.length() < 7 || storedHash.charAt(0) != '$') {
+            return -1;
+        }
+        int costStart = storedHash.indexOf('$', 1) + 1;
+        if (costStart <= 0 || costStart + 2 > storedHash.length()) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(storedHash.substring(costStart, costStart + 2));
+        }
+        catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+
+    //Submits the work and waits for the result
+    private static <T> T Run(Callable<T> work) {
+        return Await(Submit(work));
+    }
+
+
+    //Submits the work, recording how long it waited and ran
+    private static <T> Future<T> Submit(Callable<T> work) {
+        long queuedAt = System.nanoTime();
+        Future<T> future = Executor.submit(() -> {
+            long startedAt = System.nanoTime();
+            TotalQueueWaitNanos.addAndGet(startedAt - queuedAt);
+            try {
+                return work.call();
+            }
+            finally {
+                TotalHashNanos.addAndGet(System.nanoTime() - startedAt);
+                Completed.incrementAndGet();
+            }
+        });
+        MaxQueueDepth.accumulateAndGet(Executor.getQueue().size(), Math::max);
+        return future;
+    }
+
+
+    private static <T> T Await(Future<T> future) {
+        try {
+            return future.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            throw new IllegalStateException("Interrupted while waiting for password hashing", e);
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException("Password hashing failed", cause);
+        }
+    }
+
+
+    private static int IntSetting(String property, int defaultValue) {
+        String value = System.getProperty(property);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            int cost = Integer.parseInt(value.trim());
+            if (cost >= 4 && cost <= 31) {
+                return cost;
+            }
+        }
+        catch (NumberFormatException ignored) {
+        }
+        logger.warning(property + "=" + value + " is not a valid BCrypt cost (4-31), using " + defaultValue);
+        return defaultValue;
+    }
+}
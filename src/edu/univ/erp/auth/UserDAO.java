@@ -1,50 +1,93 @@
 package edu.univ.erp.auth;
+import edu.univ.erp.domain.UserImportRow;
 import edu.univ.erp.util.DatabaseUtil;
-import org.mindrot.jbcrypt.BCrypt;
+import edu.univ.erp.util.IntObjectMap;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 
 //This class handles the SQL connections for the AuthDB
 public class UserDAO {
+    private static final int EMAIL_LOOKUP_CHUNK = 500;
+
     //The below method is used to check weather the password and email provided at the login time are valid
     //If it is valid then it returns an AuthResult object
     //The string SQL is basically the query that we would use to read the desired things from the table of Users in AuthDB
     //The query is prepared using the .preparedStatment() and the ? used as place-holders are set using the .setString method
     //This CheckLogin is used in the AuthService and basically checks if the Email and password used are valid
     //It returns the UserID and the role of the person trying to log in using the record AuthResult
+    //The row is read and the connection handed back to the pool before the hash is checked,
+    //the check itself runs on the PasswordVerifier executor so a burst of logins cannot hold connections idle
     public AuthResult CheckLogin(String Email, String Password){
         String SQL = "SELECT UserID, PasswordHash, Role FROM Users WHERE Email = ?";
+        String StoredHash;
+        String Role;
+        int UserID;
         try(Connection AuthDBConnector = DatabaseUtil.GetAuthConnection(); PreparedStatement Statement = AuthDBConnector.prepareStatement(SQL)){
             Statement.setString(1, Email);
             try(ResultSet Result = Statement.executeQuery()){
-                if(Result.next()){
-                    String StoredHash = Result.getString("PasswordHash");
-                    String Role = Result.getString("Role");
-                    int UserID = Result.getInt("UserID");
-                    if(BCrypt.checkpw(Password, StoredHash)){
-                        return new AuthResult(UserID, Role);
-                    }
+                if(!Result.next()){
+                    return null;
                 }
+                StoredHash = Result.getString("PasswordHash");
+                Role = Result.getString("Role");
+                UserID = Result.getInt("UserID");
             }
+        }
+        catch(Exception e){
+            e.printStackTrace();
+            System.out.println("Failure at CheckLogin in UserDAO");
             return null;
         }
+        try{
+            if(!PasswordVerifier.Verify(Password, StoredHash)){
+                return null;
+            }
+        }
         catch(Exception e){
             e.printStackTrace();
             System.out.println("Failure at CheckLogin in UserDAO");
             return null;
         }
+        if(PasswordVerifier.NeedsRehash(StoredHash)){
+            PasswordVerifier.RehashInBackground(Password, NewHash -> ReplacePasswordHash(UserID, StoredHash, NewHash));
+        }
+        return new AuthResult(UserID, Role);
+    }
+
+
+    //Swaps in a rehashed password only if the stored hash is still the one that was verified
+    //A password changed in the meantime is left alone
+    private boolean ReplacePasswordHash(int UserID, String OldHash, String NewHash) throws Exception{
+        String SQL = "UPDATE Users SET PasswordHash = ? WHERE UserID = ? AND PasswordHash = ?";
+        try(Connection AuthDBConnector = DatabaseUtil.GetAuthConnection(); PreparedStatement Statement = AuthDBConnector.prepareStatement(SQL)){
+            Statement.setString(1, NewHash);
+            Statement.setInt(2, UserID);
+            Statement.setString(3, OldHash);
+            return Statement.executeUpdate()>0;
+        }
     }
 
 
     //This method basically used to add new user into the AuthDB database
     //This method encrypts the password provided (that would initially be "defaultPassword123") using the BCrypt.hashpw
+    //The hash is made by PasswordVerifier with the configured cost factor
     //The .executeUpdate() basically runs the SQL query
     public int CreateAuthDBUser(Connection AuthDBConnection, String Email, String Password, String Role) throws Exception{
-        String PasswordHash = BCrypt.hashpw(Password, BCrypt.gensalt());
+        return CreateAuthDBUserWithHash(AuthDBConnection, Email, PasswordVerifier.Hash(Password), Role);
+    }
+
+
+    //Same as CreateAuthDBUser for a password that has already been hashed, so no BCrypt work runs while the transaction is open
+    public int CreateAuthDBUserWithHash(Connection AuthDBConnection, String Email, String PasswordHash, String Role) throws Exception{
         String SQL = "INSERT INTO Users (Email, PasswordHash, Role) VALUES (?, ?, ?)";
         try(PreparedStatement Statement = AuthDBConnection.prepareStatement(SQL, java.sql.Statement.RETURN_GENERATED_KEYS)){
             //The RETURN_GENERATED_KEYS returns the Identity (UserID in this case) of the Statement
@@ -66,13 +109,77 @@ public class UserDAO {
     }
 
 
+    //Inserts many users with one batched statement on the caller's connection (the caller commits)
+    //Returns the new UserIDs in the same order as the rows, read back by email since batches do not give generated keys on every driver
+    public int[] CreateAuthDBUsers(Connection AuthDBConnection, List<UserImportRow> Rows, List<String> PasswordHashes) throws Exception{
+        String SQL = "INSERT INTO Users (Email, PasswordHash, Role) VALUES (?, ?, ?)";
+        try(PreparedStatement Statement = AuthDBConnection.prepareStatement(SQL)){
+            for (int i = 0; i < Rows.size(); i++) {
+                Statement.setString(1, Rows.get(i).email());
+                Statement.setString(2, PasswordHashes.get(i));
+                Statement.setString(3, Rows.get(i).role());
+                Statement.addBatch();
+            }
+            Statement.executeBatch();
+        }
+        List<String> Emails = new ArrayList<>(Rows.size());
+        for (UserImportRow Row : Rows) {
+            Emails.add(Row.email());
+        }
+        Map<String, Integer> IdsByEmail = GetUserIdsByEmail(AuthDBConnection, Emails);
+        int[] UserIDs = new int[Rows.size()];
+        for (int i = 0; i < Rows.size(); i++) {
+            Integer UserID = IdsByEmail.get(Rows.get(i).email().toLowerCase(Locale.ROOT));
+            if (UserID == null) {
+                throw new Exception("Failed to read back the UserID of " + Rows.get(i).email());
+            }
+            UserIDs[i] = UserID;
+        }
+        return UserIDs;
+    }
+
+
+    //The emails (lower case) out of the given ones that already have an account, looked up in chunks of IN queries
+    public Set<String> GetExistingEmails(List<String> Emails) {
+        Set<String> Existing = new HashSet<>();
+        try(Connection AuthDBConnection = DatabaseUtil.GetAuthConnection()){
+            Existing.addAll(GetUserIdsByEmail(AuthDBConnection, Emails).keySet());
+        }
+        catch (Exception e){
+            e.printStackTrace();
+        }
+        return Existing;
+    }
+
+
+    //UserID by lower case email, one IN query per EMAIL_LOOKUP_CHUNK emails
+    private Map<String, Integer> GetUserIdsByEmail(Connection AuthDBConnection, List<String> Emails) throws Exception{
+        Map<String, Integer> IdsByEmail = new HashMap<>(Emails.size() * 2);
+        for (int From = 0; From < Emails.size(); From += EMAIL_LOOKUP_CHUNK) {
+            List<String> Chunk = Emails.subList(From, Math.min(Emails.size(), From + EMAIL_LOOKUP_CHUNK));
+            String SQL = "SELECT UserID, Email FROM Users WHERE Email IN (" + DatabaseUtil.Placeholders(Chunk.size()) + ")";
+            try(PreparedStatement Statement = AuthDBConnection.prepareStatement(SQL)){
+                for (int i = 0; i < Chunk.size(); i++) {
+                    Statement.setString(i + 1, Chunk.get(i));
+                }
+                try(ResultSet Result = Statement.executeQuery()){
+                    while(Result.next()){
+                        IdsByEmail.put(Result.getString("Email").toLowerCase(Locale.ROOT), Result.getInt("UserID"));
+                    }
+                }
+            }
+        }
+        return IdsByEmail;
+    }
+
+
     //This helps to change the password in database
     //In this we encrypt the new password that would be provided in the change password page
     //After encryption we replace the encryption of old password with the new password's encryption
     //The executeUpdate() returns the total number of rows affected by the SQL query
     //The function returns weather the password was affected
     public boolean ChangePassword(String Email, String NewPassword) {
-        String NewPasswordHash = BCrypt.hashpw(NewPassword, BCrypt.gensalt());
+        String NewPasswordHash = PasswordVerifier.Hash(NewPassword);
         String SQL = "UPDATE Users SET PasswordHash = ? WHERE Email = ?";
         try (Connection AuthDBConnector = DatabaseUtil.GetAuthConnection(); PreparedStatement Statement = AuthDBConnector.prepareStatement(SQL)) {
             Statement.setString(1, NewPasswordHash);
@@ -105,4 +212,78 @@ public class UserDAO {
         System.out.println("The GetAllAuthUsers method in UserDAO was success");
         return Users;
     }
-}
\ No newline at end of file
+
+
+    //One page of the Users table in UserID order, starting after AfterUserID (keyset paging, so a page costs the same wherever it is)
+    //EmailPrefix and Role narrow the page when they are not null
+    public List<AuthUserInfo> GetAuthUsersPage(String EmailPrefix, String Role, int AfterUserID, int Limit) {
+        List<AuthUserInfo> Users = new ArrayList<>();
+        StringBuilder SQL = new StringBuilder("SELECT UserID, Email, Role FROM Users WHERE UserID > ?");
+        if (EmailPrefix != null) {
+            SQL.append(" AND Email LIKE ?");
+        }
+        if (Role != null) {
+            SQL.append(" AND Role = ?");
+        }
+        SQL.append(" ORDER BY UserID LIMIT ?");
+        try (Connection conn = DatabaseUtil.GetAuthConnection(); PreparedStatement stmt = conn.prepareStatement(SQL.toString())) {
+            int Index = 1;
+            stmt.setInt(Index++, AfterUserID);
+            if (EmailPrefix != null) {
+                stmt.setString(Index++, DatabaseUtil.LikePrefix(EmailPrefix));
+            }
+            if (Role != null) {
+                stmt.setString(Index++, Role);
+            }
+            stmt.setInt(Index, Limit);
+            try (ResultSet Result = stmt.executeQuery()) {
+                while (Result.next()) {
+                    Users.add(new AuthUserInfo(Result.getInt("UserID"), Result.getString("Email"), Result.getString("Role")));
+                }
+            }
+        }
+        catch (Exception e) {
+            e.printStackTrace();
+            System.out.println("Failure at GetAuthUsersPage in UserDAO");
+        }
+        return Users;
+    }
+
+
+    //The Users rows for the given IDs that also match EmailPrefix and Role (when not null), keyed by UserID
+    public IntObjectMap<AuthUserInfo> GetAuthUsersByIds(int[] UserIDs, String EmailPrefix, String Role) {
+        IntObjectMap<AuthUserInfo> Users = new IntObjectMap<>(UserIDs.length);
+        if (UserIDs.length == 0) {
+            return Users;
+        }
+        StringBuilder SQL = new StringBuilder("SELECT UserID, Email, Role FROM Users WHERE UserID IN (" + DatabaseUtil.Placeholders(UserIDs.length) + ")");
+        if (EmailPrefix != null) {
+            SQL.append(" AND Email LIKE ?");
+        }
+        if (Role != null) {
+            SQL.append(" AND Role = ?");
+        }
+        try (Connection conn = DatabaseUtil.GetAuthConnection(); PreparedStatement stmt = conn.prepareStatement(SQL.toString())) {
+            int Index = 1;
+            for (int UserID : UserIDs) {
+                stmt.setInt(Index++, UserID);
+            }
+            if (EmailPrefix != null) {
+                stmt.setString(Index++, DatabaseUtil.LikePrefix(EmailPrefix));
+            }
+            if (Role != null) {
+                stmt.setString(Index, Role);
+            }
+            try (ResultSet Result = stmt.executeQuery()) {
+                while (Result.next()) {
+                    Users.put(Result.getInt("UserID"), new AuthUserInfo(Result.getInt("UserID"), Result.getString("Email"), Result.getString("Role")));
+                }
+            }
+        }
+        catch (Exception e) {
+            e.printStackTrace();
+            System.out.println("Failure at GetAuthUsersByIds in UserDAO");
+        }
+        return Users;
+    }
+}
@@ -0,0 +1,23 @@
+package edu.univ.erp.auth;
+
+//Snapshot of the PasswordVerifier executor, used to size it against the login rate at semester start
+//queueDepth = hashes waiting for a thread right now, maxQueueDepth = the largest backlog seen since start
+public record VerifierStats(
+        int threads,
+        int activeHashes,
+        int queueDepth,
+        int maxQueueDepth,
+        int queueCapacity,
+        long completedHashes,
+        long callerRunsHashes,
+        double averageQueueWaitMillis,
+        double averageHashMillis,
+        long rehashes,
+        int targetCost
+) {
+    @Override
+    public String toString() {
+        return String.format("PasswordVerifier: threads=%d, active=%d, queued=%d (max %d of %d), completed=%d, callerRuns=%d, avgWait=%.2fms, avgHash=%.2fms, rehashes=%d, cost=%d",
+                threads, activeHashes, queueDepth, maxQueueDepth, queueCapacity, completedHashes, callerRunsHashes, averageQueueWaitMillis, averageHashMillis, rehashes, targetCost);
+    }
+}
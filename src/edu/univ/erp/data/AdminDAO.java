@@ -1,8 +1,12 @@
 package edu.univ.erp.data;
 
 import edu.univ.erp.domain.Course;
+import edu.univ.erp.domain.GradebookEntry;
+import edu.univ.erp.domain.SectionGradebookRow;
 import edu.univ.erp.domain.Instructor;
+import edu.univ.erp.domain.UserImportRow;
 import edu.univ.erp.util.DatabaseUtil;
+import edu.univ.erp.util.IntObjectMap;
 import edu.univ.erp.domain.AdminSectionView;
 
 import java.sql.Connection;
@@ -10,12 +14,20 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
 
 //This class handles the connection to the StudentDB
 //These connections would mainly be used by the user Admin thus the name of the class
 public class AdminDAO {
+    //Section writes keep the shared course catalog in step
+    //CreateCourse does not touch it, the catalog lists sections and a new course has none yet
+    private final CatalogDAO catalogDAO = new CatalogDAO();
+    private final GpaDAO gpaDAO = new GpaDAO();
+    private static final int GRADE_BATCH_SIZE = 500;
+
     //This method adds the student profile to the students table in the StudentDB
     //This method uses the INSERT Query to insert into the table
     //This method is called in the createNewUser in AdminService while inserting a new student
@@ -52,6 +64,41 @@ public class AdminDAO {
         }
     }
 
+    //Batched profile inserts for a bulk import, on the caller's connection (the caller commits)
+    //UserIDs are parallel to the rows, Student rows go to Students, Instructor rows to Instructors and Admin rows have no profile
+    public void CreateProfiles(Connection StudentDBConnection, List<UserImportRow> Rows, int[] UserIDs) throws Exception {
+        try (PreparedStatement Students = StudentDBConnection.prepareStatement("INSERT INTO Students (UserID, FullName, Email) VALUES (?,?,?)");
+             PreparedStatement Instructors = StudentDBConnection.prepareStatement("INSERT INTO Instructors (UserID, FullName, Email) VALUES (?, ?, ?)")) {
+            int StudentCount = 0;
+            int InstructorCount = 0;
+            for (int i = 0; i < Rows.size(); i++) {
+                UserImportRow Row = Rows.get(i);
+                PreparedStatement Statement;
+                if ("Student".equals(Row.role())) {
+                    Statement = Students;
+                    StudentCount++;
+                }
+                else if ("Instructor".equals(Row.role())) {
+                    Statement = Instructors;
+                    InstructorCount++;
+                }
+                else {
+                    continue;
+                }
+                Statement.setInt(1, UserIDs[i]);
+                Statement.setString(2, Row.fullName());
+                Statement.setString(3, Row.email());
+                Statement.addBatch();
+            }
+            if (StudentCount > 0) {
+                Students.executeBatch();
+            }
+            if (InstructorCount > 0) {
+                Instructors.executeBatch();
+            }
+        }
+    }
+
     //This adds a new course to the course table in the StudentDB
     public boolean CreateCourse(String CourseCode, String Title, int Credits){
         String SQL = "INSERT INTO Course (CourseCode, CourseTitle, Credits) VALUES (?, ?, ?)";
@@ -80,7 +127,7 @@ public class AdminDAO {
     //This method creates a new section into the section table in the StudentDB
     public boolean CreateSection(int CourseID, int InstructorID, String SectionNum, String Time, int Capacity) {
         String sql = "INSERT INTO Sections (CourseID, InstructorID, SectionNumber, TimeSlot, Capacity, EnrolledCount) " + "VALUES (?, ?, ?, ?, ?, 0)"; // Default EnrolledCount to 0
-        try (Connection StudentDBConnection = DatabaseUtil.GetStudentConnection(); PreparedStatement Statement = StudentDBConnection.prepareStatement(sql)) {
+        try (Connection StudentDBConnection = DatabaseUtil.GetStudentConnection(); PreparedStatement Statement = StudentDBConnection.prepareStatement(sql, java.sql.Statement.RETURN_GENERATED_KEYS)) {
             Statement.setInt(1, CourseID);
             Statement.setInt(2, InstructorID);
             Statement.setString(3, SectionNum);
@@ -88,6 +135,11 @@ public class AdminDAO {
             Statement.setInt(5, Capacity);
             boolean Is_Inserted = Statement.executeUpdate()>0;
             if(Is_Inserted){
+                try(ResultSet Keys = Statement.getGeneratedKeys()){
+                    if(Keys.next()){
+                        catalogDAO.SectionCreated(Keys.getInt(1)); //Patch the shared catalog with the new section
+                    }
+                }
                 System.out.println("Section: "+CourseID+"-"+SectionNum +" Inserted in the section table");
             }
             else{
@@ -210,17 +262,220 @@ public class AdminDAO {
 
 
     //Removes a section from the database
-    //Passes the delete query to the section table
+    //Passes the delete query to the section table, together with the section's waitlist
+    //Students graded in the section lose it from their GPA, their summary is recomputed in the same transaction
     public boolean DeleteSection(int SectionID){
         String SQL = "DELETE FROM Sections WHERE SectionID = ?";
-        try(Connection StudentDBConnection = DatabaseUtil.GetStudentConnection(); PreparedStatement Statement = StudentDBConnection.prepareStatement(SQL)){
+        try(Connection StudentDBConnection = DatabaseUtil.GetStudentConnection(); PreparedStatement WaitlistStatement = StudentDBConnection.prepareStatement("DELETE FROM Waitlist WHERE SectionID = ?"); PreparedStatement Statement = StudentDBConnection.prepareStatement(SQL)){
+            StudentDBConnection.setAutoCommit(false);
+            Map<Integer, GpaDAO.Counted> Graded = gpaDAO.getCounted(StudentDBConnection, SectionID, null);
+            WaitlistStatement.setInt(1, SectionID);
+            WaitlistStatement.executeUpdate();
             Statement.setInt(1, SectionID);
-            return Statement.executeUpdate()>0;
+            boolean Deleted = Statement.executeUpdate()>0;
+            if(Deleted){
+                gpaDAO.refreshRemoved(StudentDBConnection, Graded);
+            }
+            StudentDBConnection.commit();
+            if(Deleted){
+                catalogDAO.SectionDeleted(SectionID);
+                WaitlistQueues.Forget(SectionID);
+            }
+            return Deleted;
         }
-        catch (SQLException e) {
+        catch (Exception e) {
             throw new RuntimeException(e);
         }
     }
-}
 
 
+    //Full names of the given users from both profile tables, keyed by UserID
+    //Users without a profile (the admins) are simply missing from the map
+    public IntObjectMap<String> GetProfileNames(int[] UserIDs) {
+        IntObjectMap<String> Names = new IntObjectMap<>(UserIDs.length);
+        if (UserIDs.length == 0) {
+            return Names;
+        }
+        String InList = DatabaseUtil.Placeholders(UserIDs.length);
+        String SQL = "SELECT UserID, FullName FROM Students WHERE UserID IN (" + InList + ")"
+                + " UNION ALL SELECT UserID, FullName FROM Instructors WHERE UserID IN (" + InList + ")";
+        try (Connection StudentDBConnection = DatabaseUtil.GetStudentConnection(); PreparedStatement Statement = StudentDBConnection.prepareStatement(SQL)) {
+            int Index = 1;
+            for (int Pass = 0; Pass < 2; Pass++) {
+                for (int UserID : UserIDs) {
+                    Statement.setInt(Index++, UserID);
+                }
+            }
+            try (ResultSet Result = Statement.executeQuery()) {
+                while (Result.next()) {
+                    Names.put(Result.getInt("UserID"), Result.getString("FullName"));
+                }
+            }
+        }
+        catch (Exception e) {
+            e.printStackTrace();
+            System.out.println("Error in Method: GetProfileNames");
+        }
+        return Names;
+    }
+
+
+    //Student and instructor profiles whose name starts with NamePrefix, in (FullName, UserID) order after the profile of AfterUserID
+    //Used when the admin searches by name, the matching Users rows are then read by ID
+    //That order is the one of IdxStudentsName and IdxInstructorsName, so each table reads at most Limit rows from its index
+    //(ordered by UserID alone the whole prefix range had to be read and sorted, or the table scanned in UserID order)
+    //The cursor stays a UserID, its name is looked up first; if that user is gone the listing ends there
+    public List<ProfileInfo> GetProfilesPageByName(String NamePrefix, int AfterUserID, int Limit) {
+        List<ProfileInfo> Profiles = new ArrayList<>();
+        String Branch = " WHERE FullName LIKE ? AND FullName >= ? AND (FullName > ? OR UserID > ?) ORDER BY FullName, UserID LIMIT ?";
+        //A top-level UNION rather than a derived table, H2 turns LIKE into an index range only there
+        String SQL = "(SELECT UserID, FullName FROM Students" + Branch + ")"
+                + " UNION ALL (SELECT UserID, FullName FROM Instructors" + Branch + ")"
+                + " ORDER BY FullName, UserID LIMIT ?";
+        String Pattern = DatabaseUtil.LikePrefix(NamePrefix);
+        try (Connection StudentDBConnection = DatabaseUtil.GetStudentConnection()) {
+            String AfterName = "";
+            if (AfterUserID > 0) {
+                AfterName = GetProfileName(StudentDBConnection, AfterUserID);
+                if (AfterName == null) {
+                    return Profiles;
+                }
+            }
+            try (PreparedStatement Statement = StudentDBConnection.prepareStatement(SQL)) {
+                int Index = 1;
+                for (int Pass = 0; Pass < 2; Pass++) {
+                    Statement.setString(Index++, Pattern);
+                    Statement.setString(Index++, AfterName);
+                    Statement.setString(Index++, AfterName);
+                    Statement.setInt(Index++, AfterUserID);
+                    Statement.setInt(Index++, Limit);
+                }
+                Statement.setInt(Index, Limit);
+                try (ResultSet Result = Statement.executeQuery()) {
+                    while (Result.next()) {
+                        Profiles.add(new ProfileInfo(Result.getInt("UserID"), Result.getString("FullName")));
+                    }
+                }
+            }
+        }
+        catch (Exception e) {
+            e.printStackTrace();
+            System.out.println("Error in Method: GetProfilesPageByName");
+        }
+        return Profiles;
+    }
+
+
+    //The FullName of a student or instructor, null if the user has no profile
+    private String GetProfileName(Connection StudentDBConnection, int UserID) throws SQLException {
+        String SQL = "SELECT FullName FROM Students WHERE UserID = ? UNION ALL SELECT FullName FROM Instructors WHERE UserID = ?";
+        try (PreparedStatement Statement = StudentDBConnection.prepareStatement(SQL)) {
+            Statement.setInt(1, UserID);
+            Statement.setInt(2, UserID);
+            try (ResultSet Result = Statement.executeQuery()) {
+                return Result.next() ? Result.getString("FullName") : null;
+            }
+        }
+    }
+
+
+    //Streams the gradebook of every section, grouped by section and ordered by student within it
+    //Used by the registrar-wide export to write one file per section in a single pass over a forward-only ResultSet
+    //A section with no students comes through once with a null entry
+    public void StreamAllGradebooks(RowConsumer<SectionGradebookRow> Consumer) throws Exception{
+        String SQL = """
+            SELECT
+                sec.SectionID, c.CourseCode, sec.SectionNumber,
+                e.StudentID, s.FullName, g.QuizScore, g.MidtermScore, g.FinalScore, g.FinalGrade
+            FROM Sections sec
+            JOIN Course c ON sec.CourseID = c.CourseID
+            LEFT JOIN Enrollments e ON e.SectionID = sec.SectionID
+            LEFT JOIN Students s ON e.StudentID = s.StudentID
+            LEFT JOIN Grades g ON e.StudentID = g.StudentID AND e.SectionID = g.SectionID
+            ORDER BY sec.SectionID, e.StudentID
+            """;
+        try(Connection StudentDBConnection = DatabaseUtil.GetStudentConnection(); PreparedStatement Statement = StudentDBConnection.prepareStatement(SQL, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)){
+            Statement.setFetchSize(DatabaseUtil.STREAM_FETCH_SIZE);
+            try(ResultSet Result = Statement.executeQuery()){
+                while(Result.next()){
+                    int StudentID = Result.getInt("StudentID");
+                    GradebookEntry Entry = Result.wasNull() ? null : new GradebookEntry(
+                            StudentID,
+                            Result.getString("FullName"),
+                            Result.getDouble("QuizScore"),
+                            Result.getDouble("MidtermScore"),
+                            Result.getDouble("FinalScore"),
+                            Result.getString("FinalGrade"));
+                    Consumer.accept(new SectionGradebookRow(Result.getInt("SectionID"), Result.getString("CourseCode"), Result.getString("SectionNumber"), Entry));
+                }
+            }
+        }
+    }
+
+
+    //The component scores of every graded student, grouped by section, for the grade distribution report and the regrade
+    //Department limits it to sections taught by that department's instructors, null means every section
+    //One query, the rows go straight into primitive columns
+    public GradeColumns GetGradeColumns(String Department) throws Exception{
+        String SQL = """
+            SELECT sec.SectionID, c.CourseCode, sec.SectionNumber, g.StudentID, g.FinalGrade, g.QuizScore, g.MidtermScore, g.FinalScore
+            FROM Grades g
+            JOIN Enrollments e ON e.StudentID = g.StudentID AND e.SectionID = g.SectionID
+            JOIN Sections sec ON sec.SectionID = g.SectionID
+            JOIN Course c ON sec.CourseID = c.CourseID
+            LEFT JOIN Instructors i ON i.InstructorID = sec.InstructorID
+            WHERE g.FinalGrade IS NOT NULL %s
+            ORDER BY sec.SectionID, g.StudentID
+            """.formatted(Department != null ? "AND i.Department = ?" : "");
+        try(Connection StudentDBConnection = DatabaseUtil.GetStudentConnection(); PreparedStatement Statement = StudentDBConnection.prepareStatement(SQL, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)){
+            Statement.setFetchSize(DatabaseUtil.STREAM_FETCH_SIZE);
+            if(Department != null){
+                Statement.setString(1, Department);
+            }
+            GradeColumns Columns = new GradeColumns(1024);
+            try(ResultSet Result = Statement.executeQuery()){
+                while(Result.next()){
+                    Columns.add(Result.getInt(1), Result.getString(2), Result.getString(3), Result.getInt(4), Result.getString(5),
+                            Result.getDouble(6), Result.getDouble(7), Result.getDouble(8));
+                }
+            }
+            return Columns;
+        }
+    }
+
+
+    //Writes the letters that differ from the stored FinalGrade, Letters is in the same row order as Columns
+    //All in one transaction, together with the GPA summary of the students whose grade changed
+    //Returns the number of grades changed
+    public int UpdateFinalGrades(GradeColumns Columns, String[] Letters) throws Exception{
+        String SQL = "UPDATE Grades SET FinalGrade = ? WHERE StudentID = ? AND SectionID = ?";
+        int[] Changed = new int[Columns.rowCount()];
+        int ChangedCount = 0;
+        try(Connection StudentDBConnection = DatabaseUtil.GetStudentConnection(); PreparedStatement Statement = StudentDBConnection.prepareStatement(SQL)){
+            StudentDBConnection.setAutoCommit(false);
+            int Pending = 0;
+            for(int Section = 0; Section < Columns.sectionCount(); Section++){
+                for(int Row = Columns.sectionStart(Section); Row < Columns.sectionStart(Section + 1); Row++){
+                    if(Letters[Row].equals(Columns.finalGrade(Row))){
+                        continue;
+                    }
+                    Statement.setString(1, Letters[Row]);
+                    Statement.setInt(2, Columns.studentId(Row));
+                    Statement.setInt(3, Columns.sectionId(Section));
+                    Statement.addBatch();
+                    Changed[ChangedCount++] = Columns.studentId(Row);
+                    if(++Pending == GRADE_BATCH_SIZE){
+                        Statement.executeBatch();
+                        Pending = 0;
+                    }
+                }
+            }
+            if(Pending > 0){
+                Statement.executeBatch();
+            }
+            gpaDAO.refreshStudents(StudentDBConnection, Arrays.copyOf(Changed, ChangedCount));
+            StudentDBConnection.commit(); //A failure is rolled back by the pool
+        }
+        return ChangedCount;
+    }
+}
@@ -0,0 +1,204 @@
+package edu.univ.erp.data;
+
+import edu.univ.erp.domain.CatalogSection;
+import edu.univ.erp.util.DatabaseUtil;
+import edu.univ.erp.util.TimeSlot;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+//This class keeps one process-wide copy of the course catalog (sections with their course and instructor)
+//The catalog only changes when an admin creates or deletes a section, so it is built once and then
+//patched by those writes instead of re-running the Sections/Course/Instructors join on every catalog view
+//Other processes learn about a change through the CatalogVersion setting and rebuild their copy
+//Seat counts change on every registration, so they are kept apart in a short-lived overlay
+//that is re-read at most every SEAT_COUNTS_TTL_MILLIS
+public class CatalogDAO {
+    private static final long SEAT_COUNTS_TTL_MILLIS = 2_000;
+
+    //EnrolledCount for every section, both arrays ordered by SectionID
+    record SeatCounts(int[] SectionIds, int[] Enrolled, long LoadedAt) {
+        //Returns -1 for a section that was not in the Sections table when the overlay was read
+        int enrolledFor(int sectionId) {
+            int index = Arrays.binarySearch(SectionIds, sectionId);
+            return index >= 0 ? Enrolled[index] : -1;
+        }
+    }
+
+    private static volatile CatalogSnapshot Snapshot;
+    private static volatile SeatCounts Seats;
+    private static final Object RebuildLock = new Object(); //Only one thread rebuilds or patches at a time
+    private static final ReentrantLock Reloading = new ReentrantLock(); //Held by the one caller re-reading the seat counts
+
+    private final SettingsDAO settingsDAO = new SettingsDAO();
+
+
+    //Returns the current catalog, rebuilding it only when the CatalogVersion setting has moved on
+    //On a failed rebuild the previous copy is kept
+    public CatalogSnapshot getSnapshot() {
+        String version = settingsDAO.GetCatalogVersion();
+        CatalogSnapshot current = Snapshot;
+        if (current != null && current.getVersion().equals(version)) {
+            return current;
+        }
+        synchronized (RebuildLock) {
+            current = Snapshot;
+            if (current != null && current.getVersion().equals(version)) {
+                return current;
+            }
+            List<CatalogSection> sections = loadSections("", null);
+            if (sections == null) {
+                return current != null ? current : new CatalogSnapshot(version, List.of());
+            }
+            CatalogSnapshot rebuilt = new CatalogSnapshot(version, sections);
+            Snapshot = rebuilt;
+            return rebuilt;
+        }
+    }
+
+
+    //Returns the seat count overlay, re-reading it when it is older than SEAT_COUNTS_TTL_MILLIS
+    //Only one caller re-reads it, the others keep using the old overlay meanwhile (or wait for the first one)
+    //Registrations and drops do not drop the overlay, open views get their changes from SeatCountFeed
+    SeatCounts getSeatCounts() {
+        SeatCounts current = Seats;
+        if (IsFresh(current)) {
+            return current;
+        }
+        if (current == null) {
+            Reloading.lock();
+        }
+        else if (!Reloading.tryLock()) {
+            return current;
+        }
+        try {
+            current = Seats;
+            if (IsFresh(current)) {
+                return current; //Re-read by the caller that held the lock
+            }
+            SeatCounts loaded = loadSeatCounts();
+            if (loaded == null) {
+                return current != null ? current : new SeatCounts(new int[0], new int[0], 0);
+            }
+            Seats = loaded;
+            return loaded;
+        }
+        finally {
+            Reloading.unlock();
+        }
+    }
+
+
+    private static boolean IsFresh(SeatCounts counts) {
+        return counts != null && System.currentTimeMillis() - counts.LoadedAt() < SEAT_COUNTS_TTL_MILLIS;
+    }
+
+
+    //Adds a newly created section to the catalog and tells other processes about it
+    public void SectionCreated(int sectionId) {
+        synchronized (RebuildLock) {
+            String version = BumpVersion();
+            CatalogSnapshot current = Snapshot;
+            if (current != null) {
+                List<CatalogSection> loaded = loadSections(" WHERE s.SectionID = ?", sectionId);
+                if (loaded == null || loaded.isEmpty()) {
+                    Snapshot = null; //Could not read the new row, rebuild on the next view instead
+                }
+                else {
+                    Snapshot = current.withSection(loaded.get(0), version);
+                }
+            }
+            Seats = null;
+        }
+    }
+
+
+    //Removes a deleted section from the catalog and tells other processes about it
+    public void SectionDeleted(int sectionId) {
+        synchronized (RebuildLock) {
+            String version = BumpVersion();
+            CatalogSnapshot current = Snapshot;
+            if (current != null) {
+                Snapshot = current.withoutSection(sectionId, version);
+            }
+            Seats = null;
+        }
+    }
+
+
+    //Writes a new CatalogVersion, falling back to the current one if the write failed
+    //In that case this process is still patched, other processes catch up on their next rebuild
+    private String BumpVersion() {
+        String version = settingsDAO.BumpCatalogVersion();
+        if (version == null) {
+            CatalogSnapshot current = Snapshot;
+            return current != null ? current.getVersion() : settingsDAO.GetCatalogVersion();
+        }
+        return version;
+    }
+
+
+    //The section/course/instructor join, optionally narrowed to one section, returns null on failure
+    private List<CatalogSection> loadSections(String where, Integer sectionId) {
+        List<CatalogSection> sections = new ArrayList<>();
+        String sql = """
+            SELECT
+                s.SectionID, c.CourseCode, c.CourseTitle, c.Credits, i.FullName, s.TimeSlot, s.Capacity
+            FROM Sections s
+            JOIN Course c ON s.CourseID = c.CourseID
+            LEFT JOIN Instructors i ON s.InstructorID = i.InstructorID
+            """ + where + " ORDER BY s.SectionID";
+        try (Connection conn = DatabaseUtil.GetStudentConnection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
+            if (sectionId != null) {
+                stmt.setInt(1, sectionId);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    sections.add(new CatalogSection(
+                            rs.getInt("SectionID"),
+                            rs.getString("CourseCode"),
+                            rs.getString("CourseTitle"),
+                            rs.getInt("Credits"),
+                            rs.getString("FullName") != null ? rs.getString("FullName") : "TBA",
+                            rs.getString("TimeSlot"),
+                            rs.getInt("Capacity"),
+                            TimeSlot.parse(rs.getString("TimeSlot"))
+                    ));
+                }
+            }
+            return sections;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+
+    //A single-table scan of the seat counts, returns null on failure
+    private SeatCounts loadSeatCounts() {
+        String sql = "SELECT SectionID, EnrolledCount FROM Sections ORDER BY SectionID";
+        int[] ids = new int[64];
+        int[] enrolled = new int[64];
+        int count = 0;
+        try (Connection conn = DatabaseUtil.GetStudentConnection(); PreparedStatement stmt = conn.prepareStatement(sql); ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                if (count == ids.length) {
+                    ids = Arrays.copyOf(ids, count * 2);
+                    enrolled = Arrays.copyOf(enrolled, count * 2);
+                }
+                ids[count] = rs.getInt(1);
+                enrolled[count] = rs.getInt(2);
+                count++;
+            }
+            return new SeatCounts(Arrays.copyOf(ids, count), Arrays.copyOf(enrolled, count), System.currentTimeMillis());
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package edu.univ.erp.data;
+
+import edu.univ.erp.domain.CatalogSection;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+//An immutable copy of the course catalog, ordered by SectionID
+//Changes never modify a snapshot, they build a new one with WithSection/WithoutSection and swap it in
+public final class CatalogSnapshot {
+    private final String version;
+    private final List<CatalogSection> sections;
+    private final int[] sectionIds; //Parallel to sections, for binary search
+
+    CatalogSnapshot(String version, List<CatalogSection> sections) {
+        this.version = version;
+        this.sections = List.copyOf(sections);
+        this.sectionIds = new int[this.sections.size()];
+        for (int i = 0; i < sectionIds.length; i++) {
+            sectionIds[i] = this.sections.get(i).sectionId();
+        }
+    }
+
+    //The CatalogVersion setting this snapshot was built from
+    public String getVersion() {
+        return version;
+    }
+
+    public List<CatalogSection> getSections() {
+        return sections;
+    }
+
+    public int size() {
+        return sections.size();
+    }
+
+    //Returns null when the section is not in the catalog
+    public CatalogSection find(int sectionId) {
+        int index = Arrays.binarySearch(sectionIds, sectionId);
+        return index >= 0 ? sections.get(index) : null;
+    }
+
+    //A copy with the section added, or replaced if it is already present
+    CatalogSnapshot withSection(CatalogSection section, String newVersion) {
+        List<CatalogSection> copy = new ArrayList<>(sections);
+        int index = Arrays.binarySearch(sectionIds, section.sectionId());
+        if (index >= 0) {
+            copy.set(index, section);
+        }
+        else {
+            copy.add(-index - 1, section);
+        }
+        return new CatalogSnapshot(newVersion, copy);
+    }
+
+    //A copy without the section, the same contents if it was not present
+    CatalogSnapshot withoutSection(int sectionId, String newVersion) {
+        int index = Arrays.binarySearch(sectionIds, sectionId);
+        if (index < 0) {
+            return new CatalogSnapshot(newVersion, sections);
+        }
+        List<CatalogSection> copy = new ArrayList<>(sections);
+        copy.remove(index);
+        return new CatalogSnapshot(newVersion, copy);
+    }
+}
@@ -0,0 +1,239 @@
+package edu.univ.erp.data;
+
+import edu.univ.erp.domain.StudentGpa;
+import edu.univ.erp.domain.TermGpa;
+import edu.univ.erp.util.DatabaseUtil;
+import edu.univ.erp.util.GradePoints;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+//This class keeps the StudentGpaSummary table in the StudentDB, one row per student and term plus a cumulative row (Term 0)
+//The rows are computed by the database in one set-based pass: every graded enrollment is mapped to its points,
+//weighted by the course credits and grouped by student and term, so a dean's list or probation report is a single
+//indexed read instead of a getGrades call per student
+//Whenever grades are saved, or a graded enrollment or section goes away, the rows of just the students whose grade
+//changed are recomputed in the same transaction, only the term of that section plus the cumulative row
+public class GpaDAO {
+    private static final int STUDENT_CHUNK = 500;
+
+    //Spring is January to May, Summer June and July, Fall August to December
+    private static final String TERM = """
+            YEAR(e.EnrollmentDate) * 10 + CASE WHEN MONTH(e.EnrollmentDate) <= 5 THEN 1 WHEN MONTH(e.EnrollmentDate) <= 7 THEN 2 ELSE 3 END""";
+
+    //The per-term rows, {} is replaced with an extra filter on g.StudentID or nothing
+    private static final String INSERT_TERMS = """
+            INSERT INTO StudentGpaSummary (StudentID, Term, GradedCredits, QualityPoints, Gpa)
+            SELECT StudentID, Term, SUM(Credits), SUM(Credits * Points), SUM(Credits * Points) * 1.0 / SUM(Credits)
+            FROM (
+                SELECT g.StudentID, %s AS Term, c.Credits, %s AS Points
+                FROM Grades g
+                JOIN Enrollments e ON e.StudentID = g.StudentID AND e.SectionID = g.SectionID
+                JOIN Sections s ON s.SectionID = g.SectionID
+                JOIN Course c ON c.CourseID = s.CourseID
+                WHERE g.FinalGrade IS NOT NULL {}
+            ) graded
+            WHERE Points IS NOT NULL
+            GROUP BY StudentID, Term
+            HAVING SUM(Credits) > 0
+            """.formatted(TERM, GradePoints.SqlCase("g.FinalGrade"));
+
+    //The cumulative rows are summed from the term rows just written
+    private static final String INSERT_CUMULATIVE = """
+            INSERT INTO StudentGpaSummary (StudentID, Term, GradedCredits, QualityPoints, Gpa)
+            SELECT StudentID, 0, SUM(GradedCredits), SUM(QualityPoints), SUM(QualityPoints) / SUM(GradedCredits)
+            FROM StudentGpaSummary
+            WHERE Term <> 0 {}
+            GROUP BY StudentID
+            """;
+
+
+    //Recomputes the whole table in one transaction, for a first fill or after grades were changed outside the app
+    public boolean rebuildAll() {
+        try (Connection conn = DatabaseUtil.GetStudentConnection(); Statement stmt = conn.createStatement()) {
+            conn.setAutoCommit(false);
+            stmt.executeUpdate("DELETE FROM StudentGpaSummary");
+            stmt.executeUpdate(INSERT_TERMS.replace("{}", ""));
+            stmt.executeUpdate(INSERT_CUMULATIVE.replace("{}", ""));
+            conn.commit();
+            return true;
+        }
+        catch (Exception e) {
+            e.printStackTrace(); //The pool rolls back the unfinished transaction
+            return false;
+        }
+    }
+
+
+    //Recomputes every row of the given students on the caller's connection, so it commits or rolls back with the grades
+    //Used when grades of many sections change at once, errors go to the caller
+    public void refreshStudents(Connection conn, int[] studentIds) throws Exception {
+        int[] ids = Arrays.stream(studentIds).distinct().toArray();
+        for (int from = 0; from < ids.length; from += STUDENT_CHUNK) {
+            int[] chunk = Arrays.copyOfRange(ids, from, Math.min(ids.length, from + STUDENT_CHUNK));
+            String in = DatabaseUtil.Placeholders(chunk.length);
+            executeForStudents(conn, "DELETE FROM StudentGpaSummary WHERE StudentID IN (" + in + ")", chunk);
+            executeForStudents(conn, INSERT_TERMS.replace("{}", "AND g.StudentID IN (" + in + ")"), chunk);
+            executeForStudents(conn, INSERT_CUMULATIVE.replace("{}", "AND StudentID IN (" + in + ")"), chunk);
+        }
+    }
+
+
+    //The term a student took the section in and the final grade the summary counted for it
+    public record Counted(int term, String finalGrade) {
+    }
+
+
+    //The term and final grade of every enrollment in the section, or only the student's when studentId is not null
+    //Read on the caller's connection before the grades are written or the enrollment goes away, keyed by StudentID
+    public Map<Integer, Counted> getCounted(Connection conn, int sectionId, Integer studentId) throws Exception {
+        String sql = "SELECT e.StudentID, " + TERM + " AS Term, g.FinalGrade FROM Enrollments e "
+                + "LEFT JOIN Grades g ON g.StudentID = e.StudentID AND g.SectionID = e.SectionID WHERE e.SectionID = ?"
+                + (studentId != null ? " AND e.StudentID = ?" : "");
+        Map<Integer, Counted> counted = new HashMap<>();
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, sectionId);
+            if (studentId != null) {
+                stmt.setInt(2, studentId);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    counted.put(rs.getInt("StudentID"), new Counted(rs.getInt("Term"), rs.getString("FinalGrade")));
+                }
+            }
+        }
+        return counted;
+    }
+
+
+    //Recomputes the summary of the students whose final grade in the section differs from what was counted
+    //after maps StudentID to the grade just saved, students missing from it kept their grade
+    //Only the term each student took the section in and their cumulative row (summed from the term rows) are rewritten,
+    //so saving a gradebook again with a few changed grades touches just those students
+    public void refreshChanged(Connection conn, Map<Integer, Counted> before, Map<Integer, String> after) throws Exception {
+        Map<Integer, List<Integer>> byTerm = new TreeMap<>();
+        for (Map.Entry<Integer, Counted> entry : before.entrySet()) {
+            Counted counted = entry.getValue();
+            if (after.containsKey(entry.getKey()) && !Objects.equals(counted.finalGrade(), after.get(entry.getKey()))) {
+                byTerm.computeIfAbsent(counted.term(), term -> new ArrayList<>()).add(entry.getKey());
+            }
+        }
+        refreshTerms(conn, byTerm);
+    }
+
+
+    //Recomputes the summary of the students whose graded enrollments were just removed (a drop or a deleted section)
+    public void refreshRemoved(Connection conn, Map<Integer, Counted> before) throws Exception {
+        Map<Integer, List<Integer>> byTerm = new TreeMap<>();
+        for (Map.Entry<Integer, Counted> entry : before.entrySet()) {
+            if (entry.getValue().finalGrade() != null) {
+                byTerm.computeIfAbsent(entry.getValue().term(), term -> new ArrayList<>()).add(entry.getKey());
+            }
+        }
+        refreshTerms(conn, byTerm);
+    }
+
+
+    //The student's GPA per term in term order, the cumulative row first, empty if nothing is graded yet
+    public List<TermGpa> getStudentGpa(int studentId) {
+        String sql = "SELECT StudentID, Term, GradedCredits, Gpa FROM StudentGpaSummary WHERE StudentID = ? ORDER BY Term";
+        List<TermGpa> terms = new ArrayList<>();
+        try (Connection conn = DatabaseUtil.GetStudentConnection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, studentId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    terms.add(new TermGpa(rs.getInt("StudentID"), rs.getInt("Term"), rs.getInt("GradedCredits"), rs.getDouble("Gpa")));
+                }
+            }
+        }
+        catch (Exception e) {
+            e.printStackTrace();
+        }
+        return terms;
+    }
+
+
+    //Students whose GPA for the term (TermGpa.CUMULATIVE for the overall GPA) is in [minGpa, maxGpa), best first
+    //Only students with at least minCredits graded credits are included
+    //Reads the (Term, Gpa) index, no grades are touched
+    public List<StudentGpa> getStudentsByGpa(int term, double minGpa, double maxGpa, int minCredits) {
+        String sql = """
+            SELECT g.StudentID, st.FullName, st.Email, g.GradedCredits, g.Gpa
+            FROM StudentGpaSummary g
+            JOIN Students st ON st.StudentID = g.StudentID
+            WHERE g.Term = ? AND g.Gpa >= ? AND g.Gpa < ? AND g.GradedCredits >= ?
+            ORDER BY g.Gpa DESC, st.FullName
+            """;
+        List<StudentGpa> students = new ArrayList<>();
+        try (Connection conn = DatabaseUtil.GetStudentConnection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, term);
+            stmt.setDouble(2, minGpa);
+            stmt.setDouble(3, maxGpa);
+            stmt.setInt(4, minCredits);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    students.add(new StudentGpa(rs.getInt("StudentID"), rs.getString("FullName"), rs.getString("Email"),
+                            rs.getInt("GradedCredits"), rs.getDouble("Gpa")));
+                }
+            }
+        }
+        catch (Exception e) {
+            e.printStackTrace();
+        }
+        return students;
+    }
+
+
+    //The most recent term anyone has a graded course in, or TermGpa.CUMULATIVE when nothing is graded
+    public int getLatestTerm() {
+        String sql = "SELECT MAX(Term) FROM StudentGpaSummary";
+        try (Connection conn = DatabaseUtil.GetStudentConnection(); PreparedStatement stmt = conn.prepareStatement(sql); ResultSet rs = stmt.executeQuery()) {
+            if (rs.next()) {
+                return rs.getInt(1);
+            }
+        }
+        catch (Exception e) {
+            e.printStackTrace();
+        }
+        return TermGpa.CUMULATIVE;
+    }
+
+
+    //Rewrites the given term row and the cumulative row of each student, students grouped by term
+    private void refreshTerms(Connection conn, Map<Integer, List<Integer>> byTerm) throws Exception {
+        for (Map.Entry<Integer, List<Integer>> group : byTerm.entrySet()) {
+            int term = group.getKey();
+            int[] ids = group.getValue().stream().mapToInt(Integer::intValue).toArray();
+            for (int from = 0; from < ids.length; from += STUDENT_CHUNK) {
+                int[] chunk = Arrays.copyOfRange(ids, from, Math.min(ids.length, from + STUDENT_CHUNK));
+                String in = DatabaseUtil.Placeholders(chunk.length);
+                executeForStudents(conn, "DELETE FROM StudentGpaSummary WHERE StudentID IN (" + in + ") AND Term IN (0, ?)", chunk, term);
+                executeForStudents(conn, INSERT_TERMS.replace("{}", "AND g.StudentID IN (" + in + ") AND " + TERM + " = ?"), chunk, term);
+                executeForStudents(conn, INSERT_CUMULATIVE.replace("{}", "AND StudentID IN (" + in + ")"), chunk);
+            }
+        }
+    }
+
+
+    //The student IDs are bound first, then the extra parameters
+    private void executeForStudents(Connection conn, String sql, int[] studentIds, int... extra) throws Exception {
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < studentIds.length; i++) {
+                stmt.setInt(i + 1, studentIds[i]);
+            }
+            for (int i = 0; i < extra.length; i++) {
+                stmt.setInt(studentIds.length + i + 1, extra[i]);
+            }
+            stmt.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package edu.univ.erp.data;
+
+import java.util.Arrays;
+
+//The component scores of many sections held column-wise in primitive arrays, rows grouped by section
+//Filled by AdminDAO.GetGradeColumns, so a report over every section is a few arrays instead of a record per student
+//Section s owns rows sectionStart(s) to sectionStart(s + 1)
+public final class GradeColumns {
+    private int rows;
+    private int[] studentIds;
+    private String[] finalGrades; //The letter grade stored now
+    private double[] quiz;
+    private double[] midterm;
+    private double[] finals;
+
+    private int sections;
+    private int[] sectionStarts; //One extra slot, sectionStarts[sections] == rows
+    private int[] sectionIds;
+    private String[] courseCodes;
+    private String[] sectionNumbers;
+
+    public GradeColumns(int expectedRows) {
+        int capacity = Math.max(16, expectedRows);
+        studentIds = new int[capacity];
+        finalGrades = new String[capacity];
+        quiz = new double[capacity];
+        midterm = new double[capacity];
+        finals = new double[capacity];
+        sectionStarts = new int[17];
+        sectionIds = new int[16];
+        courseCodes = new String[16];
+        sectionNumbers = new String[16];
+    }
+
+
+    //Rows must arrive grouped by section, a new section ID starts a new section
+    public void add(int sectionId, String courseCode, String sectionNumber, int studentId, String finalGrade, double quizScore, double midtermScore, double finalScore) {
+        if (sections == 0 || sectionIds[sections - 1] != sectionId) {
+            if (sections == sectionIds.length) {
+                int capacity = sections * 2;
+                sectionIds = Arrays.copyOf(sectionIds, capacity);
+                courseCodes = Arrays.copyOf(courseCodes, capacity);
+                sectionNumbers = Arrays.copyOf(sectionNumbers, capacity);
+                sectionStarts = Arrays.copyOf(sectionStarts, capacity + 1);
+            }
+            sectionIds[sections] = sectionId;
+            courseCodes[sections] = courseCode;
+            sectionNumbers[sections] = sectionNumber;
+            sectionStarts[sections] = rows;
+            sections++;
+        }
+        if (rows == quiz.length) {
+            int capacity = rows * 2;
+            studentIds = Arrays.copyOf(studentIds, capacity);
+            finalGrades = Arrays.copyOf(finalGrades, capacity);
+            quiz = Arrays.copyOf(quiz, capacity);
+            midterm = Arrays.copyOf(midterm, capacity);
+            finals = Arrays.copyOf(finals, capacity);
+        }
+        studentIds[rows] = studentId;
+        finalGrades[rows] = finalGrade;
+        quiz[rows] = quizScore;
+        midterm[rows] = midtermScore;
+        finals[rows] = finalScore;
+        rows++;
+        sectionStarts[sections] = rows;
+    }
+
+
+    public int rowCount() {
+        return rows;
+    }
+
+    public int sectionCount() {
+        return sections;
+    }
+
+    public int studentId(int row) {
+        return studentIds[row];
+    }
+
+    public String finalGrade(int row) {
+        return finalGrades[row];
+    }
+
+    //The arrays may be longer than rowCount(), only the first rowCount() entries are rows
+    public double[] quizScores() {
+        return quiz;
+    }
+
+    public double[] midtermScores() {
+        return midterm;
+    }
+
+    public double[] finalScores() {
+        return finals;
+    }
+
+    public int sectionStart(int section) {
+        return sectionStarts[section];
+    }
+
+    public int sectionId(int section) {
+        return sectionIds[section];
+    }
+
+    public String courseCode(int section) {
+        return courseCodes[section];
+    }
+
+    public String sectionNumber(int section) {
+        return sectionNumbers[section];
+    }
+}
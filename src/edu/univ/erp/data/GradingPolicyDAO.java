@@ -0,0 +1,187 @@
+package edu.univ.erp.data;
+
+import edu.univ.erp.domain.GradingPolicy;
+import edu.univ.erp.util.DatabaseUtil;
+import edu.univ.erp.util.IntObjectMap;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+//This class handles the GradingPolicies table in the StudentDB
+//The table is small and read on every grade save, so the whole of it is loaded once into a process-wide snapshot
+//that already answers "which policy does section X use" with two int lookups
+//Saving a policy bumps the CatalogVersion setting, the same token the course catalog follows, so every process
+//reloads the policies (and picks up new sections of a course with a policy) when it changes
+public class GradingPolicyDAO {
+
+    //Section policies, course policies, and the course of every section (only read when course policies exist)
+    private record Snapshot(String version, IntObjectMap<GradingPolicy> bySection, IntObjectMap<GradingPolicy> byCourse,
+                            IntObjectMap<Integer> courseOfSection, List<GradingPolicy> all) {}
+
+    private static volatile Snapshot Cached;
+    private static final Object LoadLock = new Object();
+
+    private final SettingsDAO settingsDAO = new SettingsDAO();
+
+
+    //The policy for the section: its own, else its course's, else GradingPolicy.DEFAULT
+    public GradingPolicy getPolicyForSection(int sectionId) {
+        Snapshot snapshot = getSnapshot();
+        GradingPolicy policy = snapshot.bySection().get(sectionId);
+        if (policy != null) {
+            return policy;
+        }
+        Integer courseId = snapshot.courseOfSection().get(sectionId);
+        if (courseId != null) {
+            policy = snapshot.byCourse().get(courseId);
+        }
+        return policy != null ? policy : GradingPolicy.DEFAULT;
+    }
+
+
+    public List<GradingPolicy> getAllPolicies() {
+        return getSnapshot().all();
+    }
+
+
+    //Replaces the policy of the section (sectionId set) or of the course (only courseId set)
+    //Returns the new PolicyID, -1 on failure
+    public int savePolicy(GradingPolicy policy) {
+        String deleteSql = policy.sectionId() != null
+                ? "DELETE FROM GradingPolicies WHERE SectionID = ?"
+                : "DELETE FROM GradingPolicies WHERE CourseID = ? AND SectionID IS NULL";
+        String insertSql = """
+            INSERT INTO GradingPolicies (CourseID, SectionID, QuizWeight, MidtermWeight, FinalWeight, Thresholds, CurveMode)
+            VALUES (?, ?, ?, ?, ?, ?, ?)
+            """;
+        int policyId = -1;
+        try (Connection conn = DatabaseUtil.GetStudentConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement delete = conn.prepareStatement(deleteSql)) {
+                delete.setInt(1, policy.sectionId() != null ? policy.sectionId() : policy.courseId());
+                delete.executeUpdate();
+            }
+            try (PreparedStatement insert = conn.prepareStatement(insertSql, Statement.RETURN_GENERATED_KEYS)) {
+                insert.setObject(1, policy.courseId());
+                insert.setObject(2, policy.sectionId());
+                insert.setDouble(3, policy.quizWeight());
+                insert.setDouble(4, policy.midtermWeight());
+                insert.setDouble(5, policy.finalWeight());
+                insert.setString(6, policy.thresholds());
+                insert.setString(7, policy.curve().name());
+                insert.executeUpdate();
+                try (ResultSet keys = insert.getGeneratedKeys()) {
+                    if (keys.next()) {
+                        policyId = keys.getInt(1);
+                    }
+                }
+            }
+            conn.commit();
+        }
+        catch (Exception e) {
+            e.printStackTrace(); //The pool rolls back the unfinished transaction
+            return -1;
+        }
+        policiesChanged();
+        return policyId;
+    }
+
+
+    //Removes the policy, the section or course goes back to the next policy up
+    public boolean deletePolicy(int policyId) {
+        String sql = "DELETE FROM GradingPolicies WHERE PolicyID = ?";
+        try (Connection conn = DatabaseUtil.GetStudentConnection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, policyId);
+            if (stmt.executeUpdate() == 0) {
+                return false;
+            }
+        }
+        catch (Exception e) {
+            e.printStackTrace();
+            return false;
+        }
+        policiesChanged();
+        return true;
+    }
+
+
+    private void policiesChanged() {
+        Cached = null;
+        settingsDAO.BumpCatalogVersion();
+    }
+
+
+    //Reloads when the catalog version has moved on, on a failed load the previous snapshot (or none) is kept
+    private Snapshot getSnapshot() {
+        String version = settingsDAO.GetCatalogVersion();
+        Snapshot current = Cached;
+        if (current != null && current.version().equals(version)) {
+            return current;
+        }
+        synchronized (LoadLock) {
+            current = Cached;
+            if (current != null && current.version().equals(version)) {
+                return current;
+            }
+            Snapshot loaded = load(version);
+            if (loaded == null) {
+                if (current != null) {
+                    return current;
+                }
+                //Nothing to fall back on, every section uses the default until the version moves on
+                loaded = new Snapshot(version, new IntObjectMap<>(0), new IntObjectMap<>(0), new IntObjectMap<>(0), List.of());
+            }
+            Cached = loaded;
+            return loaded;
+        }
+    }
+
+
+    private Snapshot load(String version) {
+        String policySql = "SELECT PolicyID, CourseID, SectionID, QuizWeight, MidtermWeight, FinalWeight, Thresholds, CurveMode FROM GradingPolicies ORDER BY PolicyID";
+        try (Connection conn = DatabaseUtil.GetStudentConnection()) {
+            List<GradingPolicy> all = new ArrayList<>();
+            try (PreparedStatement stmt = conn.prepareStatement(policySql); ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    all.add(new GradingPolicy(
+                            rs.getInt("PolicyID"),
+                            rs.getObject("CourseID", Integer.class),
+                            rs.getObject("SectionID", Integer.class),
+                            rs.getDouble("QuizWeight"),
+                            rs.getDouble("MidtermWeight"),
+                            rs.getDouble("FinalWeight"),
+                            rs.getString("Thresholds"),
+                            GradingPolicy.Curve.fromName(rs.getString("CurveMode"))));
+                }
+            }
+            IntObjectMap<GradingPolicy> bySection = new IntObjectMap<>(all.size());
+            IntObjectMap<GradingPolicy> byCourse = new IntObjectMap<>(all.size());
+            for (GradingPolicy policy : all) {
+                if (policy.sectionId() != null) {
+                    bySection.put(policy.sectionId(), policy);
+                }
+                else if (policy.courseId() != null) {
+                    byCourse.put(policy.courseId(), policy);
+                }
+            }
+            IntObjectMap<Integer> courseOfSection = new IntObjectMap<>(0);
+            if (byCourse.size() > 0) {
+                try (PreparedStatement stmt = conn.prepareStatement("SELECT SectionID, CourseID FROM Sections"); ResultSet rs = stmt.executeQuery()) {
+                    courseOfSection = new IntObjectMap<>(256);
+                    while (rs.next()) {
+                        courseOfSection.put(rs.getInt(1), rs.getInt(2));
+                    }
+                }
+            }
+            return new Snapshot(version, bySection, byCourse, courseOfSection, List.copyOf(all));
+        }
+        catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+}
@@ -8,11 +8,19 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 //This class handles the Instructor action for the Instruction Table in StudentDB
 //This is mostly used in the Instructor pages of the frontend thus the name
 public class InstructorDAO {
+    //Rows sent per executeBatch() when saving a whole section
+    private static final int GRADE_BATCH_SIZE = 500;
+
+    //The GPA summary of every student whose grade is saved is refreshed in the same transaction
+    private final GpaDAO gpaDAO = new GpaDAO();
+
     //This method basically fetches all the sections that are assigned to a specific instructor
     public List<SectionView> getAssignedSections(int instructorId) {
         List<SectionView> Sections = new ArrayList<>();
@@ -36,7 +44,8 @@ public class InstructorDAO {
                             Result.getString("TimeSlot"),
                             Result.getInt("EnrolledCount"),
                             Result.getInt("Capacity"),
-                            false // Not relevant for instructor(isEnrolled)
+                            false, // Not relevant for instructor(isEnrolled)
+                            false // Nor is a clash
                     ));
                 }
             }
@@ -49,9 +58,39 @@ public class InstructorDAO {
     }
 
 
+    //True if the section is taught by the instructor, false if it is not, does not exist or the check failed
+    public boolean isAssigned(int instructorId, int sectionId) {
+        String SQL = "SELECT 1 FROM Sections WHERE SectionID = ? AND InstructorID = ?";
+        try (Connection StudentDBConnection = DatabaseUtil.GetStudentConnection(); PreparedStatement stmt = StudentDBConnection.prepareStatement(SQL)) {
+            stmt.setInt(1, sectionId);
+            stmt.setInt(2, instructorId);
+            try (ResultSet Result = stmt.executeQuery()) {
+                return Result.next();
+            }
+        }
+        catch (Exception e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+
     //This method basically fetches the gradebook of an entire section
     public List<GradebookEntry> getGradebook(int sectionId) {
         List<GradebookEntry> entries = new ArrayList<>();
+        try {
+            streamGradebook(sectionId, entries::add);
+        }
+        catch (Exception e) {
+            e.printStackTrace();
+        }
+        return entries;
+    }
+
+
+    //Same rows as getGradebook, handed to the consumer one at a time straight off a forward-only ResultSet
+    //Used by the CSV export so a large section is never held in memory, errors go to the caller
+    public void streamGradebook(int sectionId, RowConsumer<GradebookEntry> consumer) throws Exception {
         // This query joins Enrollments, Students, and Grades
         String sql = """
             SELECT 
@@ -61,11 +100,12 @@ public class InstructorDAO {
             LEFT JOIN Grades g ON e.StudentID = g.StudentID AND e.SectionID = g.SectionID
             WHERE e.SectionID = ?
             """;
-        try (Connection conn = DatabaseUtil.GetStudentConnection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Connection conn = DatabaseUtil.GetStudentConnection(); PreparedStatement stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            stmt.setFetchSize(DatabaseUtil.STREAM_FETCH_SIZE);
             stmt.setInt(1, sectionId);
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
-                    entries.add(new GradebookEntry(
+                    consumer.accept(new GradebookEntry(
                             rs.getInt("StudentID"),
                             rs.getString("FullName"),
                             rs.getDouble("QuizScore"),
@@ -76,14 +116,11 @@ public class InstructorDAO {
                 }
             }
         }
-        catch (Exception e) {
-            e.printStackTrace();
-        }
-        return entries;
     }
 
 
     //This inserts the grades of student into the database
+    //The student's GPA summary is recomputed before the commit if the final grade changed, so the two never disagree
     public boolean updateGrade(int studentId, int sectionId, double quiz, double midterm, double finalScore, String finalGrade) {
         // This query tries to insert. If it fails (due to UNIQUE key), it updates instead.
         String sql = """
@@ -96,15 +133,25 @@ public class InstructorDAO {
                 FinalGrade = VALUES(FinalGrade)
             """;
         //This query inserts into the grades table the grades of Quiz, Midterm and EndTerm as well as the FinalGrade(A,B,C,D) and the finalScore(Numerical value)
+        //A failure rolls back when the pool takes the connection back
         try (Connection conn = DatabaseUtil.GetStudentConnection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
+            conn.setAutoCommit(false);
             stmt.setInt(1, studentId);
             stmt.setInt(2, sectionId);
             stmt.setDouble(3, quiz);
             stmt.setDouble(4, midterm);
             stmt.setDouble(5, finalScore);
             stmt.setString(6, finalGrade);
+            Map<Integer, GpaDAO.Counted> counted = gpaDAO.getCounted(conn, sectionId, studentId);
             int rowsAffected = stmt.executeUpdate();
-            return rowsAffected > 0;
+            if (rowsAffected == 0) {
+                return false;
+            }
+            Map<Integer, String> saved = new HashMap<>();
+            saved.put(studentId, finalGrade);
+            gpaDAO.refreshChanged(conn, counted, saved);
+            conn.commit();
+            return true;
         }
         catch (Exception e) {
             e.printStackTrace();
@@ -113,6 +160,78 @@ public class InstructorDAO {
     }
 
 
+    //This saves the grades of a whole section in one transaction on one connection
+    //The rows are sent as JDBC batches, on the MySQL profile rewriteBatchedStatements=true (on its URLs in DatabaseProfile)
+    //makes the driver turn each batch into a multi-row INSERT ... ON DUPLICATE KEY UPDATE, so a full section is one or a few
+    //round trips; the embedded H2 profile has no such rewrite and runs the batched rows one by one
+    //Either every row is saved or none is, a failure half way no longer leaves half the section graded
+    //The GPA summary of the students whose final grade changed is recomputed in the same transaction, the grades the
+    //summary counted are read first so an unchanged gradebook saved again costs one extra read
+    public boolean updateGrades(int sectionId, List<GradebookEntry> entries) {
+        String sql = """
+            INSERT INTO Grades (StudentID, SectionID, QuizScore, MidtermScore, FinalScore, FinalGrade)
+            VALUES (?, ?, ?, ?, ?, ?)
+            ON DUPLICATE KEY UPDATE
+                QuizScore = VALUES(QuizScore),
+                MidtermScore = VALUES(MidtermScore),
+                FinalScore = VALUES(FinalScore),
+                FinalGrade = VALUES(FinalGrade)
+            """;
+        Connection conn = null;
+        try {
+            conn = DatabaseUtil.GetStudentConnection();
+            conn.setAutoCommit(false);
+            Map<Integer, GpaDAO.Counted> counted = gpaDAO.getCounted(conn, sectionId, null);
+            Map<Integer, String> saved = new HashMap<>();
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                int pending = 0;
+                for (GradebookEntry entry : entries) {
+                    stmt.setInt(1, entry.studentId());
+                    stmt.setInt(2, sectionId);
+                    stmt.setDouble(3, entry.quizScore());
+                    stmt.setDouble(4, entry.midtermScore());
+                    stmt.setDouble(5, entry.finalScore());
+                    stmt.setString(6, entry.finalGrade());
+                    stmt.addBatch();
+                    saved.put(entry.studentId(), entry.finalGrade());
+                    if (++pending == GRADE_BATCH_SIZE) {
+                        stmt.executeBatch();
+                        pending = 0;
+                    }
+                }
+                if (pending > 0) {
+                    stmt.executeBatch();
+                }
+            }
+            gpaDAO.refreshChanged(conn, counted, saved);
+            conn.commit();
+            return true;
+        }
+        catch (Exception e) {
+            try {
+                if (conn != null) {
+                    conn.rollback();
+                }
+            }
+            catch (Exception re) {
+                re.printStackTrace();
+            }
+            e.printStackTrace();
+            return false;
+        }
+        finally {
+            try {
+                if (conn != null) {
+                    conn.close();
+                }
+            }
+            catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+
     //This method finds the instructorID in the instructors table using the UserID
     //InstructorID is in the instructor table while the UserID is in Users table
     public int getInstructorIdFromUserId(int userId) {
@@ -0,0 +1,216 @@
+package edu.univ.erp.data;
+
+import edu.univ.erp.domain.Notification;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+//This class keeps the most recent notifications of this process in memory
+//One background poller per process asks the database only for rows with an ID above the last one it has seen,
+//so however many panels look at notifications the Notifications table sees one cheap primary key range query per interval
+//Notifications added in this process are put in straight away by NotificationDAO.AddNotification
+//Each client keeps its own last-seen ID, and "unread since X" is answered from memory
+//A client of the API server polls the server's NotificationCenter instead of the table, see UseSource
+public final class NotificationCenter {
+    private static final int CAPACITY = 64;
+    private static final long POLL_SECONDS = 5;
+
+    private static final Object Lock = new Object(); //Guards the buffer and the cursors
+    private static final Notification[] Items = new Notification[CAPACITY]; //Ascending by ID, the oldest is dropped when full
+    private static int Count;
+    private static int PolledThrough; //Highest ID the poller has read, rows added by this process do not move it
+    private static boolean Loaded;
+    private static final List<Runnable> ChangeListeners = new CopyOnWriteArrayList<>();
+    private static ScheduledExecutorService Poller;
+
+    private static volatile NotificationSource Source = new NotificationDAO();
+
+    private NotificationCenter() {}
+
+
+    //Fills the buffer with the latest notifications and starts the poller, later calls do nothing
+    public static synchronized void Start() {
+        if (Poller != null) {
+            return;
+        }
+        Poller = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "notification-poller");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Poller.scheduleWithFixedDelay(NotificationCenter::Poll, 0, POLL_SECONDS, TimeUnit.SECONDS);
+    }
+
+
+    //Replaces the database as the place new notifications are read from, called before Start
+    public static void UseSource(NotificationSource NewSource) {
+        Source = NewSource;
+    }
+
+
+    public static synchronized void Stop() {
+        if (Poller != null) {
+            Poller.shutdownNow();
+            Poller = null;
+        }
+    }
+
+
+    //Listeners run on the poller (or the adding) thread, so UI listeners should hop onto the EDT themselves
+    public static void AddChangeListener(Runnable Listener) {
+        ChangeListeners.add(Listener);
+    }
+
+    public static void RemoveChangeListener(Runnable Listener) {
+        ChangeListeners.remove(Listener);
+    }
+
+
+    //The newest notifications first, at most Limit of them
+    public static List<Notification> Recent(int Limit) {
+        synchronized (Lock) {
+            List<Notification> Newest = new ArrayList<>(Math.min(Limit, Count));
+            for (int i = Count - 1; i >= 0 && Newest.size() < Limit; i--) {
+                Newest.add(Items[i]);
+            }
+            return Newest;
+        }
+    }
+
+
+    //How many held notifications have an ID above the client's cursor
+    public static int UnreadCount(int LastSeenID) {
+        synchronized (Lock) {
+            return Count - FirstAbove(LastSeenID);
+        }
+    }
+
+
+    //The held notifications with an ID above the given one, oldest first, at most Limit of them
+    //Lets the API server answer its clients' polls from memory
+    public static List<Notification> After(int ID, int Limit) {
+        synchronized (Lock) {
+            int First = FirstAbove(ID);
+            int End = Math.min(Count, First + Limit);
+            List<Notification> Fresh = new ArrayList<>(End - First);
+            for (int i = First; i < End; i++) {
+                Fresh.add(Items[i]);
+            }
+            return Fresh;
+        }
+    }
+
+
+    //The ID a client should store once it has shown everything, 0 when there are no notifications
+    public static int LatestID() {
+        synchronized (Lock) {
+            return Count == 0 ? 0 : Items[Count - 1].id();
+        }
+    }
+
+
+    //Called by NotificationDAO.AddNotification after the insert
+    static void Added(Notification Item) {
+        boolean Changed;
+        synchronized (Lock) {
+            Changed = Insert(Item);
+        }
+        if (Changed) {
+            NotifyListeners();
+        }
+    }
+
+
+    //Reads the rows added since the last poll, anything this process added itself is already held and is skipped
+    static void Poll() {
+        try {
+            boolean Changed = false;
+            if (!Loaded) {
+                List<Notification> Latest = Source.GetLatestNotifications(CAPACITY);
+                synchronized (Lock) {
+                    for (Notification Item : Latest) {
+                        Changed |= Insert(Item);
+                        PolledThrough = Math.max(PolledThrough, Item.id());
+                    }
+                    Loaded = true;
+                }
+            }
+            else {
+                List<Notification> Fresh;
+                do {
+                    int After;
+                    synchronized (Lock) {
+                        After = PolledThrough;
+                    }
+                    Fresh = Source.GetNotificationsAfter(After, CAPACITY);
+                    synchronized (Lock) {
+                        for (Notification Item : Fresh) {
+                            Changed |= Insert(Item);
+                            PolledThrough = Math.max(PolledThrough, Item.id());
+                        }
+                    }
+                } while (Fresh.size() == CAPACITY);
+            }
+            if (Changed) {
+                NotifyListeners();
+            }
+        }
+        catch (Exception e) {
+            e.printStackTrace(); //Tried again on the next poll
+        }
+    }
+
+
+    //Puts the notification in ID order, returns false if it is already held or older than everything in a full buffer
+    private static boolean Insert(Notification Item) {
+        int Index = FirstAbove(Item.id() - 1);
+        if (Index < Count && Items[Index].id() == Item.id()) {
+            return false;
+        }
+        if (Count == CAPACITY) {
+            if (Index == 0) {
+                return false;
+            }
+            System.arraycopy(Items, 1, Items, 0, Index - 1); //Drop the oldest
+            Items[Index - 1] = Item;
+            return true;
+        }
+        System.arraycopy(Items, Index, Items, Index + 1, Count - Index);
+        Items[Index] = Item;
+        Count++;
+        return true;
+    }
+
+
+    //Index of the first held notification with an ID above the given one
+    private static int FirstAbove(int ID) {
+        int Low = 0;
+        int High = Count;
+        while (Low < High) {
+            int Mid = (Low + High) >>> 1;
+            if (Items[Mid].id() <= ID) {
+                Low = Mid + 1;
+            }
+            else {
+                High = Mid;
+            }
+        }
+        return Low;
+    }
+
+
+    private static void NotifyListeners() {
+        for (Runnable Listener : ChangeListeners) {
+            try {
+                Listener.run();
+            }
+            catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -1,43 +1,138 @@
 package edu.univ.erp.data;
 
+import edu.univ.erp.domain.Notification;
 import edu.univ.erp.util.DatabaseUtil;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
 //This class handles all the data related to the notifications table in the Notifications table
-public class NotificationDAO {
+//Clients read notifications from NotificationCenter, which keeps the recent ones in memory and uses the queries below
+public class NotificationDAO implements NotificationSource {
+    private static final int RECENT_LIMIT = 10;
+
     //This method is used to add notification to the notification table in StudentDB
-    public void AddNotification(String Message){
+    //Waits for the insert, use QueueNotification when the caller does not need the ID
+    //The new row is handed to NotificationCenter straight away, so this process shows it without waiting for a poll
+    //Returns the new NotificationID, or -1 if it could not be added
+    public int AddNotification(String Message){
         String SQL = "INSERT INTO Notifications (Message) VALUES (?)";
-        try(Connection StudentDBConnection = DatabaseUtil.GetStudentConnection(); PreparedStatement Statement = StudentDBConnection.prepareStatement(SQL)){
+        try(Connection StudentDBConnection = DatabaseUtil.GetStudentConnection(); PreparedStatement Statement = StudentDBConnection.prepareStatement(SQL, java.sql.Statement.RETURN_GENERATED_KEYS)){
             Statement.setString(1, Message);
             Statement.executeUpdate();
+            try(ResultSet Keys = Statement.getGeneratedKeys()){
+                if(Keys.next()){
+                    int NotificationID = Keys.getInt(1);
+                    NotificationCenter.Added(new Notification(NotificationID, Message, LocalDateTime.now()));
+                    return NotificationID;
+                }
+            }
         }
         catch (Exception e){
             e.printStackTrace();
         }
+        return -1;
     }
 
 
-    //This method gets the 10 most recent notifications to display on the notifications panel
-    //It adds the messages from the database to the String ArrayList in decreasing order of UserID
-    //The higher the ID the more late is the entry and thus the later the message
-    public List<String> GetRecentNotifications(){
-        List<String> Messages = new ArrayList<>();
-        String SQL = "SELECT Message, CreatedAt FROM Notifications ORDER BY NotificationID DESC LIMIT 10";
-        try(Connection StudentDBConnection = DatabaseUtil.GetStudentConnection(); PreparedStatement Statement = StudentDBConnection.prepareStatement(SQL); ResultSet Result = Statement.executeQuery()){
-            while(Result.next()){
-                String Message = Result.getString("Message");
-                String Time = Result.getTimestamp("CreatedAt").toString().substring(0,16); //Cut off the seconds
-                Messages.add("["+Time+"]"+ Message);
+    //Hands the message to NotificationWriter, which inserts it in the background with any others queued meanwhile
+    //Returns false if the queue dropped it
+    public boolean QueueNotification(String Message){
+        return NotificationWriter.Enqueue(Message);
+    }
+
+
+    //Inserts the messages as one batch in one transaction, used by NotificationWriter
+    //The new rows are handed to NotificationCenter like AddNotification does, if the driver did not return
+    //every generated key the center is asked to poll instead
+    //Returns false if nothing was written
+    public boolean AddNotifications(List<String> Messages){
+        String SQL = "INSERT INTO Notifications (Message) VALUES (?)";
+        List<Notification> Written = new ArrayList<>(Messages.size());
+        //A failed batch is rolled back by the pool when the connection is returned
+        try(Connection StudentDBConnection = DatabaseUtil.GetStudentConnection(); PreparedStatement Statement = StudentDBConnection.prepareStatement(SQL, java.sql.Statement.RETURN_GENERATED_KEYS)){
+            StudentDBConnection.setAutoCommit(false);
+            for(String Message : Messages){
+                Statement.setString(1, Message);
+                Statement.addBatch();
+            }
+            Statement.executeBatch();
+            LocalDateTime Now = LocalDateTime.now();
+            try(ResultSet Keys = Statement.getGeneratedKeys()){
+                while(Keys.next() && Written.size() < Messages.size()){
+                    Written.add(new Notification(Keys.getInt(1), Messages.get(Written.size()), Now));
+                }
             }
+            StudentDBConnection.commit();
         }
         catch (Exception e){
             e.printStackTrace();
+            return false;
+        }
+        if(Written.size() == Messages.size()){
+            for(Notification Item : Written){
+                NotificationCenter.Added(Item);
+            }
+        }
+        else {
+            NotificationCenter.Poll();
+        }
+        return true;
+    }
+
+
+    //This method gets the 10 most recent notifications to display on the notifications panel
+    //Served from NotificationCenter's memory, newest first
+    public List<String> GetRecentNotifications(){
+        List<String> Messages = new ArrayList<>();
+        for(Notification Item : NotificationCenter.Recent(RECENT_LIMIT)){
+            Messages.add(Item.display());
         }
         return Messages;
     }
+
+
+    //The notifications with an ID above AfterID, oldest first, at most Limit of them
+    //A range scan on the primary key, when nothing is new it reads no rows at all
+    @Override
+    public List<Notification> GetNotificationsAfter(int AfterID, int Limit) throws Exception{
+        String SQL = "SELECT NotificationID, Message, CreatedAt FROM Notifications WHERE NotificationID > ? ORDER BY NotificationID LIMIT ?";
+        try(Connection StudentDBConnection = DatabaseUtil.GetStudentConnection(); PreparedStatement Statement = StudentDBConnection.prepareStatement(SQL)){
+            Statement.setInt(1, AfterID);
+            Statement.setInt(2, Limit);
+            return ReadNotifications(Statement);
+        }
+    }
+
+
+    //The newest Limit notifications, oldest first, used once to fill NotificationCenter when it starts
+    @Override
+    public List<Notification> GetLatestNotifications(int Limit) throws Exception{
+        String SQL = "SELECT NotificationID, Message, CreatedAt FROM Notifications ORDER BY NotificationID DESC LIMIT ?";
+        try(Connection StudentDBConnection = DatabaseUtil.GetStudentConnection(); PreparedStatement Statement = StudentDBConnection.prepareStatement(SQL)){
+            Statement.setInt(1, Limit);
+            List<Notification> Newest = ReadNotifications(Statement);
+            List<Notification> Oldest = new ArrayList<>(Newest.size());
+            for(int i = Newest.size() - 1; i >= 0; i--){
+                Oldest.add(Newest.get(i));
+            }
+            return Oldest;
+        }
+    }
+
+
+    private List<Notification> ReadNotifications(PreparedStatement Statement) throws Exception{
+        List<Notification> Items = new ArrayList<>();
+        try(ResultSet Result = Statement.executeQuery()){
+            while(Result.next()){
+                Timestamp CreatedAt = Result.getTimestamp("CreatedAt");
+                Items.add(new Notification(Result.getInt("NotificationID"), Result.getString("Message"), CreatedAt != null ? CreatedAt.toLocalDateTime() : null));
+            }
+        }
+        return Items;
+    }
 }
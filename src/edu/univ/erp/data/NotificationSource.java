@@ -0,0 +1,15 @@
+package edu.univ.erp.data;
+
+import edu.univ.erp.domain.Notification;
+
+import java.util.List;
+
+//Where NotificationCenter reads notifications from
+//NotificationDAO reads the Notifications table, a client of the API server reads the server's NotificationCenter instead
+public interface NotificationSource {
+    //The newest Limit notifications, oldest first
+    List<Notification> GetLatestNotifications(int Limit) throws Exception;
+
+    //The notifications with an ID above AfterID, oldest first, at most Limit of them
+    List<Notification> GetNotificationsAfter(int AfterID, int Limit) throws Exception;
+}
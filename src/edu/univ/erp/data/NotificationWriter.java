@@ -0,0 +1,200 @@
+package edu.univ.erp.data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+//Write-behind for notifications, so an admin operation does not pay for another connection and round trip
+//Messages go into a bounded queue, one background thread takes whatever has piled up and inserts it as a single batch
+//When the queue is full the policy decides: BLOCK waits for room, DROP loses the message and counts it
+//  -Derp.notifications.queueSize  (default 1024)
+//  -Derp.notifications.whenFull   block or drop (default block)
+//Shutdown() from the shutdown hook writes out whatever is still queued
+public final class NotificationWriter {
+    public enum FullPolicy {
+        BLOCK,
+        DROP;
+
+        //Falls back to BLOCK for unknown values, nothing is lost unless someone asks for it
+        public static FullPolicy fromName(String name) {
+            if (name == null) {
+                return BLOCK;
+            }
+            try {
+                return valueOf(name.trim().toUpperCase());
+            }
+            catch (IllegalArgumentException e) {
+                return BLOCK;
+            }
+        }
+    }
+
+    private static final Logger logger = Logger.getLogger(NotificationWriter.class.getName());
+
+    private static final int DEFAULT_QUEUE_SIZE = 1024;
+    private static final int MAX_BATCH = 100;
+    private static final long RETRY_DELAY_MILLIS = 1000;
+
+    private static final int QueueSize = QueueSizeSetting();
+    private static final FullPolicy Policy = FullPolicy.fromName(System.getProperty("erp.notifications.whenFull"));
+    private static final BlockingQueue<String> Queue = new ArrayBlockingQueue<>(QueueSize);
+    private static final AtomicLong Dropped = new AtomicLong();
+
+    private static final Object FlushLock = new Object(); //Guards Pending, Flush waits on it
+    private static int Pending; //Messages queued or being written, counted before they go in the queue
+    private static volatile boolean ShuttingDown;
+    private static volatile Thread Writer;
+
+    private static final NotificationDAO notificationDAO = new NotificationDAO();
+
+    private NotificationWriter() {}
+
+
+    //Queues the message, returns false if it was dropped because the queue was full or the writer has shut down
+    public static boolean Enqueue(String Message) {
+        if (ShuttingDown) {
+            logger.warning("Notification writer has shut down, dropped: " + Message);
+            Dropped.incrementAndGet();
+            return false;
+        }
+        EnsureStarted();
+        synchronized (FlushLock) {
+            Pending++;
+        }
+        boolean Queued;
+        if (Policy == FullPolicy.BLOCK) {
+            try {
+                Queue.put(Message);
+                Queued = true;
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                Queued = false;
+            }
+        }
+        else {
+            Queued = Queue.offer(Message);
+        }
+        if (!Queued) {
+            Written(1);
+            long Total = Dropped.incrementAndGet();
+            logger.warning("Notification queue full (" + QueueSize + "), dropped: " + Message + " (" + Total + " dropped so far)");
+        }
+        return Queued;
+    }
+
+
+    //Waits until everything queued before the call has been written, or the timeout runs out
+    //Returns false on timeout
+    public static boolean Flush(long Timeout, TimeUnit Unit) {
+        long Deadline = System.nanoTime() + Unit.toNanos(Timeout);
+        synchronized (FlushLock) {
+            while (Pending > 0) {
+                long Left = Deadline - System.nanoTime();
+                if (Left <= 0 || Writer == null || !Writer.isAlive()) {
+                    return false;
+                }
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(FlushLock, Left);
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+
+    //Stops taking new messages and writes out the queued ones, called from the shutdown hook
+    public static void Shutdown(long Timeout, TimeUnit Unit) {
+        ShuttingDown = true;
+        if (!Flush(Timeout, Unit)) {
+            logger.warning(QueuedCount() + " queued notifications were not written before shutdown");
+        }
+    }
+
+
+    public static int QueuedCount() {
+        return Queue.size();
+    }
+
+    public static long DroppedCount() {
+        return Dropped.get();
+    }
+
+
+    private static synchronized void EnsureStarted() {
+        if (Writer != null) {
+            return;
+        }
+        Writer = new Thread(NotificationWriter::WriteLoop, "notification-writer");
+        Writer.setDaemon(true); //The shutdown hook flushes, the thread itself must not keep the JVM alive
+        Writer.start();
+    }
+
+
+    private static void WriteLoop() {
+        List<String> Batch = new ArrayList<>(MAX_BATCH);
+        while (true) {
+            try {
+                Batch.add(Queue.take());
+                Queue.drainTo(Batch, MAX_BATCH - 1);
+                WriteBatch(Batch);
+            }
+            catch (InterruptedException e) {
+                return;
+            }
+            finally {
+                Written(Batch.size());
+                Batch.clear();
+            }
+        }
+    }
+
+
+    //One retry, a batch that fails twice is logged and given up so the queue keeps moving
+    private static void WriteBatch(List<String> Batch) throws InterruptedException {
+        if (notificationDAO.AddNotifications(Batch)) {
+            return;
+        }
+        Thread.sleep(RETRY_DELAY_MILLIS);
+        if (!notificationDAO.AddNotifications(Batch)) {
+            logger.severe("Could not write " + Batch.size() + " notifications, dropped: " + Batch);
+            Dropped.addAndGet(Batch.size());
+        }
+    }
+
+
+    private static void Written(int Count) {
+        synchronized (FlushLock) {
+            Pending -= Count;
+            if (Pending == 0) {
+                FlushLock.notifyAll();
+            }
+        }
+    }
+
+
+    private static int QueueSizeSetting() {
+        String value = System.getProperty("erp.notifications.queueSize");
+        if (value == null || value.isBlank()) {
+            return DEFAULT_QUEUE_SIZE;
+        }
+        try {
+            int size = Integer.parseInt(value.trim());
+            if (size > 0) {
+                return size;
+            }
+        }
+        catch (NumberFormatException ignored) {
+        }
+        logger.warning("erp.notifications.queueSize=" + value + " is not a positive number, using " + DEFAULT_QUEUE_SIZE);
+        return DEFAULT_QUEUE_SIZE;
+    }
+}
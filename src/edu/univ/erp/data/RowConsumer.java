@@ -0,0 +1,9 @@
+package edu.univ.erp.data;
+
+//Callback used by the streaming queries, called once per row while the ResultSet is still open
+//Rows are handed over one at a time and never collected, so exports run in constant memory
+//Anything thrown here stops the query and is passed up to the caller
+@FunctionalInterface
+public interface RowConsumer<T> {
+    void accept(T row) throws Exception;
+}
@@ -0,0 +1,186 @@
+package edu.univ.erp.data;
+
+import edu.univ.erp.domain.SeatChange;
+import edu.univ.erp.domain.SeatDelta;
+import edu.univ.erp.util.DatabaseUtil;
+import edu.univ.erp.util.IntObjectMap;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+//This class keeps one process-wide log of seat count changes for the open catalog views
+//Instead of re-running the catalog on every Refresh, a view remembers the version it has seen and polls for the changes after it
+//Registrations and drops in this process publish their section after the commit, its count is read back with one IN query on the next poll
+//Changes made by other processes are picked up from the CatalogDAO seat count overlay, which is re-read at most every couple of seconds
+public class SeatCountFeed {
+    private static final long SCAN_INTERVAL_MILLIS = 2_000;
+    private static final int MAX_LOG_SIZE = 4_096; //Older changes are dropped, a view that far behind reloads instead
+
+    private static final ReentrantLock Refreshing = new ReentrantLock(); //Held by the one caller running the refresh queries
+    private static final Object Lock = new Object(); //Guards everything below, never held during a query
+    private static final IntObjectMap<SeatChange> Latest = new IntObjectMap<>(256); //Last known count per section
+    private static final List<SeatChange> Log = new ArrayList<>(); //Ordered by version
+    private static long Version; //Version of the newest change
+    private static long TrimmedThrough; //Every change up to this version has been dropped from the log
+    private static long LastScanAt;
+    private static boolean Scanned; //False until the first scan has filled Latest
+    private static int[] Pending = new int[16]; //Sections published since the last poll
+    private static int PendingCount;
+
+    private final CatalogDAO catalogDAO = new CatalogDAO();
+
+
+    //Marks the section's seat count as changed, called after a registration or drop is committed
+    //Cheap on purpose, the count itself is read by the next poll
+    public static void Publish(int sectionId) {
+        synchronized (Lock) {
+            if (PendingCount == Pending.length) {
+                Pending = Arrays.copyOf(Pending, PendingCount * 2);
+            }
+            Pending[PendingCount++] = sectionId;
+        }
+    }
+
+
+    //The version a view should start from, taken before it loads the catalog
+    //A change that lands between this call and the catalog query is delivered again on the first poll, which is harmless
+    public long getCursor() {
+        boolean scanned;
+        synchronized (Lock) {
+            scanned = Scanned;
+        }
+        if (!scanned) {
+            refresh();
+        }
+        synchronized (Lock) {
+            return Version;
+        }
+    }
+
+
+    //Returns every change with a version after the cursor, oldest first
+    public SeatDelta getChangesSince(long cursor) {
+        refresh();
+        synchronized (Lock) {
+            if (cursor < TrimmedThrough) {
+                return new SeatDelta(List.of(), Version, true);
+            }
+            int from = firstAfter(cursor);
+            return new SeatDelta(List.copyOf(Log.subList(from, Log.size())), Version, false);
+        }
+    }
+
+
+    //Reads back the published sections and, every SCAN_INTERVAL_MILLIS, the whole seat count overlay
+    //Only counts that differ from the last known one become changes
+    //The queries run outside Lock so publishing and polling never wait on the database, only their results are merged under it
+    //One caller refreshes at a time so results are merged in the order they were read, a poll arriving meanwhile
+    //answers from what is already logged and gets the new changes on its next tick
+    private void refresh() {
+        if (!Refreshing.tryLock()) {
+            return;
+        }
+        try {
+            int[] sectionIds;
+            boolean scan;
+            long now = System.currentTimeMillis();
+            synchronized (Lock) {
+                sectionIds = Arrays.copyOf(Pending, PendingCount);
+                PendingCount = 0;
+                scan = !Scanned || now - LastScanAt >= SCAN_INTERVAL_MILLIS;
+            }
+            List<SeatChange> published = sectionIds.length > 0 ? loadPublished(sectionIds) : List.of();
+            CatalogDAO.SeatCounts seats = scan ? catalogDAO.getSeatCounts() : null;
+            synchronized (Lock) {
+                if (published == null) {
+                    for (int sectionId : sectionIds) {
+                        Publish(sectionId); //Retried on the next poll
+                    }
+                }
+                else {
+                    for (SeatChange change : published) {
+                        record(change.sectionId(), change.enrolled());
+                    }
+                }
+                if (scan) {
+                    if (seats.LoadedAt() > 0) {
+                        for (int i = 0; i < seats.SectionIds().length; i++) {
+                            record(seats.SectionIds()[i], seats.Enrolled()[i]);
+                        }
+                        Scanned = true;
+                    }
+                    LastScanAt = now;
+                }
+            }
+        }
+        finally {
+            Refreshing.unlock();
+        }
+    }
+
+
+    //One IN query for the sections published since the last poll, the counts come back unversioned
+    //Returns null on failure so they are retried
+    private List<SeatChange> loadPublished(int[] sectionIds) {
+        String sql = "SELECT SectionID, EnrolledCount FROM Sections WHERE SectionID IN (" + DatabaseUtil.Placeholders(sectionIds.length) + ")";
+        List<SeatChange> counts = new ArrayList<>(sectionIds.length);
+        try (Connection conn = DatabaseUtil.GetStudentConnection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < sectionIds.length; i++) {
+                stmt.setInt(i + 1, sectionIds[i]);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    counts.add(new SeatChange(rs.getInt("SectionID"), rs.getInt("EnrolledCount"), 0));
+                }
+            }
+            return counts;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+
+    //Logs a change when the count differs from the last known one
+    //Before the first scan every section is only remembered, the catalog a view has just loaded already shows those counts
+    private void record(int sectionId, int enrolled) {
+        SeatChange known = Latest.get(sectionId);
+        if (known != null && known.enrolled() == enrolled) {
+            return;
+        }
+        if (known == null && !Scanned) {
+            Latest.put(sectionId, new SeatChange(sectionId, enrolled, 0));
+            return;
+        }
+        SeatChange change = new SeatChange(sectionId, enrolled, ++Version);
+        Latest.put(sectionId, change);
+        Log.add(change);
+        if (Log.size() > MAX_LOG_SIZE) {
+            List<SeatChange> dropped = Log.subList(0, MAX_LOG_SIZE / 2);
+            TrimmedThrough = dropped.get(dropped.size() - 1).version();
+            dropped.clear();
+        }
+    }
+
+
+    //Index of the first logged change with a version after the cursor, the log is ordered by version
+    private int firstAfter(long cursor) {
+        int low = 0;
+        int high = Log.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (Log.get(mid).version() <= cursor) {
+                low = mid + 1;
+            }
+            else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
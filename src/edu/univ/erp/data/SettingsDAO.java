@@ -5,26 +5,34 @@ import edu.univ.erp.util.DatabaseUtil;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
 
 //This class is basically used to access the SystemSetting table in the StudentDB
 //That table just contains weather the maintenance mode is on or off
 //It now also contains the option to set deadline about adding or dropping courses
 //The system setting table in the StudentDB contains two things - the maintenance mode(ON or OFF) and the Deadline info
+//It also holds CatalogVersion, an opaque token changed whenever an admin changes the set of sections
+//Both settings are read on every register, drop and grade save, so they are kept in a small in-process cache
+//The cache is refreshed with one query after CACHE_TTL_MILLIS and dropped straight away when this class writes a setting
 public class SettingsDAO {
+    private static final long CACHE_TTL_MILLIS = 5_000;
+    private static final String DEFAULT_DEADLINE = "2099-01-1";
+    private static final String DEFAULT_CATALOG_VERSION = "0";
+
+    //One immutable copy of the settings table, swapped as a whole so readers never see half an update
+    //DeadlineDate is null when the stored string does not parse, which callers treat as "no deadline"
+    private record Snapshot(boolean MaintenanceMode, String Deadline, LocalDate DeadlineDate, String CatalogVersion, long LoadedAt) {}
+
+    //Shared by every SettingsDAO in the process so a write through one instance is seen by all of them
+    private static volatile Snapshot Cached;
+    private static final List<Runnable> ChangeListeners = new CopyOnWriteArrayList<>();
+
     public boolean IsMaintenanceModeOn(){
-        String SQL = "SELECT SettingValue FROM SystemSettings WHERE SettingKey = 'MaintenanceMode'";
-        try(Connection StudentDBConnection = DatabaseUtil.GetStudentConnection(); PreparedStatement Statement = StudentDBConnection.prepareStatement(SQL)){
-            try(ResultSet Result = Statement.executeQuery()){
-                if(Result.next()){
-                    return "true".equalsIgnoreCase(Result.getString("SettingValue"));
-                }
-            }
-            return false;
-        }
-        catch (Exception e){
-            e.printStackTrace();
-            return false;
-        }
+        return CurrentSettings().MaintenanceMode();
     }
 
 
@@ -34,7 +42,11 @@ public class SettingsDAO {
         try(Connection StudentDBConnection = DatabaseUtil.GetStudentConnection(); PreparedStatement Statement = StudentDBConnection.prepareStatement(SQL)){
             Statement.setString(1, String.valueOf(is_on)); //true or false
             int RowsAffected = Statement.executeUpdate();
-            return RowsAffected>0;
+            if(RowsAffected>0){
+                SettingsChanged();
+                return true;
+            }
+            return false;
         }
         catch (Exception e){
             e.printStackTrace();
@@ -45,17 +57,15 @@ public class SettingsDAO {
 
     //This method adds deadline to the table in database
     public String GetDeadline(){
-        String SQL = "SELECT SettingValue FROM SystemSettings WHERE SettingKey = 'Deadline'";
-        try(Connection StudentDBConnection = DatabaseUtil.GetStudentConnection(); PreparedStatement Statement = StudentDBConnection.prepareStatement(SQL); ResultSet Result = Statement.executeQuery()){
-            if(Result.next()){
-                return Result.getString("SettingValue");
-            }
-        }
-        catch(Exception e){
-            e.printStackTrace();
-        }
-        return "2099-01-1";
-        //Default deadline
+        return CurrentSettings().Deadline();
+        //Default deadline is DEFAULT_DEADLINE when the row is missing
+    }
+
+
+    //The parsed form of GetDeadline(), kept in the cache so it is not re-parsed on every call
+    //Returns null when the stored deadline is not a valid yyyy-MM-dd date
+    public LocalDate GetDeadlineDate(){
+        return CurrentSettings().DeadlineDate();
     }
 
 
@@ -66,12 +76,17 @@ public class SettingsDAO {
             Statement.setString(1, DateString);
             int Rows = Statement.executeUpdate();
             if(Rows>0){
+                SettingsChanged();
                 return true;
             }
             String InsertSQL = "INSERT INTO SystemSettings (SettingKey, SettingValue) VALUES ('Deadline', ?)";
             try(PreparedStatement InsertStatement = StudentDBConnection.prepareStatement(InsertSQL)){
                 InsertStatement.setString(1, DateString);
-                return InsertStatement.executeUpdate()>0;
+                boolean Inserted = InsertStatement.executeUpdate()>0;
+                if(Inserted){
+                    SettingsChanged();
+                }
+                return Inserted;
             }
         }
         catch (Exception e){
@@ -79,4 +94,125 @@ public class SettingsDAO {
             return false;
         }
     }
+
+
+    //The current catalog version token, "0" if no section has ever been changed
+    //Read through the same cache as the other settings, so another process's change is seen within CACHE_TTL_MILLIS
+    public String GetCatalogVersion(){
+        return CurrentSettings().CatalogVersion();
+    }
+
+
+    //Stores a new catalog version token and returns it, or null if the write failed
+    //The token is only compared for equality, so a timestamp with a random suffix is enough to be unique
+    public String BumpCatalogVersion(){
+        String NewVersion = System.currentTimeMillis() + "-" + Integer.toHexString(ThreadLocalRandom.current().nextInt());
+        String UpdateSQL = "UPDATE SystemSettings SET SettingValue = ? WHERE SettingKey = 'CatalogVersion'";
+        try(Connection StudentDBConnection = DatabaseUtil.GetStudentConnection(); PreparedStatement Statement = StudentDBConnection.prepareStatement(UpdateSQL)){
+            Statement.setString(1, NewVersion);
+            if(Statement.executeUpdate()==0){
+                String InsertSQL = "INSERT INTO SystemSettings (SettingKey, SettingValue) VALUES ('CatalogVersion', ?)";
+                try(PreparedStatement InsertStatement = StudentDBConnection.prepareStatement(InsertSQL)){
+                    InsertStatement.setString(1, NewVersion);
+                    InsertStatement.executeUpdate();
+                }
+            }
+            SettingsChanged();
+            return NewVersion;
+        }
+        catch (Exception e){
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+
+    //Registers a callback that runs after any setting is written through this class
+    //Listeners run on the writing thread, so UI listeners should hop onto the EDT themselves
+    public void AddChangeListener(Runnable Listener){
+        ChangeListeners.add(Listener);
+    }
+
+    public void RemoveChangeListener(Runnable Listener){
+        ChangeListeners.remove(Listener);
+    }
+
+
+    //Drops the cached copy so the next read goes to the database
+    //Useful when another process may have changed the table
+    public void InvalidateCache(){
+        Cached = null;
+    }
+
+
+    private void SettingsChanged(){
+        InvalidateCache();
+        for(Runnable Listener : ChangeListeners){
+            try{
+                Listener.run();
+            }
+            catch (Exception e){
+                e.printStackTrace();
+            }
+        }
+    }
+
+
+    //Returns the cached settings, reloading them when they are older than the TTL
+    //Two threads may both reload after expiry; that only costs one extra query and both results are valid
+    private Snapshot CurrentSettings(){
+        Snapshot Current = Cached;
+        if(Current!=null && System.currentTimeMillis()-Current.LoadedAt()<CACHE_TTL_MILLIS){
+            return Current;
+        }
+        Snapshot Loaded = LoadSettings();
+        if(Loaded!=null){
+            Cached = Loaded;
+            return Loaded;
+        }
+        //The load failed, so keep answering with the last known values rather than flipping to defaults
+        if(Current!=null){
+            return Current;
+        }
+        return new Snapshot(false, DEFAULT_DEADLINE, ParseDeadline(DEFAULT_DEADLINE), DEFAULT_CATALOG_VERSION, 0);
+    }
+
+
+    //Reads all the settings in one round trip, returns null on failure
+    private Snapshot LoadSettings(){
+        String SQL = "SELECT SettingKey, SettingValue FROM SystemSettings WHERE SettingKey IN ('MaintenanceMode', 'Deadline', 'CatalogVersion')";
+        try(Connection StudentDBConnection = DatabaseUtil.GetStudentConnection(); PreparedStatement Statement = StudentDBConnection.prepareStatement(SQL); ResultSet Result = Statement.executeQuery()){
+            boolean Maintenance = false;
+            String Deadline = DEFAULT_DEADLINE;
+            String CatalogVersion = DEFAULT_CATALOG_VERSION;
+            while(Result.next()){
+                String Key = Result.getString("SettingKey");
+                String Value = Result.getString("SettingValue");
+                if("MaintenanceMode".equals(Key)){
+                    Maintenance = "true".equalsIgnoreCase(Value);
+                }
+                else if("Deadline".equals(Key) && Value!=null){
+                    Deadline = Value;
+                }
+                else if("CatalogVersion".equals(Key) && Value!=null){
+                    CatalogVersion = Value;
+                }
+            }
+            return new Snapshot(Maintenance, Deadline, ParseDeadline(Deadline), CatalogVersion, System.currentTimeMillis());
+        }
+        catch (Exception e){
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+
+    private static LocalDate ParseDeadline(String DateString){
+        try{
+            return LocalDate.parse(DateString);
+        }
+        catch (DateTimeParseException e){
+            return null;
+        }
+    }
 }
@@ -1,58 +1,146 @@
 package edu.univ.erp.data;
 
+import edu.univ.erp.domain.CatalogSection;
 import edu.univ.erp.domain.EnrolledSection;
 import edu.univ.erp.domain.Grade;
 import edu.univ.erp.domain.SectionView;
 import edu.univ.erp.util.DatabaseUtil;
+import edu.univ.erp.util.TimeSlot;
+import edu.univ.erp.util.WeekOccupancy;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 //This class handes all the operations for the Student User in the StudentDBw
 public class StudentDAO {
+    //Sections, courses and instructor names come from the shared in-memory catalog
+    private final CatalogDAO catalogDAO = new CatalogDAO();
+
+
     //This method fetches all the sections for the course catalog
     //It also checks if the student is enrolled in the course
+    //The shared catalog and the student's sorted enrolled section IDs are merged in one pass, both being in SectionID order
+    //Live seat counts are overlaid from CatalogDAO, a section missing from that overlay has just been deleted and is skipped
     public List<SectionView> getAvailableSections(int studentId) {
-        List<SectionView> sections = new ArrayList<>();
-        // This is a complex query that joins 4 tables
-        String sql = """
-            SELECT 
-                s.SectionID, c.CourseCode, c.CourseTitle, c.Credits, i.FullName, s.TimeSlot, s.EnrolledCount, s.Capacity,
-                (SELECT COUNT(*) FROM Enrollments e WHERE e.SectionID = s.SectionID AND e.StudentID = ?) AS IsEnrolled
-            FROM Sections s
-            JOIN Course c ON s.CourseID = c.CourseID
-            LEFT JOIN Instructors i ON s.InstructorID = i.InstructorID
-            """;
-        //Select all the details about the sections using the Enrollment table
-        //The enrollment table contains all the enrollments ie a mapping of studentId with the SectionId they are enrolled in
-        try (Connection conn = DatabaseUtil.GetStudentConnection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
+        int[] enrolledIds = getEnrolledSectionIds(studentId);
+        return getAvailableSections(enrolledIds, getOccupancy(enrolledIds));
+    }
+
+
+    //The same catalog for a student whose enrolled section IDs and week are already known
+    //Every section that would clash with the student's timetable is flagged in the same pass
+    public List<SectionView> getAvailableSections(int[] enrolledIds, WeekOccupancy occupancy) {
+        CatalogSnapshot catalog = catalogDAO.getSnapshot();
+        CatalogDAO.SeatCounts seats = catalogDAO.getSeatCounts();
+        List<SectionView> sections = new ArrayList<>(catalog.size());
+        int next = 0;
+        for (CatalogSection row : catalog.getSections()) {
+            int enrolledCount = seats.enrolledFor(row.sectionId());
+            if (enrolledCount < 0) {
+                continue;
+            }
+            while (next < enrolledIds.length && enrolledIds[next] < row.sectionId()) {
+                next++;
+            }
+            boolean enrolled = next < enrolledIds.length && enrolledIds[next] == row.sectionId();
+            boolean clashes = !enrolled && occupancy.clashes(row.slot());
+            sections.add(new SectionView(row.sectionId(), row.courseCode(), row.courseTitle(), row.credits(),
+                    row.instructorName(), row.timeSlot(), enrolledCount, row.capacity(), enrolled, clashes));
+        }
+        return sections;
+    }
+
+
+    //The minutes of the week taken by the given sections, built from the catalog's parsed slots without a query
+    public WeekOccupancy getOccupancy(int[] sectionIds) {
+        CatalogSnapshot catalog = catalogDAO.getSnapshot();
+        WeekOccupancy occupancy = WeekOccupancy.EMPTY;
+        for (int sectionId : sectionIds) {
+            CatalogSection section = catalog.find(sectionId);
+            if (section != null) {
+                occupancy = occupancy.with(sectionId, section.courseCode(), section.slot());
+            }
+        }
+        return occupancy;
+    }
+
+
+    //The catalog entry of one section (with its parsed slot), null if it is not in the catalog
+    public CatalogSection findSection(int sectionId) {
+        return catalogDAO.getSnapshot().find(sectionId);
+    }
+
+
+    //The section IDs the student is enrolled in, ascending, served from the Enrollments primary key
+    public int[] getEnrolledSectionIds(int studentId) {
+        try (Connection conn = DatabaseUtil.GetStudentConnection()) {
+            return getEnrolledSectionIds(conn, studentId);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return new int[0];
+    }
+
+
+    private int[] getEnrolledSectionIds(Connection conn, int studentId) throws SQLException {
+        String sql = "SELECT SectionID FROM Enrollments WHERE StudentID = ? ORDER BY SectionID";
+        int[] ids = new int[8];
+        int count = 0;
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setInt(1, studentId);
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
-                    sections.add(new SectionView(
-                            rs.getInt("SectionID"),
-                            rs.getString("CourseCode"),
-                            rs.getString("CourseTitle"),
-                            rs.getInt("Credits"),
-                            rs.getString("FullName") != null ? rs.getString("FullName") : "TBA",
-                            rs.getString("TimeSlot"),
-                            rs.getInt("EnrolledCount"),
-                            rs.getInt("Capacity"),
-                            rs.getInt("IsEnrolled") > 0 // Converts count (0 or 1) to boolean
-                    ));
+                    if (count == ids.length) {
+                        ids = Arrays.copyOf(ids, count * 2);
+                    }
+                    ids[count++] = rs.getInt(1);
                 }
             }
-        } catch (Exception e) {
-            e.printStackTrace();
         }
-        return sections;
+        return Arrays.copyOf(ids, count);
+    }
+
+
+    //The weeks of several students with one read on the caller's connection, keyed by StudentID
+    //A student with no enrollments gets WeekOccupancy.EMPTY, errors are passed up
+    public Map<Integer, WeekOccupancy> getOccupancies(Connection conn, int[] studentIds) throws SQLException {
+        Map<Integer, WeekOccupancy> weeks = new HashMap<>();
+        for (int studentId : studentIds) {
+            weeks.put(studentId, WeekOccupancy.EMPTY);
+        }
+        if (studentIds.length == 0) {
+            return weeks;
+        }
+        String sql = "SELECT StudentID, SectionID FROM Enrollments WHERE StudentID IN (" + DatabaseUtil.Placeholders(studentIds.length) + ")";
+        CatalogSnapshot catalog = catalogDAO.getSnapshot();
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < studentIds.length; i++) {
+                stmt.setInt(i + 1, studentIds[i]);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    int sectionId = rs.getInt("SectionID");
+                    CatalogSection section = catalog.find(sectionId);
+                    if (section != null) {
+                        weeks.computeIfPresent(rs.getInt("StudentID"), (id, week) -> week.with(sectionId, section.courseCode(), section.slot()));
+                    }
+                }
+            }
+        }
+        return weeks;
     }
 
 
     //This fetches the timetable of the student
+    //Ordered by when each section first meets in the week, ordering the TimeSlot strings put "Thu" before "Tue"
     public List<EnrolledSection> getTimetable(int studentId) {
         List<EnrolledSection> schedule = new ArrayList<>();
         // UPDATED SQL: Removed any reference to Location
@@ -63,7 +151,6 @@ public class StudentDAO {
             JOIN Course c ON s.CourseID = c.CourseID
             LEFT JOIN Instructors i ON s.InstructorID = i.InstructorID
             WHERE e.StudentID = ?
-            ORDER BY s.TimeSlot
             """;
         try (Connection conn = DatabaseUtil.GetStudentConnection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setInt(1, studentId);
@@ -83,6 +170,7 @@ public class StudentDAO {
         } catch (Exception e) {
             e.printStackTrace();
         }
+        schedule.sort(Comparator.comparingInt(section -> TimeSlot.parse(section.timeSlot()).sortKey()));
         return schedule;
     }
 
@@ -90,6 +178,19 @@ public class StudentDAO {
     //This code fetches the grades of the student
     public List<Grade> getGrades(int studentId) {
         List<Grade> grades = new ArrayList<>();
+        try {
+            streamGrades(studentId, grades::add);
+        }
+        catch (Exception e) {
+            e.printStackTrace();
+        }
+        return grades;
+    }
+
+
+    //Same rows as getGrades, handed to the consumer one at a time straight off a forward-only ResultSet
+    //Used by the transcript export, errors go to the caller
+    public void streamGrades(int studentId, RowConsumer<Grade> consumer) throws Exception {
         String sql = """
             SELECT 
                 c.CourseCode, c.CourseTitle, c.Credits, g.FinalGrade
@@ -99,11 +200,12 @@ public class StudentDAO {
             LEFT JOIN Grades g ON e.StudentID = g.StudentID AND e.SectionID = g.SectionID
             WHERE e.StudentID = ?
             """;
-        try (Connection conn = DatabaseUtil.GetStudentConnection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Connection conn = DatabaseUtil.GetStudentConnection(); PreparedStatement stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            stmt.setFetchSize(DatabaseUtil.STREAM_FETCH_SIZE);
             stmt.setInt(1, studentId);
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
-                    grades.add(new Grade(
+                    consumer.accept(new Grade(
                             rs.getString("CourseCode"),
                             rs.getString("CourseTitle"),
                             rs.getInt("Credits"),
@@ -113,10 +215,6 @@ public class StudentDAO {
                 }
             }
         }
-        catch (Exception e) {
-            e.printStackTrace();
-        }
-        return grades;
     }
 
 
@@ -0,0 +1,252 @@
+package edu.univ.erp.data;
+
+import edu.univ.erp.domain.WaitlistEntry;
+import edu.univ.erp.domain.WaitlistPromotion;
+import edu.univ.erp.util.DatabaseUtil;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+//This class keeps the Waitlist table in the StudentDB, one FIFO queue per section ordered by WaitlistID
+//A row is waiting while PromotedAt is NULL
+//When a student drops, the first waiting students that can take the seat (picked from WaitlistQueues before any lock is
+//taken) are tried in order in the drop's own transaction, the first one still waiting and not yet enrolled gets the seat
+//and its row is stamped with PromotedAt, the stamped row stays until the student has been told (see WaitlistNotices)
+//Joining takes no lock, a join that lands while a drop is promoting is simply behind the students the drop looked at
+//A free seat in a section with a queue (a drop found nobody without a clash, or the capacity was raised) is offered to the
+//queue again before anyone registers for it, the registration's seat UPDATE refuses such a section and falls back to the
+//locking path in StudentService.TakeSeatWithRowLock
+public class WaitlistDAO {
+    //What join answers instead of a position
+    public static final int SEATS_FREE = 0;
+    public static final int FAILED = -1;
+    public static final int ALREADY_ENROLLED = -2;
+
+
+    //Puts the student at the back of the section's queue, or finds their place if they are already in it
+    //A section with a free seat and nobody waiting has no queue, SEATS_FREE is returned and nothing is written
+    //The section row is read without a lock, the queue order comes from WaitlistID alone
+    //Returns the 1-based position, or one of the codes above
+    public int join(int studentId, int sectionId) {
+        String sectionSql = "SELECT s.Capacity - s.EnrolledCount AS Free, "
+                + "EXISTS (SELECT 1 FROM Waitlist w WHERE w.SectionID = s.SectionID AND w.PromotedAt IS NULL) AS Waiting "
+                + "FROM Sections s WHERE s.SectionID = ?";
+        try (Connection conn = DatabaseUtil.GetStudentConnection()) {
+            conn.setAutoCommit(false);
+            int free;
+            boolean waiting;
+            try (PreparedStatement stmt = conn.prepareStatement(sectionSql)) {
+                stmt.setInt(1, sectionId);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (!rs.next()) {
+                        return FAILED; //No such section
+                    }
+                    free = rs.getInt("Free");
+                    waiting = rs.getBoolean("Waiting");
+                }
+            }
+            if (isEnrolled(conn, studentId, sectionId)) {
+                return ALREADY_ENROLLED;
+            }
+            int position = getPosition(conn, studentId, sectionId);
+            if (position > 0) {
+                return position;
+            }
+            if (free > 0 && !waiting) {
+                return SEATS_FREE;
+            }
+            //A seat won earlier but not yet shown is replaced, the student dropped it again meanwhile
+            try (PreparedStatement stmt = conn.prepareStatement("DELETE FROM Waitlist WHERE SectionID = ? AND StudentID = ?")) {
+                stmt.setInt(1, sectionId);
+                stmt.setInt(2, studentId);
+                stmt.executeUpdate();
+            }
+            int waitlistId;
+            try (PreparedStatement stmt = conn.prepareStatement("INSERT INTO Waitlist (SectionID, StudentID) VALUES (?, ?)", Statement.RETURN_GENERATED_KEYS)) {
+                stmt.setInt(1, sectionId);
+                stmt.setInt(2, studentId);
+                stmt.executeUpdate();
+                try (ResultSet keys = stmt.getGeneratedKeys()) {
+                    keys.next();
+                    waitlistId = keys.getInt(1);
+                }
+            }
+            catch (SQLIntegrityConstraintViolationException e) {
+                conn.rollback(); //A second join by the same student got in first, its row is the student's place
+                return getPosition(conn, studentId, sectionId);
+            }
+            position = getPosition(conn, studentId, sectionId);
+            conn.commit();
+            WaitlistQueues.Joined(sectionId, new WaitlistEntry(waitlistId, studentId));
+            return position;
+        }
+        catch (Exception e) {
+            e.printStackTrace();
+            return FAILED;
+        }
+    }
+
+
+    //Takes the student out of the section's queue, false if they were not waiting in it
+    public boolean leave(int studentId, int sectionId) {
+        String sql = "DELETE FROM Waitlist WHERE SectionID = ? AND StudentID = ? AND PromotedAt IS NULL";
+        try (Connection conn = DatabaseUtil.GetStudentConnection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, sectionId);
+            stmt.setInt(2, studentId);
+            if (stmt.executeUpdate() == 0) {
+                return false;
+            }
+            WaitlistQueues.Removed(sectionId, studentId);
+            return true;
+        }
+        catch (Exception e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+
+    //The student's 1-based place in the section's queue, 0 if they are not waiting, -1 on failure
+    public int getPosition(int studentId, int sectionId) {
+        try (Connection conn = DatabaseUtil.GetStudentConnection()) {
+            return getPosition(conn, studentId, sectionId);
+        }
+        catch (Exception e) {
+            e.printStackTrace();
+            return -1;
+        }
+    }
+
+
+    //Every student waiting for the section in queue order, null on failure
+    //Read on the caller's connection, WaitlistQueues loads a section's queue with it
+    public List<WaitlistEntry> getWaiting(Connection conn, int sectionId) throws Exception {
+        String sql = "SELECT WaitlistID, StudentID FROM Waitlist WHERE SectionID = ? AND PromotedAt IS NULL ORDER BY WaitlistID";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, sectionId);
+            List<WaitlistEntry> waiting = new ArrayList<>();
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    waiting.add(new WaitlistEntry(rs.getInt("WaitlistID"), rs.getInt("StudentID")));
+                }
+            }
+            return waiting;
+        }
+    }
+
+
+    //Gives a seat in the section to one waiting student, in the caller's transaction under the section row lock
+    //The candidate was picked from memory, so both writes are guarded: a row no longer waiting (the student left, or another
+    //process promoted them) changes nothing, and a student already enrolled gets no second enrollment and loses the row
+    //Returns the promotion, or null if the candidate could not take the seat, at most three statements either way
+    public WaitlistPromotion promote(Connection conn, int sectionId, WaitlistEntry candidate) throws Exception {
+        LocalDateTime promotedAt = LocalDateTime.now();
+        try (PreparedStatement stmt = conn.prepareStatement("UPDATE Waitlist SET PromotedAt = ? WHERE WaitlistID = ? AND PromotedAt IS NULL")) {
+            stmt.setTimestamp(1, Timestamp.valueOf(promotedAt));
+            stmt.setInt(2, candidate.waitlistId());
+            if (stmt.executeUpdate() == 0) {
+                return null;
+            }
+        }
+        String enrollSql = "INSERT INTO Enrollments (StudentID, SectionID, EnrollmentDate) SELECT ?, ?, CURDATE() FROM DUAL "
+                + "WHERE NOT EXISTS (SELECT 1 FROM Enrollments WHERE StudentID = ? AND SectionID = ?)";
+        try (PreparedStatement stmt = conn.prepareStatement(enrollSql)) {
+            stmt.setInt(1, candidate.studentId());
+            stmt.setInt(2, sectionId);
+            stmt.setInt(3, candidate.studentId());
+            stmt.setInt(4, sectionId);
+            if (stmt.executeUpdate() == 0) {
+                delete(conn, candidate.waitlistId());
+                return null;
+            }
+        }
+        return new WaitlistPromotion(candidate.waitlistId(), candidate.studentId(), sectionId, null, null, promotedAt);
+    }
+
+
+    //The seats the student has been given from waitlists and not yet been told about, oldest first, null on failure
+    public List<WaitlistPromotion> getPromotions(int studentId) {
+        String sql = """
+                SELECT w.WaitlistID, w.SectionID, c.CourseCode, s.TimeSlot, w.PromotedAt
+                FROM Waitlist w
+                JOIN Sections s ON s.SectionID = w.SectionID
+                JOIN Course c ON c.CourseID = s.CourseID
+                WHERE w.StudentID = ? AND w.PromotedAt IS NOT NULL
+                ORDER BY w.WaitlistID""";
+        try (Connection conn = DatabaseUtil.GetStudentConnection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, studentId);
+            List<WaitlistPromotion> promotions = new ArrayList<>();
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    promotions.add(new WaitlistPromotion(rs.getInt("WaitlistID"), studentId, rs.getInt("SectionID"),
+                            rs.getString("CourseCode"), rs.getString("TimeSlot"), rs.getTimestamp("PromotedAt").toLocalDateTime()));
+                }
+            }
+            return promotions;
+        }
+        catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+
+    //Removes the stamped rows of promotions the student has been shown
+    public void deletePromotions(int[] waitlistIds) {
+        if (waitlistIds.length == 0) {
+            return;
+        }
+        String sql = "DELETE FROM Waitlist WHERE PromotedAt IS NOT NULL AND WaitlistID IN (" + DatabaseUtil.Placeholders(waitlistIds.length) + ")";
+        try (Connection conn = DatabaseUtil.GetStudentConnection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < waitlistIds.length; i++) {
+                stmt.setInt(i + 1, waitlistIds[i]);
+            }
+            stmt.executeUpdate();
+        }
+        catch (Exception e) {
+            e.printStackTrace(); //Shown once more on the student's next login
+        }
+    }
+
+
+    private boolean isEnrolled(Connection conn, int studentId, int sectionId) throws Exception {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT 1 FROM Enrollments WHERE StudentID = ? AND SectionID = ?")) {
+            stmt.setInt(1, studentId);
+            stmt.setInt(2, sectionId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+
+    //Counts the waiting rows up to and including the student's own, 0 when the student has no waiting row
+    private int getPosition(Connection conn, int studentId, int sectionId) throws Exception {
+        String sql = """
+                SELECT COUNT(*) FROM Waitlist ahead
+                JOIN Waitlist mine ON mine.SectionID = ahead.SectionID AND ahead.WaitlistID <= mine.WaitlistID
+                WHERE mine.SectionID = ? AND mine.StudentID = ? AND mine.PromotedAt IS NULL AND ahead.PromotedAt IS NULL""";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, sectionId);
+            stmt.setInt(2, studentId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+    }
+
+
+    private void delete(Connection conn, int waitlistId) throws Exception {
+        try (PreparedStatement stmt = conn.prepareStatement("DELETE FROM Waitlist WHERE WaitlistID = ?")) {
+            stmt.setInt(1, waitlistId);
+            stmt.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package edu.univ.erp.data;
+
+import edu.univ.erp.domain.WaitlistPromotion;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+//This class holds, per student, the waitlist seats this process has handed out and the student has not been shown yet
+//A drop that promotes someone publishes the promotion here after its commit, so the promoted student's next check is
+//answered from memory, one event per freed seat instead of every waiting student polling the catalog
+//The stamped Waitlist rows are the durable copy: a student's first check in this process reads them once,
+//which picks up seats given out by other processes or before a restart
+//Behind the API server every drop runs in the one server process, so every promotion is seen as it happens
+public final class WaitlistNotices {
+    private static final Object Lock = new Object(); //Guards both maps
+    private static final Map<Integer, Map<Integer, WaitlistPromotion>> Pending = new HashMap<>(); //StudentID to promotions by WaitlistID
+    private static final Set<Integer> Loaded = new HashSet<>(); //Students whose stamped rows have been read
+    private static final WaitlistDAO waitlistDAO = new WaitlistDAO();
+
+    private WaitlistNotices() {}
+
+
+    //Called after the drop that gave the seat has been committed
+    public static void Publish(WaitlistPromotion Promotion) {
+        synchronized (Lock) {
+            Pending.computeIfAbsent(Promotion.studentId(), ID -> new LinkedHashMap<>()).put(Promotion.waitlistId(), Promotion);
+        }
+    }
+
+
+    //The student's promotions not shown yet, oldest first, each one is returned once
+    //Only the first call for a student reads the table, and the rows are deleted only when there was something to return
+    public static List<WaitlistPromotion> Take(int StudentID) {
+        boolean NeedsLoad;
+        synchronized (Lock) {
+            NeedsLoad = !Loaded.contains(StudentID);
+        }
+        if (NeedsLoad) {
+            List<WaitlistPromotion> Stored = waitlistDAO.getPromotions(StudentID);
+            if (Stored != null) {
+                synchronized (Lock) {
+                    Map<Integer, WaitlistPromotion> Held = Pending.computeIfAbsent(StudentID, ID -> new LinkedHashMap<>());
+                    for (WaitlistPromotion Promotion : Stored) {
+                        Held.putIfAbsent(Promotion.waitlistId(), Promotion); //Published meanwhile, already held
+                    }
+                    Loaded.add(StudentID);
+                }
+            }
+        }
+        List<WaitlistPromotion> Taken;
+        synchronized (Lock) {
+            Map<Integer, WaitlistPromotion> Held = Pending.remove(StudentID);
+            Taken = Held == null ? List.of() : new ArrayList<>(Held.values());
+        }
+        if (!Taken.isEmpty()) {
+            int[] WaitlistIDs = new int[Taken.size()];
+            for (int i = 0; i < WaitlistIDs.length; i++) {
+                WaitlistIDs[i] = Taken.get(i).waitlistId();
+            }
+            waitlistDAO.deletePromotions(WaitlistIDs);
+        }
+        return Taken;
+    }
+
+
+    //Lets go of the student when their session ends, anything not shown is still in the table for the next login
+    public static void Forget(int StudentID) {
+        synchronized (Lock) {
+            Pending.remove(StudentID);
+            Loaded.remove(StudentID);
+        }
+    }
+}
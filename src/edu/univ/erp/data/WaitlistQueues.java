@@ -0,0 +1,108 @@
+package edu.univ.erp.data;
+
+import edu.univ.erp.domain.WaitlistEntry;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+//This class holds each section's waitlist queue in memory, so a drop picks its candidates without scanning the table
+//The Waitlist table stays the authority: a queue is read from it the first time it is needed and again once it is older
+//than RELOAD_MILLIS, which picks up joins and leaves made by other processes, and WaitlistDAO.promote re-checks every
+//candidate against the table under the section row lock, so a stale entry can cost a skipped candidate but never a wrong seat
+//Joins, leaves and promotions made in this process are applied as they commit
+public final class WaitlistQueues {
+    private static final long RELOAD_MILLIS = 2000;
+    private static final Object Lock = new Object(); //Guards Queues and every Queue in it
+    private static final Map<Integer, Queue> Queues = new HashMap<>(); //SectionID to its queue
+    private static final WaitlistDAO waitlistDAO = new WaitlistDAO();
+
+    private WaitlistQueues() {}
+
+    //Waiting students by StudentID in WaitlistID order
+    private static final class Queue {
+        final LinkedHashMap<Integer, WaitlistEntry> Entries = new LinkedHashMap<>();
+        final long LoadedAt;
+
+        Queue(long LoadedAt) {
+            this.LoadedAt = LoadedAt;
+        }
+    }
+
+
+    //The first Limit students waiting for the section, oldest first
+    //A missing or old queue is read on the caller's connection, outside the lock so other sections are not held up
+    public static List<WaitlistEntry> Head(Connection conn, int SectionID, int Limit) throws Exception {
+        long Now = System.currentTimeMillis();
+        synchronized (Lock) {
+            Queue Current = Queues.get(SectionID);
+            if (Current != null && Now - Current.LoadedAt < RELOAD_MILLIS) {
+                return First(Current, Limit);
+            }
+        }
+        List<WaitlistEntry> Stored = waitlistDAO.getWaiting(conn, SectionID);
+        synchronized (Lock) {
+            Queue Loaded = new Queue(Now);
+            int LastID = 0;
+            for (WaitlistEntry Entry : Stored) {
+                Loaded.Entries.put(Entry.studentId(), Entry);
+                LastID = Entry.waitlistId();
+            }
+            Queue Current = Queues.get(SectionID);
+            if (Current != null) {
+                for (WaitlistEntry Entry : Current.Entries.values()) {
+                    if (Entry.waitlistId() > LastID) {
+                        Loaded.Entries.putIfAbsent(Entry.studentId(), Entry); //Joined here while the table was being read
+                    }
+                }
+            }
+            Queues.put(SectionID, Loaded);
+            return First(Loaded, Limit);
+        }
+    }
+
+
+    //Called after a join has been committed, a section not loaded yet reads the row with the rest of its queue
+    public static void Joined(int SectionID, WaitlistEntry Entry) {
+        synchronized (Lock) {
+            Queue Current = Queues.get(SectionID);
+            if (Current != null) {
+                Current.Entries.put(Entry.studentId(), Entry);
+            }
+        }
+    }
+
+
+    //Called after the student left the queue or was given a seat from it
+    public static void Removed(int SectionID, int StudentID) {
+        synchronized (Lock) {
+            Queue Current = Queues.get(SectionID);
+            if (Current != null) {
+                Current.Entries.remove(StudentID);
+            }
+        }
+    }
+
+
+    //Called after the section has been deleted
+    public static void Forget(int SectionID) {
+        synchronized (Lock) {
+            Queues.remove(SectionID);
+        }
+    }
+
+
+    private static List<WaitlistEntry> First(Queue Current, int Limit) {
+        List<WaitlistEntry> Head = new ArrayList<>(Math.min(Limit, Current.Entries.size()));
+        for (WaitlistEntry Entry : Current.Entries.values()) {
+            if (Head.size() == Limit) {
+                break;
+            }
+            Head.add(Entry);
+        }
+        return Head;
+    }
+}
@@ -0,0 +1,21 @@
+package edu.univ.erp.domain;
+
+import java.util.List;
+
+//The outcome of registering a cart of sections, either every section was registered or none was and problems says why
+public record CartResult(
+        int registered,
+        List<String> problems
+) {
+    public static CartResult failed(String problem) {
+        return new CartResult(0, List.of(problem));
+    }
+
+    //The message shown to the student
+    public String display() {
+        if (problems.isEmpty()) {
+            return "Successfully registered for " + registered + (registered == 1 ? " section!" : " sections!");
+        }
+        return "Registration failed, nothing was registered:\n" + String.join("\n", problems);
+    }
+}
@@ -0,0 +1,17 @@
+package edu.univ.erp.domain;
+
+import edu.univ.erp.util.TimeSlot;
+
+//One section of the shared course catalog, without anything that changes on every registration
+//Seat counts and the per-student enrolled flag are overlaid on top of this to build a SectionView
+//slot is timeSlot parsed once when the catalog is built, for clash checks
+public record CatalogSection(
+        int sectionId,
+        String courseCode,
+        String courseTitle,
+        int credits,
+        String instructorName,
+        String timeSlot,
+        int capacity,
+        TimeSlot slot
+) {}
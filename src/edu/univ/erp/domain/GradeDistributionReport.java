@@ -0,0 +1,11 @@
+package edu.univ.erp.domain;
+
+import java.util.List;
+
+//The grade distribution of every graded section in a department (null for all departments)
+//overall is over every graded student of those sections together
+public record GradeDistributionReport(
+        String department,
+        GradeStatistics overall,
+        List<SectionGradeStats> sections
+) {}
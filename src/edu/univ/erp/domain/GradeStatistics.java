@@ -0,0 +1,26 @@
+package edu.univ.erp.domain;
+
+//Summary of the weighted scores of a section (or a whole report)
+//histogram has BINS bins of width 10: bin 0 is [0, 10), ..., bin 9 is [90, 100], scores outside 0..100 go to the end bins
+public record GradeStatistics(
+        int count,
+        double mean,
+        double median,
+        double stdDev,
+        double min,
+        double max,
+        int[] histogram
+) {
+    public static final int BINS = 10;
+
+    public static final GradeStatistics EMPTY = new GradeStatistics(0, 0, 0, 0, 0, 0, new int[BINS]);
+
+    public static int binFor(double score) {
+        return Math.max(0, Math.min(BINS - 1, (int) (score / 10)));
+    }
+
+    //"0-9", ..., "90-100"
+    public static String binLabel(int bin) {
+        return bin * 10 + "-" + (bin == BINS - 1 ? 100 : bin * 10 + 9);
+    }
+}
@@ -0,0 +1,41 @@
+package edu.univ.erp.domain;
+
+//One row of the GradingPolicies table: how a section, or every section of a course, turns scores into letter grades
+//sectionId set: the policy of that section, otherwise courseId set: the policy of every section of the course
+//The weights apply to the three scores the gradebook keeps, a component weighted 0 is left out
+//thresholds is "letter:cutoff" pairs with falling cutoffs, e.g. "A:90, A-:80, B:70, F:0", the letters are those of GradePoints
+//A value at or above a cutoff gets that letter, below the last cutoff it gets "-", and a last letter without a cutoff ("F")
+//takes everything below the one before it
+//ABSOLUTE compares the weighted score with the cutoffs, Z_SCORE compares how many standard deviations it is from the section mean
+public record GradingPolicy(
+        int policyId,
+        Integer courseId,
+        Integer sectionId,
+        double quizWeight,
+        double midtermWeight,
+        double finalWeight,
+        String thresholds,
+        Curve curve
+) {
+    public enum Curve {
+        ABSOLUTE,
+        Z_SCORE;
+
+        //Falls back to ABSOLUTE for unknown values
+        public static Curve fromName(String name) {
+            if (name == null) {
+                return ABSOLUTE;
+            }
+            try {
+                return valueOf(name.trim().toUpperCase());
+            }
+            catch (IllegalArgumentException e) {
+                return ABSOLUTE;
+            }
+        }
+    }
+
+    //20% quiz, 30% midterm, 50% final on the fixed scale the gradebook has always used
+    public static final GradingPolicy DEFAULT = new GradingPolicy(0, null, null, 0.20, 0.30, 0.50,
+            "A:90, A-:80, B:70, B-:60, C:50, C-:40, D:30, F:0", Curve.ABSOLUTE);
+}
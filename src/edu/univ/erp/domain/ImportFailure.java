@@ -0,0 +1,8 @@
+package edu.univ.erp.domain;
+
+//A row of a bulk user import that was not created, and why
+public record ImportFailure(
+        int lineNumber,
+        String email,
+        String reason
+) {}
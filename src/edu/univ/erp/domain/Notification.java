@@ -0,0 +1,18 @@
+package edu.univ.erp.domain;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+//One row of the Notifications table, IDs only grow so the ID doubles as a read cursor
+public record Notification(
+        int id,
+        String message,
+        LocalDateTime createdAt
+) {
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
+    //The "[time]message" line shown in the notifications popup
+    public String display() {
+        return "[" + (createdAt != null ? createdAt.format(TIME_FORMAT) : "") + "]" + message;
+    }
+}
@@ -0,0 +1,9 @@
+package edu.univ.erp.domain;
+
+//A new seat count for one section, as published by the seat count feed
+//version grows with every change, so a view that has seen version N only needs the changes after N
+public record SeatChange(
+        int sectionId,
+        int enrolled,
+        long version
+) {}
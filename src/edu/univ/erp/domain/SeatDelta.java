@@ -0,0 +1,12 @@
+package edu.univ.erp.domain;
+
+import java.util.List;
+
+//The seat count changes after a view's cursor, oldest first
+//cursor is passed back on the next poll, reset means the feed no longer holds every change since the old cursor
+//and the view has to reload the whole catalog instead
+public record SeatDelta(
+        List<SeatChange> changes,
+        long cursor,
+        boolean reset
+) {}
@@ -0,0 +1,9 @@
+package edu.univ.erp.domain;
+
+//One section of a grade distribution report
+public record SectionGradeStats(
+        int sectionId,
+        String courseCode,
+        String sectionNumber,
+        GradeStatistics statistics
+) {}
@@ -0,0 +1,10 @@
+package edu.univ.erp.domain;
+
+//One row of the registrar-wide gradebook export, rows arrive grouped by section
+//entry is null for a section with no enrolled students, so that section still gets an (empty) file
+public record SectionGradebookRow(
+        int sectionId,
+        String courseCode,
+        String sectionNumber,
+        GradebookEntry entry
+) {}
@@ -10,5 +10,6 @@ public record SectionView(
         String timeSlot,
         int enrolled,
         int capacity,
-        boolean isEnrolled // Is the *current* student enrolled in this?
+        boolean isEnrolled, // Is the *current* student enrolled in this?
+        boolean clashes // Would it clash with the current student's timetable?
 ) {}
\ No newline at end of file
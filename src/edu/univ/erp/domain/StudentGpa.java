@@ -0,0 +1,10 @@
+package edu.univ.erp.domain;
+
+//A student on a GPA report such as the dean's list or academic probation
+public record StudentGpa(
+        int studentId,
+        String fullName,
+        String email,
+        int gradedCredits,
+        double gpa
+) {}
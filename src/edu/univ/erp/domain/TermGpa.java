@@ -0,0 +1,23 @@
+package edu.univ.erp.domain;
+
+//One row of StudentGpaSummary: a student's credit-weighted GPA for one term, or over all terms
+//term is year * 10 + 1 (Spring), 2 (Summer) or 3 (Fall), taken from the enrollment date, and CUMULATIVE for the whole record
+public record TermGpa(
+        int studentId,
+        int term,
+        int gradedCredits,
+        double gpa
+) {
+    public static final int CUMULATIVE = 0;
+
+    private static final String[] SEASONS = {"", "Spring", "Summer", "Fall"};
+
+    public boolean isCumulative() {
+        return term == CUMULATIVE;
+    }
+
+    //"Fall 2025", or "Cumulative"
+    public String termName() {
+        return isCumulative() ? "Cumulative" : SEASONS[term % 10] + " " + term / 10;
+    }
+}
@@ -0,0 +1,15 @@
+package edu.univ.erp.domain;
+
+//Search options for the admin user listing, a null or blank field means "any"
+//emailPrefix and role are matched in AuthDB, namePrefix against the Students/Instructors profiles in StudentDB
+public record UserFilter(
+        String emailPrefix,
+        String namePrefix,
+        String role
+) {
+    public static final UserFilter ALL = new UserFilter(null, null, null);
+
+    public boolean hasNamePrefix() {
+        return namePrefix != null && !namePrefix.isBlank();
+    }
+}
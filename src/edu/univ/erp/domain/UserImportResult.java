@@ -0,0 +1,10 @@
+package edu.univ.erp.domain;
+
+import java.util.List;
+
+//The outcome of a bulk user import, every row is either counted in imported or listed in failures
+public record UserImportResult(
+        int totalRows,
+        int imported,
+        List<ImportFailure> failures
+) {}
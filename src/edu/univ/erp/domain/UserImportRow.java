@@ -0,0 +1,11 @@
+package edu.univ.erp.domain;
+
+//One user to create in a bulk import, lineNumber is the line in the CSV file for the failure report
+//password is null when the row did not give one and the default password is used
+public record UserImportRow(
+        int lineNumber,
+        String fullName,
+        String email,
+        String role,
+        String password
+) {}
@@ -0,0 +1,14 @@
+package edu.univ.erp.domain;
+
+import java.util.List;
+
+//One page of the admin user listing, ordered by UserID (or by name for a name search)
+//nextCursor, the UserID of the last user on the page, is passed back to fetch the following page, it is -1 when there are no more users
+public record UserPage(
+        List<UserView> users,
+        int nextCursor
+) {
+    public boolean hasMore() {
+        return nextCursor >= 0;
+    }
+}
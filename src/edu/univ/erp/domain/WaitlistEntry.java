@@ -0,0 +1,8 @@
+package edu.univ.erp.domain;
+
+//One student waiting on a section's waitlist, WaitlistID gives the queue order
+public record WaitlistEntry(
+        int waitlistId,
+        int studentId
+) {
+}
@@ -0,0 +1,18 @@
+package edu.univ.erp.domain;
+
+import java.time.LocalDateTime;
+
+//A seat a student was given from a section's waitlist when someone dropped, shown to the student once
+public record WaitlistPromotion(
+        int waitlistId,
+        int studentId,
+        int sectionId,
+        String courseCode,
+        String timeSlot,
+        LocalDateTime promotedAt
+) {
+    //The message shown to the promoted student
+    public String display() {
+        return "A seat opened in " + courseCode + " (" + timeSlot + ") and you have been registered from the waitlist.";
+    }
+}
@@ -1,23 +1,53 @@
 package edu.univ.erp.service;
 
+import edu.univ.erp.auth.PasswordVerifier;
 import edu.univ.erp.auth.UserDAO;
 import edu.univ.erp.auth.AuthUserInfo;
 import edu.univ.erp.data.AdminDAO;
+import edu.univ.erp.data.GradeColumns;
+import edu.univ.erp.data.GradingPolicyDAO;
 import edu.univ.erp.data.ProfileInfo;
 import edu.univ.erp.data.SettingsDAO;
+import edu.univ.erp.domain.GradeDistributionReport;
+import edu.univ.erp.domain.GradingPolicy;
+import edu.univ.erp.domain.ImportFailure;
+import edu.univ.erp.domain.UserFilter;
+import edu.univ.erp.domain.UserImportResult;
+import edu.univ.erp.domain.UserImportRow;
+import edu.univ.erp.domain.UserPage;
 import edu.univ.erp.domain.UserView;
+import edu.univ.erp.util.IntObjectMap;
 import edu.univ.erp.util.DatabaseUtil;
 import edu.univ.erp.domain.Course;
 import edu.univ.erp.domain.Instructor;
 import edu.univ.erp.domain.AdminSectionView;
 import edu.univ.erp.data.NotificationDAO;
+import edu.univ.erp.domain.SectionGradebookRow;
+import com.opencsv.CSVWriter;
 
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.logging.Logger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 //This class basically controls all the logic inside the admin pages
 //Added logger to extend functionality, gonna add it to CV
@@ -25,10 +55,13 @@ public class AdminService {
     //The attributes needed by the Admin
     //These attributes are instances of all the DAOs that the Admin would use
     private static final Logger logger = Logger.getLogger(AdminService.class.getName());
+    private static final int IMPORT_CHUNK_SIZE = 500; //Users per batched transaction in a bulk import
     private UserDAO userDAO;
     private AdminDAO adminDAO;
     private SettingsDAO settingsDAO;
     private NotificationDAO notificationDAO;
+    private final GradingPolicyDAO gradingPolicyDAO = new GradingPolicyDAO();
+    private final GradingPolicies gradingPolicies = new GradingPolicies();
 
     public AdminService(UserDAO userDAO, AdminDAO adminDAO, SettingsDAO settingsDAO, NotificationDAO notificationDAO){
         this.userDAO = userDAO;
@@ -49,7 +82,7 @@ public class AdminService {
         boolean Success = settingsDAO.SetMaintenanceMode(NewState);
         if(Success) {//Send Notification
             String Status = NewState ? "ON" : "OFF";
-            notificationDAO.AddNotification("Maintenance Mode: " + Status);
+            notificationDAO.QueueNotification("Maintenance Mode: " + Status);
         }
         return Success;
     }
@@ -57,7 +90,27 @@ public class AdminService {
     //This method is used to create a new user for the ERP system
     //This privilege of creating new user is given only to the Admin
     //This would be called by UserManagementPanel
+    //The password is hashed before any connection is taken, so neither database waits on BCrypt
     public boolean createNewUser(String FullName, String Email, String Role, String defaultPassword) {
+        try {
+            InsertUser(FullName, Email, Role, PasswordVerifier.Hash(defaultPassword));
+            logger.info("Admin successfully created new user: " + Email + ", Role: " + Role);
+            return true;
+            //This returns true if the user creation is success
+        }
+        catch (Exception e) {
+            logger.severe("Transaction FAILED for createNewUser: " + e.getMessage());
+            e.printStackTrace();
+            System.out.println("User couldn't be added");
+            return false;
+            //Return False on Failiure
+        }
+    }
+
+
+    //Creates one user in AuthDB and its profile in StudentDB, committing both or neither
+    //Throws on failure after rolling both back
+    private void InsertUser(String FullName, String Email, String Role, String PasswordHash) throws Exception {
         Connection AuthDBConnection = null;
         Connection StudentDBConnection = null;
         try {
@@ -65,7 +118,7 @@ public class AdminService {
             StudentDBConnection = DatabaseUtil.GetStudentConnection();
             AuthDBConnection.setAutoCommit(false);
             StudentDBConnection.setAutoCommit(false);
-            int newUserId = userDAO.CreateAuthDBUser(AuthDBConnection, Email, defaultPassword, Role);
+            int newUserId = userDAO.CreateAuthDBUserWithHash(AuthDBConnection, Email, PasswordHash, Role);
             if ("Student".equals(Role)) {
                 adminDAO.CreateStudentProfile(StudentDBConnection, newUserId, FullName, Email);
                 System.out.println("New Student User created");
@@ -76,43 +129,174 @@ public class AdminService {
             }
             AuthDBConnection.commit();
             StudentDBConnection.commit();
-            logger.info("Admin successfully created new user: " + Email + ", Role: " + Role);
-            return true;
-            //This returns true if the user creation is success
         }
         catch (Exception e) {
-            logger.severe("Transaction FAILED for createNewUser: " + e.getMessage());
-            e.printStackTrace();
             //If error happens, roll back
-            System.out.println("User couldn't be added");
+            RollbackQuietly(AuthDBConnection);
+            RollbackQuietly(StudentDBConnection);
+            throw e;
+        }
+        finally {
+            //Always close connections for safety to the database
+            CloseQuietly(AuthDBConnection);
+            CloseQuietly(StudentDBConnection);
+        }
+    }
+
+
+    //Bulk user import from a CSV file (Full Name, Email, Role and an optional Password column)
+    //Rows without a password get defaultPassword, see ImportUsers for how the rows are created
+    public UserImportResult ImportUsersFromCsv(Reader Reader, String DefaultPassword) throws Exception {
+        List<ImportFailure> Failures = new ArrayList<>();
+        List<UserImportRow> Rows = UserImportCsv.Read(Reader, Failures);
+        int UnreadableLines = Failures.size();
+        UserImportResult Result = ImportUsers(Rows, DefaultPassword);
+        Failures.addAll(Result.failures());
+        Failures.sort(Comparator.comparingInt(ImportFailure::lineNumber));
+        return new UserImportResult(Rows.size() + UnreadableLines, Result.imported(), Failures);
+    }
+
+
+    //Creates many users at once for an intake, a bad row is reported and skipped instead of stopping the import
+    //Rows are validated first (fields, role, emails repeated in the file or already taken) with one lookup per IMPORT_CHUNK_SIZE emails
+    //Then each chunk is hashed across all cores and written as batched inserts in one AuthDB and one StudentDB transaction
+    //If a chunk's batch fails it is rolled back and retried row by row, so only the rows that really fail are lost
+    public UserImportResult ImportUsers(List<UserImportRow> Rows, String DefaultPassword) {
+        List<ImportFailure> Failures = new ArrayList<>();
+        List<UserImportRow> Valid = ValidateImportRows(Rows, Failures);
+        int Imported = 0;
+        for (int From = 0; From < Valid.size(); From += IMPORT_CHUNK_SIZE) {
+            List<UserImportRow> Chunk = Valid.subList(From, Math.min(Valid.size(), From + IMPORT_CHUNK_SIZE));
+            List<String> Passwords = new ArrayList<>(Chunk.size());
+            for (UserImportRow Row : Chunk) {
+                Passwords.add(Row.password() != null ? Row.password() : DefaultPassword);
+            }
+            List<String> Hashes = PasswordVerifier.HashAll(Passwords);
             try {
-                if (AuthDBConnection != null){
-                    AuthDBConnection.rollback();
-                }
-                if (StudentDBConnection != null){
-                    StudentDBConnection.rollback();
+                InsertUserChunk(Chunk, Hashes);
+                Imported += Chunk.size();
+            }
+            catch (Exception e) {
+                logger.warning("Batched import of lines " + Chunk.get(0).lineNumber() + "-" + Chunk.get(Chunk.size() - 1).lineNumber() + " failed, retrying row by row: " + e.getMessage());
+                for (int i = 0; i < Chunk.size(); i++) {
+                    UserImportRow Row = Chunk.get(i);
+                    try {
+                        InsertUser(Row.fullName(), Row.email(), Row.role(), Hashes.get(i));
+                        Imported++;
+                    }
+                    catch (Exception rowError) {
+                        Failures.add(new ImportFailure(Row.lineNumber(), Row.email(), "Database error: " + rowError.getMessage()));
+                    }
                 }
             }
-            catch (Exception re) {
-                re.printStackTrace();
+        }
+        Failures.sort(Comparator.comparingInt(ImportFailure::lineNumber));
+        logger.info("Bulk import: " + Imported + " of " + Rows.size() + " users created, " + Failures.size() + " rows failed");
+        return new UserImportResult(Rows.size(), Imported, Failures);
+    }
+
+
+    //Drops rows with missing fields, an unknown role or an email seen earlier in the file or already in AuthDB
+    //The role is normalised to the spelling the rest of the system compares against
+    private List<UserImportRow> ValidateImportRows(List<UserImportRow> Rows, List<ImportFailure> Failures) {
+        List<UserImportRow> Checked = new ArrayList<>(Rows.size());
+        Set<String> SeenEmails = new HashSet<>(Rows.size() * 2);
+        for (UserImportRow Row : Rows) {
+            String Role = NormaliseRole(Row.role());
+            if (Blank(Row.fullName()) || Blank(Row.email())) {
+                Failures.add(new ImportFailure(Row.lineNumber(), Row.email(), "Full name and email are required"));
+            }
+            else if (Role == null) {
+                Failures.add(new ImportFailure(Row.lineNumber(), Row.email(), "Unknown role '" + Row.role() + "'"));
             }
-            return false;
-            //Return False on Failiure
+            else if (!SeenEmails.add(Row.email().toLowerCase(Locale.ROOT))) {
+                Failures.add(new ImportFailure(Row.lineNumber(), Row.email(), "Email repeated in the file"));
+            }
+            else {
+                Checked.add(new UserImportRow(Row.lineNumber(), Row.fullName(), Row.email(), Role, Row.password()));
+            }
+        }
+        List<String> Emails = new ArrayList<>(Checked.size());
+        for (UserImportRow Row : Checked) {
+            Emails.add(Row.email());
+        }
+        Set<String> Existing = userDAO.GetExistingEmails(Emails);
+        if (Existing.isEmpty()) {
+            return Checked;
+        }
+        List<UserImportRow> Valid = new ArrayList<>(Checked.size());
+        for (UserImportRow Row : Checked) {
+            if (Existing.contains(Row.email().toLowerCase(Locale.ROOT))) {
+                Failures.add(new ImportFailure(Row.lineNumber(), Row.email(), "Email already has an account"));
+            }
+            else {
+                Valid.add(Row);
+            }
+        }
+        return Valid;
+    }
+
+
+    private static String NormaliseRole(String Role) {
+        if (Role == null) {
+            return null;
+        }
+        for (String Known : new String[]{"Student", "Instructor", "Admin"}) {
+            if (Known.equalsIgnoreCase(Role.trim())) {
+                return Known;
+            }
+        }
+        return null;
+    }
+
+
+    //One chunk of the import, batched inserts into both databases committed together
+    private void InsertUserChunk(List<UserImportRow> Chunk, List<String> Hashes) throws Exception {
+        Connection AuthDBConnection = null;
+        Connection StudentDBConnection = null;
+        try {
+            AuthDBConnection = DatabaseUtil.GetAuthConnection();
+            StudentDBConnection = DatabaseUtil.GetStudentConnection();
+            AuthDBConnection.setAutoCommit(false);
+            StudentDBConnection.setAutoCommit(false);
+            int[] UserIDs = userDAO.CreateAuthDBUsers(AuthDBConnection, Chunk, Hashes);
+            adminDAO.CreateProfiles(StudentDBConnection, Chunk, UserIDs);
+            AuthDBConnection.commit();
+            StudentDBConnection.commit();
+        }
+        catch (Exception e) {
+            RollbackQuietly(AuthDBConnection);
+            RollbackQuietly(StudentDBConnection);
+            throw e;
         }
         finally {
-            //Always close connections for safety to the database
-            try {
-                if (AuthDBConnection != null){
-                    AuthDBConnection.close();
-                }
-                if (StudentDBConnection != null){
-                    StudentDBConnection.close();
-                }
+            CloseQuietly(AuthDBConnection);
+            CloseQuietly(StudentDBConnection);
+        }
+    }
+
+
+    private static void RollbackQuietly(Connection Connection) {
+        try {
+            if (Connection != null) {
+                Connection.rollback();
             }
-            catch (Exception e) {
-                e.printStackTrace();
+        }
+        catch (Exception re) {
+            re.printStackTrace();
+        }
+    }
+
+
+    private static void CloseQuietly(Connection Connection) {
+        try {
+            if (Connection != null) {
+                Connection.close();
             }
         }
+        catch (Exception e) {
+            e.printStackTrace();
+        }
     }
 
     //This method creates a new course and adds it to the database
@@ -129,7 +313,7 @@ public class AdminService {
             System.out.println("Course"+ Code+ "Created successfully");
             boolean Success = adminDAO.CreateCourse(Code, Title, Credits);
             if(Success) {//Send Notification
-                notificationDAO.AddNotification("New Course Added" + Code + "-" + Title);
+                notificationDAO.QueueNotification("New Course Added" + Code + "-" + Title);
             }
             return Success;
         }
@@ -164,7 +348,7 @@ public class AdminService {
             logger.info("Admin creating new section for: " + course.courseCode());
             boolean Success = adminDAO.CreateSection(course.courseId(), instructor.instructorId(), sectionNum, time, capacity);
             if(Success){//Send Notification
-                notificationDAO.AddNotification("New Section Added: "+ course.courseCode()+"("+sectionNum+")");
+                notificationDAO.QueueNotification("New Section Added: "+ course.courseCode()+"("+sectionNum+")");
             }
             return Success;
         }
@@ -196,21 +380,82 @@ public class AdminService {
 
         List<UserView> AllUsers = new ArrayList<>();
         for (AuthUserInfo AuthUser : authUsers) {
-            String fullName = profileMap.get(AuthUser.userId());
-            if (fullName == null && AuthUser.role().equalsIgnoreCase("Admin")) {
-                fullName = "Admin User";
-                //Default name for Admins
-            }
-            else if (fullName == null) {
-                fullName = "N/A (Profile Error)";
-                //Should not happen as only the admin need not have name
-            }
+            String fullName = DisplayName(profileMap.get(AuthUser.userId()), AuthUser.role());
             AllUsers.add(new UserView(fullName, AuthUser.email(), AuthUser.role()));
         }
         return AllUsers;
     }
 
 
+    //One page of the user listing for UserManagementPanel, after the user AfterUserID (0 for the first page)
+    //Only the page's own users are read from each database, and their names are joined with an int-keyed map
+    //Without a name filter the page is driven by AuthDB in UserID order (email prefix and role are filtered there)
+    //With a name filter it is driven by the profiles in StudentDB in name order, and the matching AuthDB rows are read by ID
+    //in one IN query, so admins (who have no profile) never match a name search
+    public UserPage GetUsersPage(UserFilter Filter, int AfterUserID, int PageSize) {
+        String EmailPrefix = Blank(Filter.emailPrefix()) ? null : Filter.emailPrefix().trim();
+        String Role = Blank(Filter.role()) ? null : Filter.role().trim();
+        List<UserView> Users = new ArrayList<>(PageSize);
+        if (!Filter.hasNamePrefix()) {
+            List<AuthUserInfo> AuthUsers = userDAO.GetAuthUsersPage(EmailPrefix, Role, AfterUserID, PageSize);
+            int[] UserIDs = new int[AuthUsers.size()];
+            for (int i = 0; i < UserIDs.length; i++) {
+                UserIDs[i] = AuthUsers.get(i).userId();
+            }
+            IntObjectMap<String> Names = adminDAO.GetProfileNames(UserIDs);
+            for (AuthUserInfo AuthUser : AuthUsers) {
+                Users.add(new UserView(DisplayName(Names.get(AuthUser.userId()), AuthUser.role()), AuthUser.email(), AuthUser.role()));
+            }
+            int Next = AuthUsers.size() == PageSize ? UserIDs[UserIDs.length - 1] : -1;
+            return new UserPage(Users, Next);
+        }
+        String NamePrefix = Filter.namePrefix().trim();
+        int Cursor = AfterUserID;
+        //Profiles whose Users row fails the email/role filter are skipped, so keep reading until the page is full
+        while (true) {
+            List<ProfileInfo> Profiles = adminDAO.GetProfilesPageByName(NamePrefix, Cursor, PageSize);
+            int[] UserIDs = new int[Profiles.size()];
+            for (int i = 0; i < UserIDs.length; i++) {
+                UserIDs[i] = Profiles.get(i).userId();
+            }
+            IntObjectMap<AuthUserInfo> AuthUsers = userDAO.GetAuthUsersByIds(UserIDs, EmailPrefix, Role);
+            for (ProfileInfo Profile : Profiles) {
+                Cursor = Profile.userId();
+                AuthUserInfo AuthUser = AuthUsers.get(Profile.userId());
+                if (AuthUser == null) {
+                    continue;
+                }
+                Users.add(new UserView(Profile.fullName(), AuthUser.email(), AuthUser.role()));
+                if (Users.size() == PageSize) {
+                    return new UserPage(Users, Cursor);
+                }
+            }
+            if (Profiles.size() < PageSize) {
+                return new UserPage(Users, -1);
+            }
+        }
+    }
+
+
+    //The name shown for a user, admins have no profile row
+    private static String DisplayName(String FullName, String Role) {
+        if (FullName == null && Role.equalsIgnoreCase("Admin")) {
+            return "Admin User";
+            //Default name for Admins
+        }
+        else if (FullName == null) {
+            return "N/A (Profile Error)";
+            //Should not happen as only the admin need not have name
+        }
+        return FullName;
+    }
+
+
+    private static boolean Blank(String Value) {
+        return Value == null || Value.isBlank();
+    }
+
+
     //This method returns all the sections for the
     public List<AdminSectionView> GetAllSectionsForView() {
         return adminDAO.getAllSectionsForView();
@@ -236,7 +481,7 @@ public class AdminService {
         boolean Success = adminDAO.DeleteSection(SectionID);
         if(Success){
             System.out.println("Section removed success fully"+ SectionID);
-            notificationDAO.AddNotification("Section Removed with ID: "+ SectionID);
+            notificationDAO.QueueNotification("Section Removed with ID: "+ SectionID);
             return "Success";
         }
         else{
@@ -244,4 +489,165 @@ public class AdminService {
             return "Error: Failed to delete section from database";
         }
     }
-}
\ No newline at end of file
+
+
+    //Grade distribution (mean, median, standard deviation, histogram) of every graded section in the department,
+    //and of the department as a whole, null Department for every section
+    //One query loads the scores column-wise, the sections are then summarised in parallel with fork-join
+    public GradeDistributionReport GetGradeDistribution(String Department) throws Exception {
+        long Start = System.currentTimeMillis();
+        GradeColumns Columns = adminDAO.GetGradeColumns(Department);
+        GradeDistributionReport Report = SectionGradingEngine.distribution(Department, Columns, gradingPolicies::forSection);
+        logger.info("Grade distribution of " + Columns.sectionCount() + " sections (" + Columns.rowCount() + " grades) in " + (System.currentTimeMillis() - Start) + "ms");
+        return Report;
+    }
+
+
+    public List<GradingPolicy> GetGradingPolicies() {
+        return gradingPolicyDAO.getAllPolicies();
+    }
+
+
+    //Stores the policy of a section or a course, replacing the one it had
+    //The policy is compiled first, so one that could not grade anything is never stored
+    //Grades already saved keep their letters until RecomputeAllGrades runs or the section is saved again
+    public String SetGradingPolicy(GradingPolicy Policy) {
+        if (Policy.sectionId() == null && Policy.courseId() == null) {
+            return "A grading policy needs a course or a section.";
+        }
+        try {
+            CompiledGradingPolicy.compile(Policy);
+        }
+        catch (IllegalArgumentException e) {
+            return "Invalid grading policy: " + e.getMessage();
+        }
+        int PolicyID = gradingPolicyDAO.savePolicy(Policy);
+        if (PolicyID < 0) {
+            return "Could not save the grading policy.";
+        }
+        logger.info("Grading policy " + PolicyID + " saved for " + (Policy.sectionId() != null ? "section " + Policy.sectionId() : "course " + Policy.courseId()));
+        return "Success";
+    }
+
+
+    public boolean DeleteGradingPolicy(int PolicyID) {
+        return gradingPolicyDAO.deletePolicy(PolicyID);
+    }
+
+
+    //Gives every saved grade the letter its section's current policy gives it, e.g. after a policy change
+    //One query loads every graded score, the sections are graded in parallel with their compiled policies,
+    //and only the letters that changed are written, in one transaction with the GPA summary
+    //Returns the number of grades that changed
+    public int RecomputeAllGrades() throws Exception {
+        if (settingsDAO.IsMaintenanceModeOn()) {
+            throw new IllegalStateException("System is in Maintenance Mode.");
+        }
+        long Start = System.currentTimeMillis();
+        GradeColumns Columns = adminDAO.GetGradeColumns(null);
+        String[] Letters = SectionGradingEngine.regrade(Columns, gradingPolicies::forSection);
+        int Changed = adminDAO.UpdateFinalGrades(Columns, Letters);
+        logger.info("Regraded " + Columns.rowCount() + " grades in " + Columns.sectionCount() + " sections, " + Changed + " changed, in " + (System.currentTimeMillis() - Start) + "ms");
+        return Changed;
+    }
+
+
+    //Registrar-wide export, writes one gradebook CSV per section into the given directory
+    //The rows come from a single streaming query grouped by section, so only one file is open at a time
+    //and memory stays constant however many students are enrolled
+    //Returns the number of files written, the first failure is thrown to the UI
+    public int ExportAllGradebooksToCsv(File Directory) throws Exception {
+        if (!Directory.isDirectory() && !Directory.mkdirs()) {
+            throw new IOException("Cannot create export directory " + Directory);
+        }
+        int FilesWritten = ExportAllGradebooks(FileName -> new BufferedWriter(new FileWriter(new File(Directory, FileName)), 64 * 1024));
+        logger.info("Exported " + FilesWritten + " section gradebooks to " + Directory);
+        return FilesWritten;
+    }
+
+
+    //The same files as entries of one ZIP stream, so the API server can send the export to a remote client
+    //The stream is finished but not closed
+    public int ExportAllGradebooksToZip(OutputStream Out) throws Exception {
+        ZipOutputStream Zip = new ZipOutputStream(new BufferedOutputStream(Out, 64 * 1024));
+        int FilesWritten = ExportAllGradebooks(FileName -> {
+            Zip.putNextEntry(new ZipEntry(FileName));
+            return new BufferedWriter(new ZipEntryWriter(Zip), 64 * 1024);
+        });
+        Zip.finish();
+        Zip.flush();
+        logger.info("Exported " + FilesWritten + " section gradebooks as a ZIP stream");
+        return FilesWritten;
+    }
+
+
+    private int ExportAllGradebooks(SectionCsvSink.FileOpener Opener) throws Exception {
+        SectionCsvSink Sink = new SectionCsvSink(Opener);
+        try {
+            adminDAO.StreamAllGradebooks(Sink::accept);
+        }
+        finally {
+            Sink.close();
+        }
+        return Sink.FilesWritten;
+    }
+
+
+    //Keeps the CSV file of the section currently being streamed, moving to a new file when the section changes
+    private static class SectionCsvSink {
+        interface FileOpener {
+            Writer open(String FileName) throws IOException;
+        }
+
+        private final FileOpener Opener;
+        private int CurrentSectionID = -1;
+        private CSVWriter CurrentWriter;
+        private int FilesWritten;
+
+        SectionCsvSink(FileOpener Opener) {
+            this.Opener = Opener;
+        }
+
+        void accept(SectionGradebookRow Row) throws IOException {
+            if (CurrentWriter == null || Row.sectionId() != CurrentSectionID) {
+                close();
+                String FileName = "gradebook_" + SafeName(Row.courseCode()) + "_" + SafeName(Row.sectionNumber()) + "_section_" + Row.sectionId() + ".csv";
+                CurrentWriter = new CSVWriter(Opener.open(FileName));
+                CurrentWriter.writeNext(GradebookCsv.HEADER);
+                CurrentSectionID = Row.sectionId();
+                FilesWritten++;
+            }
+            if (Row.entry() != null) {
+                CurrentWriter.writeNext(GradebookCsv.Row(Row.entry()));
+            }
+        }
+
+        void close() throws IOException {
+            if (CurrentWriter != null) {
+                CurrentWriter.close();
+                CurrentWriter = null;
+            }
+        }
+
+        private static String SafeName(String Value) {
+            return Value == null ? "" : Value.replaceAll("[^A-Za-z0-9-]", "_");
+        }
+    }
+
+
+    //Writes one ZIP entry, closing it ends the entry instead of the whole ZIP stream
+    private static class ZipEntryWriter extends FilterWriter {
+        private final ZipOutputStream Zip;
+
+        ZipEntryWriter(ZipOutputStream Zip) {
+            super(new OutputStreamWriter(Zip, StandardCharsets.UTF_8));
+            this.Zip = Zip;
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.flush();
+            Zip.closeEntry();
+        }
+    }
+}
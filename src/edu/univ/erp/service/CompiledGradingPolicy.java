@@ -0,0 +1,202 @@
+package edu.univ.erp.service;
+
+import edu.univ.erp.domain.GradingPolicy;
+import edu.univ.erp.util.GradePoints;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//A GradingPolicy turned into something cheap to run once per student
+//The weights become three fields, and the threshold text becomes parallel cutoff/letter arrays plus a lookup table:
+//the range between the lowest and highest cutoff is cut into TABLE_SIZE buckets, and every bucket that no cutoff
+//comes near holds its letter directly, so most scores are one multiply and one array read
+//Buckets next to a cutoff fall back to a binary search, which keeps the answer exact for any cutoff value
+//Nothing is allocated per call, letters are the policy's own strings
+//Immutable, shared by every thread grading with the policy
+final class CompiledGradingPolicy {
+    static final String INVALID = "-";
+
+    private static final int TABLE_SIZE = 256;
+    private static final byte SEARCH = -1;
+
+    static final CompiledGradingPolicy DEFAULT = compile(GradingPolicy.DEFAULT);
+
+    private final GradingPolicy source;
+    private final double quizWeight;
+    private final double midtermWeight;
+    private final double finalWeight;
+    private final boolean curved;
+    private final double[] cutoffs; //Falling, letters[i] is for values >= cutoffs[i]
+    private final String[] letters;
+    private final String below; //For values under the last cutoff
+    private final double tableFrom;
+    private final double bucketsPerUnit;
+    private final byte[] table; //Index into letters, or SEARCH
+
+    private CompiledGradingPolicy(GradingPolicy source, double[] cutoffs, String[] letters, String below) {
+        this.source = source;
+        this.quizWeight = source.quizWeight();
+        this.midtermWeight = source.midtermWeight();
+        this.finalWeight = source.finalWeight();
+        this.curved = source.curve() == GradingPolicy.Curve.Z_SCORE;
+        this.cutoffs = cutoffs;
+        this.letters = letters;
+        this.below = below;
+        double span = cutoffs[0] - cutoffs[cutoffs.length - 1];
+        if (span > 0) {
+            this.tableFrom = cutoffs[cutoffs.length - 1];
+            this.bucketsPerUnit = TABLE_SIZE / span;
+            this.table = buildTable(span / TABLE_SIZE);
+        }
+        else {
+            this.tableFrom = 0;
+            this.bucketsPerUnit = 0;
+            this.table = new byte[0];
+        }
+    }
+
+
+    //Throws IllegalArgumentException with a readable message when the policy cannot be used
+    static CompiledGradingPolicy compile(GradingPolicy policy) {
+        if (policy.quizWeight() < 0 || policy.midtermWeight() < 0 || policy.finalWeight() < 0) {
+            throw new IllegalArgumentException("Weights cannot be negative");
+        }
+        if (policy.quizWeight() + policy.midtermWeight() + policy.finalWeight() <= 0) {
+            throw new IllegalArgumentException("At least one component needs a weight");
+        }
+        if (policy.thresholds() == null || policy.thresholds().isBlank()) {
+            throw new IllegalArgumentException("No letter grade thresholds");
+        }
+        List<String> letters = new ArrayList<>();
+        List<Double> cutoffs = new ArrayList<>();
+        String below = INVALID;
+        String[] pairs = policy.thresholds().split(",");
+        for (int i = 0; i < pairs.length; i++) {
+            String pair = pairs[i].trim();
+            int colon = pair.lastIndexOf(':');
+            if (colon < 0) {
+                if (i != pairs.length - 1 || pair.isEmpty()) {
+                    throw new IllegalArgumentException("Only the last letter can leave out its cutoff: " + pair);
+                }
+                below = checkLetter(pair);
+                continue;
+            }
+            String letter = pair.substring(0, colon).trim();
+            double cutoff;
+            try {
+                cutoff = Double.parseDouble(pair.substring(colon + 1).trim());
+            }
+            catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Not a number in " + pair);
+            }
+            if (letter.isEmpty() || Double.isNaN(cutoff) || Double.isInfinite(cutoff)) {
+                throw new IllegalArgumentException("Bad threshold " + pair);
+            }
+            if (!cutoffs.isEmpty() && cutoff >= cutoffs.get(cutoffs.size() - 1)) {
+                throw new IllegalArgumentException("Cutoffs must fall from the best letter to the worst: " + pair);
+            }
+            letters.add(checkLetter(letter));
+            cutoffs.add(cutoff);
+        }
+        if (cutoffs.isEmpty()) {
+            throw new IllegalArgumentException("At least one letter needs a cutoff");
+        }
+        if (letters.size() > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many letters");
+        }
+        double[] cutoffArray = new double[cutoffs.size()];
+        for (int i = 0; i < cutoffArray.length; i++) {
+            cutoffArray[i] = cutoffs.get(i);
+        }
+        return new CompiledGradingPolicy(policy, cutoffArray, letters.toArray(new String[0]), below);
+    }
+
+
+    //Only letters with grade points can be handed out, any other letter would leave the section out of every GPA
+    private static String checkLetter(String letter) {
+        if (!GradePoints.IsLetter(letter)) {
+            throw new IllegalArgumentException("Unknown letter " + letter + ", use one of " + GradePoints.Letters());
+        }
+        return letter;
+    }
+
+
+    GradingPolicy source() {
+        return source;
+    }
+
+    //Z_SCORE: letterFor() is given the score's distance from the section mean in standard deviations
+    boolean isCurved() {
+        return curved;
+    }
+
+
+    double weightedScore(double quiz, double midterm, double finalScore) {
+        return (quiz * quizWeight) + (midterm * midtermWeight) + (finalScore * finalWeight);
+    }
+
+
+    //The weighted score, or the z-score for a curved policy
+    String letterFor(double value) {
+        if (value >= cutoffs[0]) {
+            return letters[0];
+        }
+        if (!(value >= tableFrom) || table.length == 0) { //Also catches NaN
+            return search(value);
+        }
+        int bucket = (int) ((value - tableFrom) * bucketsPerUnit);
+        if (bucket < table.length) {
+            byte index = table[bucket];
+            if (index != SEARCH) {
+                return letters[index];
+            }
+        }
+        return search(value);
+    }
+
+
+    //The first (highest) cutoff the value reaches
+    private String search(double value) {
+        int low = 0;
+        int high = cutoffs.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (value >= cutoffs[mid]) {
+                high = mid;
+            }
+            else {
+                low = mid + 1;
+            }
+        }
+        return low < cutoffs.length ? letters[low] : below;
+    }
+
+
+    //A bucket is only filled in when no cutoff lies within one bucket width of it,
+    //so rounding in the bucket index can never put a value on the wrong side of a cutoff
+    private byte[] buildTable(double bucketWidth) {
+        byte[] built = new byte[TABLE_SIZE];
+        for (int bucket = 0; bucket < TABLE_SIZE; bucket++) {
+            double from = tableFrom + bucket * bucketWidth;
+            double to = from + bucketWidth;
+            boolean nearCutoff = false;
+            for (double cutoff : cutoffs) {
+                if (cutoff >= from - bucketWidth && cutoff <= to + bucketWidth) {
+                    nearCutoff = true;
+                    break;
+                }
+            }
+            built[bucket] = nearCutoff ? SEARCH : (byte) letterIndex((from + to) / 2);
+        }
+        return built;
+    }
+
+    private int letterIndex(double value) {
+        for (int i = 0; i < cutoffs.length; i++) {
+            if (value >= cutoffs[i]) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("Bucket below the lowest cutoff");
+    }
+}
@@ -0,0 +1,29 @@
+package edu.univ.erp.service;
+
+import edu.univ.erp.domain.GradebookEntry;
+
+import java.io.BufferedWriter;
+import java.io.Writer;
+
+//The gradebook CSV layout, shared by the single-section export and the registrar-wide one
+final class GradebookCsv {
+    static final String[] HEADER = {"Student ID", "Student Name", "Quiz Score", "Midterm Score", "Final Score", "Final Grade"};
+
+    private GradebookCsv() {}
+
+    static String[] Row(GradebookEntry entry) {
+        return new String[]{
+                String.valueOf(entry.studentId()),
+                entry.studentName(),
+                String.valueOf(entry.quizScore()),
+                String.valueOf(entry.midtermScore()),
+                String.valueOf(entry.finalScore()),
+                entry.finalGrade() != null ? entry.finalGrade() : "" // Handle null grades
+        };
+    }
+
+    //CSVWriter writes straight through to the Writer it is given, so unbuffered writers (e.g. FileWriter) are wrapped
+    static Writer Buffered(Writer writer) {
+        return writer instanceof BufferedWriter ? writer : new BufferedWriter(writer, 64 * 1024);
+    }
+}
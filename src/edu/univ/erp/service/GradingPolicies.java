@@ -0,0 +1,39 @@
+package edu.univ.erp.service;
+
+import edu.univ.erp.data.GradingPolicyDAO;
+import edu.univ.erp.domain.GradingPolicy;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+//Finds the compiled policy a section is graded with
+//GradingPolicyDAO keeps the table in memory, and each distinct policy is compiled once per process
+//A stored policy that does not compile is logged and the section falls back to the default policy
+final class GradingPolicies {
+    private static final Logger logger = Logger.getLogger(GradingPolicies.class.getName());
+    private static final Map<GradingPolicy, CompiledGradingPolicy> Compiled = new ConcurrentHashMap<>();
+
+    private final GradingPolicyDAO gradingPolicyDAO = new GradingPolicyDAO();
+
+
+    CompiledGradingPolicy forSection(int sectionId) {
+        return compiled(gradingPolicyDAO.getPolicyForSection(sectionId));
+    }
+
+
+    static CompiledGradingPolicy compiled(GradingPolicy policy) {
+        if (policy == GradingPolicy.DEFAULT) {
+            return CompiledGradingPolicy.DEFAULT;
+        }
+        return Compiled.computeIfAbsent(policy, key -> {
+            try {
+                return CompiledGradingPolicy.compile(key);
+            }
+            catch (IllegalArgumentException e) {
+                logger.warning("Grading policy " + key.policyId() + " is not usable (" + e.getMessage() + "), using the default policy");
+                return CompiledGradingPolicy.DEFAULT;
+            }
+        });
+    }
+}
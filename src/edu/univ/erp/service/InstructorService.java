@@ -2,6 +2,7 @@ package edu.univ.erp.service;
 
 import edu.univ.erp.data.InstructorDAO;
 import edu.univ.erp.data.SettingsDAO;
+import edu.univ.erp.domain.GradeStatistics;
 import edu.univ.erp.domain.GradebookEntry;
 import edu.univ.erp.domain.SectionView;
 
@@ -12,11 +13,12 @@ import java.util.List;
 import java.util.logging.Logger;
 
 //This class is basically used by the UI to connect the Instructor logic on frontend to the backend
+//The instructor is the session's, passed with each call, so one instance serves every logged in instructor at once
 public class InstructorService {
     private static final Logger logger = Logger.getLogger(InstructorService.class.getName());
     private InstructorDAO instructorDAO;
     private SettingsDAO settingsDAO;
-    private int currentInstructorId;
+    private final GradingPolicies gradingPolicies = new GradingPolicies();
 
     public InstructorService(InstructorDAO instructorDAO, SettingsDAO settingsDAO) {
         this.instructorDAO = instructorDAO;
@@ -24,88 +26,70 @@ public class InstructorService {
     }
 
 
-    // This method will be called by Main after login
-    public void setCurrentInstructor(int instructorId) {
-        this.currentInstructorId = instructorId;
+    //The InstructorID of the logged in user, -1 if the user has no instructor profile
+    public int findInstructorIdForUser(int userId) {
+        return instructorDAO.getInstructorIdFromUserId(userId);
     }
 
 
-    public List<SectionView> getAssignedSections() {
-        return instructorDAO.getAssignedSections(this.currentInstructorId);
+    public List<SectionView> getAssignedSections(UserSession session) {
+        return instructorDAO.getAssignedSections(session.instructorId());
     }
 
 
-    public List<GradebookEntry> getGradebook(int sectionId) {
-        // TODO: Add a check here to ensure this.currentInstructorId
-        // is actually assigned to this sectionId, as per the brief.
+    public List<GradebookEntry> getGradebook(UserSession session, int sectionId) {
+        checkAssigned(session, sectionId);
         return instructorDAO.getGradebook(sectionId);
     }
 
 
+    //Every gradebook call is for one section, an instructor may only read or grade the sections they teach
+    //Throws SecurityException otherwise, which the API server answers with 403
+    private void checkAssigned(UserSession session, int sectionId) {
+        if (!instructorDAO.isAssigned(session.instructorId(), sectionId)) {
+            logger.warning("Instructor " + session.instructorId() + " refused access to section " + sectionId);
+            throw new SecurityException("Section " + sectionId + " is not assigned to you.");
+        }
+    }
+
+
     //This function basically calculates the final grade and saves all the grades into the database
-    public boolean saveAndCalculateGrades(int sectionId, List<GradebookEntry> gradebook) {
+    //The whole section is saved in one transaction, so either all the grades are saved or none are
+    public boolean saveAndCalculateGrades(UserSession session, int sectionId, List<GradebookEntry> gradebook) {
         //Check maintenance mode on every step
         if (settingsDAO.IsMaintenanceModeOn()) {
             logger.warning("Grade update failed: System is in Maintenance Mode.");
             return false;
         }
-        try {
-            for (GradebookEntry entry : gradebook) {
-                // --- Business Logic (Bonus) ---
-                // Per your design, weights are 20% quiz, 30% midterm, 50% final
-                double finalScore = (entry.quizScore() * 0.20) + (entry.midtermScore() * 0.30) + (entry.finalScore() * 0.50);
-                String finalGrade = CalculateLetterGrade(finalScore);
-
-                // Now, call the DAO to save everything
-                instructorDAO.updateGrade(
-                        entry.studentId(),
-                        sectionId,
-                        entry.quizScore(),
-                        entry.midtermScore(),
-                        entry.finalScore(),
-                        finalGrade
-                );
-            }
+        checkAssigned(session, sectionId);
+        //Weighted scores and letter grades for the whole section, by the section's grading policy
+        List<GradebookEntry> graded = SectionGradingEngine.grade(gradebook, gradingPolicies.forSection(sectionId)).entries();
+        boolean success = instructorDAO.updateGrades(sectionId, graded);
+        if (success) {
             logger.info("Grades successfully updated for section " + sectionId);
-            return true;
         }
-        catch (Exception e) {
-            e.printStackTrace();
-            return false;
+        else {
+            logger.severe("Grade update FAILED for section " + sectionId + ", no grades were saved.");
         }
+        return success;
     }
 
 
-    //Used to convert grades to LetterGrade
-    private String CalculateLetterGrade(double Score) {
-        if(Score<0) return "-"; //Invalid Grade
-        if(Score>= 90) return "A";
-        if(Score>=80) return "A-";
-        if(Score>=70) return "B";
-        if(Score>=60) return "B-";
-        if(Score>=50) return "C";
-        if(Score>=40) return "C-";
-        if(Score>=30) return "D";
-        return "F";
+    //Mean, median, standard deviation and histogram of the weighted scores of the students already graded
+    //Called off the EDT together with getGradebook
+    public GradeStatistics getGradeStatistics(UserSession session, int sectionId, List<GradebookEntry> gradebook) {
+        checkAssigned(session, sectionId);
+        return SectionGradingEngine.statisticsOfGraded(gradebook, gradingPolicies.forSection(sectionId));
     }
 
 
     //This method fetches all the gradebook data and writes it into the CSV
-    public void exportGradebookToCsv(int sectionId, Writer writer) throws Exception {
-        //Get the data that is visible on the table
-        List<GradebookEntry> gradebook = getGradebook(sectionId);
-        try (CSVWriter csvWriter = new CSVWriter(writer)) { //CSV Writer
-            csvWriter.writeNext(new String[]{"Student ID", "Student Name", "Quiz Score", "Midterm Score", "Final Score", "Final Grade"}); //Header row
-            for (GradebookEntry entry : gradebook) {
-                csvWriter.writeNext(new String[]{
-                        String.valueOf(entry.studentId()),
-                        entry.studentName(),
-                        String.valueOf(entry.quizScore()),
-                        String.valueOf(entry.midtermScore()),
-                        String.valueOf(entry.finalScore()),
-                        entry.finalGrade() != null ? entry.finalGrade() : "" // Handle null grades
-                });
-            }
+    public void exportGradebookToCsv(UserSession session, int sectionId, Writer writer) throws Exception {
+        checkAssigned(session, sectionId);
+        //Rows go from the ResultSet straight into the file, the gradebook is never held in memory
+        try (CSVWriter csvWriter = new CSVWriter(GradebookCsv.Buffered(writer))) { //CSV Writer
+            csvWriter.writeNext(GradebookCsv.HEADER); //Header row
+            instructorDAO.streamGradebook(sectionId, entry -> csvWriter.writeNext(GradebookCsv.Row(entry)));
         }
         //Exceptions handled in the UI where the JFileSelector is used
     }
@@ -0,0 +1,25 @@
+package edu.univ.erp.service;
+
+//How StudentService.RegisterForSection takes a seat in a section
+//ROW_LOCK: SELECT ... FOR UPDATE on the section, then INSERT the enrollment, then UPDATE the EnrolledCount
+//          Every student registering for the same section waits on that row lock for all three round trips
+//CONDITIONAL_UPDATE: take the seat with a single UPDATE ... SET EnrolledCount = EnrolledCount + 1 WHERE EnrolledCount < Capacity,
+//          then INSERT the enrollment
+//          The section row is only locked from that one UPDATE until the commit, which is what we want when registration opens
+public enum SeatAllocationMode {
+    ROW_LOCK,
+    CONDITIONAL_UPDATE;
+
+    //Reads the mode from a name like "conditional_update", falls back to ROW_LOCK for unknown values
+    public static SeatAllocationMode fromName(String name) {
+        if (name == null) {
+            return ROW_LOCK;
+        }
+        try {
+            return valueOf(name.trim().toUpperCase());
+        }
+        catch (IllegalArgumentException e) {
+            return ROW_LOCK;
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package edu.univ.erp.service;
+
+import edu.univ.erp.data.GradeColumns;
+import edu.univ.erp.domain.GradeDistributionReport;
+import edu.univ.erp.domain.GradeStatistics;
+import edu.univ.erp.domain.GradebookEntry;
+import edu.univ.erp.domain.SectionGradeStats;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+
+//Grades a section and summarises its scores in one pass over primitive arrays
+//The component scores are copied into double[] columns once, then the weighted score, the letter grade and the
+//running sums for mean, standard deviation and the histogram are all done per index, with no boxing
+//Weights and letter thresholds come from the section's CompiledGradingPolicy, a curved policy needs the section's
+//mean and standard deviation first so its letters are given in a second pass
+//Sections above PARALLEL_THRESHOLD students are scored with a parallel stream
+//The department report and the full regrade run the same per-section work over every section as a fork-join task
+final class SectionGradingEngine {
+    static final int PARALLEL_THRESHOLD = 10_000;
+    private static final int REPORT_LEAF_ROWS = 8_192; //A fork-join leaf handles at least this many rows unless it is one section
+
+    //The entries with their letter grades filled in, and the statistics of their weighted scores
+    record GradedSection(List<GradebookEntry> entries, GradeStatistics statistics) {}
+
+    private SectionGradingEngine() {}
+
+
+    static GradedSection grade(List<GradebookEntry> gradebook, CompiledGradingPolicy policy) {
+        int n = gradebook.size();
+        double[] quiz = new double[n];
+        double[] midterm = new double[n];
+        double[] finals = new double[n];
+        for (int i = 0; i < n; i++) {
+            GradebookEntry entry = gradebook.get(i);
+            quiz[i] = entry.quizScore();
+            midterm[i] = entry.midtermScore();
+            finals[i] = entry.finalScore();
+        }
+        double[] weighted = new double[n];
+        String[] letters = new String[n];
+        IntStream indexes = IntStream.range(0, n);
+        if (n >= PARALLEL_THRESHOLD) {
+            indexes = indexes.parallel();
+        }
+        if (policy.isCurved()) {
+            indexes.forEach(i -> weighted[i] = policy.weightedScore(quiz[i], midterm[i], finals[i]));
+        }
+        else {
+            indexes.forEach(i -> {
+                weighted[i] = policy.weightedScore(quiz[i], midterm[i], finals[i]);
+                letters[i] = policy.letterFor(weighted[i]);
+            });
+        }
+        GradeStatistics statistics = statistics(weighted, 0, n);
+        if (policy.isCurved()) {
+            curveLetters(policy, statistics, weighted, letters, 0, n);
+        }
+        List<GradebookEntry> graded = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            GradebookEntry entry = gradebook.get(i);
+            graded.add(new GradebookEntry(entry.studentId(), entry.studentName(), quiz[i], midterm[i], finals[i], letters[i]));
+        }
+        return new GradedSection(graded, statistics);
+    }
+
+
+    //Statistics of the students that already have a saved grade, as the gradebook shows them
+    static GradeStatistics statisticsOfGraded(List<GradebookEntry> gradebook, CompiledGradingPolicy policy) {
+        double[] weighted = new double[gradebook.size()];
+        int n = 0;
+        for (GradebookEntry entry : gradebook) {
+            if (entry.finalGrade() != null) {
+                weighted[n++] = policy.weightedScore(entry.quizScore(), entry.midtermScore(), entry.finalScore());
+            }
+        }
+        return statistics(weighted, 0, n);
+    }
+
+
+    //Mean, standard deviation, min, max and histogram in one pass over scores[from, to), the median from a sorted copy
+    static GradeStatistics statistics(double[] scores, int from, int to) {
+        Accumulator sums = new Accumulator();
+        sums.add(scores, from, to);
+        return sums.toStatistics(median(scores, from, to));
+    }
+
+
+    //Per-section statistics and the overall ones, every section scored with its own policy
+    //The sections are split across the common fork-join pool, each leaf returns its sections and the sums to merge
+    static GradeDistributionReport distribution(String department, GradeColumns columns, IntFunction<CompiledGradingPolicy> policyForSection) {
+        int rows = columns.rowCount();
+        double[] weighted = new double[rows];
+        ReportPart part = new SectionTask(columns, policyForSection, weighted, null, 0, columns.sectionCount()).invoke();
+
+        double[] sorted = Arrays.copyOf(weighted, rows);
+        Arrays.parallelSort(sorted);
+        GradeStatistics overall = part.sums.toStatistics(sortedMedian(sorted, 0, rows));
+        return new GradeDistributionReport(department, overall, part.sections);
+    }
+
+
+    //The letter grade of every row under its section's current policy, in row order
+    static String[] regrade(GradeColumns columns, IntFunction<CompiledGradingPolicy> policyForSection) {
+        String[] letters = new String[columns.rowCount()];
+        new SectionTask(columns, policyForSection, new double[columns.rowCount()], letters, 0, columns.sectionCount()).invoke();
+        return letters;
+    }
+
+
+    //z = (score - mean) / standard deviation, everyone gets z = 0 when all scores are equal
+    private static void curveLetters(CompiledGradingPolicy policy, GradeStatistics statistics, double[] weighted, String[] letters, int from, int to) {
+        double mean = statistics.mean();
+        double stdDev = statistics.stdDev();
+        for (int i = from; i < to; i++) {
+            letters[i] = policy.letterFor(stdDev > 0 ? (weighted[i] - mean) / stdDev : 0);
+        }
+    }
+
+
+    private static double median(double[] scores, int from, int to) {
+        if (to - from == 0) {
+            return 0;
+        }
+        double[] sorted = Arrays.copyOfRange(scores, from, to);
+        if (sorted.length >= PARALLEL_THRESHOLD) {
+            Arrays.parallelSort(sorted);
+        }
+        else {
+            Arrays.sort(sorted);
+        }
+        return sortedMedian(sorted, 0, sorted.length);
+    }
+
+    private static double sortedMedian(double[] sorted, int from, int to) {
+        int n = to - from;
+        if (n == 0) {
+            return 0;
+        }
+        int mid = from + n / 2;
+        return n % 2 == 1 ? sorted[mid] : (sorted[mid - 1] + sorted[mid]) / 2;
+    }
+
+
+    //Running sums, merged across fork-join leaves
+    private static final class Accumulator {
+        private int count;
+        private double sum;
+        private double sumOfSquares;
+        private double min = Double.POSITIVE_INFINITY;
+        private double max = Double.NEGATIVE_INFINITY;
+        private final int[] histogram = new int[GradeStatistics.BINS];
+
+        void add(double[] scores, int from, int to) {
+            for (int i = from; i < to; i++) {
+                double score = scores[i];
+                sum += score;
+                sumOfSquares += score * score;
+                min = Math.min(min, score);
+                max = Math.max(max, score);
+                histogram[GradeStatistics.binFor(score)]++;
+            }
+            count += to - from;
+        }
+
+        void merge(Accumulator other) {
+            count += other.count;
+            sum += other.sum;
+            sumOfSquares += other.sumOfSquares;
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+            for (int bin = 0; bin < histogram.length; bin++) {
+                histogram[bin] += other.histogram[bin];
+            }
+        }
+
+        //Population standard deviation
+        GradeStatistics toStatistics(double median) {
+            if (count == 0) {
+                return GradeStatistics.EMPTY;
+            }
+            double mean = sum / count;
+            double variance = Math.max(0, sumOfSquares / count - mean * mean);
+            return new GradeStatistics(count, mean, median, Math.sqrt(variance), min, max, histogram.clone());
+        }
+    }
+
+
+    //What a fork-join leaf hands back: its sections in order and their combined sums
+    private record ReportPart(List<SectionGradeStats> sections, Accumulator sums) {}
+
+    //Scores the rows of sections [fromSection, toSection) into weighted (and letters, when given), each section with its own policy
+    private static final class SectionTask extends RecursiveTask<ReportPart> {
+        private final GradeColumns columns;
+        private final IntFunction<CompiledGradingPolicy> policyForSection;
+        private final double[] weighted;
+        private final String[] letters;
+        private final int fromSection;
+        private final int toSection;
+
+        SectionTask(GradeColumns columns, IntFunction<CompiledGradingPolicy> policyForSection, double[] weighted, String[] letters, int fromSection, int toSection) {
+            this.columns = columns;
+            this.policyForSection = policyForSection;
+            this.weighted = weighted;
+            this.letters = letters;
+            this.fromSection = fromSection;
+            this.toSection = toSection;
+        }
+
+        @Override
+        protected ReportPart compute() {
+            int rows = columns.sectionStart(toSection) - columns.sectionStart(fromSection);
+            if (toSection - fromSection <= 1 || rows <= REPORT_LEAF_ROWS) {
+                return computeDirectly();
+            }
+            int middle = (fromSection + toSection) >>> 1;
+            SectionTask left = new SectionTask(columns, policyForSection, weighted, letters, fromSection, middle);
+            left.fork();
+            ReportPart right = new SectionTask(columns, policyForSection, weighted, letters, middle, toSection).compute();
+            ReportPart leftPart = left.join();
+            leftPart.sections.addAll(right.sections);
+            leftPart.sums.merge(right.sums);
+            return leftPart;
+        }
+
+        private ReportPart computeDirectly() {
+            double[] quiz = columns.quizScores();
+            double[] midterm = columns.midtermScores();
+            double[] finals = columns.finalScores();
+            List<SectionGradeStats> sections = new ArrayList<>(toSection - fromSection);
+            Accumulator total = new Accumulator();
+            for (int section = fromSection; section < toSection; section++) {
+                int from = columns.sectionStart(section);
+                int to = columns.sectionStart(section + 1);
+                CompiledGradingPolicy policy = policyForSection.apply(columns.sectionId(section));
+                for (int i = from; i < to; i++) {
+                    weighted[i] = policy.weightedScore(quiz[i], midterm[i], finals[i]);
+                }
+                Accumulator sums = new Accumulator();
+                sums.add(weighted, from, to);
+                total.merge(sums);
+                GradeStatistics statistics = sums.toStatistics(median(weighted, from, to));
+                if (letters != null) {
+                    if (policy.isCurved()) {
+                        curveLetters(policy, statistics, weighted, letters, from, to);
+                    }
+                    else {
+                        for (int i = from; i < to; i++) {
+                            letters[i] = policy.letterFor(weighted[i]);
+                        }
+                    }
+                }
+                sections.add(new SectionGradeStats(columns.sectionId(section), columns.courseCode(section), columns.sectionNumber(section), statistics));
+            }
+            return new ReportPart(sections, total);
+        }
+    }
+}
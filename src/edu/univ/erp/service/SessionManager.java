@@ -0,0 +1,113 @@
+package edu.univ.erp.service;
+
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+//The logged in users of the API server, found by session token
+//A session that has not been used for idleTimeout ends, the next call with its token has to log in again
+//Expired sessions are swept by the calls themselves at most once per sweep interval, so no thread of its own is needed
+public class SessionManager {
+    private static final Logger logger = Logger.getLogger(SessionManager.class.getName());
+    private static final int TOKEN_BYTES = 32;
+
+    //A session and when it was last used, lastUsed is written by every call with the token
+    private static final class Entry {
+        final UserSession session;
+        volatile long lastUsed;
+
+        Entry(UserSession session, long lastUsed) {
+            this.session = session;
+            this.lastUsed = lastUsed;
+        }
+    }
+
+    private final Map<String, Entry> sessions = new ConcurrentHashMap<>();
+    private final SecureRandom random = new SecureRandom();
+    private final long idleNanos;
+    private final long sweepNanos;
+    private final AtomicLong nextSweep;
+    private final Consumer<UserSession> onEnd;
+
+    //onEnd is told about every session that ends, by logout or by expiry, so per-user state can be let go
+    public SessionManager(Duration idleTimeout, Consumer<UserSession> onEnd) {
+        this.idleNanos = idleTimeout.toNanos();
+        this.sweepNanos = Math.max(1, Math.min(idleNanos, Duration.ofMinutes(1).toNanos()));
+        this.nextSweep = new AtomicLong(System.nanoTime() + sweepNanos);
+        this.onEnd = onEnd;
+    }
+
+
+    //Starts a session for a logged in user and returns it with its new token
+    public UserSession open(int userId, String email, String role, int profileId) {
+        byte[] tokenBytes = new byte[TOKEN_BYTES];
+        random.nextBytes(tokenBytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(tokenBytes);
+        UserSession session = new UserSession(token, userId, email, role, profileId);
+        sessions.put(token, new Entry(session, System.nanoTime()));
+        sweepIfDue();
+        return session;
+    }
+
+
+    //The session of the token, null if there is none or it has expired
+    public UserSession find(String token) {
+        sweepIfDue();
+        Entry entry = sessions.get(token);
+        if (entry == null) {
+            return null;
+        }
+        long now = System.nanoTime();
+        if (now - entry.lastUsed > idleNanos) {
+            end(token, entry);
+            return null;
+        }
+        entry.lastUsed = now;
+        return entry.session;
+    }
+
+
+    //Ends the session on logout, false if it had already ended
+    public boolean close(String token) {
+        Entry entry = sessions.get(token);
+        return entry != null && end(token, entry);
+    }
+
+
+    public int size() {
+        return sessions.size();
+    }
+
+
+    private boolean end(String token, Entry entry) {
+        if (!sessions.remove(token, entry)) {
+            return false; //Ended by another call already
+        }
+        onEnd.accept(entry.session);
+        return true;
+    }
+
+
+    //One caller at a time walks the sessions, the others go on
+    private void sweepIfDue() {
+        long now = System.nanoTime();
+        long due = nextSweep.get();
+        if (now - due < 0 || !nextSweep.compareAndSet(due, now + sweepNanos)) {
+            return;
+        }
+        int expired = 0;
+        for (Map.Entry<String, Entry> session : sessions.entrySet()) {
+            if (now - session.getValue().lastUsed > idleNanos && end(session.getKey(), session.getValue())) {
+                expired++;
+            }
+        }
+        if (expired > 0) {
+            logger.info("Expired " + expired + " idle sessions, " + sessions.size() + " remain");
+        }
+    }
+}
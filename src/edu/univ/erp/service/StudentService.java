@@ -1,104 +1,161 @@
 package edu.univ.erp.service;
 
+import edu.univ.erp.data.GpaDAO;
+import edu.univ.erp.data.SeatCountFeed;
 import edu.univ.erp.data.SettingsDAO;
 import edu.univ.erp.data.StudentDAO;
+import edu.univ.erp.data.WaitlistDAO;
+import edu.univ.erp.data.WaitlistNotices;
+import edu.univ.erp.data.WaitlistQueues;
+import edu.univ.erp.domain.CartResult;
+import edu.univ.erp.domain.CatalogSection;
 import edu.univ.erp.domain.EnrolledSection;
 import edu.univ.erp.domain.Grade;
+import edu.univ.erp.domain.SeatDelta;
 import edu.univ.erp.domain.SectionView;
+import edu.univ.erp.domain.WaitlistEntry;
+import edu.univ.erp.domain.WaitlistPromotion;
 import edu.univ.erp.util.DatabaseUtil;
+import edu.univ.erp.util.WeekOccupancy;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
 
 
 //This class connects the UI on the frontend to the backend logic
 //This basically contains wrapper for the functions in the DAO files
+//The student is the session's, passed with each call, so one instance serves every logged in student at once
 public class StudentService {
     private static final Logger logger = Logger.getLogger(StudentService.class.getName());
+    private static final int PROMOTION_CANDIDATES = 16; //Waiting students looked at per freed seat, see EligibleWaiters
     private StudentDAO studentDAO;
     private SettingsDAO settingsDAO;
-    private int currentStudentId;
+    private final SeatCountFeed seatCountFeed = new SeatCountFeed();
+    private final WaitlistDAO waitlistDAO = new WaitlistDAO();
+    private final GpaDAO gpaDAO = new GpaDAO();
+    //Each logged in student's week by StudentID, kept up to date by register and drop, built when first needed and let go by endSession
+    private final Map<Integer, WeekOccupancy> occupancies = new ConcurrentHashMap<>();
+    private volatile SeatAllocationMode seatAllocationMode = SeatAllocationMode.ROW_LOCK;
 
     public StudentService(StudentDAO studentDAO, SettingsDAO settingsDAO) {
         this.studentDAO = studentDAO;
         this.settingsDAO = settingsDAO;
     }
 
-    //Called by Main after login
-    public void setCurrentStudent(int studentId) {
-        this.currentStudentId = studentId;
+    //The StudentID of the logged in user, -1 if the user has no student profile
+    public int findStudentIdForUser(int userId) {
+        return studentDAO.getStudentIdFromUserId(userId);
     }
 
 
-    public int getCurrentStudentId() {
-        return this.currentStudentId;
+    //Switches how RegisterForSection takes a seat, see SeatAllocationMode
+    public void setSeatAllocationMode(SeatAllocationMode seatAllocationMode) {
+        this.seatAllocationMode = seatAllocationMode;
     }
 
 
-    public List<SectionView> getCourseCatalog() {
-        return studentDAO.getAvailableSections(this.currentStudentId);
+    //Lets go of what was kept for the session's student, called on logout and when the session expires
+    public void endSession(UserSession session) {
+        if (session.isStudent()) {
+            occupancies.remove(session.studentId());
+            WaitlistNotices.Forget(session.studentId());
+        }
+    }
+
+
+    //Sections that clash with the student's timetable come back flagged, and the student's week is refreshed on the way
+    public List<SectionView> getCourseCatalog(UserSession session) {
+        int studentId = session.studentId();
+        int[] enrolledIds = studentDAO.getEnrolledSectionIds(studentId);
+        WeekOccupancy week = studentDAO.getOccupancy(enrolledIds);
+        occupancies.put(studentId, week);
+        return studentDAO.getAvailableSections(enrolledIds, week);
     }
 
 
-    public List<EnrolledSection> getTimetable() {
-        return studentDAO.getTimetable(this.currentStudentId);
+    //Where the catalog view starts following seat counts, taken just before it loads the catalog
+    public long getSeatCursor() {
+        return seatCountFeed.getCursor();
     }
 
 
-    public List<Grade> getGrades() {
-        return studentDAO.getGrades(this.currentStudentId);
+    //The seat counts that changed after the cursor, so an open catalog can update its rows without a reload
+    public SeatDelta getSeatChanges(long cursor) {
+        return seatCountFeed.getChangesSince(cursor);
+    }
+
+
+    public List<EnrolledSection> getTimetable(UserSession session) {
+        return studentDAO.getTimetable(session.studentId());
+    }
+
+
+    public List<Grade> getGrades(UserSession session) {
+        return studentDAO.getGrades(session.studentId());
     }
 
 
     //This method is used to register for cases by the students
     //It is called in the CourseCatalogPanel when registering for courses
-    public String RegisterForSection(int sectionId) {
+    //How the seat is taken depends on the SeatAllocationMode, both modes give the same full/duplicate/success answers
+    public String RegisterForSection(UserSession session, int sectionId) {
+        int studentId = session.studentId();
         if (settingsDAO.IsMaintenanceModeOn()) { //Check for maintenance mode
             return "Registration failed: System is in Maintenance Mode.";
         }
         if(DeadlinePassed()){ //Check for deadline
             return "Registration deadline has passed. The deadline was: "+ GetDeadlineString() +"Now no longer allowed to register";
         }
+        //Clash check against the student's week in memory, the section's slot was parsed when the catalog was built
+        CatalogSection section = studentDAO.findSection(sectionId);
+        WeekOccupancy week = GetOccupancy(studentId);
+        if (section != null && !week.contains(sectionId)) {
+            String clash = week.findClash(section.slot());
+            if (clash != null) {
+                return "Registration failed: " + section.timeSlot() + " clashes with " + clash + " in your timetable.";
+            }
+        }
         Connection conn = null;
         try {
             conn = DatabaseUtil.GetStudentConnection();
             conn.setAutoCommit(false);
-            String checkSql = "SELECT EnrolledCount, Capacity FROM Sections WHERE SectionID = ? FOR UPDATE";
-            int enrolled = 0;
-            int capacity = 0;
-            try (PreparedStatement checkStmt = conn.prepareStatement(checkSql)) {
-                checkStmt.setInt(1, sectionId);
-                try (ResultSet rs = checkStmt.executeQuery()) {
-                    if (rs.next()) {
-                        enrolled = rs.getInt("EnrolledCount");
-                        capacity = rs.getInt("Capacity");
-                    } else {
-                        throw new Exception("Section not found.");
-                    }
-                }
+            //Seats given to waiting students on the way, they are committed even when no seat is left for this student
+            List<WaitlistPromotion> promoted = new ArrayList<>();
+            boolean seatTaken;
+            if (seatAllocationMode == SeatAllocationMode.CONDITIONAL_UPDATE) {
+                seatTaken = TakeSeatWithConditionalUpdate(conn, studentId, sectionId, section, promoted);
             }
-            if (enrolled >= capacity) {
-                conn.rollback();
-                return "Registration failed: Class is full.";
+            else {
+                seatTaken = TakeSeatWithRowLock(conn, studentId, sectionId, section, promoted);
             }
-            String enrollSql = "INSERT INTO Enrollments (StudentID, SectionID, EnrollmentDate) VALUES (?, ?, CURDATE())";
-            try (PreparedStatement enrollStmt = conn.prepareStatement(enrollSql)) {
-                enrollStmt.setInt(1, this.currentStudentId);
-                enrollStmt.setInt(2, sectionId);
-                enrollStmt.executeUpdate();
-            }
-            String updateSql = "UPDATE Sections SET EnrolledCount = ? WHERE SectionID = ?";
-            try (PreparedStatement updateStmt = conn.prepareStatement(updateSql)) {
-                updateStmt.setInt(1, enrolled + 1);
-                updateStmt.setInt(2, sectionId);
-                updateStmt.executeUpdate();
+            if (!seatTaken) {
+                if (promoted.isEmpty()) {
+                    conn.rollback();
+                }
+                else {
+                    conn.commit();
+                    SeatCountFeed.Publish(sectionId);
+                    AnnouncePromotions(sectionId, section, promoted);
+                }
+                return "Registration failed: Class is full.";
             }
             conn.commit();
-            logger.info("Student " + currentStudentId + " registered for section " + sectionId);
+            SeatCountFeed.Publish(sectionId);
+            AnnouncePromotions(sectionId, section, promoted);
+            if (section != null) {
+                //Applied to the week as it is now, another call for the same student may have changed it meanwhile
+                occupancies.computeIfPresent(studentId, (id, current) -> current.with(sectionId, section.courseCode(), section.slot()));
+            }
+            logger.info("Student " + studentId + " registered for section " + sectionId);
             return "Successfully registered!";
         }
         catch (Exception e) {
@@ -110,7 +167,10 @@ public class StudentService {
             catch (Exception re) {
                 re.printStackTrace();
             }
-            if (e.getMessage().contains("Duplicate entry")) {
+            if (e instanceof SectionNotFoundException) {
+                return "Registration failed: Section not found.";
+            }
+            if (IsDuplicateEntry(e)) {
                 return "Registration failed: You are already enrolled in this section.";
             }
             e.printStackTrace();
@@ -129,8 +189,280 @@ public class StudentService {
     }
 
 
+    //The original seat allocation, locks the section row for the whole check-insert-update sequence
+    //The same read tells whether students are waiting, their free seats go to them first (see PromoteWaiting) and only a
+    //seat none of them can take is left for this student
+    //Returns false if the class is full
+    private boolean TakeSeatWithRowLock(Connection conn, int studentId, int sectionId, CatalogSection section,
+                                        List<WaitlistPromotion> promoted) throws Exception {
+        String checkSql = "SELECT s.EnrolledCount, s.Capacity, "
+                + "EXISTS (SELECT 1 FROM Waitlist w WHERE w.SectionID = s.SectionID AND w.PromotedAt IS NULL) AS Waiting "
+                + "FROM Sections s WHERE s.SectionID = ? FOR UPDATE";
+        int enrolled = 0;
+        int capacity = 0;
+        boolean waiting;
+        try (PreparedStatement checkStmt = conn.prepareStatement(checkSql)) {
+            checkStmt.setInt(1, sectionId);
+            try (ResultSet rs = checkStmt.executeQuery()) {
+                if (rs.next()) {
+                    enrolled = rs.getInt("EnrolledCount");
+                    capacity = rs.getInt("Capacity");
+                    waiting = rs.getBoolean("Waiting");
+                } else {
+                    throw new SectionNotFoundException();
+                }
+            }
+        }
+        if (waiting && enrolled < capacity) {
+            promoted.addAll(PromoteWaiting(conn, sectionId, EligibleWaiters(conn, sectionId, section), capacity - enrolled));
+            enrolled += promoted.size();
+            if (promoted.stream().anyMatch(promotion -> promotion.studentId() == studentId)) {
+                return true; //The student was waiting themselves and has just been given a seat
+            }
+        }
+        if (enrolled >= capacity) {
+            return false;
+        }
+        InsertEnrollment(conn, studentId, sectionId);
+        String updateSql = "UPDATE Sections SET EnrolledCount = ? WHERE SectionID = ?";
+        try (PreparedStatement updateStmt = conn.prepareStatement(updateSql)) {
+            updateStmt.setInt(1, enrolled + 1);
+            updateStmt.setInt(2, sectionId);
+            updateStmt.executeUpdate();
+        }
+        return true;
+    }
+
+
+    //Seat allocation for registration surges
+    //The seat is taken first with one conditional UPDATE, so the hot section row is only locked from this statement to the commit
+    //The UPDATE also refuses a section with students waiting, so registering directly never skips the waitlist
+    //The enrollment is inserted after it, a duplicate fails there and the caller rolls back the seat
+    //Inserting first would take a shared lock on the section row for the foreign key, and two registrations both upgrading
+    //that lock to the UPDATE's exclusive one deadlock each other
+    //Returns false if the class is full
+    private boolean TakeSeatWithConditionalUpdate(Connection conn, int studentId, int sectionId, CatalogSection section,
+                                                  List<WaitlistPromotion> promoted) throws Exception {
+        String takeSeatSql = "UPDATE Sections SET EnrolledCount = EnrolledCount + 1 WHERE SectionID = ? AND EnrolledCount < Capacity "
+                + "AND NOT EXISTS (SELECT 1 FROM Waitlist WHERE SectionID = ? AND PromotedAt IS NULL)";
+        try (PreparedStatement takeSeatStmt = conn.prepareStatement(takeSeatSql)) {
+            takeSeatStmt.setInt(1, sectionId);
+            takeSeatStmt.setInt(2, sectionId);
+            if (takeSeatStmt.executeUpdate() == 0) {
+                //No row changed: the class is full, there is no such section, or students are waiting for it
+                //The locking path tells these apart and gives free seats to the waiting students first
+                return TakeSeatWithRowLock(conn, studentId, sectionId, section, promoted);
+            }
+        }
+        InsertEnrollment(conn, studentId, sectionId);
+        return true;
+    }
+
+
+    //Thrown by both seat allocation modes when the section does not exist, so it is not reported as full
+    private static final class SectionNotFoundException extends Exception {
+        SectionNotFoundException() {
+            super("Section not found.");
+        }
+    }
+
+
+    private void InsertEnrollment(Connection conn, int studentId, int sectionId) throws Exception {
+        String enrollSql = "INSERT INTO Enrollments (StudentID, SectionID, EnrollmentDate) VALUES (?, ?, CURDATE())";
+        try (PreparedStatement enrollStmt = conn.prepareStatement(enrollSql)) {
+            enrollStmt.setInt(1, studentId);
+            enrollStmt.setInt(2, sectionId);
+            enrollStmt.executeUpdate();
+        }
+    }
+
+
+    //Registers the student for every section in the cart in one transaction, or for none of them
+    //Everything the catalog snapshot can answer (already enrolled, clashes with the timetable and within the cart) is checked first
+    //in memory, and all problems are reported together
+    //The section rows are then locked with one SELECT ... FOR UPDATE in SectionID order, so two carts sharing sections always lock
+    //them in the same order and cannot deadlock, and the enrollments and seat counts are written as two batches
+    public CartResult registerCart(UserSession session, int[] sectionIds) {
+        int studentId = session.studentId();
+        if (settingsDAO.IsMaintenanceModeOn()) {
+            return CartResult.failed("Registration failed: System is in Maintenance Mode.");
+        }
+        if (DeadlinePassed()) {
+            return CartResult.failed("Registration deadline has passed. The deadline was: " + GetDeadlineString() + "Now no longer allowed to register");
+        }
+        int[] ids = Arrays.stream(sectionIds).distinct().sorted().toArray();
+        if (ids.length == 0) {
+            return CartResult.failed("Registration failed: The cart is empty.");
+        }
+        //Each accepted section is added to the week, so the later ones are also checked against the rest of the cart
+        List<String> problems = new ArrayList<>();
+        CatalogSection[] sections = new CatalogSection[ids.length];
+        WeekOccupancy week = GetOccupancy(studentId);
+        for (int i = 0; i < ids.length; i++) {
+            CatalogSection section = studentDAO.findSection(ids[i]);
+            sections[i] = section;
+            if (section == null) {
+                continue; //Not in the snapshot yet, the lock query below finds out if it exists
+            }
+            if (week.contains(ids[i])) {
+                problems.add(section.courseCode() + ": You are already enrolled in this section.");
+                continue;
+            }
+            String clash = week.findClash(section.slot());
+            if (clash != null) {
+                problems.add(section.courseCode() + ": " + section.timeSlot() + " clashes with " + clash + ".");
+                continue;
+            }
+            week = week.with(ids[i], section.courseCode(), section.slot());
+        }
+        if (!problems.isEmpty()) {
+            return new CartResult(0, problems);
+        }
+        Connection conn = null;
+        try {
+            conn = DatabaseUtil.GetStudentConnection();
+            conn.setAutoCommit(false);
+            //Seats given to waiting students on the way, by cart index, committed even when the cart itself fails
+            List<List<WaitlistPromotion>> promoted = new ArrayList<>();
+            LockSeats(conn, ids, sections, problems, promoted);
+            if (!problems.isEmpty()) {
+                if (promoted.stream().allMatch(List::isEmpty)) {
+                    conn.rollback();
+                }
+                else {
+                    conn.commit();
+                    for (int i = 0; i < ids.length; i++) {
+                        if (!promoted.get(i).isEmpty()) {
+                            SeatCountFeed.Publish(ids[i]);
+                            AnnouncePromotions(ids[i], sections[i], promoted.get(i));
+                        }
+                    }
+                }
+                return new CartResult(0, problems);
+            }
+            String enrollSql = "INSERT INTO Enrollments (StudentID, SectionID, EnrollmentDate) VALUES (?, ?, CURDATE())";
+            try (PreparedStatement enrollStmt = conn.prepareStatement(enrollSql)) {
+                for (int sectionId : ids) {
+                    enrollStmt.setInt(1, studentId);
+                    enrollStmt.setInt(2, sectionId);
+                    enrollStmt.addBatch();
+                }
+                enrollStmt.executeBatch();
+            }
+            String updateSql = "UPDATE Sections SET EnrolledCount = EnrolledCount + 1 WHERE SectionID = ?";
+            try (PreparedStatement updateStmt = conn.prepareStatement(updateSql)) {
+                for (int sectionId : ids) {
+                    updateStmt.setInt(1, sectionId);
+                    updateStmt.addBatch();
+                }
+                updateStmt.executeBatch();
+            }
+            conn.commit();
+            for (int i = 0; i < ids.length; i++) {
+                SeatCountFeed.Publish(ids[i]);
+                AnnouncePromotions(ids[i], sections[i], promoted.get(i));
+                CatalogSection section = sections[i];
+                if (section != null) {
+                    int sectionId = ids[i];
+                    occupancies.computeIfPresent(studentId, (id, current) -> current.with(sectionId, section.courseCode(), section.slot()));
+                }
+            }
+            logger.info("Student " + studentId + " registered for " + ids.length + " sections from the cart " + Arrays.toString(ids));
+            return new CartResult(ids.length, List.of());
+        }
+        catch (Exception e) {
+            try {
+                if (conn != null) {
+                    conn.rollback();
+                }
+            }
+            catch (Exception re) {
+                re.printStackTrace();
+            }
+            if (IsDuplicateEntry(e)) {
+                return CartResult.failed("Registration failed: You are already enrolled in one of these sections.");
+            }
+            e.printStackTrace();
+            return CartResult.failed("Registration failed: A database error occurred.");
+        }
+        finally {
+            try {
+                if (conn != null) {
+                    conn.close();
+                }
+            }
+            catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+
+    //Locks the cart's section rows in ascending SectionID order and adds a problem for every section that is full or gone
+    //ids is sorted, and the rows are locked in the order the ORDER BY reads them
+    //A section with students waiting gives its free seats to them first, promoted gets one list per cart section
+    private void LockSeats(Connection conn, int[] ids, CatalogSection[] sections, List<String> problems,
+                           List<List<WaitlistPromotion>> promoted) throws Exception {
+        String lockSql = "SELECT s.SectionID, s.EnrolledCount, s.Capacity, "
+                + "EXISTS (SELECT 1 FROM Waitlist w WHERE w.SectionID = s.SectionID AND w.PromotedAt IS NULL) AS Waiting "
+                + "FROM Sections s WHERE s.SectionID IN (" + DatabaseUtil.Placeholders(ids.length) + ") ORDER BY s.SectionID FOR UPDATE";
+        int[] freeSeats = new int[ids.length];
+        boolean[] waiting = new boolean[ids.length];
+        Arrays.fill(freeSeats, Integer.MIN_VALUE);
+        try (PreparedStatement lockStmt = conn.prepareStatement(lockSql)) {
+            for (int i = 0; i < ids.length; i++) {
+                lockStmt.setInt(i + 1, ids[i]);
+            }
+            try (ResultSet rs = lockStmt.executeQuery()) {
+                while (rs.next()) {
+                    int i = Arrays.binarySearch(ids, rs.getInt("SectionID"));
+                    freeSeats[i] = rs.getInt("Capacity") - rs.getInt("EnrolledCount");
+                    waiting[i] = rs.getBoolean("Waiting");
+                }
+            }
+        }
+        for (int i = 0; i < ids.length; i++) {
+            List<WaitlistPromotion> given = waiting[i] && freeSeats[i] > 0
+                    ? PromoteWaiting(conn, ids[i], EligibleWaiters(conn, ids[i], sections[i]), freeSeats[i]) : List.of();
+            promoted.add(given);
+            if (freeSeats[i] != Integer.MIN_VALUE) {
+                freeSeats[i] -= given.size();
+            }
+        }
+        for (int i = 0; i < ids.length; i++) {
+            String name = sections[i] == null ? "Section " + ids[i] : sections[i].courseCode();
+            if (freeSeats[i] == Integer.MIN_VALUE) {
+                problems.add(name + ": The section no longer exists.");
+            }
+            else if (freeSeats[i] <= 0) {
+                problems.add(name + ": Class is full.");
+            }
+        }
+    }
+
+
+    //True if the exception is a unique key violation (the student is already enrolled)
+    //A failed batch may carry the violation as its cause or next exception rather than its own code
+    private boolean IsDuplicateEntry(Exception e) {
+        if (e instanceof SQLException sqlException) {
+            if (sqlException.getErrorCode() == 1062 || "23505".equals(sqlException.getSQLState())) {
+                return true;
+            }
+            SQLException next = sqlException.getNextException();
+            if (next != null && next != e && IsDuplicateEntry(next)) {
+                return true;
+            }
+        }
+        if (e.getCause() instanceof Exception cause && cause != e && IsDuplicateEntry(cause)) {
+            return true;
+        }
+        return e.getMessage() != null && e.getMessage().contains("Duplicate entry");
+    }
+
+
     //This function removes the section from the user
-    public String dropSection(int sectionId) {
+    public String dropSection(UserSession session, int sectionId) {
+        int studentId = session.studentId();
         if (settingsDAO.IsMaintenanceModeOn()) {
             return "Drop failed: System is in Maintenance Mode.";
         }
@@ -141,10 +473,14 @@ public class StudentService {
         try {
             conn = DatabaseUtil.GetStudentConnection();
             conn.setAutoCommit(false);
+            //Who could take the freed seat is worked out before the statements below lock the section row
+            CatalogSection section = studentDAO.findSection(sectionId);
+            List<WaitlistEntry> candidates = EligibleWaiters(conn, sectionId, section);
+            Map<Integer, GpaDAO.Counted> counted = gpaDAO.getCounted(conn, sectionId, studentId);
             String deleteSql = "DELETE FROM Enrollments WHERE StudentID = ? AND SectionID = ?";
             int rowsDeleted = 0;
             try (PreparedStatement deleteStmt = conn.prepareStatement(deleteSql)) {
-                deleteStmt.setInt(1, this.currentStudentId);
+                deleteStmt.setInt(1, studentId);
                 deleteStmt.setInt(2, sectionId);
                 rowsDeleted = deleteStmt.executeUpdate();
             }
@@ -156,8 +492,15 @@ public class StudentService {
                 updateStmt.setInt(1, sectionId);
                 updateStmt.executeUpdate();
             }
+            //A graded section no longer counts towards the student's GPA, the summary changes with the drop
+            gpaDAO.refreshRemoved(conn, counted);
+            //The freed seat goes to the first candidate still waiting, in this transaction under the section row lock the update above took
+            List<WaitlistPromotion> promoted = PromoteWaiting(conn, sectionId, candidates, 1);
             conn.commit();
-            logger.info("Student " + currentStudentId + " dropped section " + sectionId);
+            SeatCountFeed.Publish(sectionId);
+            occupancies.computeIfPresent(studentId, (id, current) -> current.without(sectionId));
+            logger.info("Student " + studentId + " dropped section " + sectionId);
+            AnnouncePromotions(sectionId, section, promoted);
             return "Successfully dropped section.";
         }
         catch (Exception e) {
@@ -178,19 +521,151 @@ public class StudentService {
     }
 
 
+    //The first waiting students whose timetables have room for the section, at most PROMOTION_CANDIDATES of them
+    //The queue comes from memory (WaitlistQueues), logged-in students are checked against their cached weeks and the rest are
+    //read with one query, a student it would clash for keeps their place for a later seat
+    //A student already enrolled in the section stays a candidate, promoting them removes the stale row
+    private List<WaitlistEntry> EligibleWaiters(Connection conn, int sectionId, CatalogSection section) throws Exception {
+        List<WaitlistEntry> head = WaitlistQueues.Head(conn, sectionId, PROMOTION_CANDIDATES);
+        if (section == null || head.isEmpty()) {
+            return head;
+        }
+        int[] unknown = head.stream().mapToInt(WaitlistEntry::studentId).filter(id -> !occupancies.containsKey(id)).toArray();
+        Map<Integer, WeekOccupancy> weeks = studentDAO.getOccupancies(conn, unknown);
+        List<WaitlistEntry> eligible = new ArrayList<>(head.size());
+        for (WaitlistEntry entry : head) {
+            WeekOccupancy week = occupancies.get(entry.studentId());
+            if (week == null) {
+                week = weeks.getOrDefault(entry.studentId(), WeekOccupancy.EMPTY); //Logged out since the check above
+            }
+            if (week.contains(sectionId) || week.findClash(section.slot()) == null) {
+                eligible.add(entry);
+            }
+        }
+        return eligible;
+    }
+
+
+    //Gives up to freeSeats seats to the candidates in queue order, in the caller's transaction
+    //The caller holds the section row lock, each promotion inserts the enrollment and takes its seat
+    //A candidate that is no longer waiting is dropped from the in-memory queue and the next one is tried
+    private List<WaitlistPromotion> PromoteWaiting(Connection conn, int sectionId, List<WaitlistEntry> candidates, int freeSeats) throws Exception {
+        List<WaitlistPromotion> promoted = new ArrayList<>();
+        for (WaitlistEntry candidate : candidates) {
+            if (promoted.size() == freeSeats) {
+                break;
+            }
+            WaitlistPromotion promotion = waitlistDAO.promote(conn, sectionId, candidate);
+            if (promotion == null) {
+                WaitlistQueues.Removed(sectionId, candidate.studentId());
+                continue;
+            }
+            String refillSql = "UPDATE Sections SET EnrolledCount = EnrolledCount + 1 WHERE SectionID = ?";
+            try (PreparedStatement refillStmt = conn.prepareStatement(refillSql)) {
+                refillStmt.setInt(1, sectionId);
+                refillStmt.executeUpdate();
+            }
+            promoted.add(promotion);
+        }
+        return promoted;
+    }
+
+
+    //Tells the promoted students and updates their cached weeks, called after the promoting transaction committed
+    private void AnnouncePromotions(int sectionId, CatalogSection section, List<WaitlistPromotion> promoted) {
+        for (WaitlistPromotion promotion : promoted) {
+            WaitlistQueues.Removed(sectionId, promotion.studentId());
+            if (section != null) {
+                WaitlistNotices.Publish(new WaitlistPromotion(promotion.waitlistId(), promotion.studentId(), sectionId,
+                        section.courseCode(), section.timeSlot(), promotion.promotedAt()));
+                occupancies.computeIfPresent(promotion.studentId(), (id, current) -> current.with(sectionId, section.courseCode(), section.slot()));
+            }
+            else {
+                occupancies.remove(promotion.studentId()); //Rebuilt on the student's next registration
+            }
+            logger.info("Student " + promotion.studentId() + " promoted from the waitlist of section " + sectionId);
+        }
+    }
+
+
+    //Puts the student on the waitlist of a full section
+    //The seat is taken automatically when someone drops, the student is told by takeWaitlistPromotions
+    public String joinWaitlist(UserSession session, int sectionId) {
+        int studentId = session.studentId();
+        if (settingsDAO.IsMaintenanceModeOn()) {
+            return "Waitlist failed: System is in Maintenance Mode.";
+        }
+        if (DeadlinePassed()) {
+            return "Registration deadline has passed. The deadline was: " + GetDeadlineString() + "Now no longer allowed to join a waitlist";
+        }
+        CatalogSection section = studentDAO.findSection(sectionId);
+        WeekOccupancy week = GetOccupancy(studentId);
+        if (section != null && !week.contains(sectionId)) { //An enrolled student is turned away by the join below
+            String clash = week.findClash(section.slot());
+            if (clash != null) {
+                return "Waitlist failed: " + section.timeSlot() + " clashes with " + clash + " in your timetable.";
+            }
+        }
+        int position = waitlistDAO.join(studentId, sectionId);
+        if (position == WaitlistDAO.SEATS_FREE) {
+            return "A seat is free in this section, register for it instead.";
+        }
+        if (position == WaitlistDAO.ALREADY_ENROLLED) {
+            return "Waitlist failed: You are already enrolled in this section.";
+        }
+        if (position < 0) {
+            return "Waitlist failed: A database error occurred.";
+        }
+        logger.info("Student " + studentId + " is number " + position + " on the waitlist of section " + sectionId);
+        return "You are number " + position + " on the waitlist. You will be registered automatically when a seat opens.";
+    }
+
+
+    public String leaveWaitlist(UserSession session, int sectionId) {
+        if (waitlistDAO.leave(session.studentId(), sectionId)) {
+            return "You have left the waitlist.";
+        }
+        return "You were not on the waitlist of this section.";
+    }
+
+
+    //The student's place on the section's waitlist, 0 if not waiting
+    public int getWaitlistPosition(UserSession session, int sectionId) {
+        return waitlistDAO.getPosition(session.studentId(), sectionId);
+    }
+
+
+    //Seats the student has been given from waitlists since last asked, each is returned once
+    //Answered from memory, the table is read only on the student's first call
+    public List<WaitlistPromotion> takeWaitlistPromotions(UserSession session) {
+        return WaitlistNotices.Take(session.studentId());
+    }
+
+
+    //The student's week, built from the enrolled section IDs the first time it is needed after login
+    private WeekOccupancy GetOccupancy(int studentId) {
+        WeekOccupancy week = occupancies.get(studentId);
+        if (week == null) {
+            week = studentDAO.getOccupancy(studentDAO.getEnrolledSectionIds(studentId));
+            WeekOccupancy raced = occupancies.putIfAbsent(studentId, week);
+            if (raced != null) {
+                week = raced;
+            }
+        }
+        return week;
+    }
+
+
     //This method returns false if today's date is after the deadline
     //If today's date is after deadline it returns true(No longer dropping or adding courses) else returns false
     private boolean DeadlinePassed(){
-        try{
-            String DeadlineString = settingsDAO.GetDeadline();
-            LocalDate Deadline = LocalDate.parse(DeadlineString);
-            LocalDate TodayDate = LocalDate.now();
-            return TodayDate.isAfter(Deadline);
-        }
-        catch (Exception e){
+        LocalDate Deadline = settingsDAO.GetDeadlineDate(); //Parsed once by the settings cache
+        if(Deadline==null){
             return false;
             //In case of failure of date parsing it allows access
         }
+        LocalDate TodayDate = LocalDate.now();
+        return TodayDate.isAfter(Deadline);
     }
 
 
@@ -1,37 +1,42 @@
 package edu.univ.erp.service;
 
 import com.opencsv.CSVWriter;
+import edu.univ.erp.data.GpaDAO;
 import edu.univ.erp.data.StudentDAO;
-import edu.univ.erp.domain.Grade;
+import edu.univ.erp.domain.StudentGpa;
+import edu.univ.erp.domain.TermGpa;
 
 import java.io.Writer;
 import java.util.List;
 import java.util.logging.Logger;
 
 //This class handles the bonus feature of handling transcripts export and import ie the CSV Files
+//It also serves GPAs, which are read from the precomputed StudentGpaSummary table (see GpaDAO)
 public class TranscriptService {
     private static final Logger logger = Logger.getLogger(TranscriptService.class.getName());
+    //On the 10 point scale of GradePoints
+    private static final double DEANS_LIST_MIN_GPA = 8.5;
+    private static final int DEANS_LIST_MIN_CREDITS = 12;
+    private static final double PROBATION_BELOW_GPA = 5.0;
     private StudentDAO studentDAO;
+    private final GpaDAO gpaDAO = new GpaDAO();
 
     public TranscriptService(StudentDAO studentDAO) {
         this.studentDAO = studentDAO;
     }
 
     //Generates a CSV transcript and writes it to the provided Writer.
+    //Rows are written as they are read from the database, through a buffer
     public void generateCsvTranscript(int studentId, Writer writer) {
-        try (CSVWriter csvWriter = new CSVWriter(writer, CSVWriter.DEFAULT_SEPARATOR, CSVWriter.NO_QUOTE_CHARACTER, CSVWriter.DEFAULT_ESCAPE_CHARACTER, CSVWriter.DEFAULT_LINE_END)) {
+        try (CSVWriter csvWriter = new CSVWriter(GradebookCsv.Buffered(writer), CSVWriter.DEFAULT_SEPARATOR, CSVWriter.NO_QUOTE_CHARACTER, CSVWriter.DEFAULT_ESCAPE_CHARACTER, CSVWriter.DEFAULT_LINE_END)) {
             String[] header = {"Course Code", "Course Title", "Credits", "Grade"};
             csvWriter.writeNext(header);
-            List<Grade> grades = studentDAO.getGrades(studentId);
-            for (Grade grade : grades) {
-                String[] row = {
-                        grade.courseCode(),
-                        grade.courseTitle(),
-                        String.valueOf(grade.credits()),
-                        grade.letterGrade()
-                };
-                csvWriter.writeNext(row);
-            }
+            studentDAO.streamGrades(studentId, grade -> csvWriter.writeNext(new String[]{
+                    grade.courseCode(),
+                    grade.courseTitle(),
+                    String.valueOf(grade.credits()),
+                    grade.letterGrade()
+            }));
             logger.info("CSV Transcript generated for student " + studentId);
         }
         catch (Exception e) {
@@ -39,4 +44,42 @@ public class TranscriptService {
             e.printStackTrace();
         }
     }
-}
\ No newline at end of file
+
+
+    //The student's GPA per term in term order, the cumulative GPA first, empty if nothing is graded yet
+    public List<TermGpa> getGpaSummary(int studentId) {
+        return gpaDAO.getStudentGpa(studentId);
+    }
+
+
+    //Students with a term GPA of at least DEANS_LIST_MIN_GPA over at least DEANS_LIST_MIN_CREDITS graded credits
+    public List<StudentGpa> getDeansList(int term) {
+        return gpaDAO.getStudentsByGpa(term, DEANS_LIST_MIN_GPA, Double.MAX_VALUE, DEANS_LIST_MIN_CREDITS);
+    }
+
+
+    //Students whose cumulative GPA is below PROBATION_BELOW_GPA
+    public List<StudentGpa> getProbationList() {
+        return gpaDAO.getStudentsByGpa(TermGpa.CUMULATIVE, 0, PROBATION_BELOW_GPA, 1);
+    }
+
+
+    //The latest term with any graded course, for reports that default to the current term
+    public int getLatestTerm() {
+        return gpaDAO.getLatestTerm();
+    }
+
+
+    //Recomputes the summary of every student, grade saves keep it current so this is only needed after a bulk change
+    public boolean rebuildGpaSummary() {
+        long start = System.currentTimeMillis();
+        boolean success = gpaDAO.rebuildAll();
+        if (success) {
+            logger.info("GPA summary rebuilt in " + (System.currentTimeMillis() - start) + "ms");
+        }
+        else {
+            logger.severe("GPA summary rebuild failed");
+        }
+        return success;
+    }
+}
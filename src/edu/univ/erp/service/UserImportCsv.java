@@ -0,0 +1,47 @@
+package edu.univ.erp.service;
+
+import com.opencsv.CSVReader;
+import com.opencsv.exceptions.CsvValidationException;
+import edu.univ.erp.domain.ImportFailure;
+import edu.univ.erp.domain.UserImportRow;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+//The bulk user import CSV layout: Full Name, Email, Role and an optional Password column
+//A first line whose Email cell has no '@' is taken as a header and skipped, blank lines are ignored
+final class UserImportCsv {
+    static final String[] HEADER = {"Full Name", "Email", "Role", "Password"};
+
+    private UserImportCsv() {}
+
+    //Reads every line, a line with too few columns is reported as a failure instead of a row
+    static List<UserImportRow> Read(Reader reader, List<ImportFailure> failures) throws IOException, CsvValidationException {
+        List<UserImportRow> rows = new ArrayList<>();
+        try (CSVReader csvReader = new CSVReader(reader)) {
+            String[] line;
+            boolean first = true;
+            while ((line = csvReader.readNext()) != null) {
+                int lineNumber = (int) csvReader.getLinesRead();
+                if (line.length == 1 && line[0].isBlank()) {
+                    continue;
+                }
+                if (first) {
+                    first = false;
+                    if (line.length > 1 && !line[1].contains("@")) {
+                        continue; //Header
+                    }
+                }
+                if (line.length < 3) {
+                    failures.add(new ImportFailure(lineNumber, line.length > 1 ? line[1].trim() : "", "Expected Full Name, Email, Role"));
+                    continue;
+                }
+                String password = line.length > 3 && !line[3].isBlank() ? line[3] : null;
+                rows.add(new UserImportRow(lineNumber, line[0].trim(), line[1].trim(), line[2].trim(), password));
+            }
+        }
+        return rows;
+    }
+}
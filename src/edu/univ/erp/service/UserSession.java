@@ -0,0 +1,38 @@
+package edu.univ.erp.service;
+
+//Who a service call is for, made once at login and passed with every call
+//The services keep no current user of their own, so one instance serves every logged in user at the same time
+//profileId is the StudentID or InstructorID found for the user, -1 for admins
+//token is the API server's session token, null for the session of a desktop connected to the databases
+public record UserSession(String token, int userId, String email, String role, int profileId) {
+
+    public boolean isStudent() {
+        return "student".equalsIgnoreCase(role);
+    }
+
+    public boolean isInstructor() {
+        return "instructor".equalsIgnoreCase(role);
+    }
+
+    public boolean isAdmin() {
+        return "admin".equalsIgnoreCase(role);
+    }
+
+
+    //The StudentID of a student's session
+    public int studentId() {
+        if (!isStudent()) {
+            throw new IllegalStateException("Not a student session: " + role);
+        }
+        return profileId;
+    }
+
+
+    //The InstructorID of an instructor's session
+    public int instructorId() {
+        if (!isInstructor()) {
+            throw new IllegalStateException("Not an instructor session: " + role);
+        }
+        return profileId;
+    }
+}
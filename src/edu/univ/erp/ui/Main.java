@@ -6,17 +6,25 @@ import edu.univ.erp.ui.auth.ChangePasswordDialog;
 import edu.univ.erp.ui.student.*;
 import edu.univ.erp.ui.instructor.*;
 import edu.univ.erp.ui.admin.*;
+import edu.univ.erp.ui.common.BackgroundLoader;
 
 //Backend Imports
+import edu.univ.erp.api.*;
 import edu.univ.erp.auth.UserDAO;
 import edu.univ.erp.data.*;
 import edu.univ.erp.service.*;
+import edu.univ.erp.domain.Notification;
+import edu.univ.erp.domain.WaitlistPromotion;
+import edu.univ.erp.util.DatabaseUtil;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import java.awt.*;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.prefs.Preferences;
 
 public class Main extends JFrame {
     //Layout
@@ -39,9 +47,19 @@ public class Main extends JFrame {
     private InstructorService instructorService;
     private TranscriptService transcriptService;
 
+    //Set with -Derp.api.url=http://host:8085 to run against the API server instead of the databases
+    private static ApiClient apiClient;
+
     //States
     private String loggedInUserEmail = null;
     private int loggedInUserId = -1;
+    private UserSession session; //Passed with every student and instructor call, null until login
+    private int lastSeenNotificationId; //This client's notification cursor, kept per user in the local preferences
+    private JButton notifButton;
+    private final Runnable notificationListener = () -> SwingUtilities.invokeLater(this::updateNotificationBadge);
+    private static final int WAITLIST_POLL_MILLIS = 5000;
+    private Timer waitlistTimer; //Asks for seats won from waitlists while a student is logged in
+    private BackgroundLoader<List<WaitlistPromotion>> waitlistLoader;
 
     //Panels
     private StudentDashboardPanel studentDashboard;
@@ -62,20 +80,32 @@ public class Main extends JFrame {
         setMinimumSize(new Dimension(1024, 768)); //Minimum size of the window
         setLocationRelativeTo(null); //Align window to the center
 
-        //Create instances of all the DAO
-        this.userDAO = new UserDAO();
-        this.adminDAO = new AdminDAO();
-        this.settingsDAO = new SettingsDAO();
-        this.studentDAO = new StudentDAO();
-        this.instructorDAO = new InstructorDAO();
-        this.notificationDAO = new NotificationDAO(); // <-- NEW
-
-        //Create instances of all the Services
-        this.authService = new AuthService(userDAO, settingsDAO);
-        this.adminService = new AdminService(userDAO, adminDAO, settingsDAO, notificationDAO);
-        this.studentService = new StudentService(studentDAO, settingsDAO);
-        this.instructorService = new InstructorService(instructorDAO, settingsDAO);
-        this.transcriptService = new TranscriptService(studentDAO);
+        if (apiClient != null) {
+            //Every call goes to the API server, this desktop opens no database connection
+            this.authService = new RemoteAuthService(apiClient);
+            this.adminService = new RemoteAdminService(apiClient);
+            this.studentService = new RemoteStudentService(apiClient);
+            this.instructorService = new RemoteInstructorService(apiClient);
+            this.transcriptService = new RemoteTranscriptService(apiClient);
+        }
+        else {
+            //Create instances of all the DAO
+            this.userDAO = new UserDAO();
+            this.adminDAO = new AdminDAO();
+            this.settingsDAO = new SettingsDAO();
+            this.studentDAO = new StudentDAO();
+            this.instructorDAO = new InstructorDAO();
+            this.notificationDAO = new NotificationDAO(); // <-- NEW
+
+            //Create instances of all the Services
+            this.authService = new AuthService(userDAO, settingsDAO);
+            this.adminService = new AdminService(userDAO, adminDAO, settingsDAO, notificationDAO);
+            this.studentService = new StudentService(studentDAO, settingsDAO);
+            //Run with -Derp.seatAllocation=conditional_update during registration week
+            this.studentService.setSeatAllocationMode(SeatAllocationMode.fromName(System.getProperty("erp.seatAllocation")));
+            this.instructorService = new InstructorService(instructorDAO, settingsDAO);
+            this.transcriptService = new TranscriptService(studentDAO);
+        }
 
         //UI Setup
         cardLayout = new CardLayout();
@@ -108,13 +138,15 @@ public class Main extends JFrame {
         Runnable showSectionManagement = () -> cardLayout.show(mainPanel, "admin_sections");
 
         //Initialize Panels
+        //The panels are built before login, they ask for the session when they load
+        Supplier<UserSession> currentSession = () -> session;
         studentDashboard = new StudentDashboardPanel(showCatalog, showTimetable, showGrades);
-        courseCatalog = new CourseCatalogPanel(showStudentHome, studentService);
-        timetablePanel = new TimetablePanel(showStudentHome, studentService);
-        gradesPanel = new GradesPanel(showStudentHome, studentService, transcriptService);
+        courseCatalog = new CourseCatalogPanel(showStudentHome, studentService, currentSession);
+        timetablePanel = new TimetablePanel(showStudentHome, studentService, currentSession);
+        gradesPanel = new GradesPanel(showStudentHome, studentService, transcriptService, currentSession);
 
-        mySectionsPanel = new MySectionsPanel(showGradebookForSection, instructorService);
-        gradebookPanel = new GradebookPanel(showInstructorHome, instructorService);
+        mySectionsPanel = new MySectionsPanel(showGradebookForSection, instructorService, currentSession);
+        gradebookPanel = new GradebookPanel(showInstructorHome, instructorService, currentSession);
 
         adminDashboard = new AdminDashboardPanel(showUserManagement, showCourseManagement, showSectionManagement, adminService);
         userManagementPanel = new UserManagementPanel(showAdminHome, adminService);
@@ -144,27 +176,28 @@ public class Main extends JFrame {
 
         String displayName = "User";
         String dashboardName = "student_dashboard";
+        int profileId = -1;
 
         if ("student".equalsIgnoreCase(role)) {
             // Look up Real Student ID
-            int studentId = studentDAO.getStudentIdFromUserId(userId);
+            int studentId = studentService.findStudentIdForUser(userId);
             if (studentId == -1) {
                 JOptionPane.showMessageDialog(this, "Login failed: No student profile found.", "Login Error", JOptionPane.ERROR_MESSAGE);
                 return;
             }
             displayName = "Student";
-            studentService.setCurrentStudent(studentId);
+            profileId = studentId;
             dashboardName = "student_dashboard";
 
         } else if ("instructor".equalsIgnoreCase(role)) {
             // Look up Real Instructor ID
-            int instructorId = instructorDAO.getInstructorIdFromUserId(userId);
+            int instructorId = instructorService.findInstructorIdForUser(userId);
             if (instructorId == -1) {
                 JOptionPane.showMessageDialog(this, "Login failed: No instructor profile found.", "Login Error", JOptionPane.ERROR_MESSAGE);
                 return;
             }
             displayName = "Instructor";
-            instructorService.setCurrentInstructor(instructorId);
+            profileId = instructorId;
             dashboardName = "my_sections";
 
         } else if ("admin".equalsIgnoreCase(role)) {
@@ -172,6 +205,15 @@ public class Main extends JFrame {
             dashboardName = "admin_dashboard";
         }
 
+        //Against the API server the server keeps its own session for the client's token, this one stays on the desktop
+        this.session = new UserSession(null, userId, username, role, profileId);
+
+        lastSeenNotificationId = notificationPreferences().getInt(notificationCursorKey(), 0);
+        updateNotificationBadge();
+        if (session.isStudent()) {
+            startWaitlistPolling();
+        }
+
         welcomeLabel.setText("Welcome, " + displayName + "  ");
         cardLayout.show(mainPanel, dashboardName);
         this.setVisible(true);
@@ -220,7 +262,7 @@ public class Main extends JFrame {
         menuBar.add(Box.createRigidArea(new Dimension(20, 0)));
 
         //Right Side: Notifications Button
-        JButton notifButton = new JButton("🔔 Notifications");
+        notifButton = new JButton("🔔 Notifications");
         notifButton.setBorderPainted(false);
         notifButton.setContentAreaFilled(false);
         notifButton.setFocusPainted(false);
@@ -228,6 +270,7 @@ public class Main extends JFrame {
         notifButton.setFont(new Font("SansSerif", Font.BOLD, 12));
 
         notifButton.addActionListener(e -> showNotifications(notifButton));
+        NotificationCenter.AddChangeListener(notificationListener);
 
         menuBar.add(notifButton);
         menuBar.add(Box.createRigidArea(new Dimension(15, 0))); // Padding
@@ -236,11 +279,12 @@ public class Main extends JFrame {
     }
 
     //Notification panel
+    //The list comes from NotificationCenter's memory, notifications newer than this client's cursor are shown in bold
     private void showNotifications(JButton source) {
         JPopupMenu popup = new JPopupMenu();
         popup.setPreferredSize(new Dimension(350, 250)); // Size of popup
 
-        List<String> msgs = notificationDAO.GetRecentNotifications();
+        List<Notification> msgs = NotificationCenter.Recent(10);
 
         if (msgs.isEmpty()) {
             JMenuItem item = new JMenuItem("No new notifications");
@@ -254,20 +298,86 @@ public class Main extends JFrame {
             header.setBorder(new EmptyBorder(5, 0, 5, 0));
             popup.add(header);
             popup.addSeparator();
-            for (String msg : msgs) {
+            for (Notification msg : msgs) {
                 // HTML for word wrapping
-                JMenuItem item = new JMenuItem("<html><body style='width: 280px'>" + msg + "</body></html>");
+                String text = msg.id() > lastSeenNotificationId ? "<b>" + msg.display() + "</b>" : msg.display();
+                JMenuItem item = new JMenuItem("<html><body style='width: 280px'>" + text + "</body></html>");
                 item.setBackground(Color.WHITE);
                 popup.add(item);
             }
         }
         popup.show(source, 0, source.getHeight());
+        markNotificationsSeen();
+    }
+
+
+    //Moves this client's cursor to the newest notification and clears the badge
+    private void markNotificationsSeen() {
+        lastSeenNotificationId = NotificationCenter.LatestID();
+        if (loggedInUserId != -1) {
+            notificationPreferences().putInt(notificationCursorKey(), lastSeenNotificationId);
+        }
+        updateNotificationBadge();
+    }
+
+
+    //Unread count since the cursor, a lookup in memory
+    private void updateNotificationBadge() {
+        if (notifButton == null) {
+            return;
+        }
+        int unread = loggedInUserId == -1 ? 0 : NotificationCenter.UnreadCount(lastSeenNotificationId);
+        notifButton.setText(unread > 0 ? "🔔 Notifications (" + unread + ")" : "🔔 Notifications");
+    }
+
+
+    private static Preferences notificationPreferences() {
+        return Preferences.userNodeForPackage(Main.class);
+    }
+
+    private String notificationCursorKey() {
+        return "notifications.lastSeen." + loggedInUserId;
+    }
+
+
+    //A seat given from a waitlist is announced once, the check is answered from the service's memory and not the database
+    private void startWaitlistPolling() {
+        waitlistLoader = new BackgroundLoader<>(mainPanel);
+        waitlistLoader.setBusyCursor(false);
+        waitlistTimer = new Timer(WAITLIST_POLL_MILLIS, e -> checkWaitlistPromotions());
+        waitlistTimer.setInitialDelay(0); //Seats won while logged out are shown straight away
+        waitlistTimer.start();
+    }
+
+
+    private void checkWaitlistPromotions() {
+        UserSession student = session;
+        if (student == null || waitlistLoader.isLoading()) {
+            return;
+        }
+        waitlistLoader.load(() -> studentService.takeWaitlistPromotions(student), promotions -> {
+            for (WaitlistPromotion promotion : promotions) {
+                JOptionPane.showMessageDialog(this, promotion.display(), "Waitlist", JOptionPane.INFORMATION_MESSAGE);
+            }
+        }, Throwable::printStackTrace); //A missed check is retried by the next tick
     }
 
 
     private void logout() {
+        if (apiClient != null) {
+            apiClient.logout();
+        }
+        if (waitlistTimer != null) {
+            waitlistTimer.stop();
+            waitlistTimer = null;
+        }
+        if (session != null) {
+            studentService.endSession(session);
+            session = null;
+        }
         this.loggedInUserEmail = null;
         this.loggedInUserId = -1;
+        NotificationCenter.RemoveChangeListener(notificationListener);
         this.setVisible(false);
         this.dispose();
         showLoginDialog(true);
@@ -283,6 +393,18 @@ public class Main extends JFrame {
                 }
             }
         } catch (Exception e) { /* Fallback */ }
+        //Write out queued notifications, then give the pooled connections back to the database when the app exits
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            NotificationWriter.Shutdown(5, TimeUnit.SECONDS);
+            DatabaseUtil.ShutdownPools();
+        }));
+        String apiUrl = System.getProperty("erp.api.url");
+        if (apiUrl != null && !apiUrl.isBlank()) {
+            apiClient = new ApiClient(apiUrl);
+            NotificationCenter.UseSource(apiClient);
+        }
+        //One notification poller for the whole process, every window reads from it
+        NotificationCenter.Start();
         SwingUtilities.invokeLater(() -> showLoginDialog(false));
     }
 
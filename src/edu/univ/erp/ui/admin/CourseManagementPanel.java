@@ -2,10 +2,12 @@ package edu.univ.erp.ui.admin;
 
 import edu.univ.erp.domain.Course;
 import edu.univ.erp.service.AdminService;
+import edu.univ.erp.ui.common.BackgroundLoader;
+import edu.univ.erp.ui.common.RecordTableModel;
+import edu.univ.erp.ui.common.RecordTableModel.Column;
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import javax.swing.border.LineBorder;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
@@ -26,10 +28,11 @@ public class CourseManagementPanel extends JPanel {
     private static final Color COLOR_TEXT_FIELD_BG = new Color(248, 248, 248);
 
     private JTable coursesTable;
-    private DefaultTableModel tableModel;
+    private RecordTableModel<Course> tableModel;
     private JTextField codeField, titleField, creditsField;
 
     private AdminService adminService; //This connects the frontend to the backend
+    private final BackgroundLoader<List<Course>> coursesLoader = new BackgroundLoader<>(this);
 
     public CourseManagementPanel(Runnable onGoBack, AdminService adminService) {
         this.adminService = adminService;
@@ -61,18 +64,13 @@ public class CourseManagementPanel extends JPanel {
 
     //This function fetches all the courses using the getAllCourses method in service
     //Then it enters those values in the JTable
+    //The fetch runs in the background, the table is filled when it returns
     private void loadData() {
-        List<Course> courses = adminService.getAllCourses();
-
-        tableModel.setRowCount(0);
+        coursesLoader.load(adminService::getAllCourses, this::showData);
+    }
 
-        for (Course course : courses) {
-            tableModel.addRow(new Object[]{
-                    course.courseCode(),
-                    course.courseTitle(),
-                    course.credits()
-            });
-        }
+    private void showData(List<Course> courses) {
+        tableModel.setRows(courses);
     }
 
     //This creates the header panel on the course management panel
@@ -159,12 +157,12 @@ public class CourseManagementPanel extends JPanel {
         title.setForeground(COLOR_TEXT_DARK);
         panel.add(title, BorderLayout.NORTH);
 
-        String[] columnNames = {"Code", "Title", "Credits"};
-
         //Table for Courses
-        tableModel = new DefaultTableModel(null, columnNames) {
-            public boolean isCellEditable(int row, int column) { return false; }
-        };
+        tableModel = new RecordTableModel<>(List.of(
+                Column.of("Code", Course::courseCode),
+                Column.of("Title", Course::courseTitle),
+                Column.of("Credits", Course::credits)
+        ));
 
         coursesTable = new JTable(tableModel);
         coursesTable.setFont(new Font("SansSerif", Font.PLAIN, 14));
@@ -4,12 +4,14 @@ import edu.univ.erp.domain.AdminSectionView;
 import edu.univ.erp.domain.Course;
 import edu.univ.erp.domain.Instructor;
 import edu.univ.erp.service.AdminService;
+import edu.univ.erp.ui.common.BackgroundLoader;
+import edu.univ.erp.ui.common.RecordTableModel;
+import edu.univ.erp.ui.common.RecordTableModel.Column;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import javax.swing.border.LineBorder;
 import javax.swing.table.DefaultTableCellRenderer;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.awt.event.ComponentAdapter;
 import java.awt.event.ComponentEvent;
@@ -30,13 +32,16 @@ public class SectionManagementPanel extends JPanel {
     private static final Color COLOR_DELETE = new Color(220, 50, 50);
 
     private JTable sectionsTable;
-    private DefaultTableModel tableModel;
+    private RecordTableModel<AdminSectionView> tableModel;
     private JComboBox<Object> courseComboBox;
     private JComboBox<Object> instructorComboBox;
     private JTextField sectionNumField, timeField, capacityField;
     private AdminService adminService;
 
-    private List<AdminSectionView> currentSectionList; //This stores the data to look up the sections
+    //The dropdowns and the table are fetched together off the EDT
+    private record SectionPageData(List<Course> courses, List<Instructor> instructors, List<AdminSectionView> sections) {}
+    private final BackgroundLoader<SectionPageData> pageLoader = new BackgroundLoader<>(this);
+    private final BackgroundLoader<Integer> exportLoader = new BackgroundLoader<>(this);
 
     //The prompts in the dropdowns
     private final String COURSE_PROMPT = "--- Select a Course ---";
@@ -65,13 +70,22 @@ public class SectionManagementPanel extends JPanel {
             public void componentShown(ComponentEvent e) {
                 loadAllData();
             }
+
+            @Override
+            public void componentHidden(ComponentEvent e) {
+                pageLoader.cancel();
+            }
         });
         loadAllData();
     }
 
     private void loadAllData() {
-        loadDropdownData();
-        loadSectionsData();
+        pageLoader.load(
+                () -> new SectionPageData(adminService.getAllCourses(), adminService.getAllInstructors(), adminService.GetAllSectionsForView()),
+                data -> {
+                    showDropdownData(data.courses(), data.instructors());
+                    showSectionsData(data.sections());
+                });
     }
 
     private JPanel createHeaderPanel(Runnable onGoBack) {
@@ -89,9 +103,17 @@ public class SectionManagementPanel extends JPanel {
         JButton refreshButton = createModernButton("Refresh", false);
         refreshButton.addActionListener(e -> loadAllData());
 
+        JButton exportAllButton = createModernButton("Export All Gradebooks", false);
+        exportAllButton.addActionListener(e -> onExportAllGradebooks());
+
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 10, 0));
+        buttonPanel.setOpaque(false);
+        buttonPanel.add(exportAllButton);
+        buttonPanel.add(refreshButton);
+
         headerPanel.add(goBackButton, BorderLayout.WEST);
         headerPanel.add(titleLabel, BorderLayout.CENTER);
-        headerPanel.add(refreshButton, BorderLayout.EAST);
+        headerPanel.add(buttonPanel, BorderLayout.EAST);
 
         return headerPanel;
     }
@@ -179,14 +201,14 @@ public class SectionManagementPanel extends JPanel {
         panel.add(title, BorderLayout.NORTH);
 
         //The actions table column basically adds the option to remove the sections
-        String[] columnNames = {"Course", "Section", "Time", "Capacity", "Instructor", "Actions"};
-
-        tableModel = new DefaultTableModel(null, columnNames) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
-            }
-        };
+        tableModel = new RecordTableModel<>(List.of(
+                Column.of("Course", AdminSectionView::CourseCode),
+                Column.of("Section", AdminSectionView::SectionNumber),
+                Column.of("Time", AdminSectionView::TimeSlot),
+                Column.of("Capacity", s -> s.EnrolledCount() + " / " + s.Capacity()), //Total enrolled out of the total capacity
+                Column.of("Instructor", AdminSectionView::InstructorName),
+                Column.of("Actions", s -> "Remove") //Text for the remove button
+        ));
 
         sectionsTable = new JTable(tableModel);
         sectionsTable.setFont(new Font("SansSerif", Font.PLAIN, 14));
@@ -206,15 +228,13 @@ public class SectionManagementPanel extends JPanel {
 
 
     //This code handles the logic for dropdowns
-    private void loadDropdownData() {
-        java.util.List<Course> courses = adminService.getAllCourses();
+    private void showDropdownData(List<Course> courses, List<Instructor> instructors) {
         courseComboBox.removeAllItems();
         if (courses.isEmpty()) courseComboBox.addItem(COURSE_EMPTY);
         else {
             courseComboBox.addItem(COURSE_PROMPT);
             for (Course c : courses) courseComboBox.addItem(c);
         }
-        java.util.List<Instructor> instructors = adminService.getAllInstructors();
         instructorComboBox.removeAllItems();
         if (instructors.isEmpty()) instructorComboBox.addItem(INST_EMPTY);
         else {
@@ -225,20 +245,25 @@ public class SectionManagementPanel extends JPanel {
 
 
     //This calls the method in admin service class to get info about all the sections
-    private void loadSectionsData() {
-        this.currentSectionList = adminService.GetAllSectionsForView(); // Store ref
-        tableModel.setRowCount(0);
-
-        for (AdminSectionView s : currentSectionList) {
-            tableModel.addRow(new Object[]{
-                    s.CourseCode(),
-                    s.SectionNumber(),
-                    s.TimeSlot(),
-                    s.EnrolledCount() + " / " + s.Capacity(), //Total enrolled out of the total capacity
-                    s.InstructorName(),
-                    "Remove" //Text for the remove button
-            });
+    private void showSectionsData(List<AdminSectionView> sections) {
+        tableModel.setRows(sections); //The model keeps the records, so the Remove button can look them up
+    }
+
+    //Asks for a folder and writes one gradebook CSV per section into it, in the background
+    private void onExportAllGradebooks() {
+        if (exportLoader.isLoading()) {
+            return;
+        }
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setDialogTitle("Choose a folder for the gradebook CSV files");
+        fileChooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+        if (fileChooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
         }
+        java.io.File directory = fileChooser.getSelectedFile();
+        exportLoader.load(() -> adminService.ExportAllGradebooksToCsv(directory),
+                files -> JOptionPane.showMessageDialog(this, files + " gradebook files exported to " + directory, "Success", JOptionPane.INFORMATION_MESSAGE),
+                ex -> JOptionPane.showMessageDialog(this, "Error exporting gradebooks: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE));
     }
 
     //This is used to create sections
@@ -310,7 +335,7 @@ public class SectionManagementPanel extends JPanel {
 
             if (row < table.getRowCount() && row >= 0 && column == 5) {
                 // Retrieve the ID using the row index
-                AdminSectionView section = currentSectionList.get(row);
+                AdminSectionView section = tableModel.getRow(row);
 
                 //Confirm deletion panel
                 int confirm = JOptionPane.showConfirmDialog(table,
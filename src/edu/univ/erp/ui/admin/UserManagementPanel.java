@@ -1,14 +1,24 @@
 package edu.univ.erp.ui.admin;
 
+import edu.univ.erp.domain.ImportFailure;
+import edu.univ.erp.domain.UserFilter;
+import edu.univ.erp.domain.UserImportResult;
+import edu.univ.erp.domain.UserPage;
 import edu.univ.erp.domain.UserView;
 import edu.univ.erp.service.AdminService;
+import edu.univ.erp.ui.common.BackgroundLoader;
+import edu.univ.erp.ui.common.RecordTableModel;
+import edu.univ.erp.ui.common.RecordTableModel.Column;
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import javax.swing.border.LineBorder;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.Reader;
 import java.util.List;
 
 //This is the admin panel that helps in managing the users
@@ -24,11 +34,24 @@ public class UserManagementPanel extends JPanel {
     private static final Color COLOR_TEXT_FIELD_BG = new Color(248, 248, 248);
 
     private JTable usersTable;
-    private DefaultTableModel tableModel;
+    private RecordTableModel<UserView> tableModel;
     private JTextField nameField, emailField;
     private JComboBox<String> roleComboBox;
+    private JTextField searchField;
+    private JComboBox<String> searchByComboBox, roleFilterComboBox;
+    private JScrollPane tableScrollPane;
+
+    //The list is read a page at a time as the table is scrolled, keyset paged on UserID
+    private static final int PAGE_SIZE = 100;
+    private UserFilter currentFilter = UserFilter.ALL;
+    private int nextCursor = 0; //UserID to continue after, -1 once the last page has arrived
 
     private AdminService adminService;
+    private final BackgroundLoader<UserPage> usersLoader = new BackgroundLoader<>(this);
+    private final BackgroundLoader<Boolean> createLoader = new BackgroundLoader<>(this); //Creating a user hashes a password, so it runs off the EDT too
+    private final BackgroundLoader<UserImportResult> importLoader = new BackgroundLoader<>(this);
+    private static final String DEFAULT_PASSWORD = "defaultPassword123"; //This is the default password provided everytime the user is created
+    private static final int MAX_FAILURES_SHOWN = 200;
 
     public UserManagementPanel(Runnable onGoBack, AdminService adminService) {
         this.adminService = adminService;
@@ -48,20 +71,50 @@ public class UserManagementPanel extends JPanel {
         loadData();
     }
 
-    //This loads all the data regarding all the users
-    //Calls the GetAllUsers method of the service class
+    //This loads the users matching the current search from the start
+    //Only the first page is fetched here, the rest follow as the table is scrolled
+    //A page still loading for an older search is cancelled by the new one
     private void loadData() {
-        List<UserView> users = adminService.GetAllUsers();
-        tableModel.setRowCount(0);
-        for (UserView user : users) {
-            tableModel.addRow(new Object[]{
-                    user.fullName(),
-                    user.email(),
-                    user.role()
-            });
+        tableModel.clear();
+        nextCursor = 0;
+        loadPage();
+    }
+
+    //Fetches the page after nextCursor in the background and appends it to the table
+    private void loadPage() {
+        UserFilter filter = currentFilter;
+        int after = nextCursor;
+        usersLoader.load(() -> adminService.GetUsersPage(filter, after, PAGE_SIZE), this::showPage);
+    }
+
+    //Asks for the next page when the table is scrolled close to its end (or does not fill the view yet)
+    private void loadMoreIfNearEnd() {
+        if (nextCursor < 0 || usersLoader.isLoading()) {
+            return;
+        }
+        JScrollBar bar = tableScrollPane.getVerticalScrollBar();
+        int threshold = usersTable.getRowHeight() * 20;
+        if (bar.getValue() + bar.getVisibleAmount() >= bar.getMaximum() - threshold) {
+            loadPage();
         }
     }
 
+    //Reads the search controls and restarts the listing
+    private void onSearch() {
+        String text = searchField.getText().trim();
+        String role = roleFilterComboBox.getSelectedIndex() == 0 ? null : (String) roleFilterComboBox.getSelectedItem();
+        boolean byName = "Name".equals(searchByComboBox.getSelectedItem());
+        currentFilter = new UserFilter(byName ? null : text, byName ? text : null, role);
+        loadData();
+    }
+
+    private void showPage(UserPage page) {
+        nextCursor = page.nextCursor();
+        tableModel.appendRows(page.users());
+        //The new rows may still not fill the view, check again once the table has been laid out
+        SwingUtilities.invokeLater(this::loadMoreIfNearEnd);
+    }
+
     //To create header panel
     private JPanel createHeaderPanel(Runnable onGoBack) {
         JPanel headerPanel = new JPanel(new BorderLayout());
@@ -131,6 +184,13 @@ public class UserManagementPanel extends JPanel {
         addUserButton.addActionListener(e -> onAddUser());
         panel.add(addUserButton, gbc);
 
+        gbc.gridy++; gbc.insets = new Insets(10, 0, 0, 0);
+        JButton importButton = createModernButton("Import CSV...", false);
+        importButton.setToolTipText("Full Name, Email, Role and an optional Password column");
+        importButton.addActionListener(e -> onImportCsv());
+        importLoader.setLoadingListener(loading -> importButton.setEnabled(!loading));
+        panel.add(importButton, gbc);
+
         gbc.gridy++; gbc.weighty = 1.0; // Pushes everything up
         panel.add(Box.createGlue(), gbc);
 
@@ -146,25 +206,42 @@ public class UserManagementPanel extends JPanel {
         JLabel title = new JLabel("Current Users");
         title.setFont(new Font("SansSerif", Font.BOLD, 24));
         title.setForeground(COLOR_TEXT_DARK);
-        panel.add(title, BorderLayout.NORTH);
-
-        String[] columnNames = {"Name", "UserName", "Role"};
 
-        tableModel = new DefaultTableModel(null, columnNames) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
-            }
-        };
+        //Search row, prefix match on the name or the username plus an optional role
+        JPanel searchPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 8, 0));
+        searchPanel.setOpaque(false);
+        searchField = createModernTextField(14);
+        searchField.addActionListener(e -> onSearch());
+        searchByComboBox = new JComboBox<>(new String[]{"Name", "UserName"});
+        roleFilterComboBox = new JComboBox<>(new String[]{"All roles", "Student", "Instructor", "Admin"});
+        JButton searchButton = createModernButton("Search", false);
+        searchButton.addActionListener(e -> onSearch());
+        searchPanel.add(searchField);
+        searchPanel.add(searchByComboBox);
+        searchPanel.add(roleFilterComboBox);
+        searchPanel.add(searchButton);
+
+        JPanel topPanel = new JPanel(new BorderLayout(0, 10));
+        topPanel.setOpaque(false);
+        topPanel.add(title, BorderLayout.NORTH);
+        topPanel.add(searchPanel, BorderLayout.SOUTH);
+        panel.add(topPanel, BorderLayout.NORTH);
+
+        tableModel = new RecordTableModel<>(List.of(
+                Column.of("Name", UserView::fullName),
+                Column.of("UserName", UserView::email),
+                Column.of("Role", UserView::role)
+        ));
 
         usersTable = new JTable(tableModel);
         usersTable.setFont(new Font("SansSerif", Font.PLAIN, 14));
         usersTable.setRowHeight(35);
         usersTable.getTableHeader().setFont(new Font("SansSerif", Font.BOLD, 14));
 
-        JScrollPane scrollPane = new JScrollPane(usersTable);
-        scrollPane.setBorder(new LineBorder(COLOR_BORDER));
-        panel.add(scrollPane, BorderLayout.CENTER);
+        tableScrollPane = new JScrollPane(usersTable);
+        tableScrollPane.setBorder(new LineBorder(COLOR_BORDER));
+        tableScrollPane.getVerticalScrollBar().addAdjustmentListener(e -> loadMoreIfNearEnd());
+        panel.add(tableScrollPane, BorderLayout.CENTER);
 
         return panel;
     }
@@ -183,22 +260,69 @@ public class UserManagementPanel extends JPanel {
         if(Confirm!= JOptionPane.YES_OPTION){
             return;//
         }
-        String defaultPassword = "defaultPassword123"; //This is the default password provided everytime the user is created
+        String defaultPassword = DEFAULT_PASSWORD;
         //Backend Call to the service call
-        boolean success = adminService.createNewUser(name, email, role, defaultPassword); //This returns true if the user is created
-        if (success) {
-            loadData();
-            nameField.setText("");
-            emailField.setText("");
-            roleComboBox.setSelectedIndex(0);
-            JOptionPane.showMessageDialog(this, "User '" + name + "' added successfully!\nDefault Password: " + defaultPassword, "Success", JOptionPane.INFORMATION_MESSAGE);
-        } else {
-            JOptionPane.showMessageDialog(this, "Failed to create user. The UserName may already be in use.", "Database Error", JOptionPane.ERROR_MESSAGE);
+        if (createLoader.isLoading()) {
+            return; //The previous user is still being created
         }
+        createLoader.load(() -> adminService.createNewUser(name, email, role, defaultPassword), success -> { //This returns true if the user is created
+            if (success) {
+                loadData();
+                nameField.setText("");
+                emailField.setText("");
+                roleComboBox.setSelectedIndex(0);
+                JOptionPane.showMessageDialog(this, "User '" + name + "' added successfully!\nDefault Password: " + defaultPassword, "Success", JOptionPane.INFORMATION_MESSAGE);
+            } else {
+                JOptionPane.showMessageDialog(this, "Failed to create user. The UserName may already be in use.", "Database Error", JOptionPane.ERROR_MESSAGE);
+            }
+        });
     }
 
 
     //Helper methods to create buttons
+    //Creates every user in a CSV file in the background, then lists the rows that were not created
+    private void onImportCsv() {
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setDialogTitle("Import Users from CSV");
+        if (fileChooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        File file = fileChooser.getSelectedFile();
+        importLoader.load(() -> {
+            try (Reader reader = new BufferedReader(new FileReader(file))) {
+                return adminService.ImportUsersFromCsv(reader, DEFAULT_PASSWORD);
+            }
+        }, result -> {
+            loadData();
+            showImportResult(result);
+        }, ex -> JOptionPane.showMessageDialog(this, "Error reading file: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE));
+    }
+
+
+    private void showImportResult(UserImportResult result) {
+        String summary = result.imported() + " of " + result.totalRows() + " users created.\nDefault Password: " + DEFAULT_PASSWORD;
+        if (result.failures().isEmpty()) {
+            JOptionPane.showMessageDialog(this, summary, "Import Complete", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        StringBuilder report = new StringBuilder();
+        List<ImportFailure> failures = result.failures();
+        for (int i = 0; i < Math.min(failures.size(), MAX_FAILURES_SHOWN); i++) {
+            ImportFailure failure = failures.get(i);
+            report.append("Line ").append(failure.lineNumber()).append(" (").append(failure.email()).append("): ").append(failure.reason()).append('\n');
+        }
+        if (failures.size() > MAX_FAILURES_SHOWN) {
+            report.append("... and ").append(failures.size() - MAX_FAILURES_SHOWN).append(" more");
+        }
+        JTextArea reportArea = new JTextArea(report.toString(), 12, 60);
+        reportArea.setEditable(false);
+        JPanel message = new JPanel(new BorderLayout(0, 10));
+        message.add(new JLabel("<html>" + summary.replace("\n", "<br>") + "<br>" + failures.size() + " rows failed:</html>"), BorderLayout.NORTH);
+        message.add(new JScrollPane(reportArea), BorderLayout.CENTER);
+        JOptionPane.showMessageDialog(this, message, "Import Finished With Errors", JOptionPane.WARNING_MESSAGE);
+    }
+
+
     private JButton createModernButton(String text, boolean isPrimary) {
         JButton button = new JButton(text);
         button.setFont(new Font("SansSerif", Font.BOLD, 14));
@@ -3,6 +3,7 @@ package edu.univ.erp.ui.auth;
 import edu.univ.erp.ui.Main;
 import edu.univ.erp.service.AuthService;
 import edu.univ.erp.service.LoginResult;
+import edu.univ.erp.ui.common.BackgroundLoader;
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import javax.swing.border.LineBorder;
@@ -36,6 +37,8 @@ public class LoginDialog extends JDialog {
     //Counter to check the failed login attempts
     //If it fails 5 times repeatedly then it blocks the login page
     private int failedAttempts = 0;
+    //The password check is a BCrypt hash, so it runs off the EDT and the button stays disabled until it answers
+    private final BackgroundLoader<LoginResult> loginLoader = new BackgroundLoader<>(getRootPane());
 
     public LoginDialog(Main parent, AuthService authService) {
         super(parent, "ERP System Login", true);
@@ -192,9 +195,21 @@ public class LoginDialog extends JDialog {
             return;
         }
 
+        if (loginLoader.isLoading()) {
+            return; //Already checking the last attempt
+        }
+
         String username = emailField.getText(); //Input of the username field
         char[] password = passwordField.getPassword(); //Input of the password field
-        LoginResult result = authService.login(username, new String(password));
+        String passwordText = new String(password);
+        Arrays.fill(password, '0');
+        loginLoader.setLoadingListener(loading -> signInButton.setEnabled(!loading && failedAttempts < 5));
+        loginLoader.load(() -> authService.login(username, passwordText), result -> onLoginResult(result, username));
+    }
+
+
+    //Runs on the EDT once the backend has answered
+    private void onLoginResult(LoginResult result, String username) {
         if (result.isSuccess) {
             this.dispose();
             mainApp.onLoginSuccess(result.Role, username, result.userId);
@@ -216,6 +231,5 @@ public class LoginDialog extends JDialog {
                     "Login Failed",
                     JOptionPane.ERROR_MESSAGE);
         }
-        Arrays.fill(password, '0');
     }
 }
\ No newline at end of file
@@ -0,0 +1,106 @@
+package edu.univ.erp.ui.common;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+
+//Runs service calls off the Swing event dispatch thread and hands the result back on it
+//Each panel keeps one loader per kind of data it shows, and starting a new load on a loader cancels the one still running,
+//so a slow answer for a page the user has already left can never overwrite a newer one
+//While a load is running the owner shows the wait cursor and the loading listener (if any) is told
+public class BackgroundLoader<T> {
+    private final JComponent owner;
+    private Consumer<Boolean> loadingListener = loading -> {};
+    private boolean busyCursor = true;
+    private SwingWorker<T, Void> current;
+    private int generation; //Bumped on every load and cancel, a finished worker only publishes if it is still the latest
+
+    public BackgroundLoader(JComponent owner) {
+        this.owner = owner;
+    }
+
+    //Called on the EDT with true when a load starts and false when the latest load ends
+    public void setLoadingListener(Consumer<Boolean> loadingListener) {
+        this.loadingListener = loadingListener;
+    }
+
+    //Turned off for loads the user did not ask for, like a poll on a timer, so the cursor does not flicker
+    public void setBusyCursor(boolean busyCursor) {
+        this.busyCursor = busyCursor;
+    }
+
+    public void load(Callable<T> task, Consumer<T> onLoaded) {
+        load(task, onLoaded, this::showError);
+    }
+
+    //Must be called on the EDT, onLoaded and onFailed also run on the EDT
+    public void load(Callable<T> task, Consumer<T> onLoaded, Consumer<Exception> onFailed) {
+        int myGeneration = ++generation; //Bumped first, cancelling on the EDT runs the old worker's done() straight away
+        cancelRunning();
+        setLoading(true);
+        current = new SwingWorker<>() {
+            @Override
+            protected T doInBackground() throws Exception {
+                return task.call();
+            }
+
+            @Override
+            protected void done() {
+                if (myGeneration != generation) {
+                    return; //A newer load or a cancel has replaced this one
+                }
+                current = null;
+                setLoading(false);
+                if (isCancelled()) {
+                    return;
+                }
+                try {
+                    onLoaded.accept(get());
+                }
+                catch (ExecutionException e) {
+                    onFailed.accept(e.getCause() instanceof Exception cause ? cause : e);
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        current.execute();
+    }
+
+    //Drops the running load, if any, so its result is never published
+    //Panels call this when they are hidden
+    public void cancel() {
+        if (current != null) {
+            generation++;
+            cancelRunning();
+            setLoading(false);
+        }
+    }
+
+    public boolean isLoading() {
+        return current != null;
+    }
+
+    private void cancelRunning() {
+        if (current != null) {
+            //Not interrupting, a JDBC call or BCrypt check is left to finish on its own and its result is ignored
+            current.cancel(false);
+            current = null;
+        }
+    }
+
+    private void setLoading(boolean loading) {
+        if (busyCursor) {
+            owner.setCursor(loading ? Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR) : null);
+        }
+        loadingListener.accept(loading);
+    }
+
+    private void showError(Exception e) {
+        e.printStackTrace();
+        JOptionPane.showMessageDialog(owner, "Could not load data: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+    }
+}
@@ -0,0 +1,159 @@
+package edu.univ.erp.ui.common;
+
+import javax.swing.table.AbstractTableModel;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+//A table model that reads cells straight from a list of domain records instead of copying them into DefaultTableModel vectors
+//Each column is a name plus a function that pulls the cell value out of the record
+//setRows compares the new list with the current one and only fires events for the rows that actually changed,
+//so a refresh that changes one seat count repaints one row instead of rebuilding the table
+public class RecordTableModel<T> extends AbstractTableModel {
+
+    //One column, setter is null for read-only columns
+    //A setter returns the updated record (records are immutable) and may throw IllegalArgumentException to reject the value
+    public record Column<T>(String name, Class<?> type, Function<T, Object> getter, BiFunction<T, Object, T> setter) {
+        public static <T> Column<T> of(String name, Function<T, Object> getter) {
+            return new Column<>(name, Object.class, getter, null);
+        }
+
+        public static <T> Column<T> of(String name, Class<?> type, Function<T, Object> getter) {
+            return new Column<>(name, type, getter, null);
+        }
+
+        public static <T> Column<T> editable(String name, Class<?> type, Function<T, Object> getter, BiFunction<T, Object, T> setter) {
+            return new Column<>(name, type, getter, setter);
+        }
+    }
+
+    private final List<Column<T>> columns;
+    private List<T> rows = new ArrayList<>();
+    private boolean ownsRows = true; //False while rows is the caller's list from setRows
+    private boolean editable = true; //Lets a panel lock every column at once, e.g. in maintenance mode
+
+    public RecordTableModel(List<Column<T>> columns) {
+        this.columns = List.copyOf(columns);
+    }
+
+    @Override
+    public int getRowCount() {
+        return rows.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columns.size();
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return columns.get(column).name();
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return columns.get(column).type();
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        return columns.get(column).getter().apply(rows.get(row));
+    }
+
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        return editable && columns.get(column).setter() != null;
+    }
+
+    //Rejected values leave the row as it was
+    @Override
+    public void setValueAt(Object value, int row, int column) {
+        BiFunction<T, Object, T> setter = columns.get(column).setter();
+        if (setter == null) {
+            return;
+        }
+        try {
+            updateRow(row, setter.apply(rows.get(row), value));
+        }
+        catch (IllegalArgumentException e) {
+            Toolkit.getDefaultToolkit().beep();
+        }
+    }
+
+    public void setEditable(boolean editable) {
+        this.editable = editable;
+    }
+
+    public T getRow(int row) {
+        return rows.get(row);
+    }
+
+    //The current rows, not a copy, so do not modify it
+    public List<T> getRows() {
+        return rows;
+    }
+
+    //Replaces the contents with the given list, which the model keeps using instead of copying
+    //Rows are compared by position with equals(), unchanged rows fire nothing
+    public void setRows(List<T> newRows) {
+        List<T> oldRows = rows;
+        rows = newRows;
+        ownsRows = false;
+        int common = Math.min(oldRows.size(), newRows.size());
+        int runStart = -1;
+        for (int i = 0; i < common; i++) {
+            boolean changed = !Objects.equals(oldRows.get(i), newRows.get(i));
+            if (changed && runStart < 0) {
+                runStart = i;
+            }
+            else if (!changed && runStart >= 0) {
+                fireTableRowsUpdated(runStart, i - 1);
+                runStart = -1;
+            }
+        }
+        if (runStart >= 0) {
+            fireTableRowsUpdated(runStart, common - 1);
+        }
+        if (newRows.size() > common) {
+            fireTableRowsInserted(common, newRows.size() - 1);
+        }
+        else if (oldRows.size() > common) {
+            fireTableRowsDeleted(common, oldRows.size() - 1);
+        }
+    }
+
+    //Adds rows at the end, e.g. the next page of a paged listing
+    public void appendRows(List<T> more) {
+        if (more.isEmpty()) {
+            return;
+        }
+        int first = rows.size();
+        mutableRows().addAll(more);
+        fireTableRowsInserted(first, rows.size() - 1);
+    }
+
+    public void updateRow(int row, T record) {
+        if (!Objects.equals(rows.get(row), record)) {
+            mutableRows().set(row, record);
+            fireTableRowsUpdated(row, row);
+        }
+    }
+
+    public void clear() {
+        setRows(List.of());
+    }
+
+    //The list handed to setRows belongs to the caller (and may be immutable),
+    //so it is copied once, the first time the model has to change a row in place
+    private List<T> mutableRows() {
+        if (!ownsRows) {
+            rows = new ArrayList<>(rows);
+            ownsRows = true;
+        }
+        return rows;
+    }
+}
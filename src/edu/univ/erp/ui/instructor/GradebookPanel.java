@@ -1,19 +1,25 @@
 package edu.univ.erp.ui.instructor;
 
+import edu.univ.erp.domain.GradeStatistics;
 import edu.univ.erp.domain.GradebookEntry;
 import edu.univ.erp.service.InstructorService;
+import edu.univ.erp.service.UserSession;
+import edu.univ.erp.ui.common.BackgroundLoader;
+import edu.univ.erp.ui.common.RecordTableModel;
+import edu.univ.erp.ui.common.RecordTableModel.Column;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import javax.swing.border.LineBorder;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.io.File;
 import java.io.FileWriter;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Supplier;
 
 
 //This handles the gradeBook panel for the instructor
@@ -31,29 +37,61 @@ public class GradebookPanel extends JPanel {
     private static final Color COLOR_DISABLED = new Color(200, 200, 200); // <-- NEW
 
     private JTable gradesTable;
-    private DefaultTableModel tableModel;
+    private RecordTableModel<GradebookEntry> tableModel;
     private InstructorService instructorService;
+    private Supplier<UserSession> session; //The logged in instructor's session
     private JLabel titleLabel;
     private JLabel classAverageLabel;
     private JButton calculateButton; // <-- Field reference to disable it
     private int currentSectionId = -1;
 
-    public GradebookPanel(Runnable onGoBack, InstructorService instructorService) {
+    //The gradebook, its statistics and the maintenance flag are fetched together off the EDT
+    private record GradebookData(List<GradebookEntry> entries, GradeStatistics statistics, boolean maintenance) {}
+    private final BackgroundLoader<GradebookData> gradebookLoader = new BackgroundLoader<>(this);
+    private final BackgroundLoader<Boolean> saveLoader = new BackgroundLoader<>(this);
+
+    public GradebookPanel(Runnable onGoBack, InstructorService instructorService, Supplier<UserSession> session) {
         this.instructorService = instructorService;
+        this.session = session;
         setLayout(new BorderLayout(0, 15));
         setBackground(COLOR_BACKGROUND);
         setBorder(new EmptyBorder(20, 40, 40, 40));
         add(createHeaderPanel(onGoBack), BorderLayout.NORTH);
         add(createTablePanel(), BorderLayout.CENTER);
+
+        //A gradebook still loading for a section we have left is dropped
+        this.addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentHidden(ComponentEvent e) {
+                gradebookLoader.cancel();
+            }
+        });
     }
 
 
     //Loads all the students into the grade book
+    //The rows are fetched in the background, until they arrive the table is empty and saving is disabled
     public void loadGradebook(int sectionId) {
         this.currentSectionId = sectionId;
-        List<GradebookEntry> entries = instructorService.getGradebook(sectionId);
-        titleLabel.setText("Gradebook (Section " + sectionId + ")");
-        boolean isMaintenance = instructorService.SystemInMaintenance(); //Check maintenance mode
+        titleLabel.setText("Gradebook (Section " + sectionId + ") - Loading...");
+        titleLabel.setForeground(COLOR_TEXT_DARK);
+        classAverageLabel.setText("Class Average: -");
+        tableModel.clear();
+        tableModel.setEditable(false);
+        calculateButton.setEnabled(false);
+        UserSession instructor = session.get();
+        gradebookLoader.load(() -> {
+            List<GradebookEntry> entries = instructorService.getGradebook(instructor, sectionId);
+            return new GradebookData(entries, instructorService.getGradeStatistics(instructor, sectionId, entries), instructorService.SystemInMaintenance());
+        }, this::showGradebook);
+    }
+
+
+    private void showGradebook(GradebookData data) {
+        List<GradebookEntry> entries = data.entries();
+        titleLabel.setText("Gradebook (Section " + currentSectionId + ")");
+        boolean isMaintenance = data.maintenance(); //Check maintenance mode
+        tableModel.setEditable(!isMaintenance); //If system is in maintenance, NO cells are editable
         if (isMaintenance) {
             titleLabel.setText("Gradebook (Read-Only Mode)");
             titleLabel.setForeground(Color.RED);
@@ -67,36 +105,40 @@ public class GradebookPanel extends JPanel {
             calculateButton.setToolTipText(null);
         }
 
-        tableModel.setRowCount(0);
-        double totalScore = 0;
-        int count = 0;
-
-        for (GradebookEntry entry : entries) {
-            tableModel.addRow(new Object[]{
-                    entry.studentId(),
-                    entry.studentName(),
-                    entry.quizScore(),
-                    entry.midtermScore(),
-                    entry.finalScore(),
-                    entry.finalGrade() != null ? entry.finalGrade() : "-"
-            });
-            if (entry.finalScore() > 0) {
-                totalScore += entry.finalScore();
-                count++;
-            }
-        }
+        tableModel.setRows(entries);
+        showStatistics(data.statistics());
+    }
 
-        if (count > 0) {
-            classAverageLabel.setText(String.format("Class Average: %.2f", totalScore / count));
-        } else {
+    //Weighted scores of the graded students, the histogram goes in the tooltip
+    private void showStatistics(GradeStatistics stats) {
+        if (stats.count() == 0) {
             classAverageLabel.setText("Class Average: -");
+            classAverageLabel.setToolTipText(null);
+            return;
+        }
+        classAverageLabel.setText(String.format("Class Average: %.2f    Median: %.2f    Std Dev: %.2f    (%d graded)",
+                stats.mean(), stats.median(), stats.stdDev(), stats.count()));
+        StringBuilder histogram = new StringBuilder("<html>");
+        for (int bin = GradeStatistics.BINS - 1; bin >= 0; bin--) {
+            histogram.append(GradeStatistics.binLabel(bin)).append(": ").append(stats.histogram()[bin]).append("<br>");
         }
+        classAverageLabel.setToolTipText(histogram.append("</html>").toString());
     }
 
-    //Column Names
-    private String[] getColumnNames() {
-        return new String[]{"Student ID", "Student Name", "Quiz (20%)", "Midterm (30%)", "Final (50%)", "Final Grade"
-        };
+    //Columns, only the three scores are editable
+    //An edit replaces the row's entry, a value that is not a number is rejected by the model and the old score stays
+    private List<Column<GradebookEntry>> getColumns() {
+        return List.of(
+                Column.of("Student ID", GradebookEntry::studentId),
+                Column.of("Student Name", GradebookEntry::studentName),
+                Column.editable("Quiz (20%)", Object.class, GradebookEntry::quizScore,
+                        (entry, value) -> new GradebookEntry(entry.studentId(), entry.studentName(), parseDouble(value), entry.midtermScore(), entry.finalScore(), entry.finalGrade())),
+                Column.editable("Midterm (30%)", Object.class, GradebookEntry::midtermScore,
+                        (entry, value) -> new GradebookEntry(entry.studentId(), entry.studentName(), entry.quizScore(), parseDouble(value), entry.finalScore(), entry.finalGrade())),
+                Column.editable("Final (50%)", Object.class, GradebookEntry::finalScore,
+                        (entry, value) -> new GradebookEntry(entry.studentId(), entry.studentName(), entry.quizScore(), entry.midtermScore(), parseDouble(value), entry.finalGrade())),
+                Column.of("Final Grade", entry -> entry.finalGrade() != null ? entry.finalGrade() : "-")
+        );
     }
 
     private JPanel createHeaderPanel(Runnable onGoBack) {
@@ -139,17 +181,7 @@ public class GradebookPanel extends JPanel {
     }
 
     private JScrollPane createTablePanel() {
-        tableModel = new DefaultTableModel(null, getColumnNames()) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                // If system is in maintenance, NO cells are editable.
-                if (instructorService.SystemInMaintenance()) {
-                    return false;
-                }
-                // Otherwise, only grade columns are editable
-                return column == 2 || column == 3 || column == 4;
-            }
-        };
+        tableModel = new RecordTableModel<>(getColumns());
 
         gradesTable = new JTable(tableModel);
         gradesTable.setFont(new Font("SansSerif", Font.PLAIN, 14));
@@ -182,28 +214,25 @@ public class GradebookPanel extends JPanel {
         if (gradesTable.isEditing()) {
             gradesTable.getCellEditor().stopCellEditing();
         }
-        List<GradebookEntry> gradebook = new ArrayList<>();
-        for (int row = 0; row < tableModel.getRowCount(); row++) {
-            try {
-                int studentId = (int) tableModel.getValueAt(row, 0);
-                String studentName = (String) tableModel.getValueAt(row, 1);
-                double quiz = parseDouble(tableModel.getValueAt(row, 2));
-                double midterm = parseDouble(tableModel.getValueAt(row, 3));
-                double finalScore = parseDouble(tableModel.getValueAt(row, 4));
-                gradebook.add(new GradebookEntry(studentId, studentName, quiz, midterm, finalScore, null));
-            } catch (Exception e) {
-                JOptionPane.showMessageDialog(this, "Invalid score.", "Error", JOptionPane.ERROR_MESSAGE);
-                return;
+        //Scores were validated as they were typed, the rows are already the entries to save
+        //Copied because the save runs off the EDT while the table stays live
+        List<GradebookEntry> gradebook = List.copyOf(tableModel.getRows());
+        int sectionId = currentSectionId;
+        UserSession instructor = session.get();
+        calculateButton.setEnabled(false);
+        saveLoader.load(() -> instructorService.saveAndCalculateGrades(instructor, sectionId, gradebook), success -> {
+            if (success) {
+                JOptionPane.showMessageDialog(this, "Grades saved and calculated successfully.");
+                loadGradebook(sectionId);
             }
-        }
-        boolean success = instructorService.saveAndCalculateGrades(currentSectionId, gradebook);
-        if (success) {
-            JOptionPane.showMessageDialog(this, "Grades saved and calculated successfully.");
-            loadGradebook(currentSectionId);
-        }
-        else {
-            JOptionPane.showMessageDialog(this, "Failed to save grades (System may be in Maintenance Mode).", "Error", JOptionPane.ERROR_MESSAGE);
-        }
+            else {
+                calculateButton.setEnabled(true);
+                JOptionPane.showMessageDialog(this, "Failed to save grades (System may be in Maintenance Mode).", "Error", JOptionPane.ERROR_MESSAGE);
+            }
+        }, e -> {
+            calculateButton.setEnabled(true);
+            JOptionPane.showMessageDialog(this, "Failed to save grades: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+        });
     }
 
     //This opens the JFileChooser Class
@@ -214,7 +243,7 @@ public class GradebookPanel extends JPanel {
         fileChooser.setSelectedFile(new File("gradebook_section_" + currentSectionId + ".csv"));
         if (fileChooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
             try (FileWriter writer = new FileWriter(fileChooser.getSelectedFile())) {
-                instructorService.exportGradebookToCsv(currentSectionId, writer);
+                instructorService.exportGradebookToCsv(session.get(), currentSectionId, writer);
                 JOptionPane.showMessageDialog(this, "Gradebook exported successfully!", "Success", JOptionPane.INFORMATION_MESSAGE);
             }
             catch (Exception ex) {
@@ -223,6 +252,7 @@ public class GradebookPanel extends JPanel {
         }
     }
 
+    //Blank means 0, anything else that is not a number throws NumberFormatException (an IllegalArgumentException)
     private double parseDouble(Object obj) {
         if (obj == null || obj.toString().trim().isEmpty()) return 0.0;
         return Double.parseDouble(obj.toString());
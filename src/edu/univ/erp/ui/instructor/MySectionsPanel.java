@@ -2,16 +2,21 @@ package edu.univ.erp.ui.instructor;
 
 import edu.univ.erp.domain.SectionView;
 import edu.univ.erp.service.InstructorService;
+import edu.univ.erp.service.UserSession;
+import edu.univ.erp.ui.common.BackgroundLoader;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import javax.swing.border.LineBorder;
 import java.awt.*;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.net.URL;
 import java.util.List;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 //This is basically the dashboard panel for the instructor and it displays only the sections that the instructor is assigned to
 public class MySectionsPanel extends JPanel {
@@ -26,11 +31,14 @@ public class MySectionsPanel extends JPanel {
 
     private Consumer<Integer> onOpenGradebook; // Takes SectionID
     private InstructorService instructorService;
+    private Supplier<UserSession> session; //The logged in instructor's session, null before login
     private JPanel cardsPanel; // A field so loadData() can update it
+    private final BackgroundLoader<List<SectionView>> sectionsLoader = new BackgroundLoader<>(this);
 
-    public MySectionsPanel(Consumer<Integer> onOpenGradebook, InstructorService instructorService) {
+    public MySectionsPanel(Consumer<Integer> onOpenGradebook, InstructorService instructorService, Supplier<UserSession> session) {
         this.onOpenGradebook = onOpenGradebook;
         this.instructorService = instructorService;
+        this.session = session;
 
         setLayout(new BorderLayout(0, 30)); // Reduced gap
         setBackground(COLOR_BACKGROUND);
@@ -43,14 +51,30 @@ public class MySectionsPanel extends JPanel {
         add(cardsPanel, BorderLayout.CENTER);
         // Load data immediately
         loadData();
+
+        //The instructor's home page, refreshed each time it opens
+        this.addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentShown(ComponentEvent e) {
+                loadData();
+            }
+        });
     }
 
 
     //This method loads the data about the sections that this instructor is assigned to
     //It then clears the old card(All the cards just in case some section was deleted)
     //It then creates a new card for each of the section
+    //The sections are fetched in the background, the cards are rebuilt when they arrive
     private void loadData() {
-        List<SectionView> sections = instructorService.getAssignedSections();
+        UserSession instructor = session.get();
+        if (instructor == null) {
+            return; //Not logged in yet, the sections load when the page is first shown
+        }
+        sectionsLoader.load(() -> instructorService.getAssignedSections(instructor), this::showData);
+    }
+
+    private void showData(List<SectionView> sections) {
         cardsPanel.removeAll(); // Clear old cards
         for (SectionView section : sections) {
             // Create a card for each section
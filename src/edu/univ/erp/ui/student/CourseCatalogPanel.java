@@ -1,19 +1,28 @@
 package edu.univ.erp.ui.student;
 
+import edu.univ.erp.domain.CartResult;
+import edu.univ.erp.domain.SeatChange;
+import edu.univ.erp.domain.SeatDelta;
 import edu.univ.erp.domain.SectionView;
 import edu.univ.erp.service.StudentService;
+import edu.univ.erp.service.UserSession;
+import edu.univ.erp.ui.common.BackgroundLoader;
+import edu.univ.erp.ui.common.RecordTableModel;
+import edu.univ.erp.ui.common.RecordTableModel.Column;
+import edu.univ.erp.util.IntObjectMap;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import javax.swing.border.LineBorder;
 import javax.swing.table.DefaultTableCellRenderer;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.awt.event.ComponentAdapter;
 import java.awt.event.ComponentEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.util.Arrays;
 import java.util.List;
+import java.util.function.Supplier;
 
 //Course Catalog panel
 //In this panel the student can see all the sections, ones he is registeres to as well
@@ -27,15 +36,31 @@ public class CourseCatalogPanel extends JPanel {
     private static final Color COLOR_BORDER = new Color(220, 220, 220);
     private static final Color COLOR_DROP = new Color(220, 50, 50);
     private static final Color COLOR_DROP_DARK = new Color(200, 40, 40);
+    private static final Color COLOR_CLASH = new Color(170, 170, 170);
+    private static final int SEAT_POLL_MILLIS = 2_000;
 
     private JTable courseTable;
-    private DefaultTableModel tableModel;
+    private RecordTableModel<SectionView> tableModel;
     private StudentService studentService;
-    private List<SectionView> sectionList;
+    private Supplier<UserSession> session; //The logged in student's session, null before login
     private JLabel deadlineLabel;
-
-    public CourseCatalogPanel(Runnable onGoBack, StudentService studentService) {
+    private JButton refreshButton;
+    private JButton registerSelectedButton; //Registers every selected Register row at once, the selection is the cart
+    private long seatCursor; //Last seat count version shown in the table
+    private final Timer seatPollTimer; //Runs while the panel is part of a window, see addNotify/removeNotify
+    private IntObjectMap<Integer> rowBySection = new IntObjectMap<>(4); //Table row of each section, rebuilt on every full load
+
+    //Catalog and deadline are fetched together off the EDT, register/drop run on their own loader so a refresh never cancels them
+    private record CatalogData(List<SectionView> sections, String deadline, long seatCursor) {}
+    private final BackgroundLoader<CatalogData> catalogLoader = new BackgroundLoader<>(this);
+    private final BackgroundLoader<String> actionLoader = new BackgroundLoader<>(this);
+    private final BackgroundLoader<SeatDelta> seatLoader = new BackgroundLoader<>(this);
+    private final BackgroundLoader<Integer> waitlistLoader = new BackgroundLoader<>(this);
+    private final BackgroundLoader<CartResult> cartLoader = new BackgroundLoader<>(this);
+
+    public CourseCatalogPanel(Runnable onGoBack, StudentService studentService, Supplier<UserSession> session) {
         this.studentService = studentService;
+        this.session = session;
 
         setLayout(new BorderLayout(0, 15));
         setBackground(COLOR_BACKGROUND);
@@ -43,37 +68,107 @@ public class CourseCatalogPanel extends JPanel {
         add(createHeaderPanel(onGoBack), BorderLayout.NORTH);
         add(createTablePanel(), BorderLayout.CENTER);
 
+        catalogLoader.setLoadingListener(loading -> refreshButton.setEnabled(!loading));
+        seatLoader.setBusyCursor(false);
+
+        //While the catalog is on screen its seat counts follow registrations without a Refresh
+        seatPollTimer = new Timer(SEAT_POLL_MILLIS, e -> pollSeatCounts());
+
         //Load initial data
         loadData();
-        updateDeadlineLabel();
 
-        //This refreshes this page as we open it
+        //This refreshes this page as we open it, and drops a load still running when we leave it
         this.addComponentListener(new ComponentAdapter() {
             @Override
             public void componentShown(ComponentEvent e) {
                 System.out.println("Catalog Panel Shown - Refreshing Data...");
                 loadData();
-                updateDeadlineLabel();
+            }
+
+            @Override
+            public void componentHidden(ComponentEvent e) {
+                catalogLoader.cancel();
+                seatLoader.cancel();
             }
         });
     }
 
 
+    //The poller only runs while the panel is in a window, a running Swing Timer is referenced from the timer queue
+    //and would keep polling (and keep this panel alive) after logout disposes the window or the panel is removed
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        seatPollTimer.start();
+    }
+
+
+    @Override
+    public void removeNotify() {
+        seatPollTimer.stop();
+        seatLoader.cancel();
+        super.removeNotify();
+    }
+
+
     //Load data regarding the section using the backend calls
+    //The calls run in the background, the table and deadline label are filled in when they return
+    //The seat cursor is taken before the catalog query, so no change can fall between the two
     private void loadData() {
-        this.sectionList = studentService.getCourseCatalog();
-        tableModel.setRowCount(0);
-        for (SectionView section : sectionList) {
-            tableModel.addRow(new Object[]{
-                    section.courseCode(),
-                    section.courseTitle(),
-                    section.credits(),
-                    section.instructorName(),
-                    section.timeSlot(),
-                    section.enrolled() + " / " + section.capacity(),
-                    section.isEnrolled() ? "Drop" : "Register"
-            });
+        UserSession student = session.get();
+        if (student == null) {
+            return; //Not logged in yet, the catalog loads when it is first shown
         }
+        deadlineLabel.setText("Loading...");
+        seatLoader.cancel(); //A poll started against the old rows must not land on the new ones
+        catalogLoader.load(() -> {
+            long cursor = studentService.getSeatCursor();
+            return new CatalogData(studentService.getCourseCatalog(student), studentService.GetDeadlineString(), cursor);
+        }, this::showData);
+    }
+
+
+    //Only the rows whose seats or enrolled flag changed since the last load are repainted
+    private void showData(CatalogData data) {
+        deadlineLabel.setText("Registration Deadline: " + data.deadline());
+        tableModel.setRows(data.sections());
+        seatCursor = data.seatCursor();
+        List<SectionView> sections = data.sections();
+        rowBySection = new IntObjectMap<>(sections.size());
+        for (int row = 0; row < sections.size(); row++) {
+            rowBySection.put(sections.get(row).sectionId(), row);
+        }
+    }
+
+
+    //Asks for the seat counts that changed since the table was last updated
+    //Skipped while the panel is hidden or a full load or an earlier poll is still running
+    private void pollSeatCounts() {
+        if (!isShowing() || catalogLoader.isLoading() || seatLoader.isLoading()) {
+            return;
+        }
+        long cursor = seatCursor;
+        seatLoader.load(() -> studentService.getSeatChanges(cursor), this::applySeatChanges,
+                e -> e.printStackTrace()); //A failed poll is retried on the next tick, no dialog
+    }
+
+
+    //Updates only the rows whose count changed, sections not in the table (created since the last load) wait for a Refresh
+    private void applySeatChanges(SeatDelta delta) {
+        if (delta.reset()) {
+            loadData();
+            return;
+        }
+        for (SeatChange change : delta.changes()) {
+            Integer row = rowBySection.get(change.sectionId());
+            if (row == null) {
+                continue;
+            }
+            SectionView s = tableModel.getRow(row);
+            tableModel.updateRow(row, new SectionView(s.sectionId(), s.courseCode(), s.courseTitle(), s.credits(),
+                    s.instructorName(), s.timeSlot(), change.enrolled(), s.capacity(), s.isEnrolled(), s.clashes()));
+        }
+        seatCursor = delta.cursor();
     }
 
 
@@ -92,15 +187,21 @@ public class CourseCatalogPanel extends JPanel {
         titleLabel.setFont(new Font("SansSerif", Font.BOLD, 28));
         titleLabel.setForeground(COLOR_TEXT_DARK);
 
-        JButton refreshButton = createModernButton("Refresh", false, false);
-        refreshButton.addActionListener(e -> {
-            loadData();
-            updateDeadlineLabel(); // Refresh date too
-        });
+        refreshButton = createModernButton("Refresh", false, false);
+        refreshButton.addActionListener(e -> loadData()); // Refreshes the date too
+
+        registerSelectedButton = createModernButton("Register Selected", true, false);
+        registerSelectedButton.setEnabled(false);
+        registerSelectedButton.addActionListener(e -> registerSelected());
+
+        JPanel actionsPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 10, 0));
+        actionsPanel.setBackground(COLOR_BACKGROUND);
+        actionsPanel.add(registerSelectedButton);
+        actionsPanel.add(refreshButton);
 
         topRow.add(goBackButton, BorderLayout.WEST);
         topRow.add(titleLabel, BorderLayout.CENTER);
-        topRow.add(refreshButton, BorderLayout.EAST);
+        topRow.add(actionsPanel, BorderLayout.EAST);
 
         //Bottom Deadline Row below the course catalog that displays the deadline
         deadlineLabel = new JLabel("Loading deadline...", SwingConstants.CENTER);
@@ -114,20 +215,18 @@ public class CourseCatalogPanel extends JPanel {
         return headerPanel;
     }
 
-    private void updateDeadlineLabel() {
-        String deadline = studentService.GetDeadlineString();
-        deadlineLabel.setText("Registration Deadline: " + deadline);
-    }
-
     //Create table to view the courses
     private JScrollPane createTablePanel() {
-        String[] columnNames = {"Course Code", "Title", "Credits", "Instructor", "Time", "Seats", "Actions"};
-        tableModel = new DefaultTableModel(null, columnNames) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
-            }
-        };
+        tableModel = new RecordTableModel<>(List.of(
+                Column.of("Course Code", SectionView::courseCode),
+                Column.of("Title", SectionView::courseTitle),
+                Column.of("Credits", SectionView::credits),
+                Column.of("Instructor", SectionView::instructorName),
+                Column.of("Time", SectionView::timeSlot),
+                Column.of("Seats", section -> section.enrolled() + " / " + section.capacity()),
+                Column.of("Actions", section -> section.isEnrolled() ? "Drop" : section.clashes() ? "Clash"
+                        : section.enrolled() >= section.capacity() ? "Waitlist" : "Register")
+        ));
 
         courseTable = new JTable(tableModel);
         courseTable.setFont(new Font("SansSerif", Font.PLAIN, 14));
@@ -136,9 +235,12 @@ public class CourseCatalogPanel extends JPanel {
         courseTable.setGridColor(COLOR_BORDER);
         courseTable.setIntercellSpacing(new Dimension(0, 0));
 
+        courseTable.setDefaultRenderer(Object.class, new ClashAwareRenderer());
         courseTable.getColumnModel().getColumn(5).setCellRenderer(new SeatsAvailableRenderer());
         courseTable.getColumnModel().getColumn(6).setCellRenderer(new ButtonColumnRenderer());
         courseTable.addMouseListener(new JTableButtonMouseListener(courseTable));
+        courseTable.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
+        courseTable.getSelectionModel().addListSelectionListener(e -> updateRegisterSelected());
 
         // Set column widths
         courseTable.getColumnModel().getColumn(0).setPreferredWidth(100); // Code
@@ -158,10 +260,15 @@ public class CourseCatalogPanel extends JPanel {
     private class ButtonColumnRenderer extends DefaultTableCellRenderer {
         private final JButton registerButton;
         private final JButton dropButton;
+        private final JButton clashButton;
+        private final JButton waitlistButton;
 
         public ButtonColumnRenderer() {
             registerButton = createModernButton("Register", true, true);
             dropButton = createModernButton("Drop", false, true);
+            clashButton = createModernButton("Clash", false, true);
+            clashButton.setEnabled(false);
+            waitlistButton = createModernButton("Waitlist", false, true);
         }
 
         @Override
@@ -172,6 +279,10 @@ public class CourseCatalogPanel extends JPanel {
                 return registerButton;
             } else if ("Drop".equals(buttonText)) {
                 return dropButton;
+            } else if ("Clash".equals(buttonText)) {
+                return clashButton;
+            } else if ("Waitlist".equals(buttonText)) {
+                return waitlistButton;
             }
             JPanel spacer = new JPanel();
             spacer.setBackground(isSelected ? table.getSelectionBackground() : table.getBackground());
@@ -179,6 +290,20 @@ public class CourseCatalogPanel extends JPanel {
         }
     }
 
+    //Greys out the text of sections that clash with the student's timetable
+    private class ClashAwareRenderer extends DefaultTableCellRenderer {
+        @Override
+        public Component getTableCellRendererComponent(JTable table, Object value,
+                                                       boolean isSelected, boolean hasFocus, int row, int column) {
+            Component c = super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
+            if (!isSelected) {
+                boolean clashes = tableModel.getRow(table.convertRowIndexToModel(row)).clashes();
+                c.setForeground(clashes ? COLOR_CLASH : table.getForeground());
+            }
+            return c;
+        }
+    }
+
     //Inner class for Table (SeatsAvailableRenderer)
     private class SeatsAvailableRenderer extends DefaultTableCellRenderer {
         public SeatsAvailableRenderer() {
@@ -191,20 +316,14 @@ public class CourseCatalogPanel extends JPanel {
             Component c = super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
             String seatsStr = value.toString();
 
-            try {
-                String[] parts = seatsStr.split("/");
-                int enrolled = Integer.parseInt(parts[0].trim());
-                int capacity = Integer.parseInt(parts[1].trim());
-                int remaining = capacity - enrolled;
-
-                if (enrolled >= capacity) {
-                    setText("<html><font color='red'><b>Full</b></font></html>");
-                } else if (remaining <= 5) {
-                    setText("<html><font color='#E67E22'>" + seatsStr + "</font></html>");
-                } else {
-                    setText(seatsStr);
-                }
-            } catch (Exception e) {
+            //Read the numbers from the record instead of parsing them back out of the text
+            SectionView section = tableModel.getRow(table.convertRowIndexToModel(row));
+            int remaining = section.capacity() - section.enrolled();
+            if (section.enrolled() >= section.capacity()) {
+                setText("<html><font color='red'><b>Full</b></font></html>");
+            } else if (remaining <= 5) {
+                setText("<html><font color='#E67E22'>" + seatsStr + "</font></html>");
+            } else {
                 setText(seatsStr);
             }
             return c;
@@ -220,10 +339,18 @@ public class CourseCatalogPanel extends JPanel {
             int column = table.getColumnModel().getColumnIndexAtX(e.getX());
             int row = e.getY() / table.getRowHeight();
 
-            if (row < table.getRowCount() && row >= 0 && column == 6) {
-                SectionView selectedSection = sectionList.get(row);
+            if (row < table.getRowCount() && row >= 0 && column == 6 && !actionLoader.isLoading() && !waitlistLoader.isLoading()) {
+                SectionView selectedSection = tableModel.getRow(row);
                 int sectionId = selectedSection.sectionId();
                 String action = table.getValueAt(row, column).toString();
+                if ("Clash".equals(action)) {
+                    JOptionPane.showMessageDialog(CourseCatalogPanel.this, "This section clashes with your timetable (" + selectedSection.timeSlot() + ").");
+                    return;
+                }
+                if ("Waitlist".equals(action)) {
+                    onWaitlist(selectedSection);
+                    return;
+                }
 
                 //Warning panel while registring or dropping
                 String Message = "Do you want to "+ action.toLowerCase();
@@ -233,22 +360,82 @@ public class CourseCatalogPanel extends JPanel {
                     return;
                 }
 
-                String resultMessage = "";
-                if ("Register".equals(action)) {
-                    // Fixed case: RegisterForSection -> registerForSection
-                    resultMessage = studentService.RegisterForSection(sectionId);
-                } else if ("Drop".equals(action)) {
-                    resultMessage = studentService.dropSection(sectionId);
-                }
-
-                JOptionPane.showMessageDialog(table, resultMessage);
-                loadData();
-                updateDeadlineLabel();
+                UserSession student = session.get();
+                actionLoader.load(() -> {
+                    if ("Register".equals(action)) {
+                        // Fixed case: RegisterForSection -> registerForSection
+                        return studentService.RegisterForSection(student, sectionId);
+                    } else if ("Drop".equals(action)) {
+                        return studentService.dropSection(student, sectionId);
+                    }
+                    return "";
+                }, resultMessage -> {
+                    JOptionPane.showMessageDialog(table, resultMessage);
+                    loadData();
+                });
             }
         }
     }
 
 
+    //The selected sections the student can register for, rows showing Drop, Clash or Waitlist are left out
+    private int[] selectedCart() {
+        return Arrays.stream(courseTable.getSelectedRows())
+                .filter(row -> "Register".equals(courseTable.getValueAt(row, 6)))
+                .map(row -> tableModel.getRow(row).sectionId())
+                .toArray();
+    }
+
+
+    private void updateRegisterSelected() {
+        int count = selectedCart().length;
+        registerSelectedButton.setText(count > 1 ? "Register Selected (" + count + ")" : "Register Selected");
+        registerSelectedButton.setEnabled(count > 0 && !cartLoader.isLoading());
+    }
+
+
+    //All the selected sections are registered in one call, either every one of them or none
+    private void registerSelected() {
+        int[] cart = selectedCart();
+        if (cart.length == 0 || cartLoader.isLoading()) {
+            return;
+        }
+        int Confirm = JOptionPane.showConfirmDialog(this, "Do you want to register for the " + cart.length + " selected sections?", "Confirm Register", JOptionPane.YES_NO_OPTION);
+        if (Confirm != JOptionPane.YES_OPTION) {
+            return;
+        }
+        UserSession student = session.get();
+        registerSelectedButton.setEnabled(false);
+        cartLoader.load(() -> studentService.registerCart(student, cart), result -> {
+            JOptionPane.showMessageDialog(courseTable, result.display());
+            courseTable.clearSelection();
+            loadData();
+        });
+    }
+
+
+    //A full section offers its waitlist, the student's place is fetched first so the same button joins or leaves
+    private void onWaitlist(SectionView section) {
+        UserSession student = session.get();
+        int sectionId = section.sectionId();
+        waitlistLoader.load(() -> studentService.getWaitlistPosition(student, sectionId), position -> {
+            String Message = position > 0
+                    ? "You are number " + position + " on the waitlist for " + section.courseCode() + ". Do you want to leave it?"
+                    : section.courseCode() + " is full. Do you want to join its waitlist? You will be registered automatically when a seat opens.";
+            int Confirm = JOptionPane.showConfirmDialog(this, Message, "Confirm Waitlist", JOptionPane.YES_NO_OPTION);
+            if (Confirm != JOptionPane.YES_OPTION) {
+                return;
+            }
+            actionLoader.load(() -> position > 0
+                    ? studentService.leaveWaitlist(student, sectionId)
+                    : studentService.joinWaitlist(student, sectionId), resultMessage -> {
+                JOptionPane.showMessageDialog(courseTable, resultMessage);
+                loadData();
+            });
+        });
+    }
+
+
     //Styling methods
     private JButton createModernButton(String text, boolean isPrimary, boolean isSmall) {
         JButton button = new JButton(text);
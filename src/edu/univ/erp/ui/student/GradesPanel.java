@@ -1,19 +1,26 @@
 package edu.univ.erp.ui.student;
 
 import edu.univ.erp.domain.Grade;
+import edu.univ.erp.domain.TermGpa;
 import edu.univ.erp.service.StudentService;
 import edu.univ.erp.service.TranscriptService;
+import edu.univ.erp.service.UserSession;
+import edu.univ.erp.ui.common.BackgroundLoader;
+import edu.univ.erp.ui.common.RecordTableModel;
+import edu.univ.erp.ui.common.RecordTableModel.Column;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import javax.swing.border.LineBorder;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.io.File;
 import java.io.FileWriter;
 import java.util.List;
+import java.util.function.Supplier;
 
 //This class displays all the grades for a particular student
 public class GradesPanel extends JPanel {
@@ -26,35 +33,65 @@ public class GradesPanel extends JPanel {
     private static final Color COLOR_BORDER = new Color(220, 220, 220);
 
     private JTable gradesTable;
-    private DefaultTableModel tableModel;
+    private JLabel gpaLabel;
+    private RecordTableModel<Grade> tableModel;
     private StudentService studentService;
     private TranscriptService transcriptService;
+    private Supplier<UserSession> session; //The logged in student's session, null before login
+    private final BackgroundLoader<List<Grade>> gradesLoader = new BackgroundLoader<>(this);
+    private final BackgroundLoader<List<TermGpa>> gpaLoader = new BackgroundLoader<>(this);
 
-    public GradesPanel(Runnable onGoBack, StudentService studentService, TranscriptService transcriptService) {
+    public GradesPanel(Runnable onGoBack, StudentService studentService, TranscriptService transcriptService, Supplier<UserSession> session) {
         this.studentService = studentService;
         this.transcriptService = transcriptService;
+        this.session = session;
 
         setLayout(new BorderLayout(0, 15));
         setBackground(COLOR_BACKGROUND);
         setBorder(new EmptyBorder(20, 40, 40, 40));
         add(createHeaderPanel(onGoBack), BorderLayout.NORTH);
         add(createTablePanel(), BorderLayout.CENTER);
+        add(createGpaPanel(), BorderLayout.SOUTH);
+
+        //Refreshes the grades as the page opens
+        this.addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentShown(ComponentEvent e) {
+                loadData();
+            }
+        });
 
         loadData();
     }
 
 
+    //Fetches the grades in the background and fills the table when they arrive
+    //The GPA comes from the precomputed summary, so it is one small read of its own
     private void loadData() {
-        List<Grade> grades = studentService.getGrades();
-        tableModel.setRowCount(0); // Clear table
-        for (Grade grade : grades) {
-            tableModel.addRow(new Object[]{
-                    grade.courseCode(),
-                    grade.courseTitle(),
-                    grade.credits(),
-                    grade.letterGrade()
-            });
+        UserSession student = session.get();
+        if (student == null) {
+            return; //Not logged in yet, the grades load when the page is first shown
         }
+        gradesLoader.load(() -> studentService.getGrades(student), this::showData);
+        gpaLoader.load(() -> transcriptService.getGpaSummary(student.studentId()), this::showGpa);
+    }
+
+    private void showData(List<Grade> grades) {
+        tableModel.setRows(grades);
+    }
+
+    //"Cumulative GPA: 8.40 (24 credits)" followed by each term, latest first
+    private void showGpa(List<TermGpa> terms) {
+        if (terms.isEmpty()) {
+            gpaLabel.setText("GPA: no graded courses yet");
+            return;
+        }
+        TermGpa cumulative = terms.get(0); //The summary always comes cumulative row first
+        StringBuilder text = new StringBuilder(String.format("Cumulative GPA: %.2f (%d credits)", cumulative.gpa(), cumulative.gradedCredits()));
+        for (int i = terms.size() - 1; i > 0; i--) {
+            text.append(String.format("    |    %s: %.2f", terms.get(i).termName(), terms.get(i).gpa()));
+        }
+        gpaLabel.setText(text.toString());
     }
 
 
@@ -94,13 +131,12 @@ public class GradesPanel extends JPanel {
 
     //Creates the tables
     private JScrollPane createTablePanel() {
-        String[] columnNames = {"Course Code", "Title", "Credits", "Grade"};
-        tableModel = new DefaultTableModel(null, columnNames) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
-            }
-        };
+        tableModel = new RecordTableModel<>(List.of(
+                Column.of("Course Code", Grade::courseCode),
+                Column.of("Title", Grade::courseTitle),
+                Column.of("Credits", Grade::credits),
+                Column.of("Grade", Grade::letterGrade)
+        ));
 
         gradesTable = new JTable(tableModel);
         gradesTable.setFont(new Font("SansSerif", Font.PLAIN, 14));
@@ -115,6 +151,18 @@ public class GradesPanel extends JPanel {
     }
 
 
+    //The GPA line under the table
+    private JPanel createGpaPanel() {
+        JPanel gpaPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 0, 0));
+        gpaPanel.setBackground(COLOR_BACKGROUND);
+        gpaLabel = new JLabel(" ");
+        gpaLabel.setFont(new Font("SansSerif", Font.BOLD, 15));
+        gpaLabel.setForeground(COLOR_TEXT_DARK);
+        gpaPanel.add(gpaLabel);
+        return gpaPanel;
+    }
+
+
     //This is the code for the button download transcript
     //It basically calls the JFileChooser and rest of the logic is handled in transcript service
     private void onDownloadTranscript() {
@@ -124,7 +172,7 @@ public class GradesPanel extends JPanel {
         if (fileChooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
             File fileToSave = fileChooser.getSelectedFile();
             try (FileWriter writer = new FileWriter(fileToSave)) {
-                int studentId = studentService.getCurrentStudentId();
+                int studentId = session.get().studentId();
                 transcriptService.generateCsvTranscript(studentId, writer);
                 JOptionPane.showMessageDialog(this, "Transcript saved successfully!", "Success", JOptionPane.INFORMATION_MESSAGE);
             }
@@ -2,17 +2,21 @@ package edu.univ.erp.ui.student;
 
 import edu.univ.erp.domain.EnrolledSection;
 import edu.univ.erp.service.StudentService;
+import edu.univ.erp.service.UserSession;
+import edu.univ.erp.ui.common.BackgroundLoader;
+import edu.univ.erp.ui.common.RecordTableModel;
+import edu.univ.erp.ui.common.RecordTableModel.Column;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import javax.swing.border.LineBorder;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.awt.event.ComponentAdapter;
 import java.awt.event.ComponentEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.util.List;
+import java.util.function.Supplier;
 
 //This is the timetable panel in the Dashboard
 public class TimetablePanel extends JPanel {
@@ -25,11 +29,14 @@ public class TimetablePanel extends JPanel {
     private static final Color COLOR_PRIMARY_DARK = new Color(0, 62, 184);
 
     private JTable timetableTable;
-    private DefaultTableModel tableModel;
+    private RecordTableModel<EnrolledSection> tableModel;
     private StudentService studentService;
+    private Supplier<UserSession> session; //The logged in student's session, null before login
+    private final BackgroundLoader<List<EnrolledSection>> timetableLoader = new BackgroundLoader<>(this);
 
-    public TimetablePanel(Runnable onGoBack, StudentService studentService) {
+    public TimetablePanel(Runnable onGoBack, StudentService studentService, Supplier<UserSession> session) {
         this.studentService = studentService;
+        this.session = session;
 
         setLayout(new BorderLayout(0, 15));
         setBackground(COLOR_BACKGROUND);
@@ -44,23 +51,27 @@ public class TimetablePanel extends JPanel {
             public void componentShown(ComponentEvent e) {
                 loadData();
             }
+
+            @Override
+            public void componentHidden(ComponentEvent e) {
+                timetableLoader.cancel();
+            }
         });
 
         loadData();
     }
 
+    //Fetches the timetable in the background and fills the table when it arrives
     private void loadData() {
-        List<EnrolledSection> sections = studentService.getTimetable();
-        tableModel.setRowCount(0);
-        for (EnrolledSection sec : sections) {
-            tableModel.addRow(new Object[]{
-                    sec.courseCode(),
-                    sec.courseTitle(),
-                    sec.credits(),
-                    sec.instructorName(),
-                    sec.timeSlot()
-            });
+        UserSession student = session.get();
+        if (student == null) {
+            return; //Not logged in yet, the timetable loads when it is first shown
         }
+        timetableLoader.load(() -> studentService.getTimetable(student), this::showData);
+    }
+
+    private void showData(List<EnrolledSection> sections) {
+        tableModel.setRows(sections);
     }
 
     private JPanel createHeaderPanel(Runnable onGoBack) {
@@ -87,12 +98,13 @@ public class TimetablePanel extends JPanel {
 
     //This creates table for the timetables
     private JScrollPane createTablePanel() {
-        String[] columnNames = {"Course Code", "Title", "Credits", "Instructor", "Time"};
-
-        tableModel = new DefaultTableModel(null, columnNames) {
-            @Override
-            public boolean isCellEditable(int row, int column) { return false; }
-        };
+        tableModel = new RecordTableModel<>(List.of(
+                Column.of("Course Code", EnrolledSection::courseCode),
+                Column.of("Title", EnrolledSection::courseTitle),
+                Column.of("Credits", EnrolledSection::credits),
+                Column.of("Instructor", EnrolledSection::instructorName),
+                Column.of("Time", EnrolledSection::timeSlot)
+        ));
 
         timetableTable = new JTable(tableModel);
         timetableTable.setFont(new Font("SansSerif", Font.PLAIN, 14));
@@ -0,0 +1,578 @@
+package edu.univ.erp.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+//This is a small JDBC connection pool used by DatabaseUtil for both the AuthDB and the StudentDB
+//Before this every DAO call opened a brand-new connection (TCP + TLS + MySQL handshake) with DriverManager
+//The connections handed out are proxies, calling close() on them returns the physical connection back to the pool
+//so all the existing try-with-resources code in the DAOs keeps working without any change
+//The statements, result sets and metadata they hand out are proxies too, so getConnection() and getStatement() on them
+//lead back to the borrowed proxy and never to the physical connection
+public class ConnectionPool {
+    private static final Logger logger = Logger.getLogger(ConnectionPool.class.getName());
+
+    //Connections that were used this recently are not pinged again on borrow
+    private static final long VALIDATION_BYPASS_MILLIS = 500;
+    private static final long HOUSEKEEPING_PERIOD_MILLIS = 5_000;
+
+    private final String name;
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int minIdle;
+    private final int maxSize;
+    private final long borrowTimeoutMillis;
+    private final long idleTimeoutMillis;
+    private final long leakThresholdMillis;
+    private final int validationTimeoutSeconds;
+
+    //Idle connections are used LIFO so the warmest connection is handed out first
+    //and the ones at the bottom of the stack are the ones that get evicted
+    private final ArrayDeque<PooledConnection> idle = new ArrayDeque<>();
+    private final Set<PooledConnection> borrowed = ConcurrentHashMap.newKeySet();
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final Condition connectionReturned = lock.newCondition();
+    private int totalConnections = 0; //Guarded by lock, includes the ones currently being opened
+    private int waitingThreads = 0; //Guarded by lock
+    private boolean closed = false; //Guarded by lock
+
+    //Statistics used to size the pool
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong totalBorrowWaitNanos = new AtomicLong();
+    private final AtomicLong maxBorrowWaitNanos = new AtomicLong();
+    private final AtomicLong borrowTimeouts = new AtomicLong();
+    private final AtomicLong leaksDetected = new AtomicLong();
+
+    private final ScheduledExecutorService housekeeper;
+
+    public ConnectionPool(String name, String url, String user, String password, int minIdle, int maxSize,
+                          long borrowTimeoutMillis, long idleTimeoutMillis, long leakThresholdMillis, int validationTimeoutSeconds) {
+        if (maxSize <= 0 || minIdle < 0 || minIdle > maxSize) {
+            throw new IllegalArgumentException("Invalid pool size for " + name + ": min=" + minIdle + ", max=" + maxSize);
+        }
+        this.name = name;
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.minIdle = minIdle;
+        this.maxSize = maxSize;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.leakThresholdMillis = leakThresholdMillis;
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+
+        //The housekeeper evicts idle connections, tops the pool up to minIdle and reports leaks
+        //It is a daemon thread so it never keeps the Swing application alive
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ConnectionPool-" + name + "-housekeeper");
+            t.setDaemon(true);
+            return t;
+        });
+        housekeeper.scheduleWithFixedDelay(this::houseKeep, HOUSEKEEPING_PERIOD_MILLIS, HOUSEKEEPING_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+
+    //Borrows a connection from the pool, waiting at most borrowTimeoutMillis when the pool is exhausted
+    //The returned connection must be closed by the caller which gives it back to the pool
+    public Connection getConnection() throws SQLException {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(borrowTimeoutMillis);
+        while (true) {
+            PooledConnection candidate = null;
+            boolean mayOpenNew = false;
+            lock.lock();
+            try {
+                while (true) {
+                    if (closed) {
+                        throw new SQLException("Connection pool " + name + " has been shut down");
+                    }
+                    candidate = idle.pollFirst();
+                    if (candidate != null) {
+                        break;
+                    }
+                    if (totalConnections < maxSize) {
+                        totalConnections++; //Reserve the slot, the connection is opened outside the lock
+                        mayOpenNew = true;
+                        break;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        borrowTimeouts.incrementAndGet();
+                        throw new SQLException("Timed out after " + borrowTimeoutMillis + "ms waiting for a connection from pool " + name + " (" + stats() + ")");
+                    }
+                    waitingThreads++;
+                    try {
+                        connectionReturned.awaitNanos(remaining);
+                    }
+                    catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new SQLException("Interrupted while waiting for a connection from pool " + name, e);
+                    }
+                    finally {
+                        waitingThreads--;
+                    }
+                }
+            }
+            finally {
+                lock.unlock();
+            }
+
+            if (mayOpenNew) {
+                try {
+                    candidate = new PooledConnection(openPhysicalConnection());
+                }
+                catch (SQLException e) {
+                    releaseSlot();
+                    throw e;
+                }
+            }
+            else if (!isUsable(candidate)) {
+                //Stale connection (server restarted, wait_timeout passed etc), throw it away and try again
+                discard(candidate);
+                continue;
+            }
+            recordBorrow(candidate, start);
+            return new Lease(candidate).proxy;
+        }
+    }
+
+
+    //Returns the current active/idle counts and the borrow-wait statistics
+    public PoolStats stats() {
+        lock.lock();
+        try {
+            long borrows = borrowCount.get();
+            double averageWaitMillis = borrows == 0 ? 0 : (totalBorrowWaitNanos.get() / (double) borrows) / 1_000_000.0;
+            return new PoolStats(
+                    name,
+                    borrowed.size(),
+                    idle.size(),
+                    totalConnections,
+                    maxSize,
+                    waitingThreads,
+                    borrows,
+                    averageWaitMillis,
+                    maxBorrowWaitNanos.get() / 1_000_000.0,
+                    borrowTimeouts.get(),
+                    leaksDetected.get()
+            );
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+
+    //Closes every idle connection and stops handing out new ones
+    //Connections that are still borrowed are closed when they are given back
+    public void shutdown() {
+        List<PooledConnection> toClose;
+        lock.lock();
+        try {
+            closed = true;
+            toClose = new ArrayList<>(idle);
+            idle.clear();
+            totalConnections -= toClose.size();
+            connectionReturned.signalAll();
+        }
+        finally {
+            lock.unlock();
+        }
+        housekeeper.shutdownNow();
+        for (PooledConnection pc : toClose) {
+            closeQuietly(pc.physical);
+        }
+        logger.info("Connection pool " + name + " shut down");
+    }
+
+
+    private Connection openPhysicalConnection() throws SQLException {
+        return DriverManager.getConnection(url, user, password);
+    }
+
+
+    private boolean isUsable(PooledConnection pc) {
+        if (System.currentTimeMillis() - pc.lastReturnedAt < VALIDATION_BYPASS_MILLIS) {
+            return true;
+        }
+        try {
+            return pc.physical.isValid(validationTimeoutSeconds);
+        }
+        catch (SQLException e) {
+            return false;
+        }
+    }
+
+
+    private void recordBorrow(PooledConnection pc, long startNanos) {
+        long waited = System.nanoTime() - startNanos;
+        borrowCount.incrementAndGet();
+        totalBorrowWaitNanos.addAndGet(waited);
+        maxBorrowWaitNanos.accumulateAndGet(waited, Math::max);
+        pc.borrowedAt = System.currentTimeMillis();
+        pc.leakReported = false;
+        //Capturing the stack trace is only needed for leak reports
+        pc.borrowTrace = leakThresholdMillis > 0 ? new Exception("Connection borrowed from pool " + name + " here") : null;
+        borrowed.add(pc);
+    }
+
+
+    //Called when the caller closes the proxy
+    private void release(PooledConnection pc) {
+        if (!borrowed.remove(pc)) {
+            return;
+        }
+        boolean healthy = resetState(pc);
+        pc.borrowTrace = null;
+        pc.lastReturnedAt = System.currentTimeMillis();
+        if (pc.leakReported) {
+            logger.info("Connection previously reported as leaked was returned to pool " + name + " after " + (pc.lastReturnedAt - pc.borrowedAt) + "ms");
+        }
+        lock.lock();
+        try {
+            if (healthy && !closed) {
+                idle.addFirst(pc);
+                connectionReturned.signal();
+                return;
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+        discard(pc);
+    }
+
+
+    //Undo anything the borrower changed so that the next borrower gets a clean connection
+    //Services such as AdminService.createNewUser switch off autoCommit and may return without committing
+    //Isolation, read-only, catalog and schema are only put back when the borrower set them, see Lease
+    private boolean resetState(PooledConnection pc) {
+        Connection physical = pc.physical;
+        try {
+            if (physical.isClosed()) {
+                return false;
+            }
+            if (!physical.getAutoCommit()) {
+                physical.rollback();
+                physical.setAutoCommit(true);
+            }
+            if (pc.isolationChanged) {
+                physical.setTransactionIsolation(pc.defaultIsolation);
+                pc.isolationChanged = false;
+            }
+            if (pc.readOnlyChanged) {
+                physical.setReadOnly(false);
+                pc.readOnlyChanged = false;
+            }
+            if (pc.catalogChanged) {
+                physical.setCatalog(pc.defaultCatalog);
+                physical.setSchema(pc.defaultSchema);
+                pc.catalogChanged = false;
+            }
+            physical.clearWarnings();
+            return true;
+        }
+        catch (SQLException e) {
+            return false;
+        }
+    }
+
+
+    private void discard(PooledConnection pc) {
+        closeQuietly(pc.physical);
+        releaseSlot();
+    }
+
+
+    private void releaseSlot() {
+        lock.lock();
+        try {
+            totalConnections--;
+            connectionReturned.signal();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+
+    //Runs periodically on the housekeeper thread
+    private void houseKeep() {
+        try {
+            evictIdle();
+            fillToMinIdle();
+            reportLeaks();
+        }
+        catch (Exception e) {
+            logger.log(Level.WARNING, "Housekeeping failed for pool " + name, e);
+        }
+    }
+
+
+    private void evictIdle() {
+        List<PooledConnection> evicted = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        lock.lock();
+        try {
+            //The oldest idle connections sit at the end of the deque
+            Iterator<PooledConnection> it = idle.descendingIterator();
+            while (it.hasNext() && totalConnections - evicted.size() > minIdle) {
+                PooledConnection pc = it.next();
+                if (now - pc.lastReturnedAt < idleTimeoutMillis) {
+                    break;
+                }
+                it.remove();
+                evicted.add(pc);
+            }
+            totalConnections -= evicted.size();
+        }
+        finally {
+            lock.unlock();
+        }
+        for (PooledConnection pc : evicted) {
+            closeQuietly(pc.physical);
+        }
+    }
+
+
+    private void fillToMinIdle() {
+        while (true) {
+            lock.lock();
+            try {
+                if (closed || totalConnections >= minIdle || totalConnections >= maxSize) {
+                    return;
+                }
+                totalConnections++;
+            }
+            finally {
+                lock.unlock();
+            }
+            PooledConnection pc;
+            try {
+                pc = new PooledConnection(openPhysicalConnection());
+            }
+            catch (SQLException e) {
+                releaseSlot();
+                logger.fine("Could not pre-open a connection for pool " + name + ": " + e.getMessage());
+                return;
+            }
+            lock.lock();
+            try {
+                idle.addLast(pc);
+                connectionReturned.signal();
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+    }
+
+
+    private void reportLeaks() {
+        if (leakThresholdMillis <= 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (PooledConnection pc : borrowed) {
+            if (!pc.leakReported && now - pc.borrowedAt > leakThresholdMillis) {
+                pc.leakReported = true;
+                leaksDetected.incrementAndGet();
+                logger.log(Level.WARNING, "Possible connection leak in pool " + name + ": connection held for " + (now - pc.borrowedAt) + "ms", pc.borrowTrace);
+            }
+        }
+    }
+
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        try {
+            closeable.close();
+        }
+        catch (Exception e) {
+            //Nothing useful can be done here
+        }
+    }
+
+
+    //Holds a physical connection together with the bookkeeping the pool needs for it
+    //The session settings it was opened with are read once here, release() puts back the ones a borrower changed
+    private static final class PooledConnection {
+        private final Connection physical;
+        private final int defaultIsolation;
+        private final String defaultCatalog;
+        private final String defaultSchema;
+        private volatile long borrowedAt;
+        private volatile long lastReturnedAt = System.currentTimeMillis();
+        private volatile Exception borrowTrace;
+        private volatile boolean leakReported;
+        private volatile boolean isolationChanged;
+        private volatile boolean readOnlyChanged;
+        private volatile boolean catalogChanged; //Catalog or schema
+
+        private PooledConnection(Connection physical) throws SQLException {
+            this.physical = physical;
+            try {
+                this.defaultIsolation = physical.getTransactionIsolation();
+                this.defaultCatalog = physical.getCatalog();
+                this.defaultSchema = physical.getSchema();
+            }
+            catch (SQLException e) {
+                closeQuietly(physical);
+                throw e;
+            }
+        }
+    }
+
+
+    //One Lease is created per borrow, its proxy is what the DAOs see
+    //A fresh proxy per borrow means a caller that keeps using a connection, or a statement made from it, after closing it
+    //gets an exception instead of silently sharing the connection with the next borrower
+    //Statements still open when the connection is closed are closed with it
+    private final class Lease implements InvocationHandler {
+        private final PooledConnection pooled;
+        private final Connection proxy;
+        private final List<Statement> statements = new ArrayList<>(); //Guarded by this
+        private volatile boolean returned = false;
+
+        private Lease(PooledConnection pooled) {
+            this.pooled = pooled;
+            this.proxy = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, this);
+        }
+
+        @Override
+        public synchronized Object invoke(Object proxyObject, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!returned) {
+                        returned = true;
+                        for (Statement statement : statements) {
+                            closeQuietly(statement);
+                        }
+                        statements.clear();
+                        release(pooled);
+                    }
+                    return null;
+                case "isClosed":
+                    return returned || pooled.physical.isClosed();
+                case "equals":
+                    return proxyObject == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxyObject);
+                case "toString":
+                    return "Pooled[" + name + "] " + pooled.physical;
+                case "setTransactionIsolation":
+                    pooled.isolationChanged = true;
+                    break;
+                case "setReadOnly":
+                    pooled.readOnlyChanged = true;
+                    break;
+                case "setCatalog":
+                case "setSchema":
+                    pooled.catalogChanged = true;
+                    break;
+                default:
+                    break;
+            }
+            checkNotReturned();
+            Object result;
+            try {
+                result = method.invoke(pooled.physical, args);
+            }
+            catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            if (result instanceof Statement statement) {
+                statements.add(statement);
+                return wrap(result, method.getReturnType(), null);
+            }
+            if (result instanceof DatabaseMetaData) {
+                return wrap(result, DatabaseMetaData.class, null);
+            }
+            return result;
+        }
+
+        private void checkNotReturned() throws SQLException {
+            if (returned) {
+                throw new SQLException("Connection has already been returned to pool " + name);
+            }
+        }
+
+        //A proxy for a statement, result set or metadata object of this lease
+        //parent is the statement proxy a result set came from, null for one made by the metadata
+        private Object wrap(Object target, Class<?> type, Object parent) {
+            return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, new Child(target, parent));
+        }
+
+        //Forwards to the physical object, except that the way back to the connection goes through the proxies
+        private final class Child implements InvocationHandler {
+            private final Object target;
+            private final Object parent;
+
+            private Child(Object target, Object parent) {
+                this.target = target;
+                this.parent = parent;
+            }
+
+            @Override
+            public Object invoke(Object proxyObject, Method method, Object[] args) throws Throwable {
+                switch (method.getName()) {
+                    case "getConnection":
+                        return proxy;
+                    case "getStatement":
+                        return parent;
+                    case "equals":
+                        return proxyObject == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxyObject);
+                    case "toString":
+                        return "Pooled[" + name + "] " + target;
+                    case "close":
+                        if (target instanceof Statement) {
+                            synchronized (Lease.this) {
+                                statements.remove(target);
+                            }
+                        }
+                        break;
+                    case "isClosed":
+                        break;
+                    default:
+                        checkNotReturned();
+                        break;
+                }
+                Object result;
+                try {
+                    result = method.invoke(target, args);
+                }
+                catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+                if (result instanceof ResultSet) {
+                    return wrap(result, ResultSet.class, target instanceof Statement ? proxyObject : null);
+                }
+                return result;
+            }
+        }
+    }
+}
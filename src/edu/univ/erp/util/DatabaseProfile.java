@@ -0,0 +1,113 @@
+package edu.univ.erp.util;
+
+import java.nio.file.Path;
+
+//Which database engine DatabaseUtil connects the DAOs to, picked with -Derp.db.profile
+//MYSQL: the AuthDB and StudentDB schemas on the MySQL server, the tables are created by hand (see the README)
+//H2: both databases embedded in this JVM in H2's MySQL compatibility mode, no server and no network round trips
+//    The tables are created by SchemaBootstrap when the pools are set up, the DAO SQL (ON DUPLICATE KEY UPDATE, FOR UPDATE,
+//    CURDATE() and so on) runs unchanged in that mode
+//    In memory by default, which is what the benchmarks and load tests use; with -Derp.db.h2.dir=<dir> the databases are
+//    kept in files under that directory instead, so a dev instance keeps its data and DatabaseSeeder can fill it
+//Every URL, user and password of a profile can still be overridden on its own with the erp.authdb.* and erp.studentdb.* properties
+public enum DatabaseProfile {
+    //rewriteBatchedStatements lets the driver send JDBC batches (e.g. a whole gradebook) as multi-row statements
+    //The streaming exports use Connector/J's row streaming (a fetch size of Integer.MIN_VALUE) on their own statement,
+    //useCursorFetch is left off the URL because it would turn every statement with a fetch size into a server-side cursor
+    MYSQL("com.mysql.cj.jdbc.Driver",
+            "jdbc:mysql://localhost:3306/AuthDB?rewriteBatchedStatements=true", "AuthUser", "AUTHPASSWORD",
+            "jdbc:mysql://localhost:3306/StudentDB?rewriteBatchedStatements=true", "StudentUser", "STUDENTPASSWORD",
+            false, Integer.MIN_VALUE),
+    //H2 reads a result lazily in pages of the fetch size and refuses a negative one
+    H2("org.h2.Driver",
+            H2Url("AuthDB"), "sa", "",
+            H2Url("StudentDB"), "sa", "",
+            true, 500);
+
+    private final String driverClass;
+    private final String authUrl;
+    private final String authUser;
+    private final String authPassword;
+    private final String studentUrl;
+    private final String studentUser;
+    private final String studentPassword;
+    private final boolean createsSchema;
+    private final int streamFetchSize;
+
+    DatabaseProfile(String driverClass, String authUrl, String authUser, String authPassword,
+                    String studentUrl, String studentUser, String studentPassword, boolean createsSchema, int streamFetchSize) {
+        this.driverClass = driverClass;
+        this.authUrl = authUrl;
+        this.authUser = authUser;
+        this.authPassword = authPassword;
+        this.studentUrl = studentUrl;
+        this.studentUser = studentUser;
+        this.studentPassword = studentPassword;
+        this.createsSchema = createsSchema;
+        this.streamFetchSize = streamFetchSize;
+    }
+
+    public String driverClass() {
+        return driverClass;
+    }
+
+    public String authUrl() {
+        return authUrl;
+    }
+
+    public String authUser() {
+        return authUser;
+    }
+
+    public String authPassword() {
+        return authPassword;
+    }
+
+    public String studentUrl() {
+        return studentUrl;
+    }
+
+    public String studentUser() {
+        return studentUser;
+    }
+
+    public String studentPassword() {
+        return studentPassword;
+    }
+
+    //True if DatabaseUtil runs SchemaBootstrap when it sets up the pools
+    public boolean createsSchema() {
+        return createsSchema;
+    }
+
+    //The fetch size that makes the engine hand a query's rows over as they are read instead of all at once
+    public int streamFetchSize() {
+        return streamFetchSize;
+    }
+
+
+    //Reads the profile from a name like "h2", falls back to MYSQL for unknown values
+    public static DatabaseProfile fromName(String name) {
+        if (name == null) {
+            return MYSQL;
+        }
+        try {
+            return valueOf(name.trim().toUpperCase());
+        }
+        catch (IllegalArgumentException e) {
+            return MYSQL;
+        }
+    }
+
+
+    //DB_CLOSE_DELAY keeps an in-memory database alive while the pool has no connection open
+    //AUTO_SERVER lets a second process (the seeder, or a desktop next to the API server) open the same files
+    private static String H2Url(String database) {
+        String dir = System.getProperty("erp.db.h2.dir");
+        if (dir == null || dir.isBlank()) {
+            return "jdbc:h2:mem:" + database + ";MODE=MySQL;DB_CLOSE_DELAY=-1";
+        }
+        //H2 refuses paths relative to the working directory unless they start with ./, so the directory is made absolute
+        return "jdbc:h2:file:" + Path.of(dir, database).toAbsolutePath() + ";MODE=MySQL;AUTO_SERVER=TRUE";
+    }
+}
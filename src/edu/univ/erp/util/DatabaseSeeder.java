@@ -83,6 +83,9 @@ public class DatabaseSeeder {
 
             studentStmt.execute("SET FOREIGN_KEY_CHECKS = 0;");
             studentStmt.execute("TRUNCATE TABLE Grades;");
+            studentStmt.execute("TRUNCATE TABLE StudentGpaSummary;");
+            studentStmt.execute("TRUNCATE TABLE GradingPolicies;");
+            studentStmt.execute("TRUNCATE TABLE Waitlist;");
             studentStmt.execute("TRUNCATE TABLE Enrollments;");
             studentStmt.execute("TRUNCATE TABLE Sections;");
             studentStmt.execute("TRUNCATE TABLE Students;");
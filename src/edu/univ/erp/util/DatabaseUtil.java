@@ -1,36 +1,107 @@
 package edu.univ.erp.util;
 
 import java.sql.Connection;
-import java.sql.Driver;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 //These manage the database related stuff
+//Both databases are now served from a connection pool instead of opening a new connection on every call
 
 public class DatabaseUtil {
+    //MySQL unless -Derp.db.profile=h2 runs both databases embedded in this JVM, see DatabaseProfile
+    private static final DatabaseProfile Profile = DatabaseProfile.fromName(System.getProperty("erp.db.profile"));
+
     //Auth Database connection
-    private static final String AuthDB_URL = "jdbc:mysql://localhost:3306/AuthDB";
-    private static final String AuthDB_User = "AuthUser";
-    private static final String AuthDB_PassWord = "AUTHPASSWORD";
+    //Each of these can be overridden with a system property, e.g. -Derp.authdb.url=..., the defaults come from the profile
+    private static final String AuthDB_URL = Setting("erp.authdb.url", Profile.authUrl());
+    private static final String AuthDB_User = Setting("erp.authdb.user", Profile.authUser());
+    private static final String AuthDB_PassWord = Setting("erp.authdb.password", Profile.authPassword());
 
     //Student Database connection
-    private static final String StudentDB_URL = "jdbc:mysql://localhost:3306/StudentDB";
-    private static final String StudentDB_User = "StudentUser";
-    private static final String StudentDB_PassWord = "STUDENTPASSWORD";
+    private static final String StudentDB_URL = Setting("erp.studentdb.url", Profile.studentUrl());
+    private static final String StudentDB_User = Setting("erp.studentdb.user", Profile.studentUser());
+    private static final String StudentDB_PassWord = Setting("erp.studentdb.password", Profile.studentPassword());
+
+    //Pool settings, shared by both pools
+    //The API server sizes the pools to its worker count with -Derp.pool.maxSize
+    private static final int POOL_MAX_SIZE = Integer.getInteger("erp.pool.maxSize", 10);
+    private static final int POOL_MIN_IDLE = Math.min(2, POOL_MAX_SIZE);
+    private static final long POOL_BORROW_TIMEOUT_MILLIS = 10_000;
+    private static final long POOL_IDLE_TIMEOUT_MILLIS = 5 * 60_000;
+    private static final long POOL_LEAK_THRESHOLD_MILLIS = 30_000; //Connections held longer than this are logged with the borrower's stack trace
+    private static final int POOL_VALIDATION_TIMEOUT_SECONDS = 2;
+
+    //Fetch size of the streaming export queries, so their rows are read as they are consumed and never held all at once
+    //On MySQL this streams the result row by row over the export's own connection, which can run no other statement
+    //until the result is read to the end, so the exports keep their connection to themselves
+    public static final int STREAM_FETCH_SIZE = Profile.streamFetchSize();
+
+    private static final ConnectionPool AuthPool;
+    private static final ConnectionPool StudentPool;
 
     static {
         try{
-        Class.forName("com.mysql.cj.jdbc.Driver");
+        Class.forName(Profile.driverClass());
         }
         catch (ClassNotFoundException e){
-            throw new RuntimeException("MySQL driver not found, ", e);
+            throw new RuntimeException(Profile + " driver not found, ", e);
+        }
+        //Creating the pools does not open any connection, the first borrow opens one and each pool's housekeeper tops it up
+        //to POOL_MIN_IDLE idle connections on its first run, a few seconds later
+        AuthPool = new ConnectionPool("AuthDB", AuthDB_URL, AuthDB_User, AuthDB_PassWord, POOL_MIN_IDLE, POOL_MAX_SIZE,
+                POOL_BORROW_TIMEOUT_MILLIS, POOL_IDLE_TIMEOUT_MILLIS, POOL_LEAK_THRESHOLD_MILLIS, POOL_VALIDATION_TIMEOUT_SECONDS);
+        StudentPool = new ConnectionPool("StudentDB", StudentDB_URL, StudentDB_User, StudentDB_PassWord, POOL_MIN_IDLE, POOL_MAX_SIZE,
+                POOL_BORROW_TIMEOUT_MILLIS, POOL_IDLE_TIMEOUT_MILLIS, POOL_LEAK_THRESHOLD_MILLIS, POOL_VALIDATION_TIMEOUT_SECONDS);
+        //An embedded database starts out empty, its tables are created here before any DAO can ask for a connection
+        if (Profile.createsSchema()) {
+            try (Connection AuthConnection = AuthPool.getConnection(); Connection StudentConnection = StudentPool.getConnection()) {
+                SchemaBootstrap.Create(AuthConnection, StudentConnection);
+            }
+            catch (SQLException e) {
+                throw new RuntimeException("Could not create the " + Profile + " schema, ", e);
+            }
         }
     }
 
+    //The database engine the pools connect to
+    public static DatabaseProfile GetProfile(){
+        return Profile;
+    }
+
+    //Closing the returned connection gives it back to the pool
     public static Connection GetAuthConnection() throws SQLException{
-        return DriverManager.getConnection(AuthDB_URL, AuthDB_User, AuthDB_PassWord);
+        return AuthPool.getConnection();
     }
 
     public static Connection GetStudentConnection() throws SQLException{
-        return DriverManager.getConnection(StudentDB_URL, StudentDB_User, StudentDB_PassWord);
+        return StudentPool.getConnection();
+    }
+
+    //Active/idle counts and borrow-wait times of the pools
+    public static PoolStats GetAuthPoolStats(){
+        return AuthPool.stats();
+    }
+
+    public static PoolStats GetStudentPoolStats(){
+        return StudentPool.stats();
+    }
+
+    //Turns user input into a LIKE pattern matching values that start with it
+    //%, _ and the escape character itself are escaped so they only match literally
+    public static String LikePrefix(String prefix){
+        return prefix.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+    }
+
+    //"?, ?, ?" for an IN list of the given length
+    public static String Placeholders(int count){
+        return String.join(", ", java.util.Collections.nCopies(count, "?"));
+    }
+
+    private static String Setting(String property, String defaultValue){
+        return System.getProperty(property, defaultValue);
+    }
+
+    //Closes the idle connections of both pools, called when the application exits
+    public static void ShutdownPools(){
+        AuthPool.shutdown();
+        StudentPool.shutdown();
     }
 }
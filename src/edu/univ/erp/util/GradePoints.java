@@ -0,0 +1,61 @@
+package edu.univ.erp.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+//Grade points on the 10 point scale for the letter grades InstructorService hands out
+//A letter that is not listed ("-" for an invalid score, or no grade yet) does not count towards a GPA at all,
+//an F counts its credits with zero points
+public final class GradePoints {
+    private static final Map<String, Integer> POINTS = new LinkedHashMap<>();
+    static {
+        POINTS.put("A", 10);
+        POINTS.put("A-", 9);
+        POINTS.put("B", 8);
+        POINTS.put("B-", 7);
+        POINTS.put("C", 6);
+        POINTS.put("C-", 5);
+        POINTS.put("D", 4);
+        POINTS.put("F", 0);
+    }
+
+    //Built once, the letters are the fixed ones above so nothing from outside ends up in the SQL
+    private static final String CASE_TEMPLATE = BuildCase();
+
+    private GradePoints() {}
+
+
+    //True for the letters above, the only ones a grading policy may hand out
+    public static boolean IsLetter(String letterGrade) {
+        return letterGrade != null && POINTS.containsKey(letterGrade);
+    }
+
+
+    //"A, A-, B, ..." for messages
+    public static String Letters() {
+        return String.join(", ", POINTS.keySet());
+    }
+
+
+    //-1 for a letter that does not count
+    public static int PointsFor(String letterGrade) {
+        Integer points = letterGrade == null ? null : POINTS.get(letterGrade);
+        return points != null ? points : -1;
+    }
+
+
+    //A SQL CASE giving the points for the letter in the column, NULL for a letter that does not count
+    //Lets the database map every grade in the same set-based pass that sums them
+    public static String SqlCase(String column) {
+        return CASE_TEMPLATE.replace("{}", column);
+    }
+
+
+    private static String BuildCase() {
+        StringBuilder sql = new StringBuilder("CASE {}");
+        for (Map.Entry<String, Integer> entry : POINTS.entrySet()) {
+            sql.append(" WHEN '").append(entry.getKey()).append("' THEN ").append(entry.getValue());
+        }
+        return sql.append(" END").toString();
+    }
+}
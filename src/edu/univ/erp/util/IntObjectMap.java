@@ -0,0 +1,89 @@
+package edu.univ.erp.util;
+
+import java.util.Arrays;
+
+//A small int-keyed hash map with open addressing, for ID lookups that would otherwise box every key
+//Used to join rows from the two databases by UserID one page at a time
+//Not thread safe, meant to live for the length of one call or behind the owner's lock
+public final class IntObjectMap<V> {
+    private static final int EMPTY = Integer.MIN_VALUE; //UserIDs and other keys are never this value
+
+    private int[] keys;
+    private Object[] values;
+    private int size;
+    private int mask;
+
+    public IntObjectMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2 - 1)) << 1; //Keeps the load factor at or below 0.5
+        keys = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+        values = new Object[capacity];
+        mask = capacity - 1;
+    }
+
+    //Returns the previous value, or null
+    public V put(int key, V value) {
+        if (key == EMPTY) {
+            throw new IllegalArgumentException("Key " + key + " is reserved");
+        }
+        int slot = find(key);
+        if (keys[slot] == key) {
+            @SuppressWarnings("unchecked")
+            V previous = (V) values[slot];
+            values[slot] = value;
+            return previous;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+        if (size * 2 > keys.length) {
+            grow();
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        int slot = find(key);
+        return keys[slot] == key ? (V) values[slot] : null;
+    }
+
+    public boolean containsKey(int key) {
+        return keys[find(key)] == key;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    //Linear probing, returns the slot holding the key or the empty slot where it would go
+    private int find(int key) {
+        int slot = mix(key) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new int[oldKeys.length * 2];
+        Arrays.fill(keys, EMPTY);
+        values = new Object[oldValues.length * 2];
+        mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = find(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    //Spreads sequential IDs over the table so they do not form one long probe run
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,23 @@
+package edu.univ.erp.util;
+
+//Snapshot of a ConnectionPool's state, used to size the pools during registration week
+//active = borrowed right now, idle = open and waiting in the pool, total = active + idle + being opened
+public record PoolStats(
+        String poolName,
+        int active,
+        int idle,
+        int total,
+        int maxSize,
+        int waitingThreads,
+        long borrowCount,
+        double averageBorrowWaitMillis,
+        double maxBorrowWaitMillis,
+        long borrowTimeouts,
+        long leaksDetected
+) {
+    @Override
+    public String toString() {
+        return String.format("%s: active=%d, idle=%d, total=%d/%d, waiting=%d, borrows=%d, avgWait=%.2fms, maxWait=%.2fms, timeouts=%d, leaks=%d",
+                poolName, active, idle, total, maxSize, waitingThreads, borrowCount, averageBorrowWaitMillis, maxBorrowWaitMillis, borrowTimeouts, leaksDetected);
+    }
+}
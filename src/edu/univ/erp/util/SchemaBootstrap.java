@@ -0,0 +1,163 @@
+package edu.univ.erp.util;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+//The tables and indexes of both databases, for the embedded H2 profile (see DatabaseProfile)
+//Run by DatabaseUtil when it sets up the pools, so the DAOs find every table on the first call
+//Every statement is CREATE ... IF NOT EXISTS (or ADD CONSTRAINT IF NOT EXISTS), so running it against databases kept in files
+//only adds what is missing
+//The foreign keys follow the README: a section belongs to a course, and enrollments and waitlist rows to an existing
+//section (and student), so a bug that orphans a row fails here as it would on a MySQL schema with the same keys
+//On MySQL the same tables are created by hand, keep the two in step when a table changes (README, Database Design)
+public final class SchemaBootstrap {
+    //Email ignores case as it does under MySQL's default collation, so an address differing only in case is the same
+    //account for the unique key, logins and the import's duplicate check (UserDAO.GetExistingEmails), and the Email index
+    //still serves those lookups
+    private static final String[] AUTH_SCHEMA = {
+            """
+            CREATE TABLE IF NOT EXISTS Users (
+                UserID INT AUTO_INCREMENT PRIMARY KEY,
+                Email VARCHAR_IGNORECASE(255) NOT NULL UNIQUE,
+                PasswordHash VARCHAR(255) NOT NULL,
+                Role VARCHAR(20) NOT NULL
+            )"""
+    };
+
+    private static final String[] STUDENT_SCHEMA = {
+            """
+            CREATE TABLE IF NOT EXISTS Students (
+                StudentID INT AUTO_INCREMENT PRIMARY KEY,
+                UserID INT NOT NULL UNIQUE,
+                FullName VARCHAR(255) NOT NULL,
+                Email VARCHAR(255) NOT NULL
+            )""",
+            """
+            CREATE TABLE IF NOT EXISTS Instructors (
+                InstructorID INT AUTO_INCREMENT PRIMARY KEY,
+                UserID INT NOT NULL UNIQUE,
+                FullName VARCHAR(255) NOT NULL,
+                Email VARCHAR(255) NOT NULL,
+                Department VARCHAR(255)
+            )""",
+            //Name-prefix user search, the prefix range and its (FullName, UserID) page order (AdminDAO.GetProfilesPageByName)
+            "CREATE INDEX IF NOT EXISTS IdxStudentsName ON Students (FullName, UserID)",
+            "CREATE INDEX IF NOT EXISTS IdxInstructorsName ON Instructors (FullName, UserID)",
+            """
+            CREATE TABLE IF NOT EXISTS Course (
+                CourseID INT AUTO_INCREMENT PRIMARY KEY,
+                CourseCode VARCHAR(20) NOT NULL,
+                CourseTitle VARCHAR(255) NOT NULL,
+                Credits INT NOT NULL
+            )""",
+            """
+            CREATE TABLE IF NOT EXISTS Sections (
+                SectionID INT AUTO_INCREMENT PRIMARY KEY,
+                CourseID INT NOT NULL,
+                InstructorID INT,
+                SectionNumber VARCHAR(20) NOT NULL,
+                TimeSlot VARCHAR(100) NOT NULL,
+                Capacity INT NOT NULL,
+                EnrolledCount INT NOT NULL DEFAULT 0
+            )""",
+            "CREATE INDEX IF NOT EXISTS IdxSectionsCourse ON Sections (CourseID)",
+            "CREATE INDEX IF NOT EXISTS IdxSectionsInstructor ON Sections (InstructorID)",
+            "ALTER TABLE Sections ADD CONSTRAINT IF NOT EXISTS FkSectionsCourse FOREIGN KEY (CourseID) REFERENCES Course (CourseID)",
+            """
+            CREATE TABLE IF NOT EXISTS Enrollments (
+                StudentID INT NOT NULL,
+                SectionID INT NOT NULL,
+                EnrollmentDate DATE NOT NULL,
+                PRIMARY KEY (StudentID, SectionID)
+            )""",
+            "CREATE INDEX IF NOT EXISTS IdxEnrollmentsSection ON Enrollments (SectionID)",
+            "ALTER TABLE Enrollments ADD CONSTRAINT IF NOT EXISTS FkEnrollmentsStudent FOREIGN KEY (StudentID) REFERENCES Students (StudentID)",
+            "ALTER TABLE Enrollments ADD CONSTRAINT IF NOT EXISTS FkEnrollmentsSection FOREIGN KEY (SectionID) REFERENCES Sections (SectionID)",
+            """
+            CREATE TABLE IF NOT EXISTS Waitlist (
+                WaitlistID INT AUTO_INCREMENT PRIMARY KEY,
+                SectionID INT NOT NULL,
+                StudentID INT NOT NULL,
+                JoinedAt TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                PromotedAt TIMESTAMP NULL,
+                UNIQUE (SectionID, StudentID)
+            )""",
+            //A section's queue (WaitlistDAO.getWaiting) and a student's promotions (WaitlistDAO.getPromotions)
+            "CREATE INDEX IF NOT EXISTS IdxWaitlistSection ON Waitlist (SectionID, WaitlistID)",
+            "CREATE INDEX IF NOT EXISTS IdxWaitlistStudent ON Waitlist (StudentID)",
+            "ALTER TABLE Waitlist ADD CONSTRAINT IF NOT EXISTS FkWaitlistSection FOREIGN KEY (SectionID) REFERENCES Sections (SectionID)",
+            """
+            CREATE TABLE IF NOT EXISTS Grades (
+                StudentID INT NOT NULL,
+                SectionID INT NOT NULL,
+                QuizScore DOUBLE,
+                MidtermScore DOUBLE,
+                FinalScore DOUBLE,
+                FinalGrade VARCHAR(5),
+                PRIMARY KEY (StudentID, SectionID)
+            )""",
+            """
+            CREATE TABLE IF NOT EXISTS StudentGpaSummary (
+                StudentID INT NOT NULL,
+                Term INT NOT NULL,
+                GradedCredits INT NOT NULL,
+                QualityPoints DOUBLE NOT NULL,
+                Gpa DOUBLE NOT NULL,
+                PRIMARY KEY (StudentID, Term)
+            )""",
+            //Dean's list and probation reports (GpaDAO.getStudentsByGpa)
+            "CREATE INDEX IF NOT EXISTS IdxGpaTerm ON StudentGpaSummary (Term, Gpa)",
+            """
+            CREATE TABLE IF NOT EXISTS GradingPolicies (
+                PolicyID INT AUTO_INCREMENT PRIMARY KEY,
+                CourseID INT,
+                SectionID INT,
+                QuizWeight DOUBLE NOT NULL,
+                MidtermWeight DOUBLE NOT NULL,
+                FinalWeight DOUBLE NOT NULL,
+                Thresholds VARCHAR(255) NOT NULL,
+                CurveMode VARCHAR(20) NOT NULL DEFAULT 'ABSOLUTE'
+            )""",
+            """
+            CREATE TABLE IF NOT EXISTS Notifications (
+                NotificationID INT AUTO_INCREMENT PRIMARY KEY,
+                Message VARCHAR(500) NOT NULL,
+                CreatedAt TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+            )""",
+            """
+            CREATE TABLE IF NOT EXISTS SystemSettings (
+                SettingKey VARCHAR(50) PRIMARY KEY,
+                SettingValue VARCHAR(255)
+            )"""
+    };
+
+    private SchemaBootstrap() {}
+
+
+    public static void Create(Connection AuthConnection, Connection StudentConnection) throws SQLException {
+        try (Statement AuthStatement = AuthConnection.createStatement(); Statement StudentStatement = StudentConnection.createStatement()) {
+            for (String DDL : AUTH_SCHEMA) {
+                AuthStatement.execute(DDL);
+            }
+            IgnoreEmailCase(AuthStatement);
+            for (String DDL : STUDENT_SCHEMA) {
+                StudentStatement.execute(DDL);
+            }
+        }
+    }
+
+
+    //Databases kept in files from before Email ignored case get the column converted once
+    //This fails if two accounts differ only in the case of their email, merge them first
+    private static void IgnoreEmailCase(Statement AuthStatement) throws SQLException {
+        String SQL = "SELECT DATA_TYPE FROM INFORMATION_SCHEMA.COLUMNS WHERE TABLE_NAME = 'USERS' AND COLUMN_NAME = 'EMAIL'";
+        try (ResultSet Result = AuthStatement.executeQuery(SQL)) {
+            if (!Result.next() || Result.getString("DATA_TYPE").equals("VARCHAR_IGNORECASE")) {
+                return;
+            }
+        }
+        AuthStatement.execute("ALTER TABLE Users ALTER COLUMN Email SET DATA TYPE VARCHAR_IGNORECASE(255)");
+    }
+}
@@ -0,0 +1,202 @@
+package edu.univ.erp.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+//A parsed Sections.TimeSlot, e.g. "Mon/Wed 9:00-9:50" or "MWF 1:00pm-1:50pm; Tue 10:00-11:30"
+//Each meeting is a day bitmask plus a minute range, packed into one int so a section's slot is a few ints
+//Text that cannot be parsed gives a slot with no meetings, which never clashes with anything
+public final class TimeSlot {
+    public static final int MINUTES_PER_DAY = 24 * 60;
+    public static final int DAYS_PER_WEEK = 7;
+
+    //Days, then a start and end time with optional minutes and am/pm
+    private static final Pattern MEETING = Pattern.compile(
+            "([A-Za-z][A-Za-z/,&\\s]*?)\\s*(\\d{1,2})(?::(\\d{2}))?\\s*([AaPp][Mm])?\\s*-\\s*(\\d{1,2})(?::(\\d{2}))?\\s*([AaPp][Mm])?");
+    private static final String[] DAY_NAMES = {"mon", "tue", "wed", "thu", "fri", "sat", "sun"};
+    private static final TimeSlot NONE = new TimeSlot("", new int[0]);
+
+    private final String text;
+    private final int[] meetings; //dayMask << 22 | startMinute << 11 | endMinute, end exclusive
+
+    private TimeSlot(String text, int[] meetings) {
+        this.text = text;
+        this.meetings = meetings;
+    }
+
+
+    //Never returns null, an empty or unreadable slot has no meetings
+    public static TimeSlot parse(String text) {
+        if (text == null || text.isBlank()) {
+            return NONE;
+        }
+        List<Integer> parsed = new ArrayList<>(2);
+        Matcher m = MEETING.matcher(text);
+        while (m.find()) {
+            int days = parseDays(m.group(1));
+            int end = toMinute(m.group(5), m.group(6), m.group(7));
+            //"1:00-1:50pm" is pm at both ends, "11:00-12:30pm" only at the end
+            int start = toMinute(m.group(2), m.group(3), m.group(4) != null ? m.group(4) : m.group(7));
+            if (m.group(4) == null && m.group(7) != null && start >= end) {
+                start = toMinute(m.group(2), m.group(3), "am");
+            }
+            if (days == 0 || start < 0 || end <= start || end > MINUTES_PER_DAY) {
+                continue;
+            }
+            parsed.add(days << 22 | start << 11 | end);
+        }
+        int[] packed = new int[parsed.size()];
+        for (int i = 0; i < packed.length; i++) {
+            packed[i] = parsed.get(i);
+        }
+        return new TimeSlot(text, packed);
+    }
+
+
+    public boolean isKnown() {
+        return meetings.length > 0;
+    }
+
+    public int meetingCount() {
+        return meetings.length;
+    }
+
+    //Bit 0 is Monday, bit 6 is Sunday
+    public int dayMask(int meeting) {
+        return meetings[meeting] >>> 22;
+    }
+
+    public int startMinute(int meeting) {
+        return (meetings[meeting] >>> 11) & 0x7FF;
+    }
+
+    public int endMinute(int meeting) {
+        return meetings[meeting] & 0x7FF;
+    }
+
+
+    //True if some meeting of each slot is on a shared day with overlapping minutes, back to back meetings do not overlap
+    public boolean overlaps(TimeSlot other) {
+        for (int a : meetings) {
+            for (int b : other.meetings) {
+                if (((a >>> 22) & (b >>> 22)) != 0 && ((a >>> 11) & 0x7FF) < (b & 0x7FF) && ((b >>> 11) & 0x7FF) < (a & 0x7FF)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+
+    //Orders slots by their earliest meeting in the week, unknown slots go last
+    public int sortKey() {
+        int best = Integer.MAX_VALUE;
+        for (int i = 0; i < meetings.length; i++) {
+            int firstDay = Integer.numberOfTrailingZeros(dayMask(i));
+            best = Math.min(best, firstDay * MINUTES_PER_DAY + startMinute(i));
+        }
+        return best;
+    }
+
+
+    //Day names or their prefixes ("Mon", "Tues", "Thursday"), or compact letters ("MWF", "TTh", "TR")
+    private static int parseDays(String text) {
+        int mask = 0;
+        for (String token : text.trim().split("[/,&\\s]+")) {
+            if (token.isEmpty()) {
+                continue;
+            }
+            int named = parseDayName(token.toLowerCase(Locale.ROOT));
+            mask |= named >= 0 ? 1 << named : parseDayLetters(token);
+        }
+        return mask;
+    }
+
+    private static int parseDayName(String token) {
+        if (token.length() < 3) {
+            return -1;
+        }
+        for (int day = 0; day < DAY_NAMES.length; day++) {
+            if (token.startsWith(DAY_NAMES[day])) {
+                return day;
+            }
+        }
+        return -1;
+    }
+
+    private static int parseDayLetters(String token) {
+        int mask = 0;
+        for (int i = 0; i < token.length(); i++) {
+            char c = Character.toUpperCase(token.charAt(i));
+            char next = i + 1 < token.length() ? Character.toLowerCase(token.charAt(i + 1)) : ' ';
+            switch (c) {
+                case 'M' -> mask |= 1;
+                case 'W' -> mask |= 1 << 2;
+                case 'R' -> mask |= 1 << 3;
+                case 'F' -> mask |= 1 << 4;
+                case 'T' -> {
+                    if (next == 'h') {
+                        mask |= 1 << 3;
+                        i++;
+                    }
+                    else {
+                        mask |= 1 << 1;
+                        if (next == 'u') i++;
+                    }
+                }
+                case 'S' -> {
+                    if (next == 'u') {
+                        mask |= 1 << 6;
+                    }
+                    else {
+                        mask |= 1 << 5;
+                    }
+                    if (next == 'a' || next == 'u') i++;
+                }
+                default -> {
+                    return 0; //Not a day, e.g. a room name
+                }
+            }
+        }
+        return mask;
+    }
+
+    //Without am/pm, hours 1 to 7 are read as afternoon classes, everything else as a 24 hour clock
+    private static int toMinute(String hourText, String minuteText, String amPm) {
+        int hour = Integer.parseInt(hourText);
+        int minute = minuteText != null ? Integer.parseInt(minuteText) : 0;
+        if (minute > 59 || hour > 24) {
+            return -1;
+        }
+        if (amPm != null) {
+            if (hour < 1 || hour > 12) {
+                return -1;
+            }
+            boolean pm = Character.toLowerCase(amPm.charAt(0)) == 'p';
+            hour = hour % 12 + (pm ? 12 : 0);
+        }
+        else if (hour >= 1 && hour <= 7) {
+            hour += 12;
+        }
+        return hour * 60 + minute;
+    }
+
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof TimeSlot other && text.equals(other.text);
+    }
+
+    @Override
+    public int hashCode() {
+        return text.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
@@ -0,0 +1,137 @@
+package edu.univ.erp.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//The minutes of the week a student is already in class, one bit per minute (7 * 1440 bits, about 1.3 KB)
+//Built once from the enrolled sections' parsed slots, then every catalog row or registration is checked
+//against it by testing only the words its meetings cover, without another query
+//Immutable, with() and without() return a changed copy
+public final class WeekOccupancy {
+    private static final int WORDS = (TimeSlot.DAYS_PER_WEEK * TimeSlot.MINUTES_PER_DAY + 63) / 64;
+
+    //An enrolled section, label is what a clash message shows (the course code)
+    private record Entry(int sectionId, String label, TimeSlot slot) {}
+
+    public static final WeekOccupancy EMPTY = new WeekOccupancy(new long[WORDS], List.of());
+
+    private final long[] bits;
+    private final List<Entry> entries;
+
+    private WeekOccupancy(long[] bits, List<Entry> entries) {
+        this.bits = bits;
+        this.entries = entries;
+    }
+
+
+    public WeekOccupancy with(int sectionId, String label, TimeSlot slot) {
+        long[] copy = bits.clone();
+        mark(copy, slot);
+        List<Entry> more = new ArrayList<>(entries.size() + 1);
+        more.addAll(entries);
+        more.add(new Entry(sectionId, label, slot));
+        return new WeekOccupancy(copy, more);
+    }
+
+
+    //The bitmap is rebuilt from the remaining sections, slots already enrolled may overlap each other
+    public WeekOccupancy without(int sectionId) {
+        long[] rebuilt = new long[WORDS];
+        List<Entry> remaining = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            if (entry.sectionId() != sectionId) {
+                remaining.add(entry);
+                mark(rebuilt, entry.slot());
+            }
+        }
+        return new WeekOccupancy(rebuilt, remaining);
+    }
+
+
+    public boolean contains(int sectionId) {
+        for (Entry entry : entries) {
+            if (entry.sectionId() == sectionId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    //True if any minute of the slot is already taken
+    public boolean clashes(TimeSlot slot) {
+        for (int i = 0; i < slot.meetingCount(); i++) {
+            int days = slot.dayMask(i);
+            for (int day = 0; day < TimeSlot.DAYS_PER_WEEK; day++) {
+                if ((days & (1 << day)) != 0) {
+                    int from = day * TimeSlot.MINUTES_PER_DAY + slot.startMinute(i);
+                    int to = day * TimeSlot.MINUTES_PER_DAY + slot.endMinute(i);
+                    if (anySet(bits, from, to)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+
+    //The label of an enrolled section the slot clashes with, or null
+    //The bitmap answers the usual no-clash case, the enrolled sections are only walked to name the clash
+    public String findClash(TimeSlot slot) {
+        if (!clashes(slot)) {
+            return null;
+        }
+        for (Entry entry : entries) {
+            if (entry.slot().overlaps(slot)) {
+                return entry.label();
+            }
+        }
+        return null;
+    }
+
+
+    private static void mark(long[] bits, TimeSlot slot) {
+        for (int i = 0; i < slot.meetingCount(); i++) {
+            int days = slot.dayMask(i);
+            for (int day = 0; day < TimeSlot.DAYS_PER_WEEK; day++) {
+                if ((days & (1 << day)) != 0) {
+                    setRange(bits, day * TimeSlot.MINUTES_PER_DAY + slot.startMinute(i), day * TimeSlot.MINUTES_PER_DAY + slot.endMinute(i));
+                }
+            }
+        }
+    }
+
+    //Sets bits [from, to)
+    private static void setRange(long[] bits, int from, int to) {
+        int firstWord = from >>> 6;
+        int lastWord = (to - 1) >>> 6;
+        for (int word = firstWord; word <= lastWord; word++) {
+            bits[word] |= rangeMask(word, from, to);
+        }
+    }
+
+    //True if any of bits [from, to) is set
+    private static boolean anySet(long[] bits, int from, int to) {
+        int firstWord = from >>> 6;
+        int lastWord = (to - 1) >>> 6;
+        for (int word = firstWord; word <= lastWord; word++) {
+            if ((bits[word] & rangeMask(word, from, to)) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //The bits of [from, to) that fall in the given word
+    private static long rangeMask(int word, int from, int to) {
+        long mask = -1L;
+        if (word == from >>> 6) {
+            mask &= -1L << (from & 63);
+        }
+        if (word == (to - 1) >>> 6) {
+            mask &= -1L >>> (63 - ((to - 1) & 63));
+        }
+        return mask;
+    }
+}
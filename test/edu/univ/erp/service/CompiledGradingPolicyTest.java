@@ -0,0 +1,143 @@
+package edu.univ.erp.service;
+
+import edu.univ.erp.domain.GradingPolicy;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+//letterFor() answers most values from the bucket table, these tests hold it to a plain linear walk over the thresholds
+class CompiledGradingPolicyTest {
+    private static final String[] THRESHOLDS = {
+            GradingPolicy.DEFAULT.thresholds(),
+            "A:90, A-:80, B:70, F",
+            "A:93.3, A-:90.01, B:87, B-:50, C:49.999, C-:49.998, D:10, F:0",
+            "A:1000000, B:0.001, F:0",
+            "A:50",
+    };
+
+
+    @Test
+    void tableMatchesLinearSearchOnAndNextToEveryCutoff() {
+        for (String thresholds : THRESHOLDS) {
+            CompiledGradingPolicy policy = compile(thresholds, GradingPolicy.Curve.ABSOLUTE);
+            List<Double> cutoffs = cutoffs(thresholds);
+            double span = cutoffs.get(0) - cutoffs.get(cutoffs.size() - 1);
+            double bucket = span / 256;
+            for (double cutoff : cutoffs) {
+                for (double value : new double[]{cutoff, Math.nextUp(cutoff), Math.nextDown(cutoff), cutoff + 1e-9, cutoff - 1e-9,
+                        cutoff + bucket, cutoff - bucket, cutoff + bucket / 2, cutoff - bucket / 2}) {
+                    assertEquals(linear(thresholds, value), policy.letterFor(value), thresholds + " at " + value);
+                }
+            }
+        }
+    }
+
+
+    @Test
+    void tableMatchesLinearSearchAcrossTheWholeRange() {
+        for (String thresholds : THRESHOLDS) {
+            CompiledGradingPolicy policy = compile(thresholds, GradingPolicy.Curve.ABSOLUTE);
+            List<Double> cutoffs = cutoffs(thresholds);
+            double from = cutoffs.get(cutoffs.size() - 1) - 5;
+            double to = cutoffs.get(0) + 5;
+            double step = Math.max((to - from) / 100_000, 1e-4);
+            for (double value = from; value <= to; value += step) {
+                assertEquals(linear(thresholds, value), policy.letterFor(value), thresholds + " at " + value);
+            }
+        }
+    }
+
+
+    @Test
+    void nanAndInfinitiesFollowTheLinearSearch() {
+        for (String thresholds : THRESHOLDS) {
+            CompiledGradingPolicy policy = compile(thresholds, GradingPolicy.Curve.ABSOLUTE);
+            for (double value : new double[]{Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY}) {
+                assertEquals(linear(thresholds, value), policy.letterFor(value), thresholds + " at " + value);
+            }
+        }
+        assertEquals(CompiledGradingPolicy.INVALID, CompiledGradingPolicy.DEFAULT.letterFor(Double.NaN));
+        assertEquals("F", compile("A:90, A-:80, B:70, F", GradingPolicy.Curve.ABSOLUTE).letterFor(Double.NaN));
+    }
+
+
+    @Test
+    void curvedPolicyGradesZScores() {
+        String thresholds = "A:1.5, A-:0.75, B:0, B-:-0.5, C:-1, D:-2, F";
+        CompiledGradingPolicy policy = compile(thresholds, GradingPolicy.Curve.Z_SCORE);
+        assertTrue(policy.isCurved());
+        assertFalse(compile(thresholds, GradingPolicy.Curve.ABSOLUTE).isCurved());
+        for (double z = -4; z <= 4; z += 0.0005) {
+            assertEquals(linear(thresholds, z), policy.letterFor(z), "z " + z);
+        }
+        assertEquals("B", policy.letterFor(0.0));
+        assertEquals("B", policy.letterFor(-0.0));
+        assertEquals("B-", policy.letterFor(Math.nextDown(0.0)));
+        assertEquals("F", policy.letterFor(-2.0001));
+    }
+
+
+    @Test
+    void weightedScoreUsesThePolicyWeights() {
+        GradingPolicy policy = new GradingPolicy(0, 1, null, 0.1, 0.4, 0.5, "A:90, F", GradingPolicy.Curve.ABSOLUTE);
+        assertEquals(10 * 0.1 + 20 * 0.4 + 30 * 0.5, CompiledGradingPolicy.compile(policy).weightedScore(10, 20, 30), 1e-9);
+    }
+
+
+    @Test
+    void lettersWithoutGradePointsAreRefused() {
+        IllegalArgumentException plus = assertThrows(IllegalArgumentException.class,
+                () -> compile("A+:95, A:90, F", GradingPolicy.Curve.ABSOLUTE));
+        assertTrue(plus.getMessage().contains("A+") && plus.getMessage().contains("A, A-, B"), plus.getMessage());
+        assertThrows(IllegalArgumentException.class, () -> compile("A:90, B:80, P", GradingPolicy.Curve.ABSOLUTE));
+        assertThrows(IllegalArgumentException.class, () -> compile("a:90, F", GradingPolicy.Curve.ABSOLUTE));
+    }
+
+
+    @Test
+    void badThresholdsAreRefused() {
+        assertThrows(IllegalArgumentException.class, () -> compile("A:80, B:90", GradingPolicy.Curve.ABSOLUTE));
+        assertThrows(IllegalArgumentException.class, () -> compile("A:80, B:80", GradingPolicy.Curve.ABSOLUTE));
+        assertThrows(IllegalArgumentException.class, () -> compile("A:x", GradingPolicy.Curve.ABSOLUTE));
+        assertThrows(IllegalArgumentException.class, () -> compile("A:NaN", GradingPolicy.Curve.ABSOLUTE));
+        assertThrows(IllegalArgumentException.class, () -> compile("F", GradingPolicy.Curve.ABSOLUTE));
+        assertThrows(IllegalArgumentException.class, () -> compile("A, B:50", GradingPolicy.Curve.ABSOLUTE));
+        assertThrows(IllegalArgumentException.class, () -> compile(" ", GradingPolicy.Curve.ABSOLUTE));
+    }
+
+
+    private static CompiledGradingPolicy compile(String thresholds, GradingPolicy.Curve curve) {
+        return CompiledGradingPolicy.compile(new GradingPolicy(0, 1, null, 0.2, 0.3, 0.5, thresholds, curve));
+    }
+
+    private static List<Double> cutoffs(String thresholds) {
+        List<Double> cutoffs = new ArrayList<>();
+        for (String pair : thresholds.split(",")) {
+            int colon = pair.lastIndexOf(':');
+            if (colon >= 0) {
+                cutoffs.add(Double.parseDouble(pair.substring(colon + 1).trim()));
+            }
+        }
+        return cutoffs;
+    }
+
+    //The first letter whose cutoff the value reaches, the letter without a cutoff (or "-") below them all
+    private static String linear(String thresholds, double value) {
+        for (String pair : thresholds.split(",")) {
+            int colon = pair.lastIndexOf(':');
+            if (colon < 0) {
+                return pair.trim();
+            }
+            if (value >= Double.parseDouble(pair.substring(colon + 1).trim())) {
+                return pair.substring(0, colon).trim();
+            }
+        }
+        return CompiledGradingPolicy.INVALID;
+    }
+}
@@ -0,0 +1,115 @@
+package edu.univ.erp.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimeSlotTest {
+    private static final int MON = 1;
+    private static final int TUE = 1 << 1;
+    private static final int WED = 1 << 2;
+    private static final int THU = 1 << 3;
+    private static final int FRI = 1 << 4;
+    private static final int SAT = 1 << 5;
+    private static final int SUN = 1 << 6;
+
+
+    @Test
+    void parsesDayNamesAndTimes() {
+        TimeSlot slot = TimeSlot.parse("Mon/Wed 9:00-9:50");
+        assertTrue(slot.isKnown());
+        assertEquals(1, slot.meetingCount());
+        assertMeeting(slot, 0, MON | WED, 9 * 60, 9 * 60 + 50);
+        assertMeeting(TimeSlot.parse("Tues, Thursday 10:00-11:15"), 0, TUE | THU, 10 * 60, 11 * 60 + 15);
+        assertMeeting(TimeSlot.parse("Sat & Sun 9-10"), 0, SAT | SUN, 9 * 60, 10 * 60);
+    }
+
+
+    @Test
+    void parsesCompactDayLetters() {
+        assertMeeting(TimeSlot.parse("MWF 9:00-9:50"), 0, MON | WED | FRI, 9 * 60, 9 * 60 + 50);
+        assertMeeting(TimeSlot.parse("TTh 10:00-11:15"), 0, TUE | THU, 10 * 60, 11 * 60 + 15);
+        assertMeeting(TimeSlot.parse("TR 10:00-11:15"), 0, TUE | THU, 10 * 60, 11 * 60 + 15);
+        assertMeeting(TimeSlot.parse("SaSu 10:00-11:00"), 0, SAT | SUN, 10 * 60, 11 * 60);
+    }
+
+
+    @Test
+    void parsesAmPmAndAfternoonHours() {
+        assertMeeting(TimeSlot.parse("Mon 1:00pm-1:50pm"), 0, MON, 13 * 60, 13 * 60 + 50);
+        assertMeeting(TimeSlot.parse("Mon 1:00-1:50pm"), 0, MON, 13 * 60, 13 * 60 + 50);
+        assertMeeting(TimeSlot.parse("Mon 11:00-12:30pm"), 0, MON, 11 * 60, 12 * 60 + 30);
+        assertMeeting(TimeSlot.parse("Mon 12:00am-1:00am"), 0, MON, 0, 60);
+        assertMeeting(TimeSlot.parse("Mon 2:00-3:15"), 0, MON, 14 * 60, 15 * 60 + 15); //No am/pm, 1 to 7 is afternoon
+        assertMeeting(TimeSlot.parse("Mon 13:00-14:00"), 0, MON, 13 * 60, 14 * 60);
+        assertMeeting(TimeSlot.parse("Sun 23:00-24:00"), 0, SUN, 23 * 60, TimeSlot.MINUTES_PER_DAY);
+    }
+
+
+    @Test
+    void parsesSeveralMeetings() {
+        TimeSlot slot = TimeSlot.parse("MWF 1:00pm-1:50pm; Tue 10:00-11:30");
+        assertEquals(2, slot.meetingCount());
+        assertMeeting(slot, 0, MON | WED | FRI, 13 * 60, 13 * 60 + 50);
+        assertMeeting(slot, 1, TUE, 10 * 60, 11 * 60 + 30);
+    }
+
+
+    @Test
+    void unreadableTextHasNoMeetings() {
+        for (String text : new String[]{null, "", "  ", "TBA", "Room 101", "Mon 10:00-9:00", "Mon 9:60-10:00", "Mon 13:00pm-14:00pm"}) {
+            TimeSlot slot = TimeSlot.parse(text);
+            assertFalse(slot.isKnown(), String.valueOf(text));
+            assertFalse(slot.overlaps(TimeSlot.parse("MTWRFSaSu 0:00-24:00")), String.valueOf(text));
+        }
+    }
+
+
+    @Test
+    void overlapsNeedASharedDayAndMinute() {
+        TimeSlot nine = TimeSlot.parse("Mon/Wed 9:00-9:50");
+        assertTrue(nine.overlaps(TimeSlot.parse("Wed 9:30-10:20")));
+        assertTrue(nine.overlaps(TimeSlot.parse("Mon 9:49-10:40")));
+        assertTrue(nine.overlaps(TimeSlot.parse("Mon 8:00-9:01")));
+        assertTrue(nine.overlaps(TimeSlot.parse("Mon 9:10-9:20")));
+        assertFalse(nine.overlaps(TimeSlot.parse("Tue 9:00-9:50")));
+        assertFalse(nine.overlaps(TimeSlot.parse("Mon 10:00-10:50")));
+    }
+
+
+    @Test
+    void backToBackMeetingsDoNotOverlap() {
+        TimeSlot nine = TimeSlot.parse("Mon 9:00-9:50");
+        assertFalse(nine.overlaps(TimeSlot.parse("Mon 9:50-10:40")));
+        assertFalse(nine.overlaps(TimeSlot.parse("Mon 8:10-9:00")));
+        assertFalse(TimeSlot.parse("Mon 9:50-10:40").overlaps(nine));
+    }
+
+
+    @Test
+    void sortKeyFollowsTheWeek() {
+        int monday = TimeSlot.parse("Mon 10:00-10:50").sortKey();
+        int tuesday = TimeSlot.parse("Tue 9:00-9:50").sortKey();
+        int sunday = TimeSlot.parse("Sun 8:00-8:50").sortKey();
+        int spread = TimeSlot.parse("Fri 8:00-8:50; Mon 11:00-11:50").sortKey();
+        assertTrue(monday < tuesday && tuesday < sunday);
+        assertTrue(monday < spread && spread < tuesday);
+        assertTrue(TimeSlot.parse("TBA").sortKey() > sunday);
+    }
+
+
+    @Test
+    void equalityIsByText() {
+        assertEquals(TimeSlot.parse("Mon 9:00-9:50"), TimeSlot.parse("Mon 9:00-9:50"));
+        assertEquals("Mon 9:00-9:50", TimeSlot.parse("Mon 9:00-9:50").toString());
+    }
+
+
+    private static void assertMeeting(TimeSlot slot, int meeting, int days, int start, int end) {
+        assertEquals(days, slot.dayMask(meeting), slot + " days");
+        assertEquals(start, slot.startMinute(meeting), slot + " start");
+        assertEquals(end, slot.endMinute(meeting), slot + " end");
+    }
+}
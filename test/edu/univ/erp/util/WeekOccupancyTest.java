@@ -0,0 +1,94 @@
+package edu.univ.erp.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WeekOccupancyTest {
+
+    @Test
+    void emptyWeekClashesWithNothing() {
+        assertFalse(WeekOccupancy.EMPTY.clashes(TimeSlot.parse("MTWRFSaSu 0:00-24:00")));
+        assertNull(WeekOccupancy.EMPTY.findClash(TimeSlot.parse("Mon 9:00-9:50")));
+        assertFalse(WeekOccupancy.EMPTY.contains(1));
+    }
+
+
+    @Test
+    void findsTheSectionItClashesWith() {
+        WeekOccupancy week = WeekOccupancy.EMPTY
+                .with(1, "CSE101", TimeSlot.parse("Mon/Wed 9:00-9:50"))
+                .with(2, "MTH101", TimeSlot.parse("TTh 11:00-12:15pm"));
+        assertEquals("CSE101", week.findClash(TimeSlot.parse("Wed 9:30-10:20")));
+        assertEquals("MTH101", week.findClash(TimeSlot.parse("Thu 12:00-12:50pm")));
+        assertNull(week.findClash(TimeSlot.parse("Fri 9:00-9:50")));
+        assertTrue(week.contains(1) && week.contains(2) && !week.contains(3));
+    }
+
+
+    @Test
+    void adjacentSlotsDoNotClash() {
+        WeekOccupancy week = WeekOccupancy.EMPTY.with(1, "CSE101", TimeSlot.parse("Mon 9:00-9:50"));
+        assertFalse(week.clashes(TimeSlot.parse("Mon 9:50-10:40")));
+        assertFalse(week.clashes(TimeSlot.parse("Mon 8:10-9:00")));
+        assertTrue(week.clashes(TimeSlot.parse("Mon 9:49-10:40")));
+        assertTrue(week.clashes(TimeSlot.parse("Mon 8:10-9:01")));
+    }
+
+
+    @Test
+    void minutesOnEitherSideOfAWordBoundary() {
+        //Minute 64 starts the second word of the bitmap
+        WeekOccupancy week = WeekOccupancy.EMPTY.with(1, "EARLY", TimeSlot.parse("Mon 1:03am-1:05am"));
+        assertTrue(week.clashes(TimeSlot.parse("Mon 1:04am-1:10am")));
+        assertTrue(week.clashes(TimeSlot.parse("Mon 12:30am-1:04am")));
+        assertFalse(week.clashes(TimeSlot.parse("Mon 1:05am-1:10am")));
+        assertFalse(week.clashes(TimeSlot.parse("Mon 12:30am-1:03am")));
+    }
+
+
+    @Test
+    void sameTimeOnOtherDaysDoesNotClash() {
+        WeekOccupancy week = WeekOccupancy.EMPTY.with(1, "CSE101", TimeSlot.parse("Sun 23:00-24:00"));
+        assertTrue(week.clashes(TimeSlot.parse("Sun 23:59-24:00")));
+        assertFalse(week.clashes(TimeSlot.parse("Mon 0:00-0:30")));
+        assertFalse(week.clashes(TimeSlot.parse("Sat 23:00-24:00")));
+        assertFalse(week.clashes(TimeSlot.parse("Sun 22:00-23:00")));
+    }
+
+
+    @Test
+    void unknownSlotsNeverClash() {
+        WeekOccupancy week = WeekOccupancy.EMPTY.with(1, "TBA", TimeSlot.parse("TBA"));
+        assertTrue(week.contains(1));
+        assertFalse(week.clashes(TimeSlot.parse("MTWRFSaSu 0:00-24:00")));
+        assertFalse(WeekOccupancy.EMPTY.with(2, "CSE101", TimeSlot.parse("Mon 9:00-9:50")).clashes(TimeSlot.parse("TBA")));
+    }
+
+
+    @Test
+    void withoutKeepsTheOtherSectionsMinutes() {
+        //Two enrolled sections that overlap each other, dropping one must not free the shared minutes
+        WeekOccupancy week = WeekOccupancy.EMPTY
+                .with(1, "CSE101", TimeSlot.parse("Mon 9:00-10:00"))
+                .with(2, "CSE102", TimeSlot.parse("Mon 9:30-10:30"));
+        WeekOccupancy dropped = week.without(1);
+        assertFalse(dropped.contains(1));
+        assertEquals("CSE102", dropped.findClash(TimeSlot.parse("Mon 9:40-9:45")));
+        assertFalse(dropped.clashes(TimeSlot.parse("Mon 9:00-9:30")));
+        assertTrue(week.clashes(TimeSlot.parse("Mon 9:00-9:30")));
+    }
+
+
+    @Test
+    void withReturnsACopy() {
+        WeekOccupancy week = WeekOccupancy.EMPTY.with(1, "CSE101", TimeSlot.parse("Mon 9:00-9:50"));
+        WeekOccupancy more = week.with(2, "CSE102", TimeSlot.parse("Tue 9:00-9:50"));
+        assertFalse(week.clashes(TimeSlot.parse("Tue 9:00-9:50")));
+        assertTrue(more.clashes(TimeSlot.parse("Tue 9:00-9:50")));
+        assertFalse(WeekOccupancy.EMPTY.clashes(TimeSlot.parse("Mon 9:00-9:50")));
+    }
+}